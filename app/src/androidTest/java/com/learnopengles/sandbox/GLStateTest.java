@@ -0,0 +1,141 @@
+package com.learnopengles.sandbox;
+
+/*
+ * bookkeeping of the GL state cache - no context needed, the GLES20 calls that do
+ * go through are dropped by the driver without one; only the counts are checked
+ */
+
+import android.opengl.GLES20;
+import android.test.AndroidTestCase;
+
+import com.learnopengles.sandbox.common.GLState;
+
+public class GLStateTest extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        GLState.setCachingEnabled(true);
+        GLState.reset();
+        GLState.resetCounters();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        GLState.setCachingEnabled(true);
+        GLState.reset();
+        super.tearDown();
+    }
+
+    public void testFirstCallIsAlwaysIssued() {
+        GLState.useProgram(0);
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLState.disable(GLES20.GL_BLEND);
+        GLState.disableVertexAttribArray(0);
+
+        assertEquals(5, GLState.getIssuedCalls());
+        assertEquals(0, GLState.getElidedCalls());
+    }
+
+    public void testRepeatedCallsAreElided() {
+        GLState.useProgram(3);
+        GLState.useProgram(3);
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 7);
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 7);
+        GLState.enable(GLES20.GL_DEPTH_TEST);
+        GLState.enable(GLES20.GL_DEPTH_TEST);
+        GLState.enableVertexAttribArray(2);
+        GLState.enableVertexAttribArray(2);
+
+        assertEquals(4, GLState.getIssuedCalls());
+        assertEquals(4, GLState.getElidedCalls());
+    }
+
+    public void testChangesAreIssued() {
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 1);
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 2);
+        GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 2);
+        GLState.enable(GLES20.GL_CULL_FACE);
+        GLState.disable(GLES20.GL_CULL_FACE);
+        GLState.enable(GLES20.GL_CULL_FACE);
+
+        assertEquals(6, GLState.getIssuedCalls());
+        assertEquals(0, GLState.getElidedCalls());
+    }
+
+    /*
+     * the shape of a display renderer frame: one program, every object binding its
+     * own VBO and enabling the same three attribute arrays
+     */
+    public void testFrameOfObjects() {
+        final int objects = 10;
+        for (int i = 0; i < objects; i++) {
+            GLState.useProgram(1);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 100 + i);
+            GLState.enableVertexAttribArray(0);
+            GLState.enableVertexAttribArray(1);
+            GLState.enableVertexAttribArray(2);
+        }
+
+        // program and arrays once, a bind per object
+        assertEquals(4 + objects, GLState.getIssuedCalls());
+        assertEquals(4 * (objects - 1), GLState.getElidedCalls());
+    }
+
+    public void testResetForgetsState() {
+        GLState.useProgram(1);
+        GLState.enable(GLES20.GL_DEPTH_TEST);
+        GLState.reset();
+        GLState.useProgram(1);
+        GLState.enable(GLES20.GL_DEPTH_TEST);
+
+        assertEquals(4, GLState.getIssuedCalls());
+        assertEquals(0, GLState.getElidedCalls());
+    }
+
+    public void testDeletedBufferIsUnbound() {
+        final int[] buffers = {5, 6};
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+        GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 6);
+        GLState.deleteBuffers(buffers.length, buffers, 0);
+        GLState.resetCounters();
+
+        // GL left 0 bound, so these are redundant
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        assertEquals(0, GLState.getIssuedCalls());
+        assertEquals(2, GLState.getElidedCalls());
+    }
+
+    public void testDeletedProgramIsForgotten() {
+        GLState.useProgram(4);
+        GLState.deleteProgram(4);
+        GLState.resetCounters();
+
+        GLState.useProgram(4);
+        assertEquals(1, GLState.getIssuedCalls());
+    }
+
+    public void testCachingOffIssuesEverything() {
+        GLState.setCachingEnabled(false);
+        GLState.useProgram(3);
+        GLState.useProgram(3);
+        GLState.enableVertexAttribArray(0);
+        GLState.enableVertexAttribArray(0);
+
+        // still counted, so the two modes can be compared
+        assertEquals(4, GLState.getIssuedCalls());
+        assertEquals(2, GLState.getElidedCalls());
+    }
+
+    public void testUntrackedStateIsPassedThrough() {
+        GLState.enableVertexAttribArray(64);
+        GLState.enableVertexAttribArray(64);
+        GLState.enable(GLES20.GL_TEXTURE_2D);
+        GLState.enable(GLES20.GL_TEXTURE_2D);
+
+        assertEquals(4, GLState.getIssuedCalls());
+        assertEquals(0, GLState.getElidedCalls());
+    }
+}
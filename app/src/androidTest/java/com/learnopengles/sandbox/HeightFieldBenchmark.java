@@ -0,0 +1,124 @@
+package com.learnopengles.sandbox;
+
+/*
+ * time HeightField generation from a float array and from a grayscale bitmap,
+ * and count the allocations each build makes - it should be a handful per build
+ * (output arrays, one row buffer per worker range), never one per sample
+ *
+ * results go to logcat:  adb logcat -s HeightFieldBenchmark
+ */
+
+import android.graphics.Bitmap;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.WorkerPool;
+import com.learnopengles.sandbox.objects.HeightField;
+
+public class HeightFieldBenchmark extends AndroidTestCase {
+
+    private static final String LOG_TAG = HeightFieldBenchmark.class.getSimpleName();
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+
+    public void testFlatFieldNormalsPointUp() {
+        float heights[] = new float[16 * 16];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = 0.25f;
+        }
+        HeightField field = HeightField.fromHeights(heights, 16, 16, 1f, 1f);
+        float normals[] = field.getNormals();
+        for (int i = 0; i < normals.length; i += 3) {
+            assertEquals(0f, normals[i], 1e-6f);
+            assertEquals(1f, normals[i + 1], 1e-6f);
+            assertEquals(0f, normals[i + 2], 1e-6f);
+        }
+    }
+
+    public void testSlopeNormalsLeanAgainstTheSlope() {
+        // rises one unit per cell along x: normal is (-1, 1, 0) / sqrt(2)
+        float heights[] = new float[16 * 16];
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                heights[z * 16 + x] = x;
+            }
+        }
+        HeightField field = HeightField.fromHeights(heights, 16, 16, 1f, 1f);
+        int o = (8 * 16 + 8) * 3;
+        float normals[] = field.getNormals();
+        assertEquals(-0.70710677f, normals[o], 1e-5f);
+        assertEquals(0.70710677f, normals[o + 1], 1e-5f);
+        assertEquals(0f, normals[o + 2], 1e-5f);
+    }
+
+    public void testGenerationTimeAndAllocations() {
+        int sizes[] = {256, 512, 1024};
+
+        Log.w(LOG_TAG, "cores: " + WorkerPool.getParallelism());
+
+        for (int i = 0; i < sizes.length; i++) {
+            final int size = sizes[i];
+
+            final float heights[] = new float[size * size];
+            int pixels[] = new int[size * size];
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    float h = 0.5f + 0.25f * (float) (Math.sin(x * 0.05) + Math.cos(z * 0.07));
+                    int grey = (int) (h * 255f);
+                    heights[z * size + x] = h;
+                    pixels[z * size + x] = 0xff000000 | (grey << 16) | (grey << 8) | grey;
+                }
+            }
+            final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            bitmap.setPixels(pixels, 0, size, 0, 0, size, size);
+            pixels = null;
+
+            report("array ", size, new Runnable() {
+                @Override
+                public void run() {
+                    HeightField.fromHeights(heights, size, size, 1f, 1f);
+                }
+            });
+            report("bitmap", size, new Runnable() {
+                @Override
+                public void run() {
+                    HeightField.fromBitmap(bitmap, 1f, 1f);
+                }
+            });
+
+            bitmap.recycle();
+        }
+    }
+
+    private void report(String source, int size, Runnable build) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            build.run();
+        }
+
+        long start = SystemClock.uptimeMillis();
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            build.run();
+        }
+        long elapsed = (SystemClock.uptimeMillis() - start) / TIMED_RUNS;
+
+        // one more run, counted - the global counters include the worker threads
+        Debug.resetGlobalAllocCount();
+        Debug.resetGlobalAllocSize();
+        Debug.startAllocCounting();
+        build.run();
+        Debug.stopAllocCounting();
+        int allocations = Debug.getGlobalAllocCount();
+        int bytes = Debug.getGlobalAllocSize();
+
+        Log.w(LOG_TAG, source + " " + size + " x " + size
+                + "  " + elapsed + " ms"
+                + "  allocations " + allocations
+                + "  " + (bytes / 1024) + " KB");
+
+        // nothing per sample, or even per row
+        assertTrue("allocations scale with the input: " + allocations, allocations < size);
+    }
+}
@@ -0,0 +1,201 @@
+package com.learnopengles.sandbox;
+
+/*
+ * per-frame CPU cost of the object matrices at 10, 100 and 1000 nodes:
+ *
+ *   old         the do_matrix_setup arithmetic, redone for every object every frame
+ *   still       scene graph, nothing moved
+ *   camera      scene graph, the view changed (every MV / MVP, no world matrix)
+ *   rotation    scene graph, the shared touch rotation changed (everything)
+ *
+ * results go to logcat:  adb logcat -s SceneGraphBenchmark
+ */
+
+import android.opengl.Matrix;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.SceneGraph;
+
+public class SceneGraphBenchmark extends AndroidTestCase {
+
+    private static final String LOG_TAG = SceneGraphBenchmark.class.getSimpleName();
+
+    private static final int WARMUP_FRAMES = 50;
+    private static final int TIMED_FRAMES = 200;
+
+    private final float[] mView = new float[16];
+    private final float[] mProjection = new float[16];
+    private final float[] mRotation = new float[16];
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Matrix.setLookAtM(mView, 0, 0f, 0f, -0.5f, 0f, 0f, -5f, 0f, 1f, 0f);
+        Matrix.frustumM(mProjection, 0, -1.5f, 1.5f, -1f, 1f, 1f, 20f);
+        Matrix.setRotateM(mRotation, 0, 30f, 0.3f, 1f, 0.2f);
+    }
+
+    public void testMatchesMatrixComposition() {
+        SceneGraph graph = new SceneGraph(2);
+        int placement = graph.addNode(SceneGraph.NO_PARENT);
+        graph.setLocalTranslateScale(placement, 1f, -0.5f, -2.5f, 0.25f);
+        int spin = graph.addNode(placement);
+        graph.setLocal(spin, mRotation, 0);
+        graph.setCamera(mView, mProjection);
+        assertEquals(2, graph.update());
+
+        // the renderers' old way
+        float[] model = new float[16];
+        float[] temp = new float[16];
+        float[] mv = new float[16];
+        float[] mvp = new float[16];
+        Matrix.setIdentityM(model, 0);
+        Matrix.translateM(model, 0, 1f, -0.5f, -2.5f);
+        Matrix.scaleM(model, 0, 0.25f, 0.25f, 0.25f);
+        Matrix.multiplyMM(temp, 0, model, 0, mRotation, 0);
+        Matrix.multiplyMM(mv, 0, mView, 0, temp, 0);
+        Matrix.multiplyMM(mvp, 0, mProjection, 0, mv, 0);
+
+        int o = spin * SceneGraph.FLOATS_PER_MATRIX;
+        for (int i = 0; i < 16; i++) {
+            assertEquals(temp[i], graph.getWorldMatrices()[o + i], 1e-5f);
+            assertEquals(mv[i], graph.getModelViewMatrices()[o + i], 1e-5f);
+            assertEquals(mvp[i], graph.getModelViewProjectionMatrices()[o + i], 1e-5f);
+        }
+
+        // nothing moved, nothing recomputed; a new parent transform reaches the child
+        assertEquals(0, graph.update());
+        graph.setLocalTranslateScale(placement, 0f, 0f, -2.5f, 0.25f);
+        assertEquals(2, graph.update());
+    }
+
+    public void testCullsNodesOutsideFrustum() {
+        SceneGraph graph = new SceneGraph(3);
+        int ahead = graph.addNode(SceneGraph.NO_PARENT);
+        graph.setLocalTranslateScale(ahead, 0f, 0f, -5f, 0.5f);
+        int aside = graph.addNode(SceneGraph.NO_PARENT);
+        graph.setLocalTranslateScale(aside, 50f, 0f, -5f, 0.5f);
+        int behind = graph.addNode(SceneGraph.NO_PARENT);
+        graph.setLocalTranslateScale(behind, 0f, 0f, 5f, 0.5f);
+        for (int node = 0; node < 3; node++) {
+            graph.setBounds(node, 0f, 0f, 0f, 1f);
+        }
+        graph.setCamera(mView, mProjection);
+
+        // culled nodes skip their model-view and MVP
+        assertEquals(1, graph.update());
+        assertTrue(graph.isVisible(ahead));
+        assertFalse(graph.isVisible(aside));
+        assertFalse(graph.isVisible(behind));
+        assertEquals(1, graph.getVisibleNodes());
+        assertEquals(2, graph.getCulledNodes());
+
+        // the radius is scaled with the node: just past the edge, a big enough sphere reaches back in
+        graph.setLocalTranslateScale(aside, 8.5f, 0f, -5f, 2f);
+        graph.update();
+        assertTrue(graph.isVisible(aside));
+
+        // every sphere is tested again, every node recomputed
+        graph.setCullingEnabled(false);
+        assertEquals(3, graph.update());
+        assertEquals(3, graph.getVisibleNodes());
+        assertEquals(0, graph.getCulledNodes());
+    }
+
+    public void testPerFrameMatrixCost() {
+        int[] counts = {10, 100, 1000};
+        for (int i = 0; i < counts.length; i++) {
+            int objects = counts[i];
+            SceneGraph graph = buildGraph(objects);
+
+            Log.w(LOG_TAG, String.format("%4d objects (%4d nodes)  old %7.1f us  still %7.1f us"
+                            + "  camera %7.1f us  rotation %7.1f us",
+                    objects, graph.getNodeCount(),
+                    timeOld(objects),
+                    timeGraph(graph, false, false),
+                    timeGraph(graph, true, false),
+                    timeGraph(graph, false, true)));
+
+            // a still frame touches no matrix at all
+            graph.update();
+            assertEquals(0, graph.update());
+        }
+    }
+
+    private SceneGraph buildGraph(int objects) {
+        SceneGraph graph = new SceneGraph(objects * 2);
+        for (int i = 0; i < objects; i++) {
+            int placement = graph.addNode(SceneGraph.NO_PARENT);
+            graph.setLocalTranslateScale(placement, i % 9 - 4f, i % 7 - 3f, -2.5f - i / 63, 0.03f);
+            int spin = graph.addNode(placement);
+            graph.setLocal(spin, mRotation, 0);
+        }
+        graph.setCamera(mView, mProjection);
+        graph.update();
+        return graph;
+    }
+
+    /*
+     * average microseconds a frame
+     */
+    private float timeGraph(SceneGraph graph, boolean moveCamera, boolean rotate) {
+        float[] view = mView.clone();
+        float[] rotation = mRotation.clone();
+        long elapsed = 0;
+
+        for (int frame = 0; frame < WARMUP_FRAMES + TIMED_FRAMES; frame++) {
+            long start = System.nanoTime();
+            if (moveCamera) {
+                Matrix.translateM(view, 0, 0.001f, 0f, 0f);
+            }
+            graph.setCamera(view, mProjection);
+            if (rotate) {
+                Matrix.rotateM(rotation, 0, 0.5f, 0f, 1f, 0f);
+                // every second node is a spin node
+                for (int node = 1; node < graph.getNodeCount(); node += 2) {
+                    graph.setLocal(node, rotation, 0);
+                }
+            }
+            graph.update();
+            if (frame >= WARMUP_FRAMES) {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+        return elapsed / 1000f / TIMED_FRAMES;
+    }
+
+    private float timeOld(int objects) {
+        float[] model = new float[16];
+        float[] temp = new float[16];
+        float[] mvp = new float[16];
+        float[] incremental = new float[16];
+        float[] accumulated = mRotation.clone();
+        long elapsed = 0;
+
+        for (int frame = 0; frame < WARMUP_FRAMES + TIMED_FRAMES; frame++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < objects; i++) {
+                Matrix.setIdentityM(model, 0);
+                Matrix.translateM(model, 0, i % 9 - 4f, i % 7 - 3f, -2.5f - i / 63);
+                Matrix.scaleM(model, 0, 0.03f, 0.03f, 0.03f);
+
+                Matrix.setIdentityM(incremental, 0);
+                Matrix.rotateM(incremental, 0, 0f, 0.0f, 1.0f, 0.0f);
+                Matrix.rotateM(incremental, 0, 0f, 1.0f, 0.0f, 0.0f);
+                Matrix.multiplyMM(temp, 0, incremental, 0, accumulated, 0);
+                System.arraycopy(temp, 0, accumulated, 0, 16);
+
+                Matrix.multiplyMM(temp, 0, model, 0, accumulated, 0);
+                System.arraycopy(temp, 0, model, 0, 16);
+                Matrix.multiplyMM(mvp, 0, mView, 0, model, 0);
+                Matrix.multiplyMM(temp, 0, mProjection, 0, mvp, 0);
+                System.arraycopy(temp, 0, mvp, 0, 16);
+            }
+            if (frame >= WARMUP_FRAMES) {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+        return elapsed / 1000f / TIMED_FRAMES;
+    }
+}
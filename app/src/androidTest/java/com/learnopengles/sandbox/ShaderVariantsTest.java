@@ -0,0 +1,90 @@
+package com.learnopengles.sandbox;
+
+/*
+ * how variants are keyed and what source each one is handed - nothing is compiled
+ * here, building the sources needs no context
+ */
+
+import android.test.AndroidTestCase;
+
+import com.learnopengles.sandbox.common.ShaderVariants;
+
+public class ShaderVariantsTest extends AndroidTestCase {
+
+    private static final String VERTEX = "// vertex\n";
+    private static final String FRAGMENT = "// fragment\n";
+    private static final String LIGHTING = "// lighting\n";
+
+    private ShaderVariants mVariants;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mVariants = new ShaderVariants(VERTEX, FRAGMENT, LIGHTING);
+    }
+
+    public void testNormalizeFillsInImpliedFlags() {
+        assertEquals(ShaderVariants.VERTEX_COLOR, ShaderVariants.normalize(ShaderVariants.VERTEX_COLOR));
+        assertEquals(ShaderVariants.ATTENUATION | ShaderVariants.LIGHTING,
+                ShaderVariants.normalize(ShaderVariants.ATTENUATION));
+        assertEquals(ShaderVariants.PER_PIXEL_LIGHTING | ShaderVariants.LIGHTING,
+                ShaderVariants.normalize(ShaderVariants.PER_PIXEL_LIGHTING));
+        assertEquals(ShaderVariants.TWO_SIDED_LIGHTING | ShaderVariants.PER_PIXEL_LIGHTING | ShaderVariants.LIGHTING,
+                ShaderVariants.normalize(ShaderVariants.TWO_SIDED_LIGHTING));
+    }
+
+    public void testNormalizeIsStable() {
+        for (int features = 0; features < ShaderVariants.INSTANCED << 1; features++) {
+            int normalized = ShaderVariants.normalize(features);
+            assertEquals(normalized, ShaderVariants.normalize(normalized));
+        }
+    }
+
+    public void testDefinesFollowFeatures() {
+        int features = ShaderVariants.TEXTURE | ShaderVariants.TWO_SIDED_LIGHTING;
+        String vertex = mVariants.getVertexShader(features);
+        String fragment = mVariants.getFragmentShader(features);
+
+        for (String source : new String[]{vertex, fragment}) {
+            assertTrue(source.contains("#define USE_TEXTURE\n"));
+            assertTrue(source.contains("#define USE_LIGHTING\n"));
+            assertTrue(source.contains("#define PER_PIXEL_LIGHTING\n"));
+            assertTrue(source.contains("#define TWO_SIDED_LIGHTING\n"));
+            assertFalse(source.contains("USE_VERTEX_COLOR"));
+            assertFalse(source.contains("USE_ATTENUATION"));
+        }
+        assertTrue(vertex.endsWith(VERTEX));
+        assertTrue(fragment.endsWith(FRAGMENT));
+    }
+
+    public void testLightingGoesWhereItIsComputed() {
+        int perVertex = ShaderVariants.LIGHTING;
+        assertTrue(mVariants.getVertexShader(perVertex).contains(LIGHTING));
+        assertFalse(mVariants.getFragmentShader(perVertex).contains(LIGHTING));
+
+        int perPixel = ShaderVariants.PER_PIXEL_LIGHTING;
+        assertFalse(mVariants.getVertexShader(perPixel).contains(LIGHTING));
+        assertTrue(mVariants.getFragmentShader(perPixel).contains(LIGHTING));
+
+        assertFalse(mVariants.getVertexShader(0).contains(LIGHTING));
+        assertFalse(mVariants.getFragmentShader(0).contains(LIGHTING));
+    }
+
+    public void testFragmentPrecisionFollowsDefines() {
+        String fragment = mVariants.getFragmentShader(ShaderVariants.TEXTURE);
+        int precision = fragment.indexOf("precision mediump float;");
+        assertTrue(precision > fragment.indexOf("#define USE_TEXTURE"));
+        assertTrue(precision < fragment.indexOf(FRAGMENT));
+        assertFalse(mVariants.getVertexShader(ShaderVariants.TEXTURE).contains("precision"));
+    }
+
+    public void testConstantsReachBothStages() {
+        mVariants.setConstant("LIGHT_AMBIENT", "0.7").setConstant("INSTANCE_COUNT", "16");
+        for (String source : new String[]{mVariants.getVertexShader(ShaderVariants.INSTANCED),
+                mVariants.getFragmentShader(ShaderVariants.INSTANCED)}) {
+            assertTrue(source.contains("#define LIGHT_AMBIENT 0.7\n"));
+            assertTrue(source.contains("#define INSTANCE_COUNT 16\n"));
+        }
+        assertEquals(0, mVariants.size());
+    }
+}
@@ -0,0 +1,68 @@
+package com.learnopengles.sandbox;
+
+/*
+ * time the ToroidHelix generator, serial versus split across the worker pool,
+ * at resolutions well past the old LINES / POINTS caps
+ *
+ * results go to logcat:  adb logcat -s ToroidHelixBenchmark
+ */
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.WorkerPool;
+import com.learnopengles.sandbox.objects.ToroidHelix;
+
+public class ToroidHelixBenchmark extends AndroidTestCase {
+
+    private static final String LOG_TAG = ToroidHelixBenchmark.class.getSimpleName();
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+
+    public void testScalingWithCores() {
+        int resolutions[][] = {
+                { 128, 16 },    // the original helix
+                { 512, 32 },
+                { 1024, 32 },
+                { 1024, 64 }
+        };
+        float color[] = new float[]{229f / 256f, 196f / 256f, 153f / 256f, 1.0f};
+
+        Log.w(LOG_TAG, "cores: " + WorkerPool.getParallelism());
+
+        for (int i = 0; i < resolutions.length; i++) {
+            int segments = resolutions[i][0];
+            int sides = resolutions[i][1];
+            float dest[] = new float[ToroidHelix.getFloatCount(segments, sides)];
+
+            long serial = time(segments, sides, color, dest, false);
+            long parallel = time(segments, sides, color, dest, true);
+
+            Log.w(LOG_TAG, segments + " x " + sides
+                    + "  serial " + serial + " ms"
+                    + "  parallel " + parallel + " ms"
+                    + "  speedup " + String.format("%4.2f", (float) serial / Math.max(1, parallel)));
+
+            // the first vertex never depends on the split
+            assertTrue("helix generated nothing", dest[0] != 0f || dest[1] != 0f || dest[2] != 0f);
+        }
+    }
+
+    private long time(int segments, int sides, float[] color, float[] dest, boolean parallel) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            generate(segments, sides, color, dest, parallel);
+        }
+        long start = SystemClock.uptimeMillis();
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            generate(segments, sides, color, dest, parallel);
+        }
+        return (SystemClock.uptimeMillis() - start) / TIMED_RUNS;
+    }
+
+    private void generate(int segments, int sides, float[] color, float[] dest, boolean parallel) {
+        float points[] = ToroidHelix.calculateSurfacePoints(segments + 1, sides + 1, parallel);
+        ToroidHelix.generateTriangles(points, sides + 1, 0, segments, color, dest, 0, parallel);
+    }
+}
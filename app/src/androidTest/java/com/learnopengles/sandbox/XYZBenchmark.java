@@ -0,0 +1,121 @@
+package com.learnopengles.sandbox;
+
+/*
+ * compare the original XYZ normal calls (shared static result, copied out)
+ * with the packed offset / stride versions, single and bulk
+ *
+ * results go to logcat:  adb logcat -s XYZBenchmark
+ */
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.learnopengles.sandbox.objects.XYZ;
+
+public class XYZBenchmark extends AndroidTestCase {
+
+    private static final String LOG_TAG = XYZBenchmark.class.getSimpleName();
+
+    private static final int STRIDE = 10;   // XYZ + Normal + RGBA
+    private static final int NUM_TRIANGLES = 100000;
+    private static final int TIMED_RUNS = 10;
+
+    private float[] mVertices;
+    private int[] mIndices;
+    private float[] mNormals;
+
+    // keeps the JIT from dropping the work
+    private float mSink;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mVertices = new float[NUM_TRIANGLES * 3 * STRIDE];
+        mIndices = new int[NUM_TRIANGLES * 3];
+        mNormals = new float[NUM_TRIANGLES * 3];
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < NUM_TRIANGLES * 3; i++) {
+            mVertices[i * STRIDE] = random.nextFloat();
+            mVertices[i * STRIDE + 1] = random.nextFloat();
+            mVertices[i * STRIDE + 2] = random.nextFloat();
+            mIndices[i] = i;
+        }
+    }
+
+    public void testNormalThroughput() {
+        // warm up all three paths before timing any of them
+        staticApi();
+        packedSingle();
+        packedBulk();
+
+        long staticTime = time(new Runnable() {
+            @Override
+            public void run() {
+                staticApi();
+            }
+        });
+        long singleTime = time(new Runnable() {
+            @Override
+            public void run() {
+                packedSingle();
+            }
+        });
+        long bulkTime = time(new Runnable() {
+            @Override
+            public void run() {
+                packedBulk();
+            }
+        });
+
+        Log.w(LOG_TAG, NUM_TRIANGLES + " normals:"
+                + "  static " + staticTime + " ms"
+                + "  packed " + singleTime + " ms"
+                + "  packed bulk (indexed) " + bulkTime + " ms"
+                + "  sink " + mSink);
+        assertTrue(bulkTime >= 0);
+    }
+
+    /*
+     * what the geometry code did before: gather into three small arrays,
+     * call the static API, copy the shared result out
+     */
+    private void staticApi() {
+        float p1[] = new float[3];
+        float p2[] = new float[3];
+        float p3[] = new float[3];
+        float n[];
+        for (int t = 0; t < NUM_TRIANGLES; t++) {
+            int v = t * 3 * STRIDE;
+            System.arraycopy(mVertices, v, p1, 0, 3);
+            System.arraycopy(mVertices, v + STRIDE, p2, 0, 3);
+            System.arraycopy(mVertices, v + 2 * STRIDE, p3, 0, 3);
+            n = XYZ.getNormal(p1, p2, p3);
+            mNormals[t * 3] = n[0];
+            mNormals[t * 3 + 1] = n[1];
+            mNormals[t * 3 + 2] = n[2];
+        }
+        mSink += mNormals[0];
+    }
+
+    private void packedSingle() {
+        for (int t = 0; t < NUM_TRIANGLES; t++) {
+            int v = t * 3 * STRIDE;
+            XYZ.getNormal(mVertices, v, v + STRIDE, v + 2 * STRIDE, mNormals, t * 3);
+        }
+        mSink += mNormals[0];
+    }
+
+    private void packedBulk() {
+        XYZ.getTriangleNormals(mVertices, 0, STRIDE, mIndices, 0, NUM_TRIANGLES, mNormals, 0, 3);
+        mSink += mNormals[0];
+    }
+
+    private long time(Runnable r) {
+        long start = SystemClock.uptimeMillis();
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            r.run();
+        }
+        return (SystemClock.uptimeMillis() - start) / TIMED_RUNS;
+    }
+}
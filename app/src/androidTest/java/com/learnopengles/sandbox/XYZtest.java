@@ -68,4 +68,40 @@ public class XYZtest extends AndroidTestCase {
         int foo = 1;
         assertTrue("Unable to Insert MovieEntry into the Database", foo == 1);
     }
+
+    public void testGetNormalPacked() {
+        // two triangles packed as XYZ + Normal + RGBA, the same as our VBOs
+        final int stride = 10;
+        float vertices[] = new float[6 * stride];
+        float corners[][] = {
+                { 0f, 0f, 0f }, { 1f, 0f, 0f }, { 0f, 1f, 0f },
+                { 0f, 0f, 0f }, { 10f, 10f, 0f }, { 0f, 10f, 0f }
+        };
+        for (int i = 0; i < corners.length; i++) {
+            System.arraycopy(corners[i], 0, vertices, i * stride, 3);
+        }
+
+        float normals[] = new float[6];
+        XYZ.getTriangleNormals(vertices, 0, stride, 2, normals, 0, 3);
+
+        float expected[];
+        for (int t = 0; t < 2; t++) {
+            expected = XYZ.getNormal(corners[t * 3], corners[t * 3 + 1], corners[t * 3 + 2]);
+            assertEquals(expected[0], normals[t * 3], 1e-6f);
+            assertEquals(expected[1], normals[t * 3 + 1], 1e-6f);
+            assertEquals(expected[2], normals[t * 3 + 2], 1e-6f);
+        }
+
+        // indexed form, second triangle only
+        short indices[] = { 3, 4, 5 };
+        XYZ.getTriangleNormals(vertices, 0, stride, indices, 0, 1, normals, 0, 3);
+        assertEquals(1f, normals[2], 1e-6f);
+
+        // degenerate triangle gives zero, not NaN
+        short degenerate[] = { 0, 0, 1 };
+        XYZ.getTriangleNormals(vertices, 0, stride, degenerate, 0, 1, normals, 0, 3);
+        assertEquals(0f, normals[0], 0f);
+        assertEquals(0f, normals[1], 0f);
+        assertEquals(0f, normals[2], 0f);
+    }
 }
@@ -17,6 +17,8 @@ import android.widget.SimpleAdapter;
 
 import com.learnopengles.sandbox.displayobjfile.ActivityDisplayObjFile;
 import com.learnopengles.sandbox.displayscaled.ActivtyDisplayScaled;
+import com.learnopengles.sandbox.displayterrain.ActivityDisplayTerrain;
+import com.learnopengles.sandbox.displaywaves.ActivityDisplayWaves;
 import com.learnopengles.sandbox.lesson1.LessonOneActivity;
 import com.learnopengles.sandbox.lesson2.LessonTwoActivity;
 import com.learnopengles.sandbox.lesson3.LessonThreeActivity;
@@ -73,6 +75,24 @@ public class TableOfContents extends ListActivity
 			activityMapping.put(i++, ActivtyDisplayScaled.class);
 		}
 
+		{
+			final Map<String, Object> item = new HashMap<String, Object>();
+			item.put(ITEM_IMAGE, R.drawable.ic_lesson_eight);
+			item.put(ITEM_TITLE, getText(R.string.terrain_title));
+			item.put(ITEM_SUBTITLE, getText(R.string.terrain_subtitle));
+			data.add(item);
+			activityMapping.put(i++, ActivityDisplayTerrain.class);
+		}
+
+		{
+			final Map<String, Object> item = new HashMap<String, Object>();
+			item.put(ITEM_IMAGE, R.drawable.ic_lesson_eight);
+			item.put(ITEM_TITLE, getText(R.string.waves_title));
+			item.put(ITEM_SUBTITLE, getText(R.string.waves_subtitle));
+			data.add(item);
+			activityMapping.put(i++, ActivityDisplayWaves.class);
+		}
+
 		{
 			final Map<String, Object> item = new HashMap<String, Object>();
 			item.put(ITEM_IMAGE, R.drawable.ic_lesson_one);
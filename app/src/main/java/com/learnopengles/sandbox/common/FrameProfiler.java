@@ -0,0 +1,268 @@
+package com.learnopengles.sandbox.common;
+
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+
+import com.learnopengles.sandbox.BuildConfig;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * What each frame cost: CPU time in onDrawFrame, draw calls, triangles, and the
+ * buffer binds and program switches that reached the driver.
+ * <p/>
+ * wrap() goes around a renderer when it is handed to its GLSurfaceView and times
+ * every onDrawFrame. Draws are counted by making them through drawArrays() and
+ * drawElements() here; binds and switches are counted by GLState as it issues them.
+ * Counting is a few static ints on the GL thread - nothing is allocated per frame.
+ * <p/>
+ * At the end of a frame its numbers go into a ring of the last FRAMES frames, one
+ * array per metric. The GL thread is the only writer and publishes a frame by
+ * advancing a counter after its slots are written, so other threads can copy the
+ * ring out with snapshot() without a lock: anything the writer may have overwritten
+ * while it was being copied is dropped from the copy.
+ * <p/>
+ * BuildConfig.FRAME_PROFILER is a compile time constant, false in release builds (see
+ * app/build.gradle): there wrap() hands the renderer back as it is, the counting is
+ * compiled out, and ProfilerOverlay.attach() adds nothing.
+ */
+public final class FrameProfiler {
+
+    public static final int CPU_NANOS = 0;
+    public static final int DRAW_CALLS = 1;
+    public static final int TRIANGLES = 2;
+    public static final int BUFFER_BINDS = 3;
+    public static final int PROGRAM_SWITCHES = 4;
+    public static final int METRICS = 5;
+
+    private static final String[] CSV_COLUMNS = {
+            "cpu_us", "draw_calls", "triangles", "buffer_binds", "program_switches"
+    };
+
+    /* a power of two, so a frame's slot is its number masked */
+    public static final int FRAMES = 512;
+    private static final int MASK = FRAMES - 1;
+
+    public static final boolean AVAILABLE = BuildConfig.FRAME_PROFILER;
+
+    private static volatile boolean sEnabled = AVAILABLE;
+
+    /*
+     * the frame being drawn - GL thread only
+     */
+    private static long sFrameStart;
+    private static int sDrawCalls;
+    private static int sTriangles;
+    private static int sBufferBinds;
+    private static int sProgramSwitches;
+
+    private static final long[][] sRing = new long[METRICS][FRAMES];
+    private static final AtomicLong sPublished = new AtomicLong();
+    /* frames before this one belong to a renderer that has gone */
+    private static volatile long sFirstFrame;
+
+    private FrameProfiler() {
+    }
+
+    /**
+     * Has no effect unless the build has the profiler compiled in.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = AVAILABLE && enabled;
+    }
+
+    public static boolean isEnabled() {
+        return AVAILABLE && sEnabled;
+    }
+
+    /**
+     * @return The renderer, timed. Use it in place of the one passed in.
+     */
+    public static GLSurfaceView.Renderer wrap(final GLSurfaceView.Renderer renderer) {
+        if (!AVAILABLE) {
+            return renderer;
+        }
+        return new GLSurfaceView.Renderer() {
+            @Override
+            public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+                sFirstFrame = sPublished.get();
+                renderer.onSurfaceCreated(gl, config);
+            }
+
+            @Override
+            public void onSurfaceChanged(GL10 gl, int width, int height) {
+                renderer.onSurfaceChanged(gl, width, height);
+            }
+
+            @Override
+            public void onDrawFrame(GL10 gl) {
+                if (!sEnabled) {
+                    renderer.onDrawFrame(gl);
+                    return;
+                }
+                beginFrame();
+                renderer.onDrawFrame(gl);
+                endFrame();
+            }
+        };
+    }
+
+    private static void beginFrame() {
+        sDrawCalls = 0;
+        sTriangles = 0;
+        sBufferBinds = 0;
+        sProgramSwitches = 0;
+        sFrameStart = System.nanoTime();
+    }
+
+    private static void endFrame() {
+        final long cpuNanos = System.nanoTime() - sFrameStart;
+        final long frame = sPublished.get();
+        final int slot = (int) (frame & MASK);
+        sRing[CPU_NANOS][slot] = cpuNanos;
+        sRing[DRAW_CALLS][slot] = sDrawCalls;
+        sRing[TRIANGLES][slot] = sTriangles;
+        sRing[BUFFER_BINDS][slot] = sBufferBinds;
+        sRing[PROGRAM_SWITCHES][slot] = sProgramSwitches;
+        // the slots above are visible to whoever sees the new count
+        sPublished.lazySet(frame + 1);
+    }
+
+    /**
+     * glDrawArrays, counted.
+     */
+    public static void drawArrays(int mode, int first, int count) {
+        GL.glDrawArrays(mode, first, count);
+        countDraw(mode, count);
+    }
+
+    /**
+     * glDrawElements from the bound element array buffer, counted.
+     */
+    public static void drawElements(int mode, int count, int type, int offset) {
+        GL.glDrawElements(mode, count, type, offset);
+        countDraw(mode, count);
+    }
+
+    /**
+     * glDrawElements from client memory, counted.
+     */
+    public static void drawElements(int mode, int count, int type, Buffer indices) {
+        GL.glDrawElements(mode, count, type, indices);
+        countDraw(mode, count);
+    }
+
+    private static void countDraw(int mode, int count) {
+        if (!AVAILABLE) {
+            return;
+        }
+        sDrawCalls++;
+        if (mode == GLES20.GL_TRIANGLES) {
+            sTriangles += count / 3;
+        } else if (mode == GLES20.GL_TRIANGLE_STRIP || mode == GLES20.GL_TRIANGLE_FAN) {
+            sTriangles += Math.max(0, count - 2);
+        }
+    }
+
+    /* from GLState, for calls it did not elide */
+
+    static void countBufferBind() {
+        if (AVAILABLE) {
+            sBufferBinds++;
+        }
+    }
+
+    static void countProgramSwitch() {
+        if (AVAILABLE) {
+            sProgramSwitches++;
+        }
+    }
+
+    /**
+     * Copy out the frames in the ring. Any thread; reuse the snapshot.
+     */
+    public static void snapshot(Snapshot into) {
+        final long end = sPublished.get();
+        long start = Math.max(sFirstFrame, end - FRAMES);
+        for (long frame = start; frame < end; frame++) {
+            final int slot = (int) (frame & MASK);
+            final int i = (int) (frame - start);
+            for (int metric = 0; metric < METRICS; metric++) {
+                into.mValues[metric][i] = sRing[metric][slot];
+            }
+        }
+
+        // the writer may have lapped the oldest frames while they were copied
+        final long overwritten = sPublished.get() - FRAMES + 1;
+        final int dropped = (int) Math.max(0, Math.min(end - start, overwritten - start));
+        if (dropped > 0) {
+            for (int metric = 0; metric < METRICS; metric++) {
+                System.arraycopy(into.mValues[metric], dropped, into.mValues[metric], 0, (int) (end - start) - dropped);
+            }
+            start += dropped;
+        }
+        into.mFirstFrame = start;
+        into.mCount = (int) (end - start);
+    }
+
+    /**
+     * The ring as it was at one moment, oldest frame first.
+     */
+    public static final class Snapshot {
+
+        private final long[][] mValues = new long[METRICS][FRAMES];
+        private final long[] mSorted = new long[FRAMES];
+        private long mFirstFrame;
+        private int mCount;
+
+        public int getCount() {
+            return mCount;
+        }
+
+        public long get(int metric, int frame) {
+            return mValues[metric][frame];
+        }
+
+        /**
+         * Nearest rank: the smallest value that at least percent of the frames are no
+         * more than. 0 with no frames.
+         */
+        public long percentile(int metric, float percent) {
+            if (mCount == 0) {
+                return 0;
+            }
+            System.arraycopy(mValues[metric], 0, mSorted, 0, mCount);
+            Arrays.sort(mSorted, 0, mCount);
+            final int rank = (int) Math.ceil(percent / 100f * mCount);
+            return mSorted[Math.max(0, Math.min(mCount, rank) - 1)];
+        }
+
+        /**
+         * One row per frame, numbered since the app started, CPU time in microseconds.
+         */
+        public void writeCsv(Writer out) throws IOException {
+            out.write("frame");
+            for (String column : CSV_COLUMNS) {
+                out.write(',');
+                out.write(column);
+            }
+            out.write('\n');
+            for (int i = 0; i < mCount; i++) {
+                out.write(Long.toString(mFirstFrame + i));
+                for (int metric = 0; metric < METRICS; metric++) {
+                    final long value = metric == CPU_NANOS ? mValues[metric][i] / 1000 : mValues[metric][i];
+                    out.write(',');
+                    out.write(Long.toString(value));
+                }
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.learnopengles.sandbox.common;
+
+/**
+ * View frustum as six planes, pulled straight out of a combined matrix
+ * (Gribb / Hartmann). Feed it a model-view-projection matrix and the planes
+ * come out in that model's space, so bounds can be tested without
+ * transforming them first.
+ * <p/>
+ * Matrices are column-major, as produced by android.opengl.Matrix.
+ * Each plane is stored as a, b, c, d with (a, b, c) normalized and pointing
+ * into the frustum: a point is inside when a*x + b*y + c*z + d >= 0.
+ */
+public class Frustum {
+
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int BOTTOM = 2;
+    public static final int TOP = 3;
+    public static final int NEAR = 4;
+    public static final int FAR = 5;
+
+    private static final int FLOATS_PER_PLANE = 4;
+    private static final int NUM_PLANES = 6;
+
+    private final float[] mPlanes = new float[NUM_PLANES * FLOATS_PER_PLANE];
+
+    /**
+     * Extract the planes from a combined matrix.
+     *
+     * @param m      Column-major 4x4 matrix, usually the MVP.
+     * @param offset Offset of the matrix within m.
+     */
+    public void extract(float[] m, int offset) {
+        // row i of a column-major matrix is m[i], m[4 + i], m[8 + i], m[12 + i]
+        final float r3x = m[offset + 3], r3y = m[offset + 7], r3z = m[offset + 11], r3w = m[offset + 15];
+
+        for (int row = 0; row < 3; row++) {
+            final float rx = m[offset + row];
+            final float ry = m[offset + 4 + row];
+            final float rz = m[offset + 8 + row];
+            final float rw = m[offset + 12 + row];
+
+            setPlane(row * 2, r3x + rx, r3y + ry, r3z + rz, r3w + rw);
+            setPlane(row * 2 + 1, r3x - rx, r3y - ry, r3z - rz, r3w - rw);
+        }
+    }
+
+    public void extract(float[] m) {
+        extract(m, 0);
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d) {
+        float length = (float) Math.sqrt(a * a + b * b + c * c);
+        if (length == 0f) {
+            length = 1f;
+        }
+        int o = plane * FLOATS_PER_PLANE;
+        mPlanes[o] = a / length;
+        mPlanes[o + 1] = b / length;
+        mPlanes[o + 2] = c / length;
+        mPlanes[o + 3] = d / length;
+    }
+
+    /**
+     * Signed distance from a plane to a point; negative is outside.
+     */
+    public float distance(int plane, float x, float y, float z) {
+        int o = plane * FLOATS_PER_PLANE;
+        return mPlanes[o] * x + mPlanes[o + 1] * y + mPlanes[o + 2] * z + mPlanes[o + 3];
+    }
+
+    /**
+     * @return false only when the sphere is entirely outside one of the planes.
+     */
+    public boolean isSphereVisible(float x, float y, float z, float radius) {
+        for (int p = 0; p < NUM_PLANES; p++) {
+            if (distance(p, x, y, z) < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Conservative box test: for each plane only the corner furthest along
+     * the plane normal is checked. A box straddling a frustum corner may be
+     * reported visible when it is not, never the other way around.
+     */
+    public boolean isBoxVisible(float minX, float minY, float minZ,
+                                float maxX, float maxY, float maxZ) {
+        for (int p = 0; p < NUM_PLANES; p++) {
+            int o = p * FLOATS_PER_PLANE;
+            float a = mPlanes[o];
+            float b = mPlanes[o + 1];
+            float c = mPlanes[o + 2];
+            float x = a >= 0f ? maxX : minX;
+            float y = b >= 0f ? maxY : minY;
+            float z = c >= 0f ? maxZ : minZ;
+            if (a * x + b * y + c * z + mPlanes[o + 3] < 0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * As above, with the box packed as minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    public boolean isBoxVisible(float[] bounds, int offset) {
+        return isBoxVisible(bounds[offset], bounds[offset + 1], bounds[offset + 2],
+                bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]);
+    }
+}
@@ -0,0 +1,253 @@
+package com.learnopengles.sandbox.common;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * Where the app's GL calls go: each one is passed to the current GLApi, which is the
+ * device's GLES20 unless setApi() has swapped it, e.g. for a RecordingGLApi in a JVM
+ * test or benchmark. Swap it before any GL work starts, and only while none is going
+ * on.
+ * <p/>
+ * GL thread only, as with GLES20 itself.
+ */
+public final class GL {
+
+    private static GLApi sApi = new GLES20Api();
+
+    private GL() {
+    }
+
+    public static void setApi(GLApi api) {
+        sApi = api;
+    }
+
+    public static GLApi getApi() {
+        return sApi;
+    }
+
+    public static void glActiveTexture(int texture) {
+        sApi.glActiveTexture(texture);
+    }
+
+    public static void glAttachShader(int program, int shader) {
+        sApi.glAttachShader(program, shader);
+    }
+
+    public static void glBindAttribLocation(int program, int index, String name) {
+        sApi.glBindAttribLocation(program, index, name);
+    }
+
+    public static void glBindBuffer(int target, int buffer) {
+        sApi.glBindBuffer(target, buffer);
+    }
+
+    public static void glBindTexture(int target, int texture) {
+        sApi.glBindTexture(target, texture);
+    }
+
+    public static void glBlendEquation(int mode) {
+        sApi.glBlendEquation(mode);
+    }
+
+    public static void glBlendFunc(int sfactor, int dfactor) {
+        sApi.glBlendFunc(sfactor, dfactor);
+    }
+
+    public static void glBufferData(int target, int size, Buffer data, int usage) {
+        sApi.glBufferData(target, size, data, usage);
+    }
+
+    public static void glBufferSubData(int target, int offset, int size, Buffer data) {
+        sApi.glBufferSubData(target, offset, size, data);
+    }
+
+    public static void glClear(int mask) {
+        sApi.glClear(mask);
+    }
+
+    public static void glClearColor(float red, float green, float blue, float alpha) {
+        sApi.glClearColor(red, green, blue, alpha);
+    }
+
+    public static void glCompileShader(int shader) {
+        sApi.glCompileShader(shader);
+    }
+
+    public static void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+        sApi.glCompressedTexImage2D(target, level, internalformat, width, height, border, imageSize, data);
+    }
+
+    public static int glCreateProgram() {
+        return sApi.glCreateProgram();
+    }
+
+    public static int glCreateShader(int type) {
+        return sApi.glCreateShader(type);
+    }
+
+    public static void glDeleteBuffers(int n, int[] buffers, int offset) {
+        sApi.glDeleteBuffers(n, buffers, offset);
+    }
+
+    public static void glDeleteProgram(int program) {
+        sApi.glDeleteProgram(program);
+    }
+
+    public static void glDeleteShader(int shader) {
+        sApi.glDeleteShader(shader);
+    }
+
+    public static void glDisable(int cap) {
+        sApi.glDisable(cap);
+    }
+
+    public static void glDisableVertexAttribArray(int index) {
+        sApi.glDisableVertexAttribArray(index);
+    }
+
+    public static void glDrawArrays(int mode, int first, int count) {
+        sApi.glDrawArrays(mode, first, count);
+    }
+
+    public static void glDrawElements(int mode, int count, int type, int offset) {
+        sApi.glDrawElements(mode, count, type, offset);
+    }
+
+    public static void glDrawElements(int mode, int count, int type, Buffer indices) {
+        sApi.glDrawElements(mode, count, type, indices);
+    }
+
+    public static void glEnable(int cap) {
+        sApi.glEnable(cap);
+    }
+
+    public static void glEnableVertexAttribArray(int index) {
+        sApi.glEnableVertexAttribArray(index);
+    }
+
+    public static void glGenBuffers(int n, int[] buffers, int offset) {
+        sApi.glGenBuffers(n, buffers, offset);
+    }
+
+    public static void glGenTextures(int n, int[] textures, int offset) {
+        sApi.glGenTextures(n, textures, offset);
+    }
+
+    public static void glGetActiveAttrib(int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+        sApi.glGetActiveAttrib(program, index, bufsize, length, lengthOffset, size, sizeOffset, type, typeOffset, name, nameOffset);
+    }
+
+    public static void glGetActiveUniform(int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+        sApi.glGetActiveUniform(program, index, bufsize, length, lengthOffset, size, sizeOffset, type, typeOffset, name, nameOffset);
+    }
+
+    public static int glGetAttribLocation(int program, String name) {
+        return sApi.glGetAttribLocation(program, name);
+    }
+
+    public static int glGetError() {
+        return sApi.glGetError();
+    }
+
+    public static void glGetIntegerv(int pname, int[] params, int offset) {
+        sApi.glGetIntegerv(pname, params, offset);
+    }
+
+    public static void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        sApi.glGetProgramBinary(program, bufSize, length, lengthOffset, binaryFormat, binaryFormatOffset, binary);
+    }
+
+    public static String glGetProgramInfoLog(int program) {
+        return sApi.glGetProgramInfoLog(program);
+    }
+
+    public static void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        sApi.glGetProgramiv(program, pname, params, offset);
+    }
+
+    public static String glGetShaderInfoLog(int shader) {
+        return sApi.glGetShaderInfoLog(shader);
+    }
+
+    public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        sApi.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    public static String glGetString(int name) {
+        return sApi.glGetString(name);
+    }
+
+    public static int glGetUniformLocation(int program, String name) {
+        return sApi.glGetUniformLocation(program, name);
+    }
+
+    public static void glLinkProgram(int program) {
+        sApi.glLinkProgram(program);
+    }
+
+    public static void glPixelStorei(int pname, int param) {
+        sApi.glPixelStorei(pname, param);
+    }
+
+    public static void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        sApi.glProgramBinary(program, binaryFormat, binary, length);
+    }
+
+    public static void glShaderSource(int shader, String string) {
+        sApi.glShaderSource(shader, string);
+    }
+
+    public static void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        sApi.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    public static void glTexParameteri(int target, int pname, int param) {
+        sApi.glTexParameteri(target, pname, param);
+    }
+
+    public static void glUniform1i(int location, int x) {
+        sApi.glUniform1i(location, x);
+    }
+
+    public static void glUniform3f(int location, float x, float y, float z) {
+        sApi.glUniform3f(location, x, y, z);
+    }
+
+    public static void glUniform4fv(int location, int count, float[] v, int offset) {
+        sApi.glUniform4fv(location, count, v, offset);
+    }
+
+    public static void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        sApi.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    public static void glUseProgram(int program) {
+        sApi.glUseProgram(program);
+    }
+
+    public static void glVertexAttrib3f(int index, float x, float y, float z) {
+        sApi.glVertexAttrib3f(index, x, y, z);
+    }
+
+    public static void glVertexAttrib4fv(int index, float[] values, int offset) {
+        sApi.glVertexAttrib4fv(index, values, offset);
+    }
+
+    public static void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        sApi.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    public static void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        sApi.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+    }
+
+    public static void glViewport(int x, int y, int width, int height) {
+        sApi.glViewport(x, y, width, height);
+    }
+
+    public static void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        sApi.texImage2D(target, level, bitmap, border);
+    }
+}
@@ -0,0 +1,131 @@
+package com.learnopengles.sandbox.common;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * The OpenGL ES 2.0 calls the app makes, as an interface, so code that draws can run
+ * against something other than the device's driver. Everything goes through GL,
+ * which forwards to the GLApi in use: GLES20Api on a device, RecordingGLApi to run
+ * and measure the CPU side headless.
+ * <p/>
+ * Methods are named and typed as in android.opengl.GLES20; texImage2D is
+ * android.opengl.GLUtils'. glGetProgramBinary and glProgramBinary are GLES30's, for
+ * the program cache, which only calls them on an ES 3 context. Constants still come from GLES20 - they are compiled in,
+ * so that class is never needed at run time.
+ */
+public interface GLApi {
+
+    void glActiveTexture(int texture);
+
+    void glAttachShader(int program, int shader);
+
+    void glBindAttribLocation(int program, int index, String name);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBindTexture(int target, int texture);
+
+    void glBlendEquation(int mode);
+
+    void glBlendFunc(int sfactor, int dfactor);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glBufferSubData(int target, int offset, int size, Buffer data);
+
+    void glClear(int mask);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glCompileShader(int shader);
+
+    void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data);
+
+    int glCreateProgram();
+
+    int glCreateShader(int type);
+
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+
+    void glDeleteProgram(int program);
+
+    void glDeleteShader(int shader);
+
+    void glDisable(int cap);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    void glDrawElements(int mode, int count, int type, int offset);
+
+    void glDrawElements(int mode, int count, int type, Buffer indices);
+
+    void glEnable(int cap);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glGetActiveAttrib(int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset);
+
+    void glGetActiveUniform(int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset);
+
+    int glGetAttribLocation(int program, String name);
+
+    int glGetError();
+
+    void glGetIntegerv(int pname, int[] params, int offset);
+
+    void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary);
+
+    String glGetProgramInfoLog(int program);
+
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    String glGetShaderInfoLog(int shader);
+
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    String glGetString(int name);
+
+    int glGetUniformLocation(int program, String name);
+
+    void glLinkProgram(int program);
+
+    void glPixelStorei(int pname, int param);
+
+    void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+
+    void glShaderSource(int shader, String string);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glUniform1i(int location, int x);
+
+    void glUniform3f(int location, float x, float y, float z);
+
+    void glUniform4fv(int location, int count, float[] v, int offset);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glUseProgram(int program);
+
+    void glVertexAttrib3f(int index, float x, float y, float z);
+
+    void glVertexAttrib4fv(int index, float[] values, int offset);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void texImage2D(int target, int level, Bitmap bitmap, int border);
+}
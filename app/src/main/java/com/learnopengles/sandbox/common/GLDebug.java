@@ -0,0 +1,81 @@
+package com.learnopengles.sandbox.common;
+
+import android.opengl.GLES20;
+import android.opengl.GLU;
+import android.util.Log;
+
+import com.learnopengles.sandbox.BuildConfig;
+
+/**
+ * GL error checking for debug builds. glGetError waits for the driver to catch up
+ * with everything queued before it - on a tiled GPU that can mean a flush per call -
+ * so it is not something to leave after every draw of a shipped build.
+ * <p/>
+ * check() goes after a GL call, labelled with the call and who made it. Failures are
+ * logged with that label and the label of the last check that passed, which brackets
+ * the calls that could have raised the error.
+ * <p/>
+ * BuildConfig.GL_ERROR_CHECKS is a compile time constant, false in release builds
+ * (see app/build.gradle), so there the body of check() is compiled out and it does
+ * nothing. In debug builds checking can also be switched off at run time, to measure
+ * what it costs.
+ * <p/>
+ * GL thread only.
+ */
+public final class GLDebug {
+
+    private static final String LOG_TAG = "GLDebug";
+
+    public static final boolean AVAILABLE = BuildConfig.GL_ERROR_CHECKS;
+
+    /* a lost context can keep returning errors; don't spin on it */
+    private static final int MAX_ERRORS_PER_CHECK = 8;
+
+    private static boolean sEnabled = AVAILABLE;
+    private static String sLastPassed = "start";
+    private static int sErrors;
+
+    private GLDebug() {
+    }
+
+    /**
+     * Has no effect unless the build has checks compiled in.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = AVAILABLE && enabled;
+    }
+
+    public static boolean isEnabled() {
+        return AVAILABLE && sEnabled;
+    }
+
+    /**
+     * @return Errors reported since the app started.
+     */
+    public static int getErrorCount() {
+        return sErrors;
+    }
+
+    /**
+     * Report any error raised since the last check.
+     *
+     * @param call The call just made and its caller, e.g. "Sphere.render glDrawElements".
+     *             Use a constant - it is kept, and building one costs even with checks off.
+     */
+    public static void check(String call) {
+        if (AVAILABLE && sEnabled) {
+            int error = GL.glGetError();
+            if (error == GLES20.GL_NO_ERROR) {
+                sLastPassed = call;
+                return;
+            }
+            for (int i = 0; i < MAX_ERRORS_PER_CHECK && error != GLES20.GL_NO_ERROR; i++) {
+                sErrors++;
+                Log.e(LOG_TAG, call + ": " + GLU.gluErrorString(error)
+                        + " (0x" + Integer.toHexString(error) + "), last clean check " + sLastPassed);
+                error = GL.glGetError();
+            }
+            sLastPassed = call;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.learnopengles.sandbox.common;
+
+import android.opengl.GLES20;
+
+/**
+ * A cache in front of the GLES20 calls that only change state: the bound program,
+ * the array / element array buffers, the enable caps and the enabled vertex
+ * attribute arrays. A call that would set what is already set is dropped before
+ * it reaches the driver.
+ * <p/>
+ * The cache only holds while every change to that state goes through here - code
+ * drawing with it must not call the same GLES20 functions directly. GL state lives
+ * in the context, so call reset() from onSurfaceCreated; everything is unknown
+ * again until it is set once.
+ * <p/>
+ * Issued and elided calls are counted until resetCounters(), so a renderer can
+ * report them per frame. With caching off every call is issued, but the ones that
+ * would have been dropped are still counted as elided. Buffer binds and program
+ * switches that are issued are counted by FrameProfiler as well.
+ * <p/>
+ * GL thread only.
+ */
+public final class GLState {
+
+    private static final int UNKNOWN = -1;
+    private static final int DISABLED = 0;
+    private static final int ENABLED = 1;
+
+    private static final int MAX_VERTEX_ATTRIBUTES = 16;
+
+    private static final int[] CAPS = {
+            GLES20.GL_BLEND,
+            GLES20.GL_CULL_FACE,
+            GLES20.GL_DEPTH_TEST,
+            GLES20.GL_DITHER,
+            GLES20.GL_POLYGON_OFFSET_FILL,
+            GLES20.GL_SAMPLE_ALPHA_TO_COVERAGE,
+            GLES20.GL_SAMPLE_COVERAGE,
+            GLES20.GL_SCISSOR_TEST,
+            GLES20.GL_STENCIL_TEST
+    };
+
+    private static int sProgram = UNKNOWN;
+    private static int sArrayBuffer = UNKNOWN;
+    private static int sElementArrayBuffer = UNKNOWN;
+    private static final int[] sCaps = new int[CAPS.length];
+    private static final int[] sAttributeArrays = new int[MAX_VERTEX_ATTRIBUTES];
+
+    private static boolean sCaching = true;
+    private static int sIssued;
+    private static int sElided;
+
+    static {
+        reset();
+    }
+
+    private GLState() {
+    }
+
+    /**
+     * Forget everything - the next call for each piece of state is issued.
+     */
+    public static void reset() {
+        sProgram = UNKNOWN;
+        sArrayBuffer = UNKNOWN;
+        sElementArrayBuffer = UNKNOWN;
+        for (int i = 0; i < sCaps.length; i++) {
+            sCaps[i] = UNKNOWN;
+        }
+        for (int i = 0; i < sAttributeArrays.length; i++) {
+            sAttributeArrays[i] = UNKNOWN;
+        }
+    }
+
+    public static void setCachingEnabled(boolean enabled) {
+        sCaching = enabled;
+    }
+
+    public static boolean isCachingEnabled() {
+        return sCaching;
+    }
+
+    public static void resetCounters() {
+        sIssued = 0;
+        sElided = 0;
+    }
+
+    public static int getIssuedCalls() {
+        return sIssued;
+    }
+
+    public static int getElidedCalls() {
+        return sElided;
+    }
+
+    /*
+     * true when the call has to go to GL
+     */
+    private static boolean issue(int cached, int wanted) {
+        if (cached == wanted) {
+            sElided++;
+            if (sCaching) {
+                return false;
+            }
+        }
+        sIssued++;
+        return true;
+    }
+
+    public static void useProgram(int program) {
+        if (issue(sProgram, program)) {
+            GL.glUseProgram(program);
+            GLDebug.check("GLState glUseProgram");
+            FrameProfiler.countProgramSwitch();
+            sProgram = program;
+        }
+    }
+
+    public static void bindBuffer(int target, int buffer) {
+        if (target == GLES20.GL_ARRAY_BUFFER) {
+            if (issue(sArrayBuffer, buffer)) {
+                GL.glBindBuffer(target, buffer);
+                GLDebug.check("GLState glBindBuffer");
+                FrameProfiler.countBufferBind();
+                sArrayBuffer = buffer;
+            }
+        } else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+            if (issue(sElementArrayBuffer, buffer)) {
+                GL.glBindBuffer(target, buffer);
+                GLDebug.check("GLState glBindBuffer");
+                FrameProfiler.countBufferBind();
+                sElementArrayBuffer = buffer;
+            }
+        } else {
+            sIssued++;
+            GL.glBindBuffer(target, buffer);
+            GLDebug.check("GLState glBindBuffer");
+            FrameProfiler.countBufferBind();
+        }
+    }
+
+    /**
+     * glDeleteBuffers; a deleted buffer that was bound leaves 0 bound, as GL does.
+     */
+    public static void deleteBuffers(int n, int[] buffers, int offset) {
+        for (int i = offset; i < offset + n; i++) {
+            if (buffers[i] != 0 && buffers[i] == sArrayBuffer) {
+                sArrayBuffer = 0;
+            }
+            if (buffers[i] != 0 && buffers[i] == sElementArrayBuffer) {
+                sElementArrayBuffer = 0;
+            }
+        }
+        sIssued++;
+        GL.glDeleteBuffers(n, buffers, offset);
+        GLDebug.check("GLState glDeleteBuffers");
+    }
+
+    public static void deleteProgram(int program) {
+        if (program == sProgram) {
+            // GL keeps using it until something else is made current
+            sProgram = UNKNOWN;
+        }
+        sIssued++;
+        GL.glDeleteProgram(program);
+        GLDebug.check("GLState glDeleteProgram");
+    }
+
+    public static void enable(int cap) {
+        setCap(cap, ENABLED);
+    }
+
+    public static void disable(int cap) {
+        setCap(cap, DISABLED);
+    }
+
+    private static void setCap(int cap, int state) {
+        int slot = capSlot(cap);
+        if (slot < 0) {
+            sIssued++;
+        } else if (issue(sCaps[slot], state)) {
+            sCaps[slot] = state;
+        } else {
+            return;
+        }
+        if (state == ENABLED) {
+            GL.glEnable(cap);
+            GLDebug.check("GLState glEnable");
+        } else {
+            GL.glDisable(cap);
+            GLDebug.check("GLState glDisable");
+        }
+    }
+
+    private static int capSlot(int cap) {
+        for (int i = 0; i < CAPS.length; i++) {
+            if (CAPS[i] == cap) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static void enableVertexAttribArray(int index) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBUTES) {
+            if (!issue(sAttributeArrays[index], ENABLED)) {
+                return;
+            }
+            sAttributeArrays[index] = ENABLED;
+        } else {
+            sIssued++;
+        }
+        GL.glEnableVertexAttribArray(index);
+        GLDebug.check("GLState glEnableVertexAttribArray");
+    }
+
+    public static void disableVertexAttribArray(int index) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBUTES) {
+            if (!issue(sAttributeArrays[index], DISABLED)) {
+                return;
+            }
+            sAttributeArrays[index] = DISABLED;
+        } else {
+            sIssued++;
+        }
+        GL.glDisableVertexAttribArray(index);
+        GLDebug.check("GLState glDisableVertexAttribArray");
+    }
+}
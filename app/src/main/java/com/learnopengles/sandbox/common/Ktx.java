@@ -0,0 +1,230 @@
+package com.learnopengles.sandbox.common;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A KTX 1.1 texture container: a header naming the GL format and type, then each
+ * mip level's image ready to hand to glTexImage2D, or glCompressedTexImage2D when
+ * the type is 0.
+ * <p/>
+ * Only single 2D textures - no arrays, cube maps or 3D. Key/value data is skipped on
+ * read and not written.
+ * <p/>
+ * Plain Java with its own copies of the GL constants it needs, so the build can use
+ * it to write the files the app reads (see buildSrc) and it can be tested on the JVM.
+ */
+public class Ktx {
+
+    public static final int GL_UNSIGNED_BYTE = 0x1401;
+    public static final int GL_RGB = 0x1907;
+    public static final int GL_RGBA = 0x1908;
+
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+    private static final int ENDIANNESS = 0x04030201;
+    private static final int ENDIANNESS_SWAPPED = 0x01020304;
+
+    /* rows and levels are padded to GL's default unpack alignment */
+    private static final int ALIGNMENT = 4;
+
+    private final int mGlType;
+    private final int mGlTypeSize;
+    private final int mGlFormat;
+    private final int mGlInternalFormat;
+    private final int mGlBaseInternalFormat;
+    private final int mWidth;
+    private final int mHeight;
+    private final ByteBuffer[] mLevels;
+
+    /**
+     * @param glType   0 for a compressed format
+     * @param glFormat 0 for a compressed format
+     * @param levels   Base level first, each one's rows padded to 4 bytes.
+     */
+    public Ktx(int glType, int glTypeSize, int glFormat, int glInternalFormat, int glBaseInternalFormat,
+               int width, int height, ByteBuffer[] levels) {
+        mGlType = glType;
+        mGlTypeSize = glTypeSize;
+        mGlFormat = glFormat;
+        mGlInternalFormat = glInternalFormat;
+        mGlBaseInternalFormat = glBaseInternalFormat;
+        mWidth = width;
+        mHeight = height;
+        mLevels = levels;
+    }
+
+    public int getGlType() {
+        return mGlType;
+    }
+
+    public int getGlFormat() {
+        return mGlFormat;
+    }
+
+    public int getGlInternalFormat() {
+        return mGlInternalFormat;
+    }
+
+    public boolean isCompressed() {
+        return mGlType == 0;
+    }
+
+    public int getLevelCount() {
+        return mLevels.length;
+    }
+
+    public int getWidth(int level) {
+        return Math.max(1, mWidth >> level);
+    }
+
+    public int getHeight(int level) {
+        return Math.max(1, mHeight >> level);
+    }
+
+    /**
+     * @return The level's image, positioned at 0.
+     */
+    public ByteBuffer getLevel(int level) {
+        return mLevels[level];
+    }
+
+    /**
+     * Bytes in a row of width pixels, padded as KTX and glTexImage2D expect.
+     */
+    public static int rowBytes(int width, int bytesPerPixel) {
+        return (width * bytesPerPixel + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+
+    /**
+     * Reads a whole file, in either byte order. Level data goes into direct buffers.
+     *
+     * @throws IOException if it isn't a KTX file or describes something other than a
+     *                     single 2D texture
+     */
+    public static Ktx read(InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(stream);
+
+        final byte[] identifier = new byte[IDENTIFIER.length];
+        in.readFully(identifier);
+        if (!Arrays.equals(identifier, IDENTIFIER)) {
+            throw new IOException("not a KTX file");
+        }
+
+        final int endianness = in.readInt();
+        final boolean swap;
+        if (endianness == ENDIANNESS) {
+            swap = false;
+        } else if (endianness == ENDIANNESS_SWAPPED) {
+            swap = true;
+        } else {
+            throw new IOException("bad KTX endianness " + Integer.toHexString(endianness));
+        }
+
+        final int[] header = new int[12];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = swap ? Integer.reverseBytes(in.readInt()) : in.readInt();
+        }
+        final int glType = header[0];
+        final int glTypeSize = header[1];
+        final int glFormat = header[2];
+        final int glInternalFormat = header[3];
+        final int glBaseInternalFormat = header[4];
+        final int width = header[5];
+        final int height = header[6];
+        final int depth = header[7];
+        final int arrayElements = header[8];
+        final int faces = header[9];
+        final int levelCount = Math.max(1, header[10]);
+        final int keyValueBytes = header[11];
+
+        if (width <= 0 || height <= 0 || depth != 0 || arrayElements != 0 || faces != 1) {
+            throw new IOException("only single 2D textures are supported");
+        }
+        in.skipBytes(keyValueBytes);
+
+        // the header is read big-endian, the image data is wanted in this machine's order
+        final boolean fileLittle = swap;
+        final boolean swapData = fileLittle != (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+
+        final ByteBuffer[] levels = new ByteBuffer[levelCount];
+        final byte[] buffer = new byte[16 * 1024];
+        for (int i = 0; i < levelCount; i++) {
+            final int imageSize = swap ? Integer.reverseBytes(in.readInt()) : in.readInt();
+            if (imageSize < 0) {
+                throw new IOException("bad KTX image size " + imageSize);
+            }
+            final ByteBuffer level = ByteBuffer.allocateDirect(imageSize).order(ByteOrder.nativeOrder());
+            for (int remaining = imageSize; remaining > 0; ) {
+                final int count = Math.min(remaining, buffer.length);
+                in.readFully(buffer, 0, count);
+                if (swapData && glTypeSize > 1) {
+                    swap(buffer, count, glTypeSize);
+                }
+                level.put(buffer, 0, count);
+                remaining -= count;
+            }
+            level.position(0);
+            levels[i] = level;
+            in.skipBytes(padding(imageSize));
+        }
+
+        return new Ktx(glType, glTypeSize, glFormat, glInternalFormat, glBaseInternalFormat, width, height, levels);
+    }
+
+    /**
+     * Writes the file in this machine's byte order; a reader on another swaps.
+     */
+    public void write(OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(stream);
+        final boolean little = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+        out.write(IDENTIFIER);
+        final int[] header = {
+                ENDIANNESS, mGlType, mGlTypeSize, mGlFormat, mGlInternalFormat, mGlBaseInternalFormat,
+                mWidth, mHeight, 0, 0, 1, mLevels.length, 0
+        };
+        for (int value : header) {
+            out.writeInt(little ? Integer.reverseBytes(value) : value);
+        }
+
+        final byte[] buffer = new byte[16 * 1024];
+        for (ByteBuffer level : mLevels) {
+            final ByteBuffer data = level.duplicate();
+            data.position(0);
+            final int imageSize = data.remaining();
+            out.writeInt(little ? Integer.reverseBytes(imageSize) : imageSize);
+            while (data.hasRemaining()) {
+                final int count = Math.min(data.remaining(), buffer.length);
+                data.get(buffer, 0, count);
+                out.write(buffer, 0, count);
+            }
+            out.write(new byte[padding(imageSize)]);
+        }
+        out.flush();
+    }
+
+    private static int padding(int size) {
+        return (ALIGNMENT - size % ALIGNMENT) % ALIGNMENT;
+    }
+
+    /*
+     * reverse each typeSize-byte element in place
+     */
+    private static void swap(byte[] bytes, int count, int typeSize) {
+        for (int i = 0; i + typeSize <= count; i += typeSize) {
+            for (int a = i, b = i + typeSize - 1; a < b; a++, b--) {
+                final byte t = bytes[a];
+                bytes[a] = bytes[b];
+                bytes[b] = t;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.learnopengles.sandbox.common;
+
+import java.util.Arrays;
+
+/**
+ * The android.opengl.Matrix calls the app needs, in plain java: same column-major
+ * layout, same results. No JNI transition per call, and no Android at all, so code
+ * built on them - SceneGraph, DisplayObjectsScene - runs and is measured on a JVM.
+ */
+public final class MatrixMath {
+
+    private static final int FLOATS = 16;
+
+    private MatrixMath() {
+    }
+
+    /*
+     * dest = a * b; dest must not overlap a or b
+     */
+    public static void multiply(float[] a, int aOff, float[] b, int bOff, float[] dest, int dOff) {
+        for (int col = 0; col < 4; col++) {
+            final float b0 = b[bOff + col * 4];
+            final float b1 = b[bOff + col * 4 + 1];
+            final float b2 = b[bOff + col * 4 + 2];
+            final float b3 = b[bOff + col * 4 + 3];
+            for (int row = 0; row < 4; row++) {
+                dest[dOff + col * 4 + row] = a[aOff + row] * b0
+                        + a[aOff + 4 + row] * b1
+                        + a[aOff + 8 + row] * b2
+                        + a[aOff + 12 + row] * b3;
+            }
+        }
+    }
+
+    /*
+     * dest = m * v for a 4 component vector; dest must not overlap v
+     */
+    public static void multiplyVector(float[] m, int mOff, float[] v, int vOff, float[] dest, int dOff) {
+        final float x = v[vOff];
+        final float y = v[vOff + 1];
+        final float z = v[vOff + 2];
+        final float w = v[vOff + 3];
+        for (int row = 0; row < 4; row++) {
+            dest[dOff + row] = m[mOff + row] * x + m[mOff + 4 + row] * y
+                    + m[mOff + 8 + row] * z + m[mOff + 12 + row] * w;
+        }
+    }
+
+    public static void setIdentity(float[] m, int offset) {
+        for (int i = 0; i < FLOATS; i++) {
+            m[offset + i] = (i % 5 == 0) ? 1f : 0f;
+        }
+    }
+
+    /*
+     * m = m * translation, in place - as translateM
+     */
+    public static void translate(float[] m, int offset, float x, float y, float z) {
+        for (int row = 0; row < 4; row++) {
+            m[offset + 12 + row] += m[offset + row] * x + m[offset + 4 + row] * y + m[offset + 8 + row] * z;
+        }
+    }
+
+    /*
+     * a rotation of angle degrees about the axis (x, y, z) - as setRotateM
+     */
+    public static void setRotate(float[] m, int offset, float angle, float x, float y, float z) {
+        final float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length != 1f) {
+            x /= length;
+            y /= length;
+            z /= length;
+        }
+        final double radians = Math.toRadians(angle);
+        final float s = (float) Math.sin(radians);
+        final float c = (float) Math.cos(radians);
+        final float nc = 1f - c;
+
+        m[offset] = x * x * nc + c;
+        m[offset + 1] = x * y * nc + z * s;
+        m[offset + 2] = z * x * nc - y * s;
+        m[offset + 3] = 0f;
+        m[offset + 4] = x * y * nc - z * s;
+        m[offset + 5] = y * y * nc + c;
+        m[offset + 6] = y * z * nc + x * s;
+        m[offset + 7] = 0f;
+        m[offset + 8] = z * x * nc + y * s;
+        m[offset + 9] = y * z * nc - x * s;
+        m[offset + 10] = z * z * nc + c;
+        m[offset + 11] = 0f;
+        m[offset + 12] = 0f;
+        m[offset + 13] = 0f;
+        m[offset + 14] = 0f;
+        m[offset + 15] = 1f;
+    }
+
+    /*
+     * a perspective projection - as frustumM
+     */
+    public static void setFrustum(float[] m, int offset, float left, float right,
+                                  float bottom, float top, float near, float far) {
+        final float width = 1f / (right - left);
+        final float height = 1f / (top - bottom);
+        final float depth = 1f / (near - far);
+
+        Arrays.fill(m, offset, offset + FLOATS, 0f);
+        m[offset] = 2f * near * width;
+        m[offset + 5] = 2f * near * height;
+        m[offset + 8] = (right + left) * width;
+        m[offset + 9] = (top + bottom) * height;
+        m[offset + 10] = (far + near) * depth;
+        m[offset + 11] = -1f;
+        m[offset + 14] = 2f * far * near * depth;
+    }
+
+    /*
+     * a camera at eye looking at center - as setLookAtM
+     */
+    public static void setLookAt(float[] m, int offset, float eyeX, float eyeY, float eyeZ,
+                                 float centerX, float centerY, float centerZ,
+                                 float upX, float upY, float upZ) {
+        float fx = centerX - eyeX;
+        float fy = centerY - eyeY;
+        float fz = centerZ - eyeZ;
+        final float f = 1f / (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+        fx *= f;
+        fy *= f;
+        fz *= f;
+
+        // side = forward x up, then up again from side x forward
+        float sx = fy * upZ - fz * upY;
+        float sy = fz * upX - fx * upZ;
+        float sz = fx * upY - fy * upX;
+        final float s = 1f / (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+        sx *= s;
+        sy *= s;
+        sz *= s;
+        final float ux = sy * fz - sz * fy;
+        final float uy = sz * fx - sx * fz;
+        final float uz = sx * fy - sy * fx;
+
+        m[offset] = sx;
+        m[offset + 1] = ux;
+        m[offset + 2] = -fx;
+        m[offset + 3] = 0f;
+        m[offset + 4] = sy;
+        m[offset + 5] = uy;
+        m[offset + 6] = -fy;
+        m[offset + 7] = 0f;
+        m[offset + 8] = sz;
+        m[offset + 9] = uz;
+        m[offset + 10] = -fz;
+        m[offset + 11] = 0f;
+        m[offset + 12] = 0f;
+        m[offset + 13] = 0f;
+        m[offset + 14] = 0f;
+        m[offset + 15] = 1f;
+        translate(m, offset, -eyeX, -eyeY, -eyeZ);
+    }
+}
\ No newline at end of file
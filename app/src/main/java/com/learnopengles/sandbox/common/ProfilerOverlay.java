@@ -0,0 +1,138 @@
+package com.learnopengles.sandbox.common;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * FrameProfiler's percentiles over the frames in its ring, drawn over an activity
+ * and refreshed twice a second. Long press to save the frames as CSV in the app's
+ * files directory.
+ * <p/>
+ * The text is built on the UI thread from a snapshot it keeps, well away from the
+ * GL thread; the ring is only read.
+ */
+public class ProfilerOverlay extends TextView {
+
+    private static final String LOG_TAG = "ProfilerOverlay";
+    private static final long REFRESH_MS = 500;
+
+    private static final String[] NAMES = {"cpu ms", "draws", "tris", "binds", "programs"};
+
+    private final FrameProfiler.Snapshot mSnapshot = new FrameProfiler.Snapshot();
+    private final StringBuilder mText = new StringBuilder();
+
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    /**
+     * Lay an overlay over the activity's content, if profiling is on - never in a
+     * release build. After setContentView().
+     */
+    public static void attach(Activity activity) {
+        if (!FrameProfiler.isEnabled()) {
+            return;
+        }
+        activity.addContentView(new ProfilerOverlay(activity), new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.WRAP_CONTENT, FrameLayout.LayoutParams.WRAP_CONTENT,
+                Gravity.TOP | Gravity.END));
+    }
+
+    public ProfilerOverlay(Context context) {
+        super(context);
+        setTypeface(Typeface.MONOSPACE);
+        setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+        setTextColor(Color.WHITE);
+        setBackgroundColor(0x80000000);
+        final int padding = (int) (4 * context.getResources().getDisplayMetrics().density);
+        setPadding(padding, padding, padding, padding);
+
+        setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                export();
+                return true;
+            }
+        });
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        post(mRefresh);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(mRefresh);
+        super.onDetachedFromWindow();
+    }
+
+    private void refresh() {
+        FrameProfiler.snapshot(mSnapshot);
+
+        mText.setLength(0);
+        mText.append(mSnapshot.getCount()).append(" frames     p50     p95     p99");
+        for (int metric = 0; metric < FrameProfiler.METRICS; metric++) {
+            mText.append('\n').append(String.format("%-10s", NAMES[metric]));
+            for (float percent : new float[]{50f, 95f, 99f}) {
+                final long value = mSnapshot.percentile(metric, percent);
+                if (metric == FrameProfiler.CPU_NANOS) {
+                    mText.append(String.format("%8.2f", value / 1e6f));
+                } else {
+                    mText.append(String.format("%8d", value));
+                }
+            }
+        }
+        setText(mText);
+    }
+
+    private void export() {
+        FrameProfiler.snapshot(mSnapshot);
+
+        File directory = getContext().getExternalFilesDir(null);
+        if (directory == null) {
+            directory = getContext().getFilesDir();
+        }
+        final File file = new File(directory, "frames-" + System.currentTimeMillis() + ".csv");
+
+        String message;
+        Writer out = null;
+        try {
+            out = new FileWriter(file);
+            mSnapshot.writeCsv(out);
+            message = mSnapshot.getCount() + " frames saved to " + file;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "can't write " + file, e);
+            message = "Can't save " + file;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // the rows were written or already reported
+                }
+            }
+        }
+        Log.w(LOG_TAG, message);
+        Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
+    }
+}
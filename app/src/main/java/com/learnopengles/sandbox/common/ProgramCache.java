@@ -0,0 +1,250 @@
+package com.learnopengles.sandbox.common;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Linked programs kept on disk between runs, so a renderer doesn't compile every
+ * shader from source each time its context is created.
+ * <p/>
+ * A program is keyed by a hash of both sources, the attribute bindings and the
+ * GL_RENDERER / GL_VERSION strings - a driver update changes the key rather than
+ * handing the driver a binary it will reject. On a miss the program is compiled
+ * and linked from source as before, and its binary saved for next time.
+ * <p/>
+ * Program binaries reach Java through GLES30 (API 18), which drivers also expose
+ * to the ES 2.0 contexts these renderers ask for when the GPU supports ES 3.0.
+ * Anywhere else - older devices, ES 2.0 only GPUs, a driver listing no binary
+ * formats, no cache directory - every program is compiled from source.
+ * <p/>
+ * Compile, link and binary load times are totalled until reset(); a renderer calls
+ * reset() at the top of onSurfaceCreated and logStats() at the end, so each lesson's
+ * startup cost shows up in the log under "ProgramCache".
+ * <p/>
+ * GL thread only.
+ */
+public final class ProgramCache {
+
+    private static final String LOG_TAG = "ProgramCache";
+    private static final String DIRECTORY = "programs";
+    /* format and length, ahead of the binary */
+    private static final int HEADER_BYTES = 8;
+
+    private static File sDirectory;
+    private static boolean sBinariesSupported;
+    private static String sDriver = "";
+
+    private static int sLoaded;
+    private static int sCompiled;
+    private static long sLoadNanos;
+    private static long sCompileNanos;
+    private static long sLinkNanos;
+
+    private ProgramCache() {
+    }
+
+    /**
+     * A new context: find out whether it can hand out program binaries, and clear the
+     * timings.
+     */
+    public static void reset(Context context) {
+        sDirectory = null;
+        final File cacheDir = context.getCacheDir();
+        if (cacheDir != null) {
+            final File directory = new File(cacheDir, DIRECTORY);
+            if (directory.isDirectory() || directory.mkdirs()) {
+                sDirectory = directory;
+            }
+        }
+
+        sBinariesSupported = false;
+        final String version = GL.glGetString(GLES20.GL_VERSION);
+        if (Build.VERSION.SDK_INT >= 18 && version != null && version.startsWith("OpenGL ES 3")) {
+            final int[] formats = new int[1];
+            GL.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+            sBinariesSupported = formats[0] > 0;
+        }
+        sDriver = GL.glGetString(GLES20.GL_RENDERER) + "\n" + version;
+
+        sLoaded = 0;
+        sCompiled = 0;
+        sLoadNanos = 0;
+        sCompileNanos = 0;
+        sLinkNanos = 0;
+    }
+
+    /**
+     * @param attributes Attributes bound to locations 0, 1, 2... before linking; may be null.
+     * @return A linked program, from the cache if it holds one.
+     */
+    public static int getProgram(final String vertexShader, final String fragmentShader,
+                                 final String[] attributes) {
+        final File file = sBinariesSupported && sDirectory != null
+                ? new File(sDirectory, key(vertexShader, fragmentShader, attributes)) : null;
+
+        if (file != null && file.isFile()) {
+            final long start = System.nanoTime();
+            final int programHandle = loadBinary(file);
+            if (programHandle != 0) {
+                sLoadNanos += System.nanoTime() - start;
+                sLoaded++;
+                return programHandle;
+            }
+            // stale or corrupt - rebuild it below
+            file.delete();
+        }
+
+        long start = System.nanoTime();
+        final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
+        final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
+        sCompileNanos += System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final int programHandle = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, attributes);
+        sLinkNanos += System.nanoTime() - start;
+        sCompiled++;
+
+        // the program keeps what it needs; the shaders go when it does
+        GL.glDeleteShader(vertexShaderHandle);
+        GL.glDeleteShader(fragmentShaderHandle);
+
+        if (file != null) {
+            saveBinary(programHandle, file);
+        }
+        return programHandle;
+    }
+
+    public static void logStats(String who) {
+        Log.w(LOG_TAG, String.format("%s: %d programs from binary in %.2f ms, %d compiled in %.2f ms (compile %.2f link %.2f)%s",
+                who, sLoaded, sLoadNanos / 1e6f, sCompiled, (sCompileNanos + sLinkNanos) / 1e6f,
+                sCompileNanos / 1e6f, sLinkNanos / 1e6f,
+                sBinariesSupported ? "" : ", no program binaries here"));
+    }
+
+    private static int loadBinary(File file) {
+        final byte[] bytes;
+        final int format;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            format = in.readInt();
+            final int length = in.readInt();
+            // a truncated or corrupt file is a miss, not a huge or negative allocation
+            if (length <= 0 || length > file.length() - HEADER_BYTES) {
+                Log.w(LOG_TAG, "bad length " + length + " in " + file.getName());
+                return 0;
+            }
+            bytes = new byte[length];
+            in.readFully(bytes);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "can't read " + file.getName() + ": " + e);
+            return 0;
+        } finally {
+            close(in);
+        }
+
+        final ByteBuffer binary = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+        binary.put(bytes).position(0);
+
+        final int programHandle = GL.glCreateProgram();
+        if (programHandle == 0) {
+            return 0;
+        }
+        GL.glProgramBinary(programHandle, format, binary, bytes.length);
+
+        final int[] linkStatus = new int[1];
+        GL.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] == 0) {
+            GLState.deleteProgram(programHandle);
+            return 0;
+        }
+        return programHandle;
+    }
+
+    private static void saveBinary(int programHandle, File file) {
+        final int[] length = new int[1];
+        GL.glGetProgramiv(programHandle, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            return;
+        }
+
+        final ByteBuffer binary = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+        final int[] binaryLength = new int[1];
+        final int[] format = new int[1];
+        GL.glGetProgramBinary(programHandle, length[0], binaryLength, 0, format, 0, binary);
+        if (binaryLength[0] <= 0) {
+            return;
+        }
+        final byte[] bytes = new byte[binaryLength[0]];
+        binary.position(0);
+        binary.get(bytes);
+
+        // write the whole file under another name first, so a crash can't leave half a binary
+        final File partial = new File(file.getPath() + ".tmp");
+        boolean written = false;
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(partial));
+            out.writeInt(format[0]);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            written = true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "can't write " + file.getName() + ": " + e);
+        } finally {
+            close(out);
+        }
+        if (!written || !partial.renameTo(file)) {
+            partial.delete();
+        }
+    }
+
+    private static String key(String vertexShader, String fragmentShader, String[] attributes) {
+        final StringBuilder all = new StringBuilder(sDriver);
+        all.append('\0').append(vertexShader).append('\0').append(fragmentShader);
+        if (attributes != null) {
+            for (String attribute : attributes) {
+                all.append('\0').append(attribute);
+            }
+        }
+
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(all.toString().getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        final StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
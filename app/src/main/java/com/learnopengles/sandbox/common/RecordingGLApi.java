@@ -0,0 +1,412 @@
+package com.learnopengles.sandbox.common;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A GLApi with nothing behind it, for running drawing code on a JVM with no GPU: every
+ * call is counted by name, and the bytes handed over in buffer and texture uploads
+ * are added up. What the CPU spends getting the calls out is then all that is left to
+ * measure.
+ * <p/>
+ * Just enough comes back to keep callers on their normal path: fresh names from the
+ * glGen and glCreate calls, success from compile and link status, no errors. Programs
+ * have no active uniforms or attributes, so their locations are all -1.
+ */
+public class RecordingGLApi implements GLApi {
+
+    private static final String NAME = "RecordingGLApi";
+
+    private final Map<String, int[]> mCalls = new TreeMap<String, int[]>();
+    private int mTotalCalls;
+    private long mBytesUploaded;
+    private int mLastName;
+
+    /**
+     * @return Calls of the named function, e.g. "glDrawArrays", since the last reset.
+     */
+    public int getCalls(String function) {
+        final int[] calls = mCalls.get(function);
+        return calls != null ? calls[0] : 0;
+    }
+
+    public int getTotalCalls() {
+        return mTotalCalls;
+    }
+
+    public int getDrawCalls() {
+        return getCalls("glDrawArrays") + getCalls("glDrawElements");
+    }
+
+    /**
+     * @return Bytes of vertex, index and texture data uploaded since the last reset.
+     */
+    public long getBytesUploaded() {
+        return mBytesUploaded;
+    }
+
+    /**
+     * Zero the counts. Names already handed out stay taken.
+     */
+    public void reset() {
+        mCalls.clear();
+        mTotalCalls = 0;
+        mBytesUploaded = 0;
+    }
+
+    /**
+     * @return Each function called, with its count.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder text = new StringBuilder();
+        text.append(mTotalCalls).append(" calls, ").append(mBytesUploaded).append(" bytes uploaded");
+        for (Map.Entry<String, int[]> entry : mCalls.entrySet()) {
+            text.append('\n').append(entry.getKey()).append(' ').append(entry.getValue()[0]);
+        }
+        return text.toString();
+    }
+
+    private void count(String function) {
+        int[] calls = mCalls.get(function);
+        if (calls == null) {
+            calls = new int[1];
+            mCalls.put(function, calls);
+        }
+        calls[0]++;
+        mTotalCalls++;
+    }
+
+    private void name(int[] names, int offset, int n) {
+        for (int i = 0; i < n; i++) {
+            names[offset + i] = ++mLastName;
+        }
+    }
+
+    private static long bytes(Buffer data) {
+        if (data == null) {
+            return 0;
+        }
+        if (data instanceof ByteBuffer) {
+            return data.remaining();
+        }
+        if (data instanceof ShortBuffer || data instanceof CharBuffer) {
+            return data.remaining() * 2L;
+        }
+        if (data instanceof LongBuffer || data instanceof DoubleBuffer) {
+            return data.remaining() * 8L;
+        }
+        return data.remaining() * 4L;
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        count("glActiveTexture");
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        count("glAttachShader");
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        count("glBindAttribLocation");
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        count("glBindBuffer");
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        count("glBindTexture");
+    }
+
+    @Override
+    public void glBlendEquation(int mode) {
+        count("glBlendEquation");
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        count("glBlendFunc");
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        count("glBufferData");
+        mBytesUploaded += size;
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        count("glBufferSubData");
+        mBytesUploaded += size;
+    }
+
+    @Override
+    public void glClear(int mask) {
+        count("glClear");
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        count("glClearColor");
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        count("glCompileShader");
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+        count("glCompressedTexImage2D");
+        mBytesUploaded += imageSize;
+    }
+
+    @Override
+    public int glCreateProgram() {
+        count("glCreateProgram");
+        return ++mLastName;
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        count("glCreateShader");
+        return ++mLastName;
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        count("glDeleteBuffers");
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        count("glDeleteProgram");
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        count("glDeleteShader");
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        count("glDisable");
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        count("glDisableVertexAttribArray");
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        count("glDrawArrays");
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        count("glDrawElements");
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+        count("glDrawElements");
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        count("glEnable");
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        count("glEnableVertexAttribArray");
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        count("glGenBuffers");
+        name(buffers, offset, n);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        count("glGenTextures");
+        name(textures, offset, n);
+    }
+
+    @Override
+    public void glGetActiveAttrib(int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+        count("glGetActiveAttrib");
+        length[lengthOffset] = 0;
+    }
+
+    @Override
+    public void glGetActiveUniform(int program, int index, int bufsize, int[] length, int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+        count("glGetActiveUniform");
+        length[lengthOffset] = 0;
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        count("glGetAttribLocation");
+        return -1;
+    }
+
+    @Override
+    public int glGetError() {
+        count("glGetError");
+        return GLES20.GL_NO_ERROR;
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        count("glGetIntegerv");
+        params[offset] = 0;
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        count("glGetProgramBinary");
+        length[lengthOffset] = 0;
+        binaryFormat[binaryFormatOffset] = 0;
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        count("glGetProgramInfoLog");
+        return "";
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        count("glGetProgramiv");
+        params[offset] = pname == GLES20.GL_LINK_STATUS ? GLES20.GL_TRUE : 0;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        count("glGetShaderInfoLog");
+        return "";
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        count("glGetShaderiv");
+        params[offset] = pname == GLES20.GL_COMPILE_STATUS ? GLES20.GL_TRUE : 0;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        count("glGetString");
+        return NAME;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        count("glGetUniformLocation");
+        return -1;
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        count("glLinkProgram");
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        count("glPixelStorei");
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        count("glProgramBinary");
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        count("glShaderSource");
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        count("glTexImage2D");
+        mBytesUploaded += bytes(pixels);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        count("glTexParameteri");
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        count("glUniform1i");
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        count("glUniform3f");
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        count("glUniform4fv");
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        count("glUniformMatrix4fv");
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        count("glUseProgram");
+    }
+
+    @Override
+    public void glVertexAttrib3f(int index, float x, float y, float z) {
+        count("glVertexAttrib3f");
+    }
+
+    @Override
+    public void glVertexAttrib4fv(int index, float[] values, int offset) {
+        count("glVertexAttrib4fv");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        count("glVertexAttribPointer");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        count("glVertexAttribPointer");
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        count("glViewport");
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        count("texImage2D");
+        mBytesUploaded += bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
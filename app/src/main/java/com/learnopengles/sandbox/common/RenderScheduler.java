@@ -0,0 +1,112 @@
+package com.learnopengles.sandbox.common;
+
+import android.opengl.GLSurfaceView;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws a GLSurfaceView only when something has changed, rather than at the display
+ * rate. A scene that sits still between touches otherwise redraws the same picture
+ * sixty times a second: a full frame of CPU and GPU work, and the power it draws.
+ * <p/>
+ * attach() puts the view in RENDERMODE_WHEN_DIRTY. After that a frame is drawn when
+ * the surface is created or resized, and when requestFrame() is called - for touch
+ * input, a finished load, a toggle, anything the next frame should show. A scene
+ * that is animating asks for the next frame from the end of the current one, through
+ * frameDrawn(true), and stops asking when it comes to rest.
+ * <p/>
+ * With on demand rendering switched off (setOnDemand(false), before the view is
+ * attached) the view draws continuously as before, which is the comparison for the
+ * idle cost logged by logStats(): frames drawn and process CPU time per second.
+ */
+public class RenderScheduler {
+
+    private static final String LOG_TAG = "RenderScheduler";
+
+    private static boolean sOnDemand = true;
+
+    private final String mName;
+    private final GLSurfaceView mView;
+    private boolean mAttachedOnDemand;
+
+    private final AtomicInteger mFrames = new AtomicInteger();
+    private long mStatsStart;
+    private long mStatsCpuStart;
+
+    /**
+     * @param name Who is drawing, for the log.
+     */
+    public RenderScheduler(String name, GLSurfaceView view) {
+        mName = name;
+        mView = view;
+    }
+
+    /**
+     * For views attached from now on.
+     */
+    public static void setOnDemand(boolean onDemand) {
+        sOnDemand = onDemand;
+    }
+
+    public static boolean isOnDemand() {
+        return sOnDemand;
+    }
+
+    /**
+     * Set the render mode. Call after GLSurfaceView.setRenderer().
+     */
+    public void attach() {
+        mAttachedOnDemand = sOnDemand;
+        mView.setRenderMode(mAttachedOnDemand
+                ? GLSurfaceView.RENDERMODE_WHEN_DIRTY : GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+        resetStats();
+    }
+
+    /**
+     * The scene has changed: draw another frame. Any thread; requests made before the
+     * next frame starts are drawn by it.
+     */
+    public void requestFrame() {
+        mView.requestRender();
+    }
+
+    /**
+     * GL thread, at the end of onDrawFrame().
+     *
+     * @param animating The scene will look different next frame without any input,
+     *                  so draw that one too.
+     */
+    public void frameDrawn(boolean animating) {
+        mFrames.incrementAndGet();
+        if (animating && mAttachedOnDemand) {
+            mView.requestRender();
+        }
+    }
+
+    /**
+     * Start counting again, e.g. from onResume().
+     */
+    public void resetStats() {
+        mFrames.set(0);
+        mStatsStart = SystemClock.uptimeMillis();
+        mStatsCpuStart = Process.getElapsedCpuTime();
+    }
+
+    /**
+     * Log what has been drawn since the last reset, and the CPU time the whole process
+     * used doing it - a proxy for power, as the GPU's own load isn't visible from here.
+     * Typically from onPause().
+     */
+    public void logStats() {
+        final long elapsed = Math.max(1, SystemClock.uptimeMillis() - mStatsStart);
+        final long cpu = Process.getElapsedCpuTime() - mStatsCpuStart;
+        final int frames = mFrames.get();
+        Log.w(LOG_TAG, String.format("%s %s: %d frames in %.1f s (%.1f fps), cpu %d ms (%.1f ms/s)",
+                mName, mAttachedOnDemand ? "on demand" : "continuous",
+                frames, elapsed / 1000f, frames * 1000f / elapsed,
+                cpu, cpu * 1000f / elapsed));
+    }
+}
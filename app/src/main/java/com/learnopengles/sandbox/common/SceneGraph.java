@@ -0,0 +1,342 @@
+package com.learnopengles.sandbox.common;
+
+import java.util.Arrays;
+
+/**
+ * Scene Graph
+ * <p/>
+ * A flat transform hierarchy. Nodes are plain indices; every per-node value
+ * lives in one array (four column-major 4x4 matrices at node * 16), so update()
+ * is a single forward walk over contiguous floats with no objects to chase.
+ * <p/>
+ * A node's parent must already exist when the node is added, so parents always
+ * sit before their children and one pass in index order sees every parent's
+ * new world matrix before its children need it.
+ * <p/>
+ * Only what changed is recomputed: a node's world matrix when its local matrix
+ * or any ancestor's changed, its model-view and MVP matrices when its world
+ * matrix or the camera changed. A frame where nothing moved costs one pass
+ * over the dirty flags.
+ * <p/>
+ * Nodes given a bounding sphere are culled against the camera frustum as part
+ * of the same pass, in world space; a culled node's model-view and MVP are not
+ * computed at all until it comes back into view.
+ * <p/>
+ * Not thread safe - build and update it on the GL thread.
+ */
+public class SceneGraph {
+
+    public static final int NO_PARENT = -1;
+    public static final int FLOATS_PER_MATRIX = 16;
+
+    private int mNodeCount;
+
+    private int[] mParents;
+    private boolean[] mLocalDirty;
+    private boolean[] mWorldChanged;
+    private boolean[] mVisible;
+    private boolean[] mMatricesStale;
+
+    /* local space bounding sphere, x y z radius; radius 0 means never culled */
+    private static final int FLOATS_PER_BOUNDS = 4;
+    private float[] mBounds;
+
+    private float[] mLocal;
+    private float[] mWorld;
+    private float[] mModelView;
+    private float[] mModelViewProjection;
+
+    private final float[] mView = new float[FLOATS_PER_MATRIX];
+    private final float[] mProjection = new float[FLOATS_PER_MATRIX];
+    private boolean mCameraDirty = true;
+
+    private final float[] mScratch = new float[FLOATS_PER_MATRIX];
+    private final float[] mViewProjection = new float[FLOATS_PER_MATRIX];
+    private final Frustum mFrustum = new Frustum();
+    private boolean mCullingEnabled = true;
+
+    private int mLastUpdatedNodes;
+    private int mVisibleNodes;
+    private int mCulledNodes;
+
+    public SceneGraph(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 1));
+        MatrixMath.setIdentity(mView, 0);
+        MatrixMath.setIdentity(mProjection, 0);
+    }
+
+    private void allocate(int capacity) {
+        int floats = capacity * FLOATS_PER_MATRIX;
+        if (mParents == null) {
+            mParents = new int[capacity];
+            mLocalDirty = new boolean[capacity];
+            mWorldChanged = new boolean[capacity];
+            mVisible = new boolean[capacity];
+            mMatricesStale = new boolean[capacity];
+            mBounds = new float[capacity * FLOATS_PER_BOUNDS];
+            mLocal = new float[floats];
+            mWorld = new float[floats];
+            mModelView = new float[floats];
+            mModelViewProjection = new float[floats];
+        } else {
+            mParents = Arrays.copyOf(mParents, capacity);
+            mLocalDirty = Arrays.copyOf(mLocalDirty, capacity);
+            mWorldChanged = Arrays.copyOf(mWorldChanged, capacity);
+            mVisible = Arrays.copyOf(mVisible, capacity);
+            mMatricesStale = Arrays.copyOf(mMatricesStale, capacity);
+            mBounds = Arrays.copyOf(mBounds, capacity * FLOATS_PER_BOUNDS);
+            mLocal = Arrays.copyOf(mLocal, floats);
+            mWorld = Arrays.copyOf(mWorld, floats);
+            mModelView = Arrays.copyOf(mModelView, floats);
+            mModelViewProjection = Arrays.copyOf(mModelViewProjection, floats);
+        }
+    }
+
+    /**
+     * Add a node with an identity local transform.
+     *
+     * @param parent An existing node, or NO_PARENT for a root.
+     * @return The new node's index.
+     */
+    public int addNode(int parent) {
+        if (parent < NO_PARENT || parent >= mNodeCount) {
+            throw new IllegalArgumentException("SceneGraph: no parent node " + parent);
+        }
+        if (mNodeCount == mParents.length) {
+            allocate(mParents.length * 2);
+        }
+        int node = mNodeCount++;
+        mParents[node] = parent;
+        MatrixMath.setIdentity(mLocal, node * FLOATS_PER_MATRIX);
+        mLocalDirty[node] = true;
+        mVisible[node] = true;
+        mMatricesStale[node] = false;
+        Arrays.fill(mBounds, node * FLOATS_PER_BOUNDS, (node + 1) * FLOATS_PER_BOUNDS, 0f);
+        return node;
+    }
+
+    /**
+     * Give a node a bounding sphere, in its local space, so it can be culled.
+     * The radius is scaled by the node's world matrix.
+     */
+    public void setBounds(int node, float x, float y, float z, float radius) {
+        int o = node * FLOATS_PER_BOUNDS;
+        mBounds[o] = x;
+        mBounds[o + 1] = y;
+        mBounds[o + 2] = z;
+        mBounds[o + 3] = radius;
+        mLocalDirty[node] = true;
+        if (radius <= 0f) {
+            mVisible[node] = true;
+        }
+    }
+
+    public void setCullingEnabled(boolean enabled) {
+        if (mCullingEnabled != enabled) {
+            mCullingEnabled = enabled;
+            // every sphere needs testing again
+            mCameraDirty = true;
+        }
+    }
+
+    public boolean isCullingEnabled() {
+        return mCullingEnabled;
+    }
+
+    /**
+     * Whether the node's bounding sphere touched the frustum at the last update();
+     * nodes without bounds are always visible. A culled node's model-view and
+     * MVP matrices are out of date.
+     */
+    public boolean isVisible(int node) {
+        return mVisible[node];
+    }
+
+    /**
+     * Drop every node; capacity is kept.
+     */
+    public void clear() {
+        mNodeCount = 0;
+    }
+
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    public int getParent(int node) {
+        return mParents[node];
+    }
+
+    /**
+     * Replace a node's local transform. Setting the transform it already has
+     * does not mark it dirty.
+     */
+    public void setLocal(int node, float[] m, int offset) {
+        final int o = node * FLOATS_PER_MATRIX;
+        if (!equals(mLocal, o, m, offset)) {
+            System.arraycopy(m, offset, mLocal, o, FLOATS_PER_MATRIX);
+            mLocalDirty[node] = true;
+        }
+    }
+
+    /**
+     * Set a node's local transform to a translation times a uniform scale -
+     * the same as setIdentityM, translateM, scaleM.
+     */
+    public void setLocalTranslateScale(int node, float x, float y, float z, float scale) {
+        MatrixMath.setIdentity(mScratch, 0);
+        mScratch[0] = scale;
+        mScratch[5] = scale;
+        mScratch[10] = scale;
+        mScratch[12] = x;
+        mScratch[13] = y;
+        mScratch[14] = z;
+        setLocal(node, mScratch, 0);
+    }
+
+    /**
+     * Hand over the camera. Nothing is marked dirty unless a matrix actually
+     * changed, so it is fine to call this every frame.
+     */
+    public void setCamera(float[] view, float[] projection) {
+        if (!equals(mView, 0, view, 0) || !equals(mProjection, 0, projection, 0)) {
+            System.arraycopy(view, 0, mView, 0, FLOATS_PER_MATRIX);
+            System.arraycopy(projection, 0, mProjection, 0, FLOATS_PER_MATRIX);
+            mCameraDirty = true;
+        }
+    }
+
+    /**
+     * Bring every world, model-view and MVP matrix up to date.
+     *
+     * @return Number of nodes whose matrices were recomputed.
+     */
+    public int update() {
+        final int[] parents = mParents;
+        final boolean[] localDirty = mLocalDirty;
+        final boolean[] worldChanged = mWorldChanged;
+        final boolean[] visible = mVisible;
+        final boolean[] stale = mMatricesStale;
+        final float[] bounds = mBounds;
+        final boolean cameraDirty = mCameraDirty;
+        int updated = 0;
+        int visibleNodes = 0;
+        int culledNodes = 0;
+
+        if (cameraDirty) {
+            // planes in world space, so they hold for every node
+            MatrixMath.multiply(mProjection, 0, mView, 0, mViewProjection, 0);
+            mFrustum.extract(mViewProjection);
+        }
+
+        for (int node = 0; node < mNodeCount; node++) {
+            final int parent = parents[node];
+            final boolean changed = localDirty[node] || (parent != NO_PARENT && worldChanged[parent]);
+            final int o = node * FLOATS_PER_MATRIX;
+            final int b = node * FLOATS_PER_BOUNDS;
+
+            if (changed) {
+                if (parent == NO_PARENT) {
+                    System.arraycopy(mLocal, o, mWorld, o, FLOATS_PER_MATRIX);
+                } else {
+                    MatrixMath.multiply(mWorld, parent * FLOATS_PER_MATRIX, mLocal, o, mWorld, o);
+                }
+                localDirty[node] = false;
+            }
+            worldChanged[node] = changed;
+
+            final boolean bounded = bounds[b + 3] > 0f;
+            if (bounded && (changed || cameraDirty)) {
+                visible[node] = !mCullingEnabled || isSphereVisible(node);
+            }
+
+            if (changed || cameraDirty || stale[node]) {
+                if (visible[node]) {
+                    MatrixMath.multiply(mView, 0, mWorld, o, mModelView, o);
+                    MatrixMath.multiply(mProjection, 0, mModelView, o, mModelViewProjection, o);
+                    stale[node] = false;
+                    updated++;
+                } else {
+                    stale[node] = true;
+                }
+            }
+
+            if (bounded) {
+                if (visible[node]) {
+                    visibleNodes++;
+                } else {
+                    culledNodes++;
+                }
+            }
+        }
+
+        mCameraDirty = false;
+        mLastUpdatedNodes = updated;
+        mVisibleNodes = visibleNodes;
+        mCulledNodes = culledNodes;
+        return updated;
+    }
+
+    /*
+     * the node's bounding sphere moved into world space: the center through the
+     * world matrix, the radius by its largest axis scale
+     */
+    private boolean isSphereVisible(int node) {
+        final float[] w = mWorld;
+        final int o = node * FLOATS_PER_MATRIX;
+        final int b = node * FLOATS_PER_BOUNDS;
+        final float x = mBounds[b];
+        final float y = mBounds[b + 1];
+        final float z = mBounds[b + 2];
+
+        float cx = w[o] * x + w[o + 4] * y + w[o + 8] * z + w[o + 12];
+        float cy = w[o + 1] * x + w[o + 5] * y + w[o + 9] * z + w[o + 13];
+        float cz = w[o + 2] * x + w[o + 6] * y + w[o + 10] * z + w[o + 14];
+
+        float sx = w[o] * w[o] + w[o + 1] * w[o + 1] + w[o + 2] * w[o + 2];
+        float sy = w[o + 4] * w[o + 4] + w[o + 5] * w[o + 5] + w[o + 6] * w[o + 6];
+        float sz = w[o + 8] * w[o + 8] + w[o + 9] * w[o + 9] + w[o + 10] * w[o + 10];
+        float scale = (float) Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+
+        return mFrustum.isSphereVisible(cx, cy, cz, mBounds[b + 3] * scale);
+    }
+
+    public int getLastUpdatedNodes() {
+        return mLastUpdatedNodes;
+    }
+
+    /*
+     * of the nodes with bounds, how many passed / failed the frustum test at the last update()
+     */
+    public int getVisibleNodes() {
+        return mVisibleNodes;
+    }
+
+    public int getCulledNodes() {
+        return mCulledNodes;
+    }
+
+    /*
+     * results of update(), node n's matrix at n * FLOATS_PER_MATRIX - read only
+     */
+    public float[] getWorldMatrices() {
+        return mWorld;
+    }
+
+    public float[] getModelViewMatrices() {
+        return mModelView;
+    }
+
+    public float[] getModelViewProjectionMatrices() {
+        return mModelViewProjection;
+    }
+
+    private static boolean equals(float[] a, int aOff, float[] b, int bOff) {
+        for (int i = 0; i < FLOATS_PER_MATRIX; i++) {
+            if (a[aOff + i] != b[bOff + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
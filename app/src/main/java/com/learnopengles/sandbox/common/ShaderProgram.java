@@ -0,0 +1,125 @@
+package com.learnopengles.sandbox.common;
+
+import android.opengl.GLES20;
+
+import java.util.HashMap;
+
+/**
+ * A linked program plus the location of every active uniform and attribute,
+ * looked up once right after linking. glGetUniformLocation / glGetAttribLocation
+ * are string lookups in the driver; renderers should fetch the handles they need
+ * here when the program is built (or switched), never per frame.
+ * <p/>
+ * Uniform arrays are listed by the driver as "name[0]"; they can be looked up
+ * either way. Names the program does not use give -1, as GL itself does, so
+ * passing them on to glUniform* / glVertexAttrib* is a no-op.
+ * <p/>
+ * Must be created and used on the GL thread.
+ */
+public class ShaderProgram {
+
+    private static final String ARRAY_SUFFIX = "[0]";
+
+    private final int mProgramHandle;
+    private final HashMap<String, Integer> mUniforms = new HashMap<String, Integer>();
+    private final HashMap<String, Integer> mAttributes = new HashMap<String, Integer>();
+
+    /**
+     * Compile, link and resolve - or load the linked program from the ProgramCache.
+     *
+     * @param attributes Attributes bound to locations 0, 1, 2... before linking; may be null.
+     */
+    public ShaderProgram(final String vertexShader, final String fragmentShader, final String[] attributes) {
+        this(ProgramCache.getProgram(vertexShader, fragmentShader, attributes));
+    }
+
+    /**
+     * Link already compiled shaders and resolve.
+     */
+    public ShaderProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) {
+        this(ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, attributes));
+    }
+
+    /**
+     * Resolve a program that is already linked.
+     */
+    public ShaderProgram(final int programHandle) {
+        mProgramHandle = programHandle;
+        resolveUniforms();
+        resolveAttributes();
+    }
+
+    private void resolveUniforms() {
+        final int[] count = new int[1];
+        final int[] maxLength = new int[1];
+        GL.glGetProgramiv(mProgramHandle, GLES20.GL_ACTIVE_UNIFORMS, count, 0);
+        GL.glGetProgramiv(mProgramHandle, GLES20.GL_ACTIVE_UNIFORM_MAX_LENGTH, maxLength, 0);
+
+        final byte[] name = new byte[Math.max(maxLength[0], 1)];
+        final int[] length = new int[1];
+        final int[] size = new int[1];
+        final int[] type = new int[1];
+        for (int i = 0; i < count[0]; i++) {
+            GL.glGetActiveUniform(mProgramHandle, i, name.length, length, 0, size, 0, type, 0, name, 0);
+            final String uniform = new String(name, 0, length[0]);
+            final int location = GL.glGetUniformLocation(mProgramHandle, uniform);
+            mUniforms.put(uniform, location);
+            if (uniform.endsWith(ARRAY_SUFFIX)) {
+                mUniforms.put(uniform.substring(0, uniform.length() - ARRAY_SUFFIX.length()), location);
+            }
+        }
+    }
+
+    private void resolveAttributes() {
+        final int[] count = new int[1];
+        final int[] maxLength = new int[1];
+        GL.glGetProgramiv(mProgramHandle, GLES20.GL_ACTIVE_ATTRIBUTES, count, 0);
+        GL.glGetProgramiv(mProgramHandle, GLES20.GL_ACTIVE_ATTRIBUTE_MAX_LENGTH, maxLength, 0);
+
+        final byte[] name = new byte[Math.max(maxLength[0], 1)];
+        final int[] length = new int[1];
+        final int[] size = new int[1];
+        final int[] type = new int[1];
+        for (int i = 0; i < count[0]; i++) {
+            GL.glGetActiveAttrib(mProgramHandle, i, name.length, length, 0, size, 0, type, 0, name, 0);
+            final String attribute = new String(name, 0, length[0]);
+            mAttributes.put(attribute, GL.glGetAttribLocation(mProgramHandle, attribute));
+        }
+    }
+
+    public int getHandle() {
+        return mProgramHandle;
+    }
+
+    public void use() {
+        GLState.useProgram(mProgramHandle);
+    }
+
+    /**
+     * @return The uniform's location, or -1 if the program has no such active uniform.
+     */
+    public int getUniform(final String name) {
+        final Integer location = mUniforms.get(name);
+        return location != null ? location : -1;
+    }
+
+    /**
+     * @return The attribute's location, or -1 if the program has no such active attribute.
+     */
+    public int getAttribute(final String name) {
+        final Integer location = mAttributes.get(name);
+        return location != null ? location : -1;
+    }
+
+    public boolean hasUniform(final String name) {
+        return mUniforms.containsKey(name);
+    }
+
+    public boolean hasAttribute(final String name) {
+        return mAttributes.containsKey(name);
+    }
+
+    public void release() {
+        GLState.deleteProgram(mProgramHandle);
+    }
+}
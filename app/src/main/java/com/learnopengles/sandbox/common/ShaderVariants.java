@@ -0,0 +1,156 @@
+package com.learnopengles.sandbox.common;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.learnopengles.sandbox.R;
+
+/**
+ * Programs built from one annotated source (res/raw/uber_*.glsl) by putting a
+ * #define in front of it for each feature wanted, instead of a near-copy of the
+ * shader files per combination.
+ * <p/>
+ * A variant is named by a bitmask of the feature flags below. It is compiled the first
+ * time get() asks for it - through ShaderProgram, so the ProgramCache applies - and
+ * kept; asking again is a lookup. The mask doubles as a sort key for draws, so that
+ * draws sharing a program are issued together.
+ * <p/>
+ * Every variant binds the same attribute locations (ATTRIBUTES), so switching variant
+ * does not move the vertex attributes.
+ * <p/>
+ * Constants (see uber_lighting.glsl) are per instance and must be set before the first
+ * get(). Programs belong to the context: build a new instance in onSurfaceCreated.
+ * GL thread only.
+ */
+public class ShaderVariants {
+
+    public static final int VERTEX_COLOR = 1;
+    public static final int TEXTURE = 1 << 1;
+    public static final int LIGHTING = 1 << 2;
+    /** implies LIGHTING */
+    public static final int PER_PIXEL_LIGHTING = 1 << 3;
+    /** implies LIGHTING */
+    public static final int ATTENUATION = 1 << 4;
+    /** implies PER_PIXEL_LIGHTING - the back face is only known per fragment */
+    public static final int TWO_SIDED_LIGHTING = 1 << 5;
+    /** pseudo-instancing: needs an INSTANCE_COUNT constant */
+    public static final int INSTANCED = 1 << 6;
+
+    private static final String[] DEFINES = {
+            "USE_VERTEX_COLOR",
+            "USE_TEXTURE",
+            "USE_LIGHTING",
+            "PER_PIXEL_LIGHTING",
+            "USE_ATTENUATION",
+            "TWO_SIDED_LIGHTING",
+            "INSTANCED"
+    };
+
+    /** bound to locations 0, 1, 2... in every variant */
+    public static final String[] ATTRIBUTES = {"a_Position", "a_Color", "a_Normal", "a_TexCoordinate", "a_Instance"};
+
+    private static final String FRAGMENT_PRECISION = "precision mediump float;\n";
+
+    private final String mVertexSource;
+    private final String mFragmentSource;
+    private final String mLightingSource;
+    private final StringBuilder mConstants = new StringBuilder();
+    private final SparseArray<ShaderProgram> mVariants = new SparseArray<ShaderProgram>();
+
+    /**
+     * The uber shaders from res/raw.
+     */
+    public ShaderVariants(final Context context) {
+        this(RawResourceReader.readTextFileFromRawResource(context, R.raw.uber_vertex_shader),
+                RawResourceReader.readTextFileFromRawResource(context, R.raw.uber_fragment_shader),
+                RawResourceReader.readTextFileFromRawResource(context, R.raw.uber_lighting));
+    }
+
+    public ShaderVariants(final String vertexSource, final String fragmentSource, final String lightingSource) {
+        mVertexSource = vertexSource;
+        mFragmentSource = fragmentSource;
+        mLightingSource = lightingSource;
+    }
+
+    /**
+     * #define name value ahead of every variant.
+     *
+     * @return this, to chain
+     */
+    public ShaderVariants setConstant(final String name, final String value) {
+        if (mVariants.size() != 0) {
+            throw new IllegalStateException("constants must be set before the first variant is built");
+        }
+        mConstants.append("#define ").append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * @return The program for these features, compiled now if it hasn't been yet.
+     */
+    public ShaderProgram get(int features) {
+        features = normalize(features);
+        ShaderProgram program = mVariants.get(features);
+        if (program == null) {
+            program = new ShaderProgram(getVertexShader(features), getFragmentShader(features), ATTRIBUTES);
+            mVariants.put(features, program);
+        }
+        return program;
+    }
+
+    /**
+     * Variants built so far.
+     */
+    public int size() {
+        return mVariants.size();
+    }
+
+    public void release() {
+        for (int i = 0; i < mVariants.size(); i++) {
+            mVariants.valueAt(i).release();
+        }
+        mVariants.clear();
+    }
+
+    /**
+     * Fill in the flags the given ones imply. Two masks asking for the same shader
+     * normalize to the same value, which is the variant's key.
+     */
+    public static int normalize(int features) {
+        if ((features & TWO_SIDED_LIGHTING) != 0) {
+            features |= PER_PIXEL_LIGHTING;
+        }
+        if ((features & (PER_PIXEL_LIGHTING | ATTENUATION)) != 0) {
+            features |= LIGHTING;
+        }
+        return features;
+    }
+
+    public String getVertexShader(int features) {
+        features = normalize(features);
+        final StringBuilder source = header(features);
+        if ((features & LIGHTING) != 0 && (features & PER_PIXEL_LIGHTING) == 0) {
+            source.append(mLightingSource);
+        }
+        return source.append(mVertexSource).toString();
+    }
+
+    public String getFragmentShader(int features) {
+        features = normalize(features);
+        final StringBuilder source = header(features).append(FRAGMENT_PRECISION);
+        if ((features & PER_PIXEL_LIGHTING) != 0) {
+            source.append(mLightingSource);
+        }
+        return source.append(mFragmentSource).toString();
+    }
+
+    private StringBuilder header(int features) {
+        final StringBuilder header = new StringBuilder();
+        for (int i = 0; i < DEFINES.length; i++) {
+            if ((features & (1 << i)) != 0) {
+                header.append("#define ").append(DEFINES[i]).append('\n');
+            }
+        }
+        return header.append(mConstants);
+    }
+}
@@ -1,7 +1,148 @@
 package com.learnopengles.sandbox.common;
 
+import java.nio.FloatBuffer;
+
 public class ShapeBuilder 
 {
+	/** Vertices in one cube from generateCubeData: 6 sides, 2 triangles per side. */
+	public static final int CUBE_VERTICES = 36;
+
+	/**
+	 * Which of the 8 points each vertex of the cube is, in the order generateCubeData
+	 * lays them out - per face 1, 3, 2, 3, 4, 2 of its top left, top right, bottom left
+	 * and bottom right points.
+	 */
+	private static final int[] CUBE_POINTS =
+	{
+			0, 2, 1, 2, 3, 1,	// front: 1, 2, 3, 4
+			1, 3, 5, 3, 7, 5,	// right: 2, 6, 4, 8
+			5, 7, 4, 7, 6, 4,	// back: 6, 5, 8, 7
+			4, 6, 0, 6, 2, 0,	// left: 5, 1, 7, 3
+			4, 0, 5, 0, 1, 5,	// top: 5, 6, 1, 2
+			7, 3, 6, 3, 2, 6	// bottom: 8, 7, 4, 3
+	};
+
+	/** Distinct vertices in one cube from generateIndexedCubeData: 4 per side. */
+	public static final int CUBE_UNIQUE_VERTICES = 24;
+
+	/** Its top left, top right, bottom left and bottom right point, for each face in turn. */
+	private static final int[] CUBE_FACE_POINTS =
+	{
+			0, 1, 2, 3,		// front
+			1, 5, 3, 7,		// right
+			5, 4, 7, 6,		// back
+			4, 0, 6, 2,		// left
+			4, 5, 0, 1,		// top
+			7, 6, 3, 2		// bottom
+	};
+
+	/** Where each of a face's 4 points first appears among its 6 vertices in generateCubeData. */
+	private static final int[] FACE_VERTEX_OF_POINT = {0, 2, 1, 4};
+
+	/** The triangles of one face of 4 vertices, wound as generateCubeData winds them. */
+	private static final int[] FACE_INDICES = {0, 2, 1, 2, 3, 1};
+
+	/**
+	 * As generateCubeData, but writes the cube into dest rather than a new array, and
+	 * takes the eight points packed one after another in a single array - so a caller
+	 * building many cubes can reuse both.
+	 *
+	 * @param points Points 1 to 8 as for generateCubeData, elementsPerPoint floats each.
+	 * @param offset Where the first vertex goes.
+	 * @param stride Floats from one vertex to the next; elementsPerPoint if the cube
+	 *               is all there is, more to leave room for other attributes.
+	 * @return The offset just after the last vertex's elements.
+	 */
+	public static int generateCubeData(float[] points, int elementsPerPoint, float[] dest, int offset, int stride)
+	{
+		for (int v = 0; v < CUBE_VERTICES; v++)
+		{
+			System.arraycopy(points, CUBE_POINTS[v] * elementsPerPoint, dest, offset + v * stride, elementsPerPoint);
+		}
+		return offset + (CUBE_VERTICES - 1) * stride + elementsPerPoint;
+	}
+
+	/**
+	 * As above, into a buffer - absolute puts, so the buffer's position is left alone
+	 * and threads may fill separate parts of the same buffer.
+	 */
+	public static int generateCubeData(float[] points, int elementsPerPoint, FloatBuffer dest, int offset, int stride)
+	{
+		for (int v = 0; v < CUBE_VERTICES; v++)
+		{
+			final int point = CUBE_POINTS[v] * elementsPerPoint;
+			final int vertex = offset + v * stride;
+			for (int i = 0; i < elementsPerPoint; i++)
+			{
+				dest.put(vertex + i, points[point + i]);
+			}
+		}
+		return offset + (CUBE_VERTICES - 1) * stride + elementsPerPoint;
+	}
+
+	/**
+	 * A cube as 24 vertices for indexed drawing - each face's top left, top right,
+	 * bottom left and bottom right - where generateCubeData repeats two of each face's
+	 * four. Draw it with the indices from generateCubeIndices.
+	 *
+	 * @see #generateCubeData(float[], int, FloatBuffer, int, int)
+	 */
+	public static int generateIndexedCubeData(float[] points, int elementsPerPoint, FloatBuffer dest, int offset, int stride)
+	{
+		for (int v = 0; v < CUBE_UNIQUE_VERTICES; v++)
+		{
+			final int point = CUBE_FACE_POINTS[v] * elementsPerPoint;
+			final int vertex = offset + v * stride;
+			for (int i = 0; i < elementsPerPoint; i++)
+			{
+				dest.put(vertex + i, points[point + i]);
+			}
+		}
+		return offset + (CUBE_UNIQUE_VERTICES - 1) * stride + elementsPerPoint;
+	}
+
+	/**
+	 * Per vertex data laid out for generateCubeData - one of a face's normals, say -
+	 * cut down to the 24 vertices of generateIndexedCubeData.
+	 */
+	public static float[] toIndexedCubeData(float[] cubeData, int elementsPerVertex)
+	{
+		final float[] indexed = new float[CUBE_UNIQUE_VERTICES * elementsPerVertex];
+		for (int v = 0; v < CUBE_UNIQUE_VERTICES; v++)
+		{
+			final int from = ((v / 4) * 6 + FACE_VERTEX_OF_POINT[v % 4]) * elementsPerVertex;
+			System.arraycopy(cubeData, from, indexed, v * elementsPerVertex, elementsPerVertex);
+		}
+		return indexed;
+	}
+
+	/**
+	 * Indices for cubes from generateIndexedCubeData laid one after another, 36 per cube.
+	 * Unsigned shorts, so no more than 65536 / 24 cubes.
+	 */
+	public static short[] generateCubeIndices(int cubes)
+	{
+		if (cubes * CUBE_UNIQUE_VERTICES > 65536)
+		{
+			throw new IllegalArgumentException(cubes + " cubes is too many for 16 bit indices");
+		}
+
+		final short[] indices = new short[cubes * CUBE_VERTICES];
+		int offset = 0;
+		for (int cube = 0; cube < cubes; cube++)
+		{
+			for (int face = 0; face < 6; face++)
+			{
+				final int base = cube * CUBE_UNIQUE_VERTICES + face * 4;
+				for (int index : FACE_INDICES)
+				{
+					indices[offset++] = (short) (base + index);
+				}
+			}
+		}
+		return indices;
+	}
+
 	public static float[] generateCubeData(
 			float[] point1,
 			float[] point2,
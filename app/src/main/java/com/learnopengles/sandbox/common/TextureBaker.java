@@ -0,0 +1,159 @@
+package com.learnopengles.sandbox.common;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Turns an image into a Ktx with its whole mip chain, ahead of time, so the app
+ * needn't decode a PNG or JPEG and then glGenerateMipmap on the device.
+ * <p/>
+ * Each level is a 2x2 box filter of the one before, averaged in linear light: the
+ * pixels are sRGB, and averaging the stored values directly darkens every level
+ * (black and white average to 128, which displays as about 22% grey rather than
+ * half). Colour is also weighted by alpha, so fully transparent pixels don't bleed
+ * their colour into the edge of what is visible.
+ * <p/>
+ * Opaque images are stored as GL_RGB, the rest as GL_RGBA premultiplied - what
+ * GLUtils.texImage2D would have uploaded from a Bitmap.
+ * <p/>
+ * Plain Java, no Android: run from the build (see buildSrc) on pixels from ImageIO.
+ */
+public class TextureBaker {
+
+    private static final float[] TO_LINEAR = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            final float c = i / 255f;
+            TO_LINEAR[i] = c <= 0.04045f ? c / 12.92f : (float) Math.pow((c + 0.055f) / 1.055f, 2.4f);
+        }
+    }
+
+    private TextureBaker() {
+    }
+
+    /**
+     * @param argb Packed non-premultiplied sRGB pixels, rows top to bottom, as from
+     *             BufferedImage.getRGB or Bitmap.getPixels.
+     */
+    public static Ktx bake(int[] argb, int width, int height) {
+        final boolean alpha = !isOpaque(argb);
+
+        final ByteBuffer[] levels = new ByteBuffer[levelCount(width, height)];
+        int[] level = argb;
+        int levelWidth = width;
+        int levelHeight = height;
+        for (int i = 0; i < levels.length; i++) {
+            if (i > 0) {
+                level = downsample(level, levelWidth, levelHeight);
+                levelWidth = Math.max(1, levelWidth / 2);
+                levelHeight = Math.max(1, levelHeight / 2);
+            }
+            levels[i] = pack(level, levelWidth, levelHeight, alpha);
+        }
+
+        final int format = alpha ? Ktx.GL_RGBA : Ktx.GL_RGB;
+        return new Ktx(Ktx.GL_UNSIGNED_BYTE, 1, format, format, format, width, height, levels);
+    }
+
+    /**
+     * Levels from width x height down to 1x1.
+     */
+    public static int levelCount(int width, int height) {
+        int count = 1;
+        for (int size = Math.max(width, height); size > 1; size >>= 1) {
+            count++;
+        }
+        return count;
+    }
+
+    public static boolean isOpaque(int[] argb) {
+        for (int pixel : argb) {
+            if ((pixel >>> 24) != 0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Half the size in each direction, but not below 1; an odd last row or column is
+     * dropped.
+     */
+    public static int[] downsample(int[] argb, int width, int height) {
+        final int halfWidth = Math.max(1, width / 2);
+        final int halfHeight = Math.max(1, height / 2);
+        final int[] half = new int[halfWidth * halfHeight];
+
+        for (int y = 0; y < halfHeight; y++) {
+            final int y0 = Math.min(2 * y, height - 1) * width;
+            final int y1 = Math.min(2 * y + 1, height - 1) * width;
+            for (int x = 0; x < halfWidth; x++) {
+                final int x0 = Math.min(2 * x, width - 1);
+                final int x1 = Math.min(2 * x + 1, width - 1);
+                half[y * halfWidth + x] = average(argb[y0 + x0], argb[y0 + x1], argb[y1 + x0], argb[y1 + x1]);
+            }
+        }
+        return half;
+    }
+
+    private static int average(int p0, int p1, int p2, int p3) {
+        final int[] pixels = {p0, p1, p2, p3};
+        float alpha = 0f;
+        float r = 0f;
+        float g = 0f;
+        float b = 0f;
+        for (int pixel : pixels) {
+            final float a = (pixel >>> 24) / 255f;
+            alpha += a;
+            r += a * TO_LINEAR[(pixel >> 16) & 0xff];
+            g += a * TO_LINEAR[(pixel >> 8) & 0xff];
+            b += a * TO_LINEAR[pixel & 0xff];
+        }
+        if (alpha == 0f) {
+            return 0;
+        }
+        return Math.round(alpha / pixels.length * 255f) << 24
+                | toSrgb(r / alpha) << 16 | toSrgb(g / alpha) << 8 | toSrgb(b / alpha);
+    }
+
+    public static float toLinear(int srgb) {
+        return TO_LINEAR[srgb];
+    }
+
+    public static int toSrgb(float linear) {
+        final float c = linear <= 0.0031308f ? linear * 12.92f : 1.055f * (float) Math.pow(linear, 1 / 2.4f) - 0.055f;
+        return Math.max(0, Math.min(255, Math.round(c * 255f)));
+    }
+
+    /**
+     * RGB, or premultiplied RGBA, with each row padded to 4 bytes.
+     */
+    public static ByteBuffer pack(int[] argb, int width, int height, boolean alpha) {
+        final int bytesPerPixel = alpha ? 4 : 3;
+        final int rowBytes = Ktx.rowBytes(width, bytesPerPixel);
+        final ByteBuffer data = ByteBuffer.allocateDirect(rowBytes * height).order(ByteOrder.nativeOrder());
+
+        for (int y = 0; y < height; y++) {
+            data.position(y * rowBytes);
+            for (int x = 0; x < width; x++) {
+                final int pixel = argb[y * width + x];
+                final int a = pixel >>> 24;
+                int r = (pixel >> 16) & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = pixel & 0xff;
+                if (alpha) {
+                    r = (r * a + 127) / 255;
+                    g = (g * a + 127) / 255;
+                    b = (b * a + 127) / 255;
+                }
+                data.put((byte) r).put((byte) g).put((byte) b);
+                if (alpha) {
+                    data.put((byte) a);
+                }
+            }
+        }
+        data.position(0);
+        return data;
+    }
+}
@@ -3,65 +3,142 @@ package com.learnopengles.sandbox.common;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.opengl.GLES20;
-import android.opengl.GLUtils;
 import android.os.Build;
 
-public class TextureHelper {
-    public static int loadTexture(final Context context, final int resourceId) {
-        final int[] textureHandle = new int[1];
-
-        // debug
-        boolean isPremultiplied;
-        Bitmap.Config config;
-        int width;
-        int height;
-        boolean hasAlpha;
-        // end debug
-
-        GLES20.glGenTextures(1, textureHandle, 0);
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 
-        if (textureHandle[0] != 0) {
-            final BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inScaled = false;    // No pre-scaling
-//            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-//                options.inPremultiplied = false;
-//            }
+public class TextureHelper {
 
-            // Read in the resource
-            final Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceId, options);
+    /*
+     * decode buffers handed back after an upload, for the next decode to write into
+     * rather than allocating its own (BitmapFactory.Options.inBitmap)
+     */
+    private static final int MAX_REUSABLE = 4;
+    private static final ArrayList<Bitmap> sReusable = new ArrayList<Bitmap>();
+    private static int sReused;
 
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                isPremultiplied = bitmap.isPremultiplied();
-                config = bitmap.getConfig();
-                width = bitmap.getWidth();
-                height = bitmap.getHeight();
-                hasAlpha = bitmap.hasAlpha();
+    public static byte[] readResource(Context context, int resourceId) throws IOException {
+        return read(context.getResources().openRawResource(resourceId));
+    }
 
-                int foo = width * height;
+    /**
+     * @return All of the stream, which is closed.
+     */
+    public static byte[] read(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
             }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
 
-            // Bind to the texture in OpenGL
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+    /**
+     * Decode an image file into a mutable bitmap, into the memory of one given back
+     * with release() if there's one that fits. Any thread.
+     *
+     * @throws IOException if it can't be decoded
+     */
+    public static Bitmap decode(byte[] file, BitmapFactory.Options options) throws IOException {
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(file, 0, file.length, options);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
 
-            // Set filtering
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+        options.inBitmap = takeReusable(options);
+        Bitmap bitmap = null;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(file, 0, file.length, options);
+        } catch (IllegalArgumentException e) {
+            // the decoder wouldn't write into it after all
+        }
+        if (bitmap == null && options.inBitmap != null) {
+            release(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(file, 0, file.length, options);
+        } else if (options.inBitmap != null) {
+            synchronized (sReusable) {
+                sReused++;
+            }
+        }
+        options.inBitmap = null;
 
-            // Load the bitmap into the bound texture.
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+        if (bitmap == null) {
+            throw new IOException("can't decode image");
+        }
+        return bitmap;
+    }
 
-            int error;
-            error = GLES20.glGetError();
+    /**
+     * Done with a bitmap from decode(): keep it for the next one, or recycle it.
+     */
+    public static void release(Bitmap bitmap) {
+        if (bitmap.isMutable() && !bitmap.isRecycled()) {
+            synchronized (sReusable) {
+                if (sReusable.size() < MAX_REUSABLE) {
+                    sReusable.add(bitmap);
+                    return;
+                }
+            }
+        }
+        bitmap.recycle();
+    }
 
-            // Recycle the bitmap, since its data has been loaded into OpenGL.
-            bitmap.recycle();
+    /**
+     * Let go of the kept bitmaps, once there's nothing more to load for a while -
+     * TextureLoader does when its queue is done.
+     */
+    public static void trimReusable() {
+        synchronized (sReusable) {
+            for (Bitmap bitmap : sReusable) {
+                bitmap.recycle();
+            }
+            sReusable.clear();
         }
+    }
 
-        if (textureHandle[0] == 0) {
-            throw new RuntimeException("Error loading texture.");
+    /**
+     * @return Decodes so far that wrote into a released bitmap.
+     */
+    public static int getReusedCount() {
+        synchronized (sReusable) {
+            return sReused;
         }
+    }
+
+    /*
+     * before KitKat inBitmap needs the same size and config, and no subsampling;
+     * from KitKat anything with enough memory will do
+     */
+    private static Bitmap takeReusable(BitmapFactory.Options options) {
+        final int sampleSize = Math.max(1, options.inSampleSize);
+        final int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        final int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        final Bitmap.Config config = options.inPreferredConfig != null
+                ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        // an image with alpha comes out ARGB_8888 whatever was asked for
+        final int bytes = width * height * 4;
 
-        return textureHandle[0];
+        synchronized (sReusable) {
+            for (int i = 0; i < sReusable.size(); i++) {
+                final Bitmap candidate = sReusable.get(i);
+                final boolean fits = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                        ? candidate.getAllocationByteCount() >= bytes
+                        : sampleSize == 1 && candidate.getWidth() == width && candidate.getHeight() == height
+                        && candidate.getConfig() == config;
+                if (fits) {
+                    return sReusable.remove(i);
+                }
+            }
+        }
+        return null;
     }
 }
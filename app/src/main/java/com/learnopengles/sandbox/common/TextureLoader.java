@@ -0,0 +1,866 @@
+package com.learnopengles.sandbox.common;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.ETC1;
+import android.opengl.ETC1Util;
+import android.opengl.GLES20;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Textures decoded on the WorkerPool and uploaded on the GL thread, instead of
+ * decoding a whole image on the GL thread in the middle of onSurfaceCreated.
+ * <p/>
+ * load() hands back a texture name straight away, holding a 1x1 grey placeholder,
+ * so the renderer can bind it and draw from the first frame. The image is read and
+ * decoded in the background, its mip chain built there too - there's no
+ * glGenerateMipmap afterwards - and uploadPending(), called at the top of
+ * onDrawFrame, puts whatever has finished into its texture.
+ * <p/>
+ * Opaque images are transcoded to ETC1 when the GPU takes it (every ES 2.0 device
+ * should), a quarter of the memory of RGBA and less to upload. Transcoding is slow,
+ * so the compressed chain is kept in the cache directory, keyed by a hash of the
+ * image file, and later runs only read it back. Images with alpha stay RGBA; ETC1
+ * has no alpha channel.
+ * <p/>
+ * Without ETC1 - the GPU lacks it, or setCompressionEnabled(false) - opaque images are
+ * decoded and uploaded as RGB565 instead, half of RGBA; setRgb565Enabled(false) keeps
+ * them RGBA. Decodes go through TextureHelper, which has the decoder write into the
+ * memory of an earlier bitmap where it can rather than allocate a new one.
+ * <p/>
+ * If the build baked the image (assets/textures/NAME.ktx, see bakeTextures in
+ * app/build.gradle) that is read instead: no Bitmap at all, and the mip chain in it
+ * was filtered in linear light rather than by createScaledBitmap. Its RGB levels
+ * still go to ETC1 where the GPU takes it.
+ * <p/>
+ * Each upload is logged with its size, decode and upload times, and once the last
+ * texture is in a summary compares the GPU memory used against plain RGBA, with the
+ * time to the first frame and to the last texture. setAsync(false) decodes inside
+ * load() as before, and setCompressionEnabled(false) keeps everything RGBA, to get
+ * the same numbers for the old path. getReports() has the bytes of each texture.
+ * <p/>
+ * stream() is load() for large textures. The scene draws with a small version of the
+ * image - a mip level no bigger than PREVIEW_SIZE, from a quick subsampled decode when
+ * there's no baked file - as soon as there is one, and the texture then sharpens a
+ * level at a time, with no more than the stream budget uploaded in any one frame.
+ * ES 2.0 can't limit sampling to the levels present (there's no GL_TEXTURE_BASE_LEVEL),
+ * so each step redefines the texture one size up with all the levels under it,
+ * about 4/3 of the new level's bytes; a step larger than the budget gets a frame to
+ * itself. The log has when each streamed texture first showed and when it reached
+ * full quality.
+ * <p/>
+ * Textures belong to the context: build a new loader in onSurfaceCreated. load(),
+ * stream() and uploadPending() on the GL thread only.
+ */
+public class TextureLoader {
+
+    private static final String LOG_TAG = "TextureLoader";
+    private static final String DIRECTORY = "textures";
+    /* in the assets - see bakeTextures in app/build.gradle */
+    private static final String BAKED_DIRECTORY = "textures";
+
+    /* part of the cache key; bump it when the file layout or the mip filter changes */
+    private static final int CACHE_VERSION = 1;
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /** largest side of the first version of a streamed texture */
+    public static final int PREVIEW_SIZE = 32;
+
+    private static boolean sAsync = true;
+    private static boolean sCompressionEnabled = true;
+    private static boolean sRgb565Enabled = true;
+    private static int sStreamBudget = 128 * 1024;
+
+    private final Context mContext;
+    private final String mName;
+    private final File mDirectory;
+    private final boolean mCompress;
+    private final boolean mRgb565;
+    private final long mCreated = SystemClock.uptimeMillis();
+
+    private final ConcurrentLinkedQueue<Decoded> mDecoded = new ConcurrentLinkedQueue<Decoded>();
+    private int mPending;
+
+    /* streamed textures still short of full quality */
+    private final ArrayList<Decoded> mStreaming = new ArrayList<Decoded>();
+
+    private final ArrayList<Report> mReports = new ArrayList<Report>();
+
+    /*
+     * statistics, logged when the last texture is in
+     */
+    private int mTextures;
+    private int mCompressed;
+    private int mRgb565Count;
+    private int mBaked;
+    private int mFromCache;
+    private long mGpuBytes;
+    private long mRgbaBytes;
+    private long mDecodeNanos;
+    private long mUploadNanos;
+    private long mFirstFrame = -1;
+    private long mLastPreview = -1;
+    private long mLongestFrameNanos;
+    private boolean mLogged;
+
+    /**
+     * One mip level, ready for glTexImage2D or glCompressedTexImage2D.
+     */
+    private static class Level {
+        final int width;
+        final int height;
+        final ByteBuffer data;
+
+        Level(int width, int height, ByteBuffer data) {
+            this.width = width;
+            this.height = height;
+            this.data = data;
+        }
+    }
+
+    /**
+     * What one texture takes on the GPU, against the same levels as RGBA.
+     */
+    public static class Report {
+        public final String name;
+        public final int width;
+        public final int height;
+        public final String format;
+        public final int levels;
+        public final long bytes;
+        public final long rgbaBytes;
+
+        Report(String name, int width, int height, String format, int levels, long bytes, long rgbaBytes) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.levels = levels;
+            this.bytes = bytes;
+            this.rgbaBytes = rgbaBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %dx%d %s, %d levels, %d KB (%d KB as RGBA)",
+                    name, width, height, format, levels, bytes / 1024, rgbaBytes / 1024);
+        }
+    }
+
+    /*
+     * what a worker hands back to the GL thread
+     */
+    private static class Decoded {
+        final int handle;
+        final String name;
+        final boolean mipmaps;
+        final boolean stream;
+        Level[] levels;
+        /* glTexImage2D format and type, or a compressed internal format and type 0 */
+        int format;
+        int type;
+        /* of the rows in the level data */
+        int alignment = 4;
+        boolean baked;
+        boolean fromCache;
+        long decodeNanos;
+        Exception error;
+
+        /*
+         * streaming, GL thread only: the finest level uploaded so far, and when the
+         * texture first showed something other than the placeholder
+         */
+        int base;
+        long previewAt = -1;
+        long uploadNanos;
+
+        /* set on the quick subsampled version sent ahead of the full decode */
+        Decoded full;
+
+        Decoded(int handle, String name, boolean mipmaps, boolean stream) {
+            this.handle = handle;
+            this.name = name;
+            this.mipmaps = mipmaps;
+            this.stream = stream;
+        }
+    }
+
+    public static void setAsync(boolean async) {
+        sAsync = async;
+    }
+
+    public static boolean isAsync() {
+        return sAsync;
+    }
+
+    public static void setCompressionEnabled(boolean enabled) {
+        sCompressionEnabled = enabled;
+    }
+
+    public static boolean isCompressionEnabled() {
+        return sCompressionEnabled;
+    }
+
+    /**
+     * Opaque images that aren't made ETC1 go up as 16 bit RGB565 rather than 24 or
+     * 32 bit, unless this is off.
+     */
+    public static void setRgb565Enabled(boolean enabled) {
+        sRgb565Enabled = enabled;
+    }
+
+    public static boolean isRgb565Enabled() {
+        return sRgb565Enabled;
+    }
+
+    /**
+     * Bytes the streamed textures may upload between them in one frame.
+     */
+    public static void setStreamBudget(int bytes) {
+        sStreamBudget = bytes;
+    }
+
+    public static int getStreamBudget() {
+        return sStreamBudget;
+    }
+
+    /**
+     * GL thread - asks the context whether it takes ETC1.
+     */
+    public TextureLoader(final Context context) {
+        mContext = context;
+        mName = context.getClass().getSimpleName();
+        mCompress = sCompressionEnabled && ETC1Util.isETC1Supported();
+        mRgb565 = sRgb565Enabled && !mCompress;
+
+        File directory = null;
+        final File cacheDir = context.getCacheDir();
+        if (cacheDir != null) {
+            directory = new File(cacheDir, DIRECTORY);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                directory = null;
+            }
+        }
+        mDirectory = directory;
+    }
+
+    /**
+     * @param resourceId A drawable, read as is - no density scaling.
+     * @param mipmaps    Build and upload the full mip chain.
+     * @return The texture name. It holds a placeholder until uploadPending() puts the
+     * image in, unless loading is synchronous.
+     */
+    public int load(int resourceId, boolean mipmaps) {
+        return load(resourceId, mipmaps, false);
+    }
+
+    /**
+     * As load(), but shows a small version first and brings in the rest over
+     * several frames.
+     */
+    public int stream(int resourceId, boolean mipmaps) {
+        return load(resourceId, mipmaps, true);
+    }
+
+    private int load(final int resourceId, final boolean mipmaps, final boolean stream) {
+        final int[] textureHandle = new int[1];
+        GL.glGenTextures(1, textureHandle, 0);
+        if (textureHandle[0] == 0) {
+            throw new RuntimeException("Error loading texture.");
+        }
+
+        // a single level is a complete mip chain, so this samples with any filter
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+        final ByteBuffer grey = ByteBuffer.allocateDirect(BYTES_PER_PIXEL).order(ByteOrder.nativeOrder());
+        grey.put(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0xff}).position(0);
+        GL.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, 1, 1, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, grey);
+        GLDebug.check("TextureLoader.load placeholder");
+
+        final Decoded decoded = new Decoded(textureHandle[0],
+                mContext.getResources().getResourceEntryName(resourceId), mipmaps, stream);
+        mPending++;
+        if (sAsync) {
+            WorkerPool.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    decode(decoded, resourceId);
+                    mDecoded.add(decoded);
+                }
+            });
+        } else {
+            decode(decoded, resourceId);
+            mDecoded.add(decoded);
+            receive();
+        }
+        return textureHandle[0];
+    }
+
+    /**
+     * Upload everything decoded since the last call. Leaves the last uploaded texture
+     * bound to GL_TEXTURE_2D.
+     *
+     * @return true if anything was uploaded
+     */
+    public boolean uploadPending() {
+        if (mFirstFrame < 0) {
+            mFirstFrame = SystemClock.uptimeMillis() - mCreated;
+        }
+        final long start = System.nanoTime();
+        boolean uploaded = receive();
+
+        // sharpen streamed textures within the budget, the cheapest step first so they all
+        // come up together; at least one step a frame
+        int spent = 0;
+        while (!mStreaming.isEmpty()) {
+            Decoded next = null;
+            int bytes = Integer.MAX_VALUE;
+            for (Decoded decoded : mStreaming) {
+                final int stepBytes = stepBytes(decoded);
+                if (stepBytes < bytes) {
+                    next = decoded;
+                    bytes = stepBytes;
+                }
+            }
+            if (spent > 0 && spent + bytes > sStreamBudget) {
+                break;
+            }
+            step(next);
+            spent += bytes;
+            uploaded = true;
+            if (next.base == 0) {
+                mStreaming.remove(next);
+                complete(next);
+            }
+        }
+        mLongestFrameNanos = Math.max(mLongestFrameNanos, System.nanoTime() - start);
+
+        if (mPending == 0 && !mLogged) {
+            logStats();
+            mLogged = true;
+            // nothing left to decode into them
+            TextureHelper.trimReusable();
+        }
+        return uploaded;
+    }
+
+    /**
+     * @return true once every texture asked for is uploaded in full
+     */
+    public boolean isComplete() {
+        return mPending == 0;
+    }
+
+    /*
+     * GL thread: take in what the workers have finished. A streamed texture gets its
+     * small levels now and joins mStreaming; anything else goes up whole.
+     */
+    private boolean receive() {
+        boolean uploaded = false;
+        Decoded decoded;
+        while ((decoded = mDecoded.poll()) != null) {
+            if (decoded.error != null) {
+                throw new RuntimeException("Error loading texture " + decoded.name, decoded.error);
+            }
+            uploaded = true;
+
+            if (decoded.full != null) {
+                // a stand-in until the full decode arrives
+                if (decoded.full.previewAt < 0) {
+                    uploadLevels(decoded, 0);
+                    preview(decoded.full);
+                }
+            } else if (decoded.stream) {
+                decoded.base = previewLevel(decoded);
+                uploadLevels(decoded, decoded.base);
+                preview(decoded);
+                if (decoded.base == 0) {
+                    complete(decoded);
+                } else {
+                    mStreaming.add(decoded);
+                }
+            } else {
+                uploadLevels(decoded, 0);
+                complete(decoded);
+            }
+        }
+        return uploaded;
+    }
+
+    private void preview(Decoded decoded) {
+        if (decoded.previewAt < 0) {
+            decoded.previewAt = SystemClock.uptimeMillis() - mCreated;
+            mLastPreview = Math.max(mLastPreview, decoded.previewAt);
+        }
+    }
+
+    /*
+     * the finest level no bigger than PREVIEW_SIZE
+     */
+    private static int previewLevel(Decoded decoded) {
+        int level = 0;
+        while (level < decoded.levels.length - 1
+                && Math.max(decoded.levels[level].width, decoded.levels[level].height) > PREVIEW_SIZE) {
+            level++;
+        }
+        return level;
+    }
+
+    private static int stepBytes(Decoded decoded) {
+        final int last = decoded.mipmaps ? decoded.levels.length : decoded.base;
+        int bytes = 0;
+        for (int i = decoded.base - 1; i < last; i++) {
+            bytes += decoded.levels[i].data.capacity();
+        }
+        return bytes;
+    }
+
+    private void step(Decoded decoded) {
+        decoded.base--;
+        uploadLevels(decoded, decoded.base);
+    }
+
+    /*
+     * make levels[base] level 0 of the texture, and the ones under it the rest of the
+     * chain if it has one
+     */
+    private void uploadLevels(Decoded decoded, int base) {
+        final long start = System.nanoTime();
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, decoded.handle);
+        if (decoded.alignment != 4) {
+            GL.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, decoded.alignment);
+        }
+        final int last = decoded.mipmaps ? decoded.levels.length : base + 1;
+        for (int i = base; i < last; i++) {
+            final Level level = decoded.levels[i];
+            if (decoded.type == 0) {
+                GL.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, i - base, decoded.format,
+                        level.width, level.height, 0, level.data.capacity(), level.data);
+            } else {
+                GL.glTexImage2D(GLES20.GL_TEXTURE_2D, i - base, decoded.format, level.width, level.height, 0,
+                        decoded.format, decoded.type, level.data);
+            }
+        }
+        if (decoded.alignment != 4) {
+            GL.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+        }
+        GLDebug.check("TextureLoader.uploadLevels " + decoded.name);
+        decoded.uploadNanos += System.nanoTime() - start;
+    }
+
+    /*
+     * the texture is at full quality
+     */
+    private void complete(Decoded decoded) {
+        final int last = decoded.mipmaps ? decoded.levels.length : 1;
+        long bytes = 0;
+        long rgbaBytes = 0;
+        for (int i = 0; i < last; i++) {
+            final Level level = decoded.levels[i];
+            bytes += level.data.capacity();
+            rgbaBytes += level.width * level.height * BYTES_PER_PIXEL;
+        }
+
+        mTextures++;
+        mPending--;
+        mCompressed += decoded.type == 0 ? 1 : 0;
+        mRgb565Count += decoded.type == GLES20.GL_UNSIGNED_SHORT_5_6_5 ? 1 : 0;
+        mBaked += decoded.baked ? 1 : 0;
+        mFromCache += decoded.fromCache ? 1 : 0;
+        mGpuBytes += bytes;
+        mRgbaBytes += rgbaBytes;
+        mDecodeNanos += decoded.decodeNanos;
+        mUploadNanos += decoded.uploadNanos;
+
+        final Level base = decoded.levels[0];
+        mReports.add(new Report(decoded.name, base.width, base.height, formatName(decoded.format, decoded.type),
+                last, bytes, rgbaBytes));
+        final String streamed = decoded.stream
+                ? String.format(", shown at %d ms, full at %d ms", decoded.previewAt, SystemClock.uptimeMillis() - mCreated)
+                : "";
+        Log.w(LOG_TAG, String.format("%s %dx%d %s, %d levels, %d KB: %s %.2f ms%s, upload %.2f ms%s",
+                decoded.name, base.width, base.height, formatName(decoded.format, decoded.type),
+                last, bytes / 1024, decoded.baked ? "read KTX" : "decode",
+                decoded.decodeNanos / 1e6f, decoded.fromCache ? " (cached)" : "",
+                decoded.uploadNanos / 1e6f, streamed));
+    }
+
+    private void logStats() {
+        Log.w(LOG_TAG, String.format("%s: %d textures (%d baked, %d ETC1, %d cached, %d RGB565, "
+                        + "%d decodes into a reused bitmap) %d KB, %d KB as RGBA; "
+                        + "decode %.2f ms, upload %.2f ms, longest frame of uploads %.2f ms; "
+                        + "first frame %d ms, streamed textures shown %d ms, textures complete %d ms (%s)",
+                mName, mTextures, mBaked, mCompressed, mFromCache, mRgb565Count,
+                TextureHelper.getReusedCount(), mGpuBytes / 1024, mRgbaBytes / 1024,
+                mDecodeNanos / 1e6f, mUploadNanos / 1e6f, mLongestFrameNanos / 1e6f, mFirstFrame,
+                mLastPreview, SystemClock.uptimeMillis() - mCreated, sAsync ? "async" : "sync"));
+    }
+
+    /**
+     * @return One for each texture at full quality so far, in the order they got there.
+     */
+    public ArrayList<Report> getReports() {
+        return new ArrayList<Report>(mReports);
+    }
+
+    private static String formatName(int format, int type) {
+        if (type == 0) {
+            return format == ETC1.ETC1_RGB8_OES ? "ETC1" : "compressed 0x" + Integer.toHexString(format);
+        }
+        if (type == GLES20.GL_UNSIGNED_BYTE && format == GLES20.GL_RGB) {
+            return "RGB";
+        }
+        if (type == GLES20.GL_UNSIGNED_BYTE && format == GLES20.GL_RGBA) {
+            return "RGBA";
+        }
+        if (type == GLES20.GL_UNSIGNED_SHORT_5_6_5) {
+            return "RGB565";
+        }
+        return "0x" + Integer.toHexString(format) + "/0x" + Integer.toHexString(type);
+    }
+
+    /*
+     * worker thread, or the GL thread when loading synchronously - no GL calls here
+     */
+    private void decode(Decoded decoded, int resourceId) {
+        // streaming steps up through the levels, so it needs them even for a texture without mipmaps
+        final boolean mipmaps = decoded.mipmaps || decoded.stream;
+        final long start = System.nanoTime();
+        try {
+            byte[] file = readAsset(BAKED_DIRECTORY + "/" + decoded.name + ".ktx");
+            decoded.baked = file != null;
+            if (file == null) {
+                file = TextureHelper.readResource(mContext, resourceId);
+            }
+            final File cached = mCompress && mDirectory != null
+                    ? new File(mDirectory, key(file, mipmaps)) : null;
+
+            if (cached != null && cached.isFile()) {
+                decoded.levels = readCompressed(cached);
+                if (decoded.levels != null) {
+                    decoded.format = ETC1.ETC1_RGB8_OES;
+                    decoded.fromCache = true;
+                    return;
+                }
+                // stale or corrupt - transcode it again below
+                cached.delete();
+            }
+
+            final boolean transcoded = decoded.baked
+                    ? fromKtx(decoded, Ktx.read(new ByteArrayInputStream(file)), mipmaps)
+                    : fromBitmap(decoded, file, mipmaps);
+            if (transcoded && cached != null) {
+                writeCompressed(decoded.levels, cached);
+            }
+        } catch (IOException e) {
+            decoded.error = e;
+        } catch (RuntimeException e) {
+            decoded.error = e;
+        } finally {
+            decoded.decodeNanos = System.nanoTime() - start;
+        }
+    }
+
+    /*
+     * the mip chain is in the file already - take it as it is, or transcode it to ETC1
+     *
+     * returns true if it was transcoded
+     */
+    private boolean fromKtx(Decoded decoded, Ktx ktx, boolean mipmaps) {
+        final boolean rgb = !ktx.isCompressed()
+                && ktx.getGlFormat() == Ktx.GL_RGB && ktx.getGlType() == Ktx.GL_UNSIGNED_BYTE;
+        final boolean transcode = mCompress && rgb;
+        final boolean rgb565 = mRgb565 && rgb;
+
+        decoded.levels = new Level[mipmaps ? ktx.getLevelCount() : 1];
+        for (int i = 0; i < decoded.levels.length; i++) {
+            final int width = ktx.getWidth(i);
+            final int height = ktx.getHeight(i);
+            if (transcode) {
+                decoded.levels[i] = compress(ktx.getLevel(i), width, height, Ktx.rowBytes(width, 3));
+            } else if (rgb565) {
+                decoded.levels[i] = toRgb565(ktx.getLevel(i), width, height, Ktx.rowBytes(width, 3));
+            } else {
+                decoded.levels[i] = new Level(width, height, ktx.getLevel(i));
+            }
+        }
+
+        if (transcode) {
+            decoded.format = ETC1.ETC1_RGB8_OES;
+            decoded.type = 0;
+        } else if (rgb565) {
+            decoded.format = GLES20.GL_RGB;
+            decoded.type = GLES20.GL_UNSIGNED_SHORT_5_6_5;
+            decoded.alignment = 2;
+        } else if (ktx.isCompressed()) {
+            decoded.format = ktx.getGlInternalFormat();
+            decoded.type = 0;
+        } else {
+            decoded.format = ktx.getGlFormat();
+            decoded.type = ktx.getGlType();
+        }
+        return transcode;
+    }
+
+    /*
+     * returns true if it was transcoded to ETC1
+     */
+    private boolean fromBitmap(Decoded decoded, byte[] file, boolean mipmaps) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;    // No pre-scaling
+        // what ETC1 is made from should have all the precision there is; without ETC1,
+        // opaque images need no alpha channel - the decoder ignores RGB_565 for the others
+        options.inPreferredConfig = mRgb565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        if (decoded.stream) {
+            sendPreview(decoded, file, options);
+        }
+
+        return fromBitmap(decoded, TextureHelper.decode(file, options), mipmaps);
+    }
+
+    /*
+     * sets the levels and their format; returns true if they were transcoded to ETC1
+     */
+    private boolean fromBitmap(Decoded decoded, Bitmap bitmap, boolean mipmaps) {
+        final boolean rgb565 = bitmap.getConfig() == Bitmap.Config.RGB_565;
+        final boolean compress = mCompress && !rgb565 && !bitmap.hasAlpha();
+        decoded.levels = buildLevels(bitmap, mipmaps, compress);
+        if (compress) {
+            decoded.format = ETC1.ETC1_RGB8_OES;
+            decoded.type = 0;
+        } else if (rgb565) {
+            decoded.format = GLES20.GL_RGB;
+            decoded.type = GLES20.GL_UNSIGNED_SHORT_5_6_5;
+            decoded.alignment = 2;
+        } else {
+            decoded.format = GLES20.GL_RGBA;
+            decoded.type = GLES20.GL_UNSIGNED_BYTE;
+        }
+        return compress;
+    }
+
+    /*
+     * a subsampled decode is much quicker than the full one - send it ahead so the
+     * texture shows something while the rest is decoded
+     */
+    private void sendPreview(Decoded decoded, byte[] file, BitmapFactory.Options options) {
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(file, 0, file.length, options);
+        options.inJustDecodeBounds = false;
+
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / sampleSize > PREVIEW_SIZE) {
+            sampleSize *= 2;
+        }
+        if (sampleSize == 1) {
+            // already small; the full decode is as quick
+            return;
+        }
+
+        options.inSampleSize = sampleSize;
+        final Bitmap bitmap;
+        try {
+            bitmap = TextureHelper.decode(file, options);
+        } catch (IOException e) {
+            // the full decode will report it
+            return;
+        } finally {
+            options.inSampleSize = 1;
+        }
+
+        final Decoded preview = new Decoded(decoded.handle, decoded.name, decoded.mipmaps, false);
+        fromBitmap(preview, bitmap, decoded.mipmaps);
+        preview.full = decoded;
+        mDecoded.add(preview);
+    }
+
+    /*
+     * null if the build baked no such file
+     */
+    private byte[] readAsset(String path) throws IOException {
+        final InputStream in;
+        try {
+            in = mContext.getAssets().open(path);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        return TextureHelper.read(in);
+    }
+
+    /*
+     * each level is a filtered half of the one before, down to 1x1; gives the bitmap
+     * back to TextureHelper
+     */
+    private static Level[] buildLevels(final Bitmap decoded, boolean mipmaps, boolean compress) {
+        Bitmap bitmap = decoded;
+        int count = 1;
+        if (mipmaps) {
+            for (int size = Math.max(bitmap.getWidth(), bitmap.getHeight()); size > 1; size >>= 1) {
+                count++;
+            }
+        }
+
+        final Level[] levels = new Level[count];
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                final Bitmap smaller = Bitmap.createScaledBitmap(bitmap,
+                        Math.max(1, bitmap.getWidth() / 2), Math.max(1, bitmap.getHeight() / 2), true);
+                if (bitmap != decoded) {
+                    bitmap.recycle();
+                }
+                bitmap = smaller;
+            }
+            levels[i] = compress ? compress(bitmap) : pixels(bitmap);
+        }
+        if (bitmap != decoded) {
+            bitmap.recycle();
+        }
+        TextureHelper.release(decoded);
+        return levels;
+    }
+
+    /*
+     * RGBA premultiplied, or RGB565 - what GLUtils.texImage2D would have uploaded
+     */
+    private static Level pixels(Bitmap bitmap) {
+        final ByteBuffer data = ByteBuffer.allocateDirect(bitmap.getRowBytes() * bitmap.getHeight())
+                .order(ByteOrder.nativeOrder());
+        bitmap.copyPixelsToBuffer(data);
+        data.position(0);
+        return new Level(bitmap.getWidth(), bitmap.getHeight(), data);
+    }
+
+    private static Level compress(Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] argb = new int[width * height];
+        bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+
+        // the encoder takes packed RGB
+        final ByteBuffer rgb = ByteBuffer.allocateDirect(width * height * 3).order(ByteOrder.nativeOrder());
+        for (int pixel : argb) {
+            rgb.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel);
+        }
+        rgb.position(0);
+        return compress(rgb, width, height, width * 3);
+    }
+
+    /*
+     * rounded to the nearest of 32 or 64 steps, rows not padded
+     */
+    private static Level toRgb565(ByteBuffer rgb, int width, int height, int stride) {
+        final ByteBuffer data = ByteBuffer.allocateDirect(width * height * 2).order(ByteOrder.nativeOrder());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int i = y * stride + x * 3;
+                final int r = ((rgb.get(i) & 0xff) * 31 + 127) / 255;
+                final int g = ((rgb.get(i + 1) & 0xff) * 63 + 127) / 255;
+                final int b = ((rgb.get(i + 2) & 0xff) * 31 + 127) / 255;
+                data.putShort((short) (r << 11 | g << 5 | b));
+            }
+        }
+        data.position(0);
+        return new Level(width, height, data);
+    }
+
+    private static Level compress(ByteBuffer rgb, int width, int height, int stride) {
+        final ETC1Util.ETC1Texture texture = ETC1Util.compressTexture(rgb, width, height, 3, stride);
+        return new Level(width, height, texture.getData());
+    }
+
+    /*
+     * level count, then each level as a .pkm - header and data
+     */
+    private static Level[] readCompressed(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            final Level[] levels = new Level[in.readInt()];
+            for (int i = 0; i < levels.length; i++) {
+                final ETC1Util.ETC1Texture texture = ETC1Util.createTexture(in);
+                levels[i] = new Level(texture.getWidth(), texture.getHeight(), texture.getData());
+            }
+            return levels;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "can't read " + file.getName() + ": " + e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private static void writeCompressed(Level[] levels, File file) {
+        // write the whole file under another name first, so a crash can't leave half a chain
+        final File partial = new File(file.getPath() + ".tmp");
+        boolean written = false;
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)));
+            out.writeInt(levels.length);
+            for (Level level : levels) {
+                ETC1Util.writeTexture(new ETC1Util.ETC1Texture(level.width, level.height, level.data), out);
+                level.data.position(0);
+            }
+            written = true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "can't write " + file.getName() + ": " + e);
+        } finally {
+            close(out);
+        }
+        if (!written || !partial.renameTo(file)) {
+            partial.delete();
+        }
+    }
+
+    private static String key(byte[] file, boolean mipmaps) {
+        final byte[] digest;
+        try {
+            final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(file);
+            sha1.update(new byte[]{(byte) CACHE_VERSION, (byte) (mipmaps ? 1 : 0)});
+            digest = sha1.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        final StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.append(".pkm").toString();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.learnopengles.sandbox.common;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker Pool
+ * <p/>
+ * App-wide pool of background threads, one per core, used to split geometry
+ * generation into ranges (fork) and wait for all of them (join).
+ * <p/>
+ * java.util.concurrent.ForkJoinPool only arrived with API 21 and we still
+ * run on API 16, so this is a plain fixed thread pool. The calling thread
+ * always runs the last range itself, and a range task that calls back into
+ * the pool runs inline so a worker never blocks waiting on its own pool.
+ * <p/>
+ * No GL calls may be made from a range task - the GL context lives on the
+ * GL thread only.
+ */
+public class WorkerPool {
+
+    private static final String LOG_TAG = WorkerPool.class.getSimpleName();
+
+    private static ExecutorService sExecutor;
+    private static final int sParallelism = Runtime.getRuntime().availableProcessors();
+
+    /*
+     * one contiguous piece of work, [start, end)
+     */
+    public interface RangeTask {
+        void run(int start, int end);
+    }
+
+    /*
+     * no instancing allowed
+     */
+    private WorkerPool() {}
+
+    public static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(sParallelism, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new WorkerThread(r, LOG_TAG + "-" + mCount.getAndIncrement());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    public static int getParallelism() {
+        return sParallelism;
+    }
+
+    /**
+     * Split [0, count) into at most one range per core, with no range smaller
+     * than minChunk, run them on the pool and wait for all of them to finish.
+     *
+     * @param count    Number of items to process.
+     * @param minChunk Smallest range worth handing to another thread.
+     * @param task     The work; called once per range, possibly concurrently.
+     */
+    public static void forRange(int count, int minChunk, RangeTask task) {
+        forRange(count, minChunk, sParallelism, task);
+    }
+
+    /**
+     * As above, with an explicit upper bound on the number of ranges.
+     * maxTasks of 1 runs everything serially on the calling thread.
+     */
+    public static void forRange(int count, int minChunk, int maxTasks, final RangeTask task) {
+        if (count <= 0) {
+            return;
+        }
+        int numTasks = Math.min(maxTasks, count / Math.max(1, minChunk));
+        if (numTasks <= 1 || Thread.currentThread() instanceof WorkerThread) {
+            task.run(0, count);
+            return;
+        }
+
+        final int chunk = (count + numTasks - 1) / numTasks;
+        ArrayList<Future<?>> futures = new ArrayList<>(numTasks);
+        ExecutorService executor = getExecutor();
+
+        int start = 0;
+        for (int i = 0; i < numTasks - 1 && start + chunk < count; i++) {
+            final int rangeStart = start;
+            final int rangeEnd = start + chunk;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    task.run(rangeStart, rangeEnd);
+                }
+            }));
+            start = rangeEnd;
+        }
+
+        // the caller does the last piece rather than sitting idle
+        task.run(start, count);
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted waiting on worker", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("error in worker", e.getCause());
+            }
+        }
+    }
+
+    private static class WorkerThread extends Thread {
+        WorkerThread(Runnable r, String name) {
+            super(r, name);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import android.view.View;
 import android.widget.Button;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
 
 public class ActivtyDisplayObjects extends Activity
 {
@@ -29,6 +30,7 @@ public class ActivtyDisplayObjects extends Activity
 		super.onCreate(savedInstanceState);
 
         setContentView(R.layout.display_objects);
+        ProfilerOverlay.attach(this);
 
         mScaleDetector = new ScaleGestureDetector(this, new ScaleGestureDetector.OnScaleGestureListener() {
             @Override
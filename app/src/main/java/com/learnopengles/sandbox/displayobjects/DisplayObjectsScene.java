@@ -0,0 +1,612 @@
+package com.learnopengles.sandbox.displayobjects;
+
+import android.opengl.GLES20;
+
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.MatrixMath;
+import com.learnopengles.sandbox.common.SceneGraph;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
+import com.learnopengles.sandbox.objects.BufferManager;
+import com.learnopengles.sandbox.objects.Cone;
+import com.learnopengles.sandbox.objects.Cube;
+import com.learnopengles.sandbox.objects.Cylinder;
+import com.learnopengles.sandbox.objects.Ellipse;
+import com.learnopengles.sandbox.objects.HeightMap;
+import com.learnopengles.sandbox.objects.Sphere;
+import com.learnopengles.sandbox.objects.Teapot;
+import com.learnopengles.sandbox.objects.TeapotIBO;
+import com.learnopengles.sandbox.objects.ToroidHelix;
+import com.learnopengles.sandbox.objects.TriangleTest;
+
+import java.util.Arrays;
+
+/**
+ * What RendererDisplayObjects draws, without the Activity: loading the programs and
+ * the geometry, placing it, and drawing a frame. The shader sources are handed in and
+ * the matrices are SceneGraph's and MatrixMath's, so none of it needs a Context or
+ * android.opengl.Matrix - a JVM test can load it and draw frames against a RecordingGLApi.
+ * <p/>
+ * The renderer keeps the timing, the zoom animation and the touch input, and passes
+ * them on. GL thread only.
+ */
+public class DisplayObjectsScene {
+
+    /*
+     * the lighting programs are variants of res/raw/uber_*.glsl
+     */
+    private static final int PER_VERTEX_LIGHTING =
+            ShaderVariants.VERTEX_COLOR | ShaderVariants.LIGHTING | ShaderVariants.ATTENUATION;
+    private static final int PER_PIXEL_LIGHTING =
+            ShaderVariants.VERTEX_COLOR | ShaderVariants.PER_PIXEL_LIGHTING;
+    private ShaderVariants mShaderVariants;
+
+    /**
+     * Store the view matrix. This can be thought of as our camera. This matrix transforms world space to eye space;
+     * it positions things relative to our eye.
+     */
+    private final float[] mViewMatrix = new float[16];
+
+    /**
+     * Store the projection matrix. This is used to project the scene onto a 2D viewport.
+     */
+    private final float[] mProjectionMatrix = new float[16];
+
+    /**
+     * Allocate storage for the final combined matrix. This will be passed into the shader program.
+     */
+    private final float[] mMVPMatrix = new float[16];
+
+    /**
+     * Stores a copy of the model matrix specifically for the light position.
+     */
+    private final float[] mLightModelMatrix = new float[16];
+
+    /**
+     * This will be used to pass in the transformation matrix.
+     */
+    private int mMVPMatrixHandle;
+
+    /**
+     * This will be used to pass in the modelview matrix.
+     */
+    private int mMVMatrixHandle;
+
+    /**
+     * This will be used to pass in the light position.
+     */
+    private int mLightPosHandle;
+
+    /**
+     * This will be used to pass in model position information.
+     */
+    private int mPositionHandle;
+
+    /**
+     * This will be used to pass in model color information.
+     */
+    private int mColorHandle;
+
+    /**
+     * This will be used to pass in model normal information.
+     */
+    private int mNormalHandle;
+
+    /**
+     * Used to hold a light centered on the origin in model space. We need a 4th coordinate so we can get translations to work when
+     * we multiply this by our transformation matrices.
+     */
+    private final float[] mLightPosInModelSpace = new float[]{0.0f, 0.0f, 0.0f, 1.0f};
+
+    /**
+     * Used to hold the current position of the light in world space (after transformation via model matrix).
+     */
+    private final float[] mLightPosInWorldSpace = new float[4];
+
+    /**
+     * Used to hold the transformed position of the light in eye space (after transformation via modelview matrix)
+     */
+    private final float[] mLightPosInEyeSpace = new float[4];
+
+    private boolean mUseVertexShaderProgram = true;
+    /**
+     * Our per-vertex cube shading program.
+     */
+    private ShaderProgram mPerVertexProgram;
+    /**
+     * Our per-pixel cube shading program.
+     */
+    private ShaderProgram mPerPixelProgram;
+
+    /**
+     * The program the handles above belong to; they are only looked up again when it changes.
+     */
+    private ShaderProgram mSelectedProgram;
+
+    private boolean mWireFrameRenderingFlag = false;
+    private boolean mRenderOnlyIBO = true;
+
+    /**
+     * Our light point program, and its handles.
+     */
+    private ShaderProgram mPointProgram;
+    private int mPointMVPMatrixHandle;
+    private int mPointPositionHandle;
+
+    /**
+     * A temporary matrix.
+     */
+    private final float[] mTemporaryMatrix = new float[16];
+
+    /**
+     * Store the accumulated rotation.
+     */
+    private final float[] mAccumulatedRotation = new float[16];
+
+    /**
+     * Store the current rotation, and the two turns it is made of.
+     */
+    private final float[] mIncrementalRotation = new float[16];
+    private final float[] mRotationX = new float[16];
+    private final float[] mRotationY = new float[16];
+
+    private Cube mCube;
+    private Teapot mTeapot;
+    private TeapotIBO mTeapotIBO;
+    private HeightMap mHeightMap;
+
+    /*
+     * the heightmap built from res/raw/heightmap.png, handed over from the renderer's
+     * builder thread; it keeps its staging data, so every context can upload it
+     */
+    private volatile HeightMap mBuiltHeightMap;
+    private Sphere mSphere;
+    private Cylinder mCylinder;
+    private Ellipse mEllipse;
+    private ToroidHelix mToroidHelix;
+    private Cone mCone;
+    private TriangleTest mTriangleTest;
+
+    private final BufferManager mBufferManager;
+
+    /*
+     * object transforms - see add_model_node
+     */
+    private final SceneGraph mSceneGraph = new SceneGraph(32);
+    private int[] mSpinNodes = new int[16];
+    private int mSpinNodeCount;
+
+    private int mCylinderNode;
+    private int mSphereNode;
+    private int mTeapotIBONode;
+    private int mCubeNode;
+    private int mToroidHelixNode;
+    private int mTeapotNode;
+    private int mHeightMapNode;
+    private int mEllipseNode;
+    private int mConeNode;
+
+    public DisplayObjectsScene(final BufferManager bufferManager) {
+        mBufferManager = bufferManager;
+    }
+
+    /**
+     * Build everything for a new context: GL state, programs, geometry and the scene graph.
+     *
+     * @param vertexSource   res/raw/uber_vertex_shader.glsl
+     * @param fragmentSource res/raw/uber_fragment_shader.glsl
+     * @param lightingSource res/raw/uber_lighting.glsl
+     */
+    public void load(final String vertexSource, final String fragmentSource, final String lightingSource) {
+        // Set the background clear color to black.
+        GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+
+        // Use culling to remove back faces.
+        GLState.enable(GLES20.GL_CULL_FACE);
+
+        // Enable depth testing
+        GLState.enable(GLES20.GL_DEPTH_TEST);
+
+        GLDebug.check("DisplayObjectsScene.load");
+        // Position the eye in front of the origin.
+        final float eyeX = 0.0f;
+        final float eyeY = 0.0f;
+        final float eyeZ = -0.5f;
+
+        // We are looking toward the distance
+        final float lookX = 0.0f;
+        final float lookY = 0.0f;
+        final float lookZ = -5.0f;
+
+        // Set our up vector. This is where our head would be pointing were we holding the camera.
+        final float upX = 0.0f;
+        final float upY = 1.0f;
+        final float upZ = 0.0f;
+
+        // Set the view matrix. This matrix can be said to represent the camera position.
+        // NOTE: In OpenGL 1, a ModelView matrix is used, which is a combination of a model and
+        // view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
+        MatrixMath.setLookAt(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
+
+        // lesson 2 lighting for both - per vertex (attenuated) or per pixel, one source
+        mShaderVariants = new ShaderVariants(vertexSource, fragmentSource, lightingSource)
+                .setConstant("LIGHT_MIN_DIFFUSE", "0.6")
+                .setConstant("LIGHT_ATTENUATION_LINEAR", "0.25")
+                .setConstant("LIGHT_AMBIENT", "0.0");
+        mPerVertexProgram = mShaderVariants.get(PER_VERTEX_LIGHTING);
+        mPerPixelProgram = mShaderVariants.get(PER_PIXEL_LIGHTING);
+        mSelectedProgram = null;
+
+        // Define a simple shader program for our point (the orbiting light source)
+        final String pointVertexShader =
+                "uniform mat4 u_MVPMatrix;      \n"
+                        + "attribute vec4 a_Position;     \n"
+                        + "void main()                    \n"
+                        + "{                              \n"
+                        + "   gl_Position = u_MVPMatrix   \n"
+                        + "               * a_Position;   \n"
+                        + "   gl_PointSize = 5.0;         \n"
+                        + "}                              \n";
+
+        final String pointFragmentShader =
+                "precision mediump float;       \n"
+                        + "void main()                    \n"
+                        + "{                              \n"
+                        + "   gl_FragColor = vec4(1.0,    \n"
+                        + "   1.0, 1.0, 1.0);             \n"
+                        + "}                              \n";
+
+        mPointProgram = new ShaderProgram(pointVertexShader, pointFragmentShader,
+                new String[]{"a_Position"});
+        mPointMVPMatrixHandle = mPointProgram.getUniform("u_MVPMatrix");
+        mPointPositionHandle = mPointProgram.getAttribute("a_Position");
+
+        /*
+         * begin the geometry assortment allocations
+         */
+        // float color[] = new float[] { 0.5f, 0.5f, 0.0f, 0.0f };
+        float nice_color[] = new float[]{218f / 256f, 182f / 256f, 85f / 256f, 1.0f};
+        float color[] = new float[]{0.0f, 0.4f, 0.0f, 1.0f};
+        float color_red[] = new float[]{0.6f, 0.0f, 0.0f, 1.0f};
+        float color_teapot_green[] = new float[]{0f, 0.3f, 0.0f, 1.0f};
+        float color_teapot_red[] = new float[]{0.3f, 0.0f, 0.0f, 1.0f};
+        float chimera_color[] = new float[]{229f / 256f, 196f / 256f, 153f / 256f, 1.0f};
+
+        mCube = new Cube();
+        mTeapot = new Teapot( color_teapot_green );
+        mTeapotIBO = new TeapotIBO( color_teapot_red );
+        // the paraboloid stands in until the image heightmap is built - see setHeightMap
+        mHeightMap = new HeightMap();
+
+        mSphere = new Sphere(
+                30, // slices
+                0.5f, // radius
+                color_teapot_green );
+
+        // Cylinder notes
+        //   3 - slices makes a prism
+        //   4 - slices makes a cube
+        mCylinder = new Cylinder(
+                30, // slices
+                0.25f, // radius
+                .5f, // length
+                color);
+
+        mEllipse = new Ellipse(
+                30, // slices
+                0.25f, // radius
+                .5f, // length
+                color);
+
+//        mEllipseHelix = new EllipseHelix(
+//                mBufferManager,
+//                10, // slices
+//                .5f, // radius
+//                .5f, // length
+//                color);
+
+
+        // the helix vertices go through the buffer manager - start it empty for this context
+        BufferManager.allocateInitialBuffer();
+        mToroidHelix = new ToroidHelix(
+                mBufferManager,
+                chimera_color);
+        mBufferManager.transferToGl();
+
+        // commit the vertices
+
+        mCone = new Cone(
+                50, // slices
+                0.25f, // radius
+                .5f, // length
+                nice_color,
+                color_red );
+
+        mTriangleTest = new TriangleTest();
+
+        // Initialize the modifier matrices
+        MatrixMath.setIdentity(mAccumulatedRotation, 0);
+
+        /*
+         * place the objects - what used to be set up again for every object, every frame
+         */
+        mSceneGraph.clear();
+        mSpinNodeCount = 0;
+        mCylinderNode = add_model_node(-.75f, 1.0f, -2.5f, 1.0f);
+        mSphereNode = add_model_node(0.0f, 1.0f, -2.5f, .6f);
+        mTeapotIBONode = add_model_node(1.0f, .75f, -2.5f, 3.5f);
+        mCubeNode = add_model_node(-1.0f, 0.0f, -2.5f, .25f);
+        // 5X large version (.25f) - useful for debugging
+        mToroidHelixNode = add_model_node(0.0f, 0.0f, -2.5f, .05f);
+        mTeapotNode = add_model_node(1.0f, -0.25f, -2.5f, 3.5f);
+        mHeightMapNode = add_model_node(-1.0f, -1.0f, -2.5f, .05f);
+        mEllipseNode = add_model_node(0.0f, -1.0f, -2.5f, 1.0f);
+        mConeNode = add_model_node(1.0f, -1.0f, -2.5f, 0.9f);
+    }
+
+    /**
+     * Create a new perspective projection matrix. The height will stay the same
+     * while the width will vary as per aspect ratio.
+     *
+     * @param scale Zoom: below 1 closes in, above 1 backs off.
+     */
+    public void setProjection(int width, int height, float scale) {
+        final float ratio = (float) width / height;
+        final float left = -ratio * scale;
+        final float right = ratio * scale;
+        final float bottom = -1.0f * scale;
+        final float top = 1.0f * scale;
+        final float near = 1.0f;
+        // final float far = 20.0f;
+        final float far = 10.0f;
+        // final float far = 5.0f;  nothing visible
+
+        MatrixMath.setFrustum(mProjectionMatrix, 0, left, right, bottom, top, near, far);
+    }
+
+    /**
+     * Move the view as necessary if the user has shifted it manually.
+     */
+    public void translateView(float deltaX, float deltaY) {
+        MatrixMath.translate(mViewMatrix, 0, deltaX, deltaY, 0.0f);
+    }
+
+    /**
+     * Fold in the touch rotation, in degrees about y and x - once a frame, not once an object.
+     */
+    public void rotate(float deltaX, float deltaY) {
+        if (deltaX == 0.0f && deltaY == 0.0f) {
+            return;
+        }
+        /*
+         * Set a matrix that contains the additional *incremental* rotation
+         * as indicated by the user touching the screen
+         */
+        MatrixMath.setRotate(mRotationY, 0, deltaX, 0.0f, 1.0f, 0.0f);
+        MatrixMath.setRotate(mRotationX, 0, deltaY, 1.0f, 0.0f, 0.0f);
+        MatrixMath.multiply(mRotationY, 0, mRotationX, 0, mIncrementalRotation, 0);
+
+        // Multiply the current rotation by the accumulated rotation, and then set the accumulated rotation to the result.
+        MatrixMath.multiply(mIncrementalRotation, 0, mAccumulatedRotation, 0, mTemporaryMatrix, 0);
+        System.arraycopy(mTemporaryMatrix, 0, mAccumulatedRotation, 0, 16);
+
+        for (int i = 0; i < mSpinNodeCount; i++) {
+            mSceneGraph.setLocal(mSpinNodes[i], mAccumulatedRotation, 0);
+        }
+    }
+
+    /**
+     * @param lightangleInDegrees Where the light is on its orbit, if it orbits.
+     */
+    public void drawFrame(float lightangleInDegrees) {
+        GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+
+        final HeightMap built = mBuiltHeightMap;
+        if (built != null && built != mHeightMap) {
+            built.uploadToGl();
+            mHeightMap = built;
+            place_image_height_map();
+        }
+
+        // Set our per-vertex lighting program.
+        use_program(mUseVertexShaderProgram ? mPerVertexProgram : mPerPixelProgram);
+
+        int hack = 1; // orbit the light
+        if (hack == 0) {
+            // Calculate position of the light. Rotate and then push into the distance.
+            MatrixMath.setIdentity(mLightModelMatrix, 0);
+            MatrixMath.translate(mLightModelMatrix, 0, 0.0f, 0.0f, -5.0f);
+            MatrixMath.setRotate(mTemporaryMatrix, 0, lightangleInDegrees, 0.0f, 1.0f, 0.0f);
+            MatrixMath.multiply(mLightModelMatrix, 0, mTemporaryMatrix, 0, mMVPMatrix, 0);
+            System.arraycopy(mMVPMatrix, 0, mLightModelMatrix, 0, 16);
+            MatrixMath.translate(mLightModelMatrix, 0, 0.0f, 0.0f, 2.0f);// original
+
+            // HACK: makes the orbit bigger
+            // MatrixMath.translate(mLightModelMatrix, 0, 0.0f, 0.0f, 5.0f);
+
+            MatrixMath.multiplyVector(mLightModelMatrix, 0, mLightPosInModelSpace, 0, mLightPosInWorldSpace, 0);
+            MatrixMath.multiplyVector(mViewMatrix, 0, mLightPosInWorldSpace, 0, mLightPosInEyeSpace, 0);
+
+        } else { // fixed lighting position
+            // Calculate position of the light. Push into the distance.
+            MatrixMath.setIdentity(mLightModelMatrix, 0);
+            MatrixMath.translate(mLightModelMatrix, 0, 0.0f, 0.0f, -1.0f);
+
+            MatrixMath.multiplyVector(mLightModelMatrix, 0, mLightPosInModelSpace, 0, mLightPosInWorldSpace, 0);
+            MatrixMath.multiplyVector(mViewMatrix, 0, mLightPosInWorldSpace, 0, mLightPosInEyeSpace, 0);
+        }
+
+        // GLES20.glClearDepth(1.0f);
+
+        // let the graph recompute only the matrices that the rotation or the camera changed
+        mSceneGraph.setCamera(mViewMatrix, mProjectionMatrix);
+        mSceneGraph.update();
+
+        // Pass in the light position in eye space - once, it is the same for every object.
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+
+        // Obj #1 upper left
+        set_node_uniforms(mCylinderNode);
+        mCylinder.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        // Obj #5 center
+        set_node_uniforms(mSphereNode);
+        mSphere.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        // Obj #3 upper right
+        set_node_uniforms(mTeapotIBONode);
+        mTeapotIBO.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        // Obj #4 mid left
+        set_node_uniforms(mCubeNode);
+        mCube.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        // Obj #5 center
+        set_node_uniforms(mToroidHelixNode);
+        mBufferManager.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        // Obj #6 mid right
+        if (!mRenderOnlyIBO) {
+            set_node_uniforms(mTeapotNode);
+            mTeapot.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);  // direct rendering
+        }
+
+        // Obj #7 bottom left
+        set_node_uniforms(mHeightMapNode);
+        mHeightMap.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        // Obj #2 middle
+        set_node_uniforms(mEllipseNode);
+        // mTriangleTest.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+        mEllipse.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        // Obj #9 bottom right
+        set_node_uniforms(mConeNode);
+        mCone.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        GLDebug.check("DisplayObjectsScene.drawFrame");
+    }
+
+    /**
+     * Swap a heightmap built off the GL thread in for the paraboloid; it is uploaded
+     * at the next frame, and again after every load(). Any thread.
+     *
+     * @param heightMap Packed from a HeightField 10 units across, y up, with its staging
+     *                  data retained.
+     */
+    public void setHeightMap(HeightMap heightMap) {
+        mBuiltHeightMap = heightMap;
+    }
+
+    public SceneGraph getSceneGraph() {
+        return mSceneGraph;
+    }
+
+    public boolean isPerVertexLighting() {
+        return mUseVertexShaderProgram;
+    }
+
+    public void setPerVertexLighting(boolean perVertex) {
+        mUseVertexShaderProgram = perVertex;
+    }
+
+    public boolean isWireframe() {
+        return mWireFrameRenderingFlag;
+    }
+
+    public void setWireframe(boolean wireframe) {
+        mWireFrameRenderingFlag = wireframe;
+    }
+
+    public boolean isRenderOnlyIBO() {
+        return mRenderOnlyIBO;
+    }
+
+    public void setRenderOnlyIBO(boolean renderOnlyIBO) {
+        mRenderOnlyIBO = renderOnlyIBO;
+    }
+
+    /*
+     * set program handles for drawing - only when the program actually changes,
+     * the locations themselves were resolved when it was linked
+     */
+    private void use_program(ShaderProgram program) {
+        program.use();
+        if (program == mSelectedProgram) {
+            return;
+        }
+        mSelectedProgram = program;
+        mMVPMatrixHandle = program.getUniform("u_MVPMatrix");
+        mMVMatrixHandle = program.getUniform("u_MVMatrix");
+        mLightPosHandle = program.getUniform("u_LightPos");
+        mPositionHandle = program.getAttribute("a_Position");
+        mColorHandle = program.getAttribute("a_Color");
+        mNormalHandle = program.getAttribute("a_Normal");
+    }
+
+    /*
+     * every object is a placement node (translate, scale) with a spin node under it
+     * holding the shared touch rotation - the spin node is the one that gets drawn,
+     * and its world matrix is exactly the old model * accumulated rotation
+     */
+    private int add_model_node(float x, float y, float z, float scale) {
+        int placement = mSceneGraph.addNode(SceneGraph.NO_PARENT);
+        mSceneGraph.setLocalTranslateScale(placement, x, y, z, scale);
+
+        int spin = mSceneGraph.addNode(placement);
+        mSceneGraph.setLocal(spin, mAccumulatedRotation, 0);
+        if (mSpinNodeCount == mSpinNodes.length) {
+            mSpinNodes = Arrays.copyOf(mSpinNodes, mSpinNodeCount * 2);
+        }
+        mSpinNodes[mSpinNodeCount++] = spin;
+        return spin;
+    }
+
+    /*
+     * the paraboloid's place and scale, but the field is y up: turn its heights
+     * toward the camera, as the paraboloid's are, rows running down the screen
+     */
+    private void place_image_height_map() {
+        MatrixMath.setRotate(mTemporaryMatrix, 0, 90f, 1f, 0f, 0f);
+        for (int i = 0; i < 12; i++) {
+            mTemporaryMatrix[i] *= .05f;
+        }
+        mTemporaryMatrix[12] = -1.0f;
+        mTemporaryMatrix[13] = -1.0f;
+        mTemporaryMatrix[14] = -2.5f;
+        mSceneGraph.setLocal(mSceneGraph.getParent(mHeightMapNode), mTemporaryMatrix, 0);
+    }
+
+    private void set_node_uniforms(int node) {
+        final int offset = node * SceneGraph.FLOATS_PER_MATRIX;
+
+        // Pass in the modelview matrix.
+        GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mSceneGraph.getModelViewMatrices(), offset);
+
+        // Pass in the combined matrix.
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mSceneGraph.getModelViewProjectionMatrices(), offset);
+    }
+
+    /**
+     * Draws a point representing the position of the light.
+     */
+    private void drawLight() {
+        // Pass in the position.
+        GL.glVertexAttrib3f(mPointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
+
+        // Since we are not using a buffer object, disable vertex arrays for this attribute.
+        GLState.disableVertexAttribArray(mPointPositionHandle);
+
+        // Pass in the transformation matrix.
+        MatrixMath.multiply(mViewMatrix, 0, mLightModelMatrix, 0, mTemporaryMatrix, 0);
+        MatrixMath.multiply(mProjectionMatrix, 0, mTemporaryMatrix, 0, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mPointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+
+        // Draw the point.
+        FrameProfiler.drawArrays(GLES20.GL_POINTS, 0, 1);
+        GLDebug.check("DisplayObjectsScene.drawLight glDrawArrays");
+    }
+}
\ No newline at end of file
@@ -7,6 +7,8 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+
 public class GLSurfaceViewDisplayObjects extends GLSurfaceView
 {
 	private RendererDisplayObjects mRenderer;
@@ -172,7 +174,7 @@ public class GLSurfaceViewDisplayObjects extends GLSurfaceView
 	{
 		mRenderer = renderer;
 		mDensity = density;
-		super.setRenderer(renderer);
+		super.setRenderer(FrameProfiler.wrap(renderer));
 	}
 }
 
@@ -10,6 +10,7 @@ import android.view.View;
 import android.widget.Button;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
 
 
 public class ActivityDisplayObjFile extends Activity
@@ -78,6 +79,7 @@ public class ActivityDisplayObjFile extends Activity
 	{
 		super.onCreate(savedInstanceState);
         setContentView(R.layout.display_obj_file);
+        ProfilerOverlay.attach(this);
 
         mGLSurfaceView = (GLSurfaceViewDisplayObjFile) findViewById(R.id.gl_surface_view);
 
@@ -141,6 +143,9 @@ public class ActivityDisplayObjFile extends Activity
 		// onResume().
 		super.onResume();
 		mGLSurfaceView.onResume();
+		if (mRenderer != null) {
+			mRenderer.getRenderScheduler().resetStats();
+		}
 	}
 
 	@Override
@@ -149,6 +154,9 @@ public class ActivityDisplayObjFile extends Activity
 		// onPause().
 		super.onPause();
 		mGLSurfaceView.onPause();
+		if (mRenderer != null) {
+			mRenderer.getRenderScheduler().logStats();
+		}
 	}
 
 
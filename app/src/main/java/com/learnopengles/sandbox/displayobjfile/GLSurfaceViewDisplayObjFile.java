@@ -7,6 +7,8 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+
 public class GLSurfaceViewDisplayObjFile extends GLSurfaceView
 {
 	private RendererDisplayObjFile mRenderer;
@@ -75,6 +77,7 @@ public class GLSurfaceViewDisplayObjFile extends GLSurfaceView
 
                         mOldX = (x1+x2) / 2.0f;
                         mOldY = (y1+y2) / 2.0f;
+                        requestRender();
 
                         deltaSpacing = spacing(m);
                         deltaSpacing -= mPinchZoom;
@@ -121,6 +124,7 @@ public class GLSurfaceViewDisplayObjFile extends GLSurfaceView
 
                         mRenderer.mDeltaX += deltaX;
                         mRenderer.mDeltaY += deltaY;
+                        requestRender();
                         // Log.w("touch", ": mDX = " + mRenderer.mDeltaX + " mDY = " + mRenderer.mDeltaY);
                     }
                 }
@@ -172,7 +176,8 @@ public class GLSurfaceViewDisplayObjFile extends GLSurfaceView
 	{
 		mRenderer = renderer;
 		mDensity = density;
-		super.setRenderer(renderer);
+		super.setRenderer(FrameProfiler.wrap(renderer));
+		renderer.getRenderScheduler().attach();
 	}
 }
 
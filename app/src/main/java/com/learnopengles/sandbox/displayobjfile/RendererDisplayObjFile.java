@@ -6,6 +6,15 @@ import android.opengl.Matrix;
 import android.os.SystemClock;
 import android.util.Log;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.RenderScheduler;
+import com.learnopengles.sandbox.common.SceneGraph;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
 import com.learnopengles.sandbox.objects.Cone;
 import com.learnopengles.sandbox.objects.Cube;
 import com.learnopengles.sandbox.objects.Cylinder;
@@ -15,7 +24,8 @@ import com.learnopengles.sandbox.objects.Sphere;
 import com.learnopengles.sandbox.objects.Teapot;
 import com.learnopengles.sandbox.objects.TeapotIBO;
 import com.learnopengles.sandbox.objects.TriangleTest;
-import com.learnopengles.sandbox.objects.XYZ;
+
+import java.util.Arrays;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -36,7 +46,14 @@ import javax.microedition.khronos.opengles.GL10;
 public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 {
 
-    private XYZ mXYZ = new XYZ();
+    /*
+     * the lighting programs are variants of res/raw/uber_*.glsl
+     */
+    private static final int PER_VERTEX_LIGHTING =
+            ShaderVariants.VERTEX_COLOR | ShaderVariants.LIGHTING | ShaderVariants.ATTENUATION;
+    private static final int PER_PIXEL_LIGHTING =
+            ShaderVariants.VERTEX_COLOR | ShaderVariants.PER_PIXEL_LIGHTING;
+    private ShaderVariants mShaderVariants;
 
     private final String LOG_TAG = "Renderer";
 
@@ -124,22 +141,28 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 	private final float[] mLightPosInEyeSpace = new float[4];
 
     private boolean mUseVertexShaderProgram = true;
-	/** This is a handle to our per-vertex cube shading program. */
-	private int mPerVertexProgramHandle = -1;
-    /** This is a handle to our per-pixel cube shading program. */
-    private int mPerPixelProgramHandle;
+	/** Our per-vertex cube shading program, null until the surface is created. */
+	private ShaderProgram mPerVertexProgram;
+    /** Our per-pixel cube shading program. */
+    private ShaderProgram mPerPixelProgram;
 
-    private int mSelectedProgramHandle;
+    /** The program the handles above belong to; they are only looked up again when it changes. */
+    private ShaderProgram mSelectedProgram;
 
     private boolean mWireFrameRenderingFlag = false;
     private boolean mRenderOnlyIBO = true;
 
-	/** This is a handle to our light point program. */
-	private int mPointProgramHandle;
+	/** Our light point program, and its handles. */
+	private ShaderProgram mPointProgram;
+	private int mPointMVPMatrixHandle;
+	private int mPointPositionHandle;
 
 
     private ActivityDisplayObjFile mDisplayObjFileActivity;
     private GLSurfaceView mGlSurfaceView;
+
+    /* nothing moves on its own - frames are drawn for touches, loads and toggles */
+    private final RenderScheduler mRenderScheduler;
     /** A temporary matrix. */
     private float[] mTemporaryMatrix = new float[16];
 
@@ -163,6 +186,16 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
     private TriangleTest mTriangleTest;
     private ObjFile mObjFile;
 
+    /*
+     * object transforms - see add_model_node
+     */
+    private final SceneGraph mSceneGraph = new SceneGraph(8);
+    private int[] mSpinNodes = new int[4];
+    private int mSpinNodeCount;
+
+    private int mAssetObjNode;
+    private int mConeNode;
+
 
 	/*
 	 * Let's get started.
@@ -171,20 +204,25 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 	{
         mDisplayObjFileActivity = displayObjFileActivity;
         mGlSurfaceView = glSurfaceView;
-        mObjFile = new ObjFile(mDisplayObjFileActivity);
+        mRenderScheduler = new RenderScheduler("RendererDisplayObjFile", glSurfaceView);
+        mObjFile = new ObjFile(mDisplayObjFileActivity.getAssets());
 	}
 
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) 
 	{
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+		ProgramCache.reset(mDisplayObjFileActivity);
+
 		// Set the background clear color to black.
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		
 		// Use culling to remove back faces.
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
+		GLState.enable(GLES20.GL_CULL_FACE);
 		
 		// Enable depth testing
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+		GLState.enable(GLES20.GL_DEPTH_TEST);
 			
 		// Position the eye in front of the origin.
 		final float eyeX = 0.0f;
@@ -206,21 +244,14 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 		// view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
 		Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);		
 
-        String vertexShader = mXYZ.getVertexShaderLesson2();
-        String fragmentShader = mXYZ.getFragmentShaderLesson2();
-		int vertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
-		int fragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
-		
-		mPerVertexProgramHandle = createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, 
-				new String[] {"a_Position",  "a_Color", "a_Normal"});
-
-        /* add in a pixel shader from lesson 3 - switchable */
-        vertexShader = mXYZ.getVertexShaderLesson3();
-        fragmentShader = mXYZ.getFragmentShaderLesson3();
-        vertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
-        fragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
-        mPerPixelProgramHandle = createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle,
-                new String[]{"a_Position", "a_Color", "a_Normal"});
+        // lesson 2 lighting for both - per vertex (attenuated) or per pixel, one source
+        mShaderVariants = new ShaderVariants(mDisplayObjFileActivity)
+                .setConstant("LIGHT_MIN_DIFFUSE", "0.6")
+                .setConstant("LIGHT_ATTENUATION_LINEAR", "0.25")
+                .setConstant("LIGHT_AMBIENT", "0.0");
+        mPerVertexProgram = mShaderVariants.get(PER_VERTEX_LIGHTING);
+        mPerPixelProgram = mShaderVariants.get(PER_PIXEL_LIGHTING);
+        mSelectedProgram = null;
 
         // Define a simple shader program for our point (the orbiting light source)
         final String pointVertexShader =
@@ -241,10 +272,10 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
           + "   1.0, 1.0, 1.0);             \n"
           + "}                              \n";
         
-        final int pointVertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, pointVertexShader);
-        final int pointFragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, pointFragmentShader);
-        mPointProgramHandle = createAndLinkProgram(pointVertexShaderHandle, pointFragmentShaderHandle, 
+        mPointProgram = new ShaderProgram(pointVertexShader, pointFragmentShader,
         		new String[] {"a_Position"});
+        mPointMVPMatrixHandle = mPointProgram.getUniform("u_MVPMatrix");
+        mPointPositionHandle = mPointProgram.getAttribute("a_Position");
 
         /*
          * begin the geometry assortment allocations
@@ -289,13 +320,21 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
         Matrix.setIdentityM(mAccumulatedRotation, 0);
         Matrix.setIdentityM(mAccumulatedTranslation, 0);
         Matrix.setIdentityM(mAccumulatedScaling, 0);
+
+        // place the objects; the asset's scale is refreshed every frame in case a new file was loaded
+        mSceneGraph.clear();
+        mSpinNodeCount = 0;
+        mAssetObjNode = add_model_node(0.0f, 0.0f, -2.5f, 1.0f);
+        mConeNode = add_model_node(1.0f, -1.0f, -2.5f, 0.9f);
+
+		ProgramCache.logStats("RendererDisplayObjFile");
     }
 		
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) 
 	{
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
         mWidth = width;
         mHeight = height;
 
@@ -312,17 +351,13 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 		
 		Matrix.frustumM(mProjectionMatrix, 0, left, right, bottom, top, near, far);
 
-        int glError;
-        glError = GLES20.glGetError();
-        if (glError != GLES20.GL_NO_ERROR) {
-            Log.e(LOG_TAG, "GLERROR: " + glError);
-        }
+        GLDebug.check("RendererDisplayObjFile.onSurfaceChanged");
 	}	
 
 	@Override
 	public void onDrawFrame(GL10 glUnused) 
 	{
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
+		GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
                 
         // Do a complete rotation every 10 seconds.
         long time = SystemClock.uptimeMillis() % 10000L;        
@@ -374,20 +409,7 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
         mDeltaTranslateY = 0.0f;
 
         // Set our per-vertex lighting program.
-        if (mUseVertexShaderProgram) {
-            mSelectedProgramHandle = mPerVertexProgramHandle;
-        } else {
-            mSelectedProgramHandle = mPerPixelProgramHandle;
-        }
-
-        GLES20.glUseProgram(mSelectedProgramHandle);
-        // Set program handles for drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mSelectedProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mSelectedProgramHandle, "u_MVMatrix");
-        mLightPosHandle = GLES20.glGetUniformLocation(mSelectedProgramHandle, "u_LightPos");
-        mPositionHandle = GLES20.glGetAttribLocation(mSelectedProgramHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(mSelectedProgramHandle, "a_Color");
-        mNormalHandle = GLES20.glGetAttribLocation(mSelectedProgramHandle, "a_Normal");
+        use_program(mUseVertexShaderProgram ? mPerVertexProgram : mPerPixelProgram);
 
         int hack = 1; // orbit the light
         if (hack == 0) {
@@ -427,11 +449,15 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
         float maxZ = mObjFile.mMaxZ;
         float aveMax = (maxX + maxY + maxZ)/2.0f;
         float scaleF = 1.0f / aveMax;
-        // Obj #2 center
-        Matrix.setIdentityM(mModelMatrix, 0);
-        Matrix.translateM(mModelMatrix, 0, 0.0f, 0.0f, -2.5f);
-        Matrix.scaleM(mModelMatrix, 0, scaleF, scaleF, scaleF);
-        do_matrix_setup();
+        // Obj #2 center - a newly loaded file rescales it, otherwise this leaves the node clean
+        mSceneGraph.setLocalTranslateScale(mSceneGraph.getParent(mAssetObjNode), 0.0f, 0.0f, -2.5f, scaleF);
+
+        update_scene_graph();
+
+        // Pass in the light position in eye space - once, it is the same for every object.
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+
+        set_node_uniforms(mAssetObjNode);
         drawAssetObj();
 
 //        // Obj #3 upper right
@@ -472,10 +498,10 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 //        drawHeightmap();
 
         // Obj #7 bottom left
-        Matrix.setIdentityM(mModelMatrix, 0);
-        Matrix.translateM(mModelMatrix, 0, -1.0f, -.75f, -2.5f);
-        Matrix.scaleM(mModelMatrix, 0, 3.5f, 3.5f, 3.5f);
-        do_matrix_setup();
+//        Matrix.setIdentityM(mModelMatrix, 0);
+//        Matrix.translateM(mModelMatrix, 0, -1.0f, -.75f, -2.5f);
+//        Matrix.scaleM(mModelMatrix, 0, 3.5f, 3.5f, 3.5f);
+//        do_matrix_setup();
  //        drawTeapotIBO();  blows up Genymotion
 //
 //        // Obj #8 bottom center
@@ -486,58 +512,93 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 //        drawTriangleTest();
 //
         // Obj #9 bottom right
-        Matrix.setIdentityM(mModelMatrix, 0);
-        Matrix.translateM(mModelMatrix, 0, 1.0f, -1.0f, -2.5f);
-        Matrix.scaleM(mModelMatrix, 0, 0.9f, 0.9f, 0.9f);
-        do_matrix_setup();
+        set_node_uniforms(mConeNode);
         mCone.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+
+        mRenderScheduler.frameDrawn(false);
 	}
 
+    public RenderScheduler getRenderScheduler() {
+        return mRenderScheduler;
+    }
 
-    private void do_matrix_setup() {
-        /*
-         * Set a matrix that contains the additional *incremental* rotation
-         * as indicated by the user touching the screen
-         */
-        Matrix.setIdentityM(mIncrementalRotation, 0);
-        Matrix.rotateM(mIncrementalRotation, 0, mDeltaX, 0.0f, 1.0f, 0.0f);
-        Matrix.rotateM(mIncrementalRotation, 0, mDeltaY, 1.0f, 0.0f, 0.0f);
+
+    /*
+     * set program handles for drawing - only when the program actually changes,
+     * the locations themselves were resolved when it was linked
+     */
+    private void use_program(ShaderProgram program) {
+        program.use();
+        if (program == mSelectedProgram) {
+            return;
+        }
+        mSelectedProgram = program;
+        mMVPMatrixHandle = program.getUniform("u_MVPMatrix");
+        mMVMatrixHandle = program.getUniform("u_MVMatrix");
+        mLightPosHandle = program.getUniform("u_LightPos");
+        mPositionHandle = program.getAttribute("a_Position");
+        mColorHandle = program.getAttribute("a_Color");
+        mNormalHandle = program.getAttribute("a_Normal");
+    }
+
+    /*
+     * every object is a placement node (translate, scale) with a spin node under it
+     * holding the shared touch rotation - the spin node is the one that gets drawn,
+     * and its world matrix is exactly the old model * accumulated rotation
+     */
+    private int add_model_node(float x, float y, float z, float scale) {
+        int placement = mSceneGraph.addNode(SceneGraph.NO_PARENT);
+        mSceneGraph.setLocalTranslateScale(placement, x, y, z, scale);
+
+        int spin = mSceneGraph.addNode(placement);
+        mSceneGraph.setLocal(spin, mAccumulatedRotation, 0);
+        if (mSpinNodeCount == mSpinNodes.length) {
+            mSpinNodes = Arrays.copyOf(mSpinNodes, mSpinNodeCount * 2);
+        }
+        mSpinNodes[mSpinNodeCount++] = spin;
+        return spin;
+    }
+
+    /*
+     * fold in the touch rotation (once a frame, not once an object) and let the
+     * graph recompute only the matrices that the rotation or the camera changed
+     */
+    private void update_scene_graph() {
+        final float deltaX = mDeltaX;
+        final float deltaY = mDeltaY;
         mDeltaX = 0.0f;
         mDeltaY = 0.0f;
 
-        // Multiply the current rotation by the accumulated rotation, and then set the accumulated rotation to the result.
-        Matrix.multiplyMM(mTemporaryMatrix, 0, mIncrementalRotation, 0, mAccumulatedRotation, 0);
-        System.arraycopy(mTemporaryMatrix, 0, mAccumulatedRotation, 0, 16);
+        if (deltaX != 0.0f || deltaY != 0.0f) {
+            /*
+             * Set a matrix that contains the additional *incremental* rotation
+             * as indicated by the user touching the screen
+             */
+            Matrix.setIdentityM(mIncrementalRotation, 0);
+            Matrix.rotateM(mIncrementalRotation, 0, deltaX, 0.0f, 1.0f, 0.0f);
+            Matrix.rotateM(mIncrementalRotation, 0, deltaY, 1.0f, 0.0f, 0.0f);
+
+            // Multiply the current rotation by the accumulated rotation, and then set the accumulated rotation to the result.
+            Matrix.multiplyMM(mTemporaryMatrix, 0, mIncrementalRotation, 0, mAccumulatedRotation, 0);
+            System.arraycopy(mTemporaryMatrix, 0, mAccumulatedRotation, 0, 16);
+
+            for (int i = 0; i < mSpinNodeCount; i++) {
+                mSceneGraph.setLocal(mSpinNodes[i], mAccumulatedRotation, 0);
+            }
+        }
 
-        // Rotate the object taking the overall rotation into account.
-        Matrix.multiplyMM(mTemporaryMatrix, 0, mModelMatrix, 0, mAccumulatedRotation, 0);
-        System.arraycopy(mTemporaryMatrix, 0, mModelMatrix, 0, 16);
+        mSceneGraph.setCamera(mViewMatrix, mProjectionMatrix);
+        mSceneGraph.update();
+    }
 
-        // This multiplies the view matrix by the model matrix, and stores
-        // the result in the MVP matrix
-        // (which currently contains model * view).
-        Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
+    private void set_node_uniforms(int node) {
+        final int offset = node * SceneGraph.FLOATS_PER_MATRIX;
 
         // Pass in the modelview matrix.
-        GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);
-
-        // This multiplies the modelview matrix by the projection matrix,
-        // and stores the result in the MVP matrix
-        // (which now contains model * view * projection).
-        Matrix.multiplyMM(mTemporaryMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
-        System.arraycopy(mTemporaryMatrix, 0, mMVPMatrix, 0, 16);
+        GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mSceneGraph.getModelViewMatrices(), offset);
 
         // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
-
-        // Pass in the light position in eye space.
-        GLES20.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
-
-        int glError;
-        glError = GLES20.glGetError();
-        if (glError != GLES20.GL_NO_ERROR) {
-            Log.e(LOG_TAG, "GLERROR: " + glError);
-        }
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mSceneGraph.getModelViewProjectionMatrices(), offset);
     }
 
 	/**
@@ -545,118 +606,23 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
 	 */
 	private void drawLight()
 	{
-		final int pointMVPMatrixHandle = GLES20.glGetUniformLocation(mPointProgramHandle, "u_MVPMatrix");
-        final int pointPositionHandle = GLES20.glGetAttribLocation(mPointProgramHandle, "a_Position");
-        
 		// Pass in the position.
-		GLES20.glVertexAttrib3f(pointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
+		GL.glVertexAttrib3f(mPointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
 
 		// Since we are not using a buffer object, disable vertex arrays for this attribute.
-        GLES20.glDisableVertexAttribArray(pointPositionHandle);  
+        GLState.disableVertexAttribArray(mPointPositionHandle);  
 		
 		// Pass in the transformation matrix.
 		Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mLightModelMatrix, 0);
 		Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
-		GLES20.glUniformMatrix4fv(pointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+		GL.glUniformMatrix4fv(mPointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 		
 		// Draw the point.
-		GLES20.glDrawArrays(GLES20.GL_POINTS, 0, 1);
+		FrameProfiler.drawArrays(GLES20.GL_POINTS, 0, 1);
+		GLDebug.check("RendererDisplayObjFile.drawLight glDrawArrays");
 	}
 	
-	/** 
-	 * Helper function to compile a shader.
-	 * 
-	 * @param shaderType The shader type.
-	 * @param shaderSource The shader source code.
-	 * @return An OpenGL handle to the shader.
-	 */
-	private int compileShader(final int shaderType, final String shaderSource) 
-	{
-		int shaderHandle = GLES20.glCreateShader(shaderType);
-
-		if (shaderHandle != 0) 
-		{
-			// Pass in the shader source.
-			GLES20.glShaderSource(shaderHandle, shaderSource);
-
-			// Compile the shader.
-			GLES20.glCompileShader(shaderHandle);
-
-			// Get the compilation status.
-			final int[] compileStatus = new int[1];
-			GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-			// If the compilation failed, delete the shader.
-			if (compileStatus[0] == 0) 
-			{
-				Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shaderHandle));
-				GLES20.glDeleteShader(shaderHandle);
-				shaderHandle = 0;
-			}
-		}
-
-		if (shaderHandle == 0)
-		{			
-			throw new RuntimeException("Error creating shader.");
-		}
-		
-		return shaderHandle;
-	}	
 	
-	/**
-	 * Helper function to compile and link a program.
-	 * 
-	 * @param vertexShaderHandle An OpenGL handle to an already-compiled vertex shader.
-	 * @param fragmentShaderHandle An OpenGL handle to an already-compiled fragment shader.
-	 * @param attributes Attributes that need to be bound to the program.
-	 * @return An OpenGL handle to the program.
-	 */
-	private int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) 
-	{
-		int programHandle = GLES20.glCreateProgram();
-		
-		if (programHandle != 0) 
-		{
-			// Bind the vertex shader to the program.
-			GLES20.glAttachShader(programHandle, vertexShaderHandle);			
-
-			// Bind the fragment shader to the program.
-			GLES20.glAttachShader(programHandle, fragmentShaderHandle);
-			
-			// Bind attributes
-			if (attributes != null)
-			{
-				final int size = attributes.length;
-				for (int i = 0; i < size; i++)
-				{
-					GLES20.glBindAttribLocation(programHandle, i, attributes[i]);
-				}						
-			}
-			
-			// Link the two shaders together into a program.
-			GLES20.glLinkProgram(programHandle);
-
-			// Get the link status.
-			final int[] linkStatus = new int[1];
-			GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
-
-			// If the link failed, delete the program.
-			if (linkStatus[0] == 0) 
-			{				
-				Log.e(TAG, "Error compiling program: " + GLES20.glGetProgramInfoLog(programHandle));
-				GLES20.glDeleteProgram(programHandle);
-				programHandle = 0;
-			}
-		}
-		
-		if (programHandle == 0)
-		{
-			throw new RuntimeException("Error creating program.");
-		}
-		
-		return programHandle;
-	}
-
     /* asset obj */
     private void drawAssetObj()
     {
@@ -676,6 +642,7 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
             mUseVertexShaderProgram = true;
             mDisplayObjFileActivity.updateShaderStatus(true);
         }
+        mRenderScheduler.requestFrame();
     }
 
     public void toggleWireframeFlag() {
@@ -686,6 +653,7 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
             mWireFrameRenderingFlag = true;
             mDisplayObjFileActivity.updateWireframeStatus(true);
         }
+        mRenderScheduler.requestFrame();
     }
 
     public void toggleRenderIBOFlag() {
@@ -696,15 +664,17 @@ public class RendererDisplayObjFile implements GLSurfaceView.Renderer
             mRenderOnlyIBO = true;
             mDisplayObjFileActivity.updateRenderOnlyIBOStatus(true);
         }
+        mRenderScheduler.requestFrame();
     }
 
     public void loadObjFile() {
         mObjFile.parse(mObjFileName);
         // TODO: fix this hack on detecting when OPENGL is up and running
-        if (mPerVertexProgramHandle != -1) {
+        if (mPerVertexProgram != null) {
             float color_bright_white[] = new float[] { 0.8f, 0.8f, 0.8f, 1.0f };
             mObjFile.build_buffers(color_bright_white);
         }
+        mRenderScheduler.requestFrame();
     }
 
     public void setObjFileName(String name) {
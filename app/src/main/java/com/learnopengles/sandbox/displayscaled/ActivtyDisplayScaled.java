@@ -10,8 +10,10 @@ import android.util.Log;
 import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.widget.Button;
+import android.widget.TextView;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
 
 public class ActivtyDisplayScaled extends Activity
 {
@@ -29,6 +31,7 @@ public class ActivtyDisplayScaled extends Activity
 		super.onCreate(savedInstanceState);
 
         setContentView(R.layout.display_scaled);
+        ProfilerOverlay.attach(this);
 
         mScaleDetector = new ScaleGestureDetector(this, new ScaleGestureDetector.OnScaleGestureListener() {
             @Override
@@ -96,6 +99,27 @@ public class ActivtyDisplayScaled extends Activity
 				toggleShader();
 			}
 		});
+
+		findViewById(R.id.button_scaled_render_mode).setOnClickListener(new View.OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				nextRenderMode();
+			}
+		});
+
+		findViewById(R.id.button_scaled_sweep).setOnClickListener(new View.OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				toggleSweep();
+			}
+		});
+
+		findViewById(R.id.button_scaled_culling).setOnClickListener(new View.OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				toggleCulling();
+			}
+		});
 	}
 
 	@Override
@@ -150,6 +174,88 @@ public class ActivtyDisplayScaled extends Activity
         });
     }
 
+    protected void nextRenderMode() {
+        mGLSurfaceView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.nextRenderMode();
+            }
+        });
+    }
+
+    protected void toggleSweep() {
+        mGLSurfaceView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.toggleSweep();
+            }
+        });
+    }
+
+    protected void toggleCulling() {
+        mGLSurfaceView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.toggleCulling();
+            }
+        });
+    }
+
+    public void updateFrameStats(final String stats) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                ((TextView) findViewById(R.id.text_scaled_stats)).setText(stats);
+            }
+        });
+    }
+
+    /*
+     * the button names the mode it switches to: 0 per copy, 1 static batch, 2 instanced
+     */
+    public void updateRenderModeStatus(final int nextMode) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final int text;
+                if (nextMode == 1) {
+                    text = R.string.button_scaled_static_batch;
+                } else if (nextMode == 2) {
+                    text = R.string.button_scaled_instanced;
+                } else {
+                    text = R.string.button_scaled_per_copy;
+                }
+                ((Button) findViewById(R.id.button_scaled_render_mode)).setText(text);
+            }
+        });
+    }
+
+    public void updateSweepStatus(final boolean sweeping) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (sweeping) {
+                    ((Button) findViewById(R.id.button_scaled_sweep)).setText(R.string.button_scaled_stop_sweep);
+                } else {
+                    ((Button) findViewById(R.id.button_scaled_sweep)).setText(R.string.button_scaled_sweep);
+                }
+            }
+        });
+    }
+
+    public void updateCullingStatus(final boolean culling) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (culling) {
+                    ((Button) findViewById(R.id.button_scaled_culling)).setText(R.string.button_scaled_no_culling);
+                } else {
+                    ((Button) findViewById(R.id.button_scaled_culling)).setText(R.string.button_scaled_culling);
+                }
+            }
+        });
+    }
+
     public void updateShaderStatus(final boolean useVertexShading) {
         runOnUiThread(new Runnable() {
             @Override
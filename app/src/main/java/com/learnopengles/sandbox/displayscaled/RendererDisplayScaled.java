@@ -6,6 +6,15 @@ import android.opengl.Matrix;
 import android.os.SystemClock;
 import android.util.Log;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.Frustum;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.SceneGraph;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
 import com.learnopengles.sandbox.objects.BufferManager;
 import com.learnopengles.sandbox.objects.Cone;
 import com.learnopengles.sandbox.objects.Cube;
@@ -13,12 +22,15 @@ import com.learnopengles.sandbox.objects.Cylinder;
 import com.learnopengles.sandbox.objects.Ellipse;
 import com.learnopengles.sandbox.objects.EllipseHelix;
 import com.learnopengles.sandbox.objects.HeightMap;
+import com.learnopengles.sandbox.objects.PseudoInstancedMesh;
 import com.learnopengles.sandbox.objects.Sphere;
+import com.learnopengles.sandbox.objects.StaticBatch;
 import com.learnopengles.sandbox.objects.Teapot;
 import com.learnopengles.sandbox.objects.TeapotIBO;
 import com.learnopengles.sandbox.objects.ToroidHelix;
 import com.learnopengles.sandbox.objects.TriangleTest;
-import com.learnopengles.sandbox.objects.XYZ;
+
+import java.util.Arrays;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -38,7 +50,14 @@ import javax.microedition.khronos.opengles.GL10;
  */
 public class RendererDisplayScaled implements GLSurfaceView.Renderer {
 
-    private XYZ mXYZ = new XYZ();
+    /*
+     * the lighting programs are variants of res/raw/uber_*.glsl
+     */
+    private static final int PER_VERTEX_LIGHTING =
+            ShaderVariants.VERTEX_COLOR | ShaderVariants.LIGHTING | ShaderVariants.ATTENUATION;
+    private static final int PER_PIXEL_LIGHTING =
+            ShaderVariants.VERTEX_COLOR | ShaderVariants.PER_PIXEL_LIGHTING;
+    private ShaderVariants mShaderVariants;
 
     private static String LOG_TAG = "Renderer";
     // update to add touch control - these are set by the SurfaceView class
@@ -155,24 +174,101 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
 
     private boolean mUseVertexShaderProgram = true;
     /**
-     * This is a handle to our per-vertex cube shading program.
+     * Our per-vertex cube shading program.
      */
-    private int mPerVertexProgramHandle;
+    private ShaderProgram mPerVertexProgram;
     /**
-     * This is a handle to our per-pixel cube shading program.
+     * Our per-pixel cube shading program.
      */
-    private int mPerPixelProgramHandle;
+    private ShaderProgram mPerPixelProgram;
 
-    private int mSelectedProgramHandle;
+    /**
+     * The program the handles above belong to; they are only looked up again when it changes.
+     */
+    private ShaderProgram mSelectedProgram;
 
     private boolean mWireFrameRenderingFlag = false;
     private boolean mRenderOnlyIBO = true;
     private int mModelsInScene = 1;
 
+    /*
+     * how the copies are drawn - see drawCopies, drawStaticBatch and drawPseudoInstanced
+     */
+    private static final int MODE_PER_COPY = 0;
+    private static final int MODE_STATIC_BATCH = 1;
+    private static final int MODE_PSEUDO_INSTANCED = 2;
+    private static final String[] MODE_NAMES = {"per copy", "static batch", "instanced"};
+
+    private static final float MODEL_SCALE = .03f;
+    /* each copy of the helix is 288 KB batched - cap the batch, the rest are drawn one by one */
+    private static final int MAX_BATCHED_COPIES = 72;
+    private static final int COPIES_PER_INSTANCED_DRAW = 16;
+
+    private static final int[] SWEEP_MODEL_COUNTS = {1, 9, 18, 36, 72, 144};
+    private static final int SWEEP_REPORTS_PER_STEP = 3;
+
+    /*
+     * per-copy transforms - see add_model_node
+     */
+    private final SceneGraph mSceneGraph = new SceneGraph(64);
+    private int[] mSpinNodes = new int[32];
+    private int mSpinNodeCount;
+
+    private int mRenderMode = MODE_PER_COPY;
+    private int mDrawCalls;
+
+    /*
+     * bounding sphere culling - every path skips copies outside the frustum
+     * before any GL work; counts are for the last frame
+     */
+    private boolean mCullingEnabled = true;
+    private final Frustum mFrustum = new Frustum();
+    private final float[] mViewProjectionMatrix = new float[16];
+    private int mVisibleCopies;
+    private int mCulledCopies;
+
+    /*
+     * GLState calls that reached the driver / were dropped as redundant, last frame
+     */
+    private int mStateCallsIssued;
+    private int mStateCallsElided;
+
+    private float[] mModelOffsets = new float[0];
+    private int mLayoutModels = 0;
+
+    private StaticBatch mStaticBatch;
+    private final float[] mBatchMatrices = new float[MAX_BATCHED_COPIES * 16];
+    private final float[] mBatchedRotation = new float[16];
+    private int mBatchedModels = -1;
+
+    private PseudoInstancedMesh mInstancedMesh;
+    private float[] mInstanceOffsets = new float[0];
+    private ShaderProgram mInstancedPerVertexProgram;
+    private ShaderProgram mInstancedPerPixelProgram;
+    private int mProjectionMatrixHandle;
+    private int mOffsetsHandle;
+    private int mInstanceHandle;
+
+    private int mSweepStep = -1;
+    private int mSweepReports;
+    private int mSweepSavedMode;
+    private int mSweepSavedModels;
+    private boolean mSweepSavedChecks;
+
+    private long mLastFrameNanos;
+    private long mStatsStart;
+    private int mStatsFrames;
+    private long mStatsFrameNanos;
+    private long mStatsWorstFrameNanos;
+    private long mStatsDrawNanos;
+    private int mStatsRebuilds;
+
     /**
-     * This is a handle to our light point program.
+     * Our light point program, and its handles.
      */
-    private int mPointProgramHandle;
+    private ShaderProgram mPointProgram;
+    private int mPointMVPMatrixHandle;
+    private int mPointPositionHandle;
 
 
     private ActivtyDisplayScaled mLessonCylActivity;
@@ -222,21 +318,21 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
 
     @Override
     public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
+        // a new context starts from the GL defaults, whatever the last one left set
+        GLState.reset();
+        ProgramCache.reset(mLessonCylActivity);
+
 
         // Set the background clear color to black.
-        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 
         // Use culling to remove back faces.
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
+        GLState.enable(GLES20.GL_CULL_FACE);
 
         // Enable depth testing
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+        GLState.enable(GLES20.GL_DEPTH_TEST);
 
-        int glError;
-        glError = GLES20.glGetError();
-        if (glError != GLES20.GL_NO_ERROR) {
-            Log.e(LOG_TAG, "GLERROR: " + glError);
-        }
+        GLDebug.check("RendererDisplayScaled.onSurfaceCreated");
         // Position the eye in front of the origin.
         final float eyeX = 0.0f;
         final float eyeY = 0.0f;
@@ -257,21 +353,23 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
         // view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
         Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
 
-        String vertexShader = mXYZ.getVertexShaderLesson2();
-        String fragmentShader = mXYZ.getFragmentShaderLesson2();
-        int vertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
-        int fragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
-
-        mPerVertexProgramHandle = createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle,
-                new String[]{"a_Position", "a_Color", "a_Normal"});
+        // lesson 2 lighting for both - per vertex (attenuated) or per pixel, one source
+        mShaderVariants = new ShaderVariants(mLessonCylActivity)
+                .setConstant("LIGHT_MIN_DIFFUSE", "0.6")
+                .setConstant("LIGHT_ATTENUATION_LINEAR", "0.25")
+                .setConstant("LIGHT_AMBIENT", "0.0")
+                .setConstant("INSTANCE_COUNT", Integer.toString(COPIES_PER_INSTANCED_DRAW));
+        mPerVertexProgram = mShaderVariants.get(PER_VERTEX_LIGHTING);
+        mPerPixelProgram = mShaderVariants.get(PER_PIXEL_LIGHTING);
 
-        /* add in a pixel shader from lesson 3 - switchable */
-        vertexShader = mXYZ.getVertexShaderLesson3();
-        fragmentShader = mXYZ.getFragmentShaderLesson3();
-        vertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
-        fragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
-        mPerPixelProgramHandle = createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle,
-                new String[]{"a_Position", "a_Color", "a_Normal"});
+        /*
+         * the same two lighting models, taking their translation from u_Offsets:
+         *   u_MVMatrix holds what the copies share, u_Offsets[a_Instance] moves each copy
+         *   into place in eye space, and u_PMatrix finishes the job u_MVPMatrix used to do.
+         */
+        mInstancedPerVertexProgram = mShaderVariants.get(PER_VERTEX_LIGHTING | ShaderVariants.INSTANCED);
+        mInstancedPerPixelProgram = mShaderVariants.get(PER_PIXEL_LIGHTING | ShaderVariants.INSTANCED);
+        mSelectedProgram = null;
 
         // Define a simple shader program for our point (the orbiting light source)
         final String pointVertexShader =
@@ -292,10 +390,10 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
                         + "   1.0, 1.0, 1.0);             \n"
                         + "}                              \n";
 
-        final int pointVertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, pointVertexShader);
-        final int pointFragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, pointFragmentShader);
-        mPointProgramHandle = createAndLinkProgram(pointVertexShaderHandle, pointFragmentShaderHandle,
+        mPointProgram = new ShaderProgram(pointVertexShader, pointFragmentShader,
                 new String[]{"a_Position"});
+        mPointMVPMatrixHandle = mPointProgram.getUniform("u_MVPMatrix");
+        mPointPositionHandle = mPointProgram.getAttribute("a_Position");
 
         /*
          * begin the geometry assortment allocations
@@ -313,17 +411,30 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
                 chimera_color);
         mBufferManager.transferToGl();
 
+        // the batched and instanced modes transform / replicate their own copy of the helix
+        float[] helixVertexData = ToroidHelix.generateVertexData(chimera_color,
+                ToroidHelix.DEFAULT_NUM_SEGMENTS, ToroidHelix.DEFAULT_NUM_SIDES);
+        mStaticBatch = new StaticBatch(helixVertexData, chimera_color, MAX_BATCHED_COPIES);
+        mBatchedModels = -1;
+        mInstancedMesh = new PseudoInstancedMesh(helixVertexData, chimera_color, COPIES_PER_INSTANCED_DRAW);
 
         // Initialize the modifier matrices
         Matrix.setIdentityM(mAccumulatedRotation, 0);
         Matrix.setIdentityM(mAccumulatedTranslation, 0);
         Matrix.setIdentityM(mAccumulatedScaling, 0);
+
+        // the spin nodes start from the reset rotation
+        mLayoutModels = 0;
+
+        resetStats();
+
+        ProgramCache.logStats("RendererDisplayScaled");
     }
 
     @Override
     public void onSurfaceChanged(GL10 glUnused, int width, int height) {
         // Set the OpenGL viewport to the same size as the surface.
-        GLES20.glViewport(0, 0, width, height);
+        GL.glViewport(0, 0, width, height);
         mWidth = width;
         mHeight = height;
 
@@ -340,16 +451,13 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
 
         Matrix.frustumM(mProjectionMatrix, 0, left, right, bottom, top, near, far);
 
-        int glError;
-        glError = GLES20.glGetError();
-        if (glError != GLES20.GL_NO_ERROR) {
-            Log.e(LOG_TAG, "GLERROR: " + glError);
-        }
+        GLDebug.check("RendererDisplayScaled.onSurfaceChanged");
     }
 
     @Override
     public void onDrawFrame(GL10 glUnused) {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        GLState.resetCounters();
+        GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
         // Do a complete rotation every 10 seconds.
         long time = SystemClock.uptimeMillis() % 10000L;
@@ -401,21 +509,12 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
         mDeltaTranslateY = 0.0f;
 
         // Set our per-vertex lighting program.
-        if (mUseVertexShaderProgram) {
-            mSelectedProgramHandle = mPerVertexProgramHandle;
+        if (mRenderMode == MODE_PSEUDO_INSTANCED) {
+            use_program(mUseVertexShaderProgram ? mInstancedPerVertexProgram : mInstancedPerPixelProgram);
         } else {
-            mSelectedProgramHandle = mPerPixelProgramHandle;
+            use_program(mUseVertexShaderProgram ? mPerVertexProgram : mPerPixelProgram);
         }
 
-        GLES20.glUseProgram(mSelectedProgramHandle);
-        // Set program handles for drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mSelectedProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mSelectedProgramHandle, "u_MVMatrix");
-        mLightPosHandle = GLES20.glGetUniformLocation(mSelectedProgramHandle, "u_LightPos");
-        mPositionHandle = GLES20.glGetAttribLocation(mSelectedProgramHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(mSelectedProgramHandle, "a_Color");
-        mNormalHandle = GLES20.glGetAttribLocation(mSelectedProgramHandle, "a_Normal");
-
         int hack = 1; // orbit the light
         if (hack == 0) {
             // Calculate position of the light. Rotate and then push into the distance.
@@ -439,30 +538,42 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
             Matrix.multiplyMV(mLightPosInEyeSpace, 0, mViewMatrix, 0, mLightPosInWorldSpace, 0);
         }
 
-        for (int i = mModelsInScene; i > 0; i -= 9) {
-            int levels_back = (i-1)/9;
-            float zoffset = ((float) levels_back) * -1.0f - 2.5f;
-            float dispersion = ((float) levels_back) * .9f + 1.0f;
-            model_iterator(
-                    (i>=9)? 9 : i,
-                    zoffset,
-                    levels_back,
-                    dispersion
-            );
+        if (mLayoutModels != mModelsInScene) {
+            layoutModels(mModelsInScene);
         }
-
-        int glError;
-        glError = GLES20.glGetError();
-        if (glError != GLES20.GL_NO_ERROR) {
-            Log.e(LOG_TAG, "GLERROR: " + glError);
+        updateRotation();
+
+        long drawStart = System.nanoTime();
+        mDrawCalls = 0;
+        mVisibleCopies = 0;
+        mCulledCopies = 0;
+        if (mCullingEnabled) {
+            // world space planes for the batched and instanced paths; the scene graph keeps its own
+            Matrix.multiplyMM(mViewProjectionMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
+            mFrustum.extract(mViewProjectionMatrix);
         }
+        if (mRenderMode == MODE_STATIC_BATCH) {
+            drawStaticBatch();
+        } else if (mRenderMode == MODE_PSEUDO_INSTANCED) {
+            drawPseudoInstanced();
+        } else {
+            drawCopies(0, mModelsInScene);
+        }
+        mStatsDrawNanos += System.nanoTime() - drawStart;
+
+        GLDebug.check("RendererDisplayScaled.onDrawFrame");
+
+        mStateCallsIssued = GLState.getIssuedCalls();
+        mStateCallsElided = GLState.getElidedCalls();
+        reportStats();
     }
 
-    private void model_iterator(
-            int num,
-            float zoffset,
-            int levels_back,
-            float dispersion ) {
+    /*
+     * where every copy goes:  groups of up to 9 on a 3 x 3 grid, each group a step
+     * further back and more spread out than the one before, its center copy
+     * spiralling around.  copies are stored farthest group first, x y z each.
+     */
+    private void layoutModels(int count) {
 
         float[] xoffsetArray = {
                 0f, 1f, -1f, 0f, 0f, 1f, 1f, -1f, -1f
@@ -472,64 +583,238 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
                 0f, 0f, 0f, 1f, -1f, 1f, -1f, 1f, -1f
         };
 
-        float center_spiral_x;
-        float center_spiral_y;
-        float angle = ((float) levels_back) / 7.0f * 2.0f * (float)Math.PI;
+        if (mModelOffsets.length < count * 3) {
+            mModelOffsets = new float[count * 3];
+        }
+
+        int copy = 0;
+        for (int i = count; i > 0; i -= 9) {
+            int levels_back = (i-1)/9;
+            float zoffset = ((float) levels_back) * -1.0f - 2.5f;
+            float dispersion = ((float) levels_back) * .9f + 1.0f;
+            int num = (i>=9)? 9 : i;
+
+            float angle = ((float) levels_back) / 7.0f * 2.0f * (float)Math.PI;
+            float center_spiral_x = (float)Math.sin( angle ) * levels_back * 0.5f;
+            float center_spiral_y = (float)Math.cos( angle ) * levels_back * 0.5f;
+
+            for (int j = 0; j < num; j++) {
+                float x = xoffsetArray[j] * dispersion;
+                float y = yoffsetArray[j] * dispersion;
+                if ((j == 0) && (levels_back >= 1)) {
+                    x += center_spiral_x;
+                    y += center_spiral_y;
+                }
+                mModelOffsets[copy * 3] = x;
+                mModelOffsets[copy * 3 + 1] = y;
+                mModelOffsets[copy * 3 + 2] = zoffset;
+                copy++;
+            }
+        }
+        mLayoutModels = count;
 
-        center_spiral_x = (float)Math.sin( angle ) * levels_back * 0.5f;
-        center_spiral_y = (float)Math.cos( angle ) * levels_back * 0.5f;
+        // one placement node and one spin node per copy, for the per-copy path
+        mSceneGraph.clear();
+        mSpinNodeCount = 0;
+        for (int i = 0; i < count; i++) {
+            add_model_node(mModelOffsets[i * 3], mModelOffsets[i * 3 + 1], mModelOffsets[i * 3 + 2], MODEL_SCALE);
+        }
+    }
 
-        for (int i = 0; i < num; i++) {
+    /*
+     * set program handles for drawing - only when the program actually changes,
+     * the locations themselves were resolved when it was linked.  the instancing
+     * handles are -1 in the plain programs.
+     */
+    private void use_program(ShaderProgram program) {
+        program.use();
+        if (program == mSelectedProgram) {
+            return;
+        }
+        mSelectedProgram = program;
+        mMVPMatrixHandle = program.getUniform("u_MVPMatrix");
+        mMVMatrixHandle = program.getUniform("u_MVMatrix");
+        mLightPosHandle = program.getUniform("u_LightPos");
+        mPositionHandle = program.getAttribute("a_Position");
+        mColorHandle = program.getAttribute("a_Color");
+        mNormalHandle = program.getAttribute("a_Normal");
+        mProjectionMatrixHandle = program.getUniform("u_PMatrix");
+        mOffsetsHandle = program.getUniform("u_Offsets");
+        mInstanceHandle = program.getAttribute("a_Instance");
+    }
 
-            Matrix.setIdentityM(mModelMatrix, 0);
-            if ((i == 0) && (levels_back >= 1)){
-                Matrix.translateM(mModelMatrix,
-                        0,
-                        xoffsetArray[i] * dispersion + center_spiral_x,
-                        yoffsetArray[i] * dispersion + center_spiral_y,
-                        zoffset);
-            } else {
+    /*
+     * every copy is a placement node (translate, scale) with a spin node under it
+     * holding the shared touch rotation - the spin node is the one that gets drawn,
+     * and its world matrix is exactly the old model * accumulated rotation
+     */
+    private int add_model_node(float x, float y, float z, float scale) {
+        int placement = mSceneGraph.addNode(SceneGraph.NO_PARENT);
+        mSceneGraph.setLocalTranslateScale(placement, x, y, z, scale);
+
+        int spin = mSceneGraph.addNode(placement);
+        mSceneGraph.setLocal(spin, mAccumulatedRotation, 0);
+        mSceneGraph.setBounds(spin, 0f, 0f, 0f, ToroidHelix.BOUNDING_RADIUS);
+        if (mSpinNodeCount == mSpinNodes.length) {
+            mSpinNodes = Arrays.copyOf(mSpinNodes, mSpinNodeCount * 2);
+        }
+        mSpinNodes[mSpinNodeCount++] = spin;
+        return spin;
+    }
+
+    /*
+     * the original path: a matrix setup and a draw for every copy
+     */
+    private void drawCopies(int first, int last) {
+        if (first >= last) {
+            return;
+        }
+
+        // only the matrices the rotation or the camera changed get recomputed
+        mSceneGraph.setCamera(mViewMatrix, mProjectionMatrix);
+        mSceneGraph.update();
+
+        // Pass in the light position in eye space - once, it is the same for every copy.
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+
+        final float[] modelView = mSceneGraph.getModelViewMatrices();
+        final float[] modelViewProjection = mSceneGraph.getModelViewProjectionMatrices();
+        for (int i = first; i < last; i++) {
+            if (!mSceneGraph.isVisible(mSpinNodes[i])) {
+                mCulledCopies++;
+                continue;
+            }
+            mVisibleCopies++;
+            final int offset = mSpinNodes[i] * SceneGraph.FLOATS_PER_MATRIX;
+            GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, modelView, offset);
+            GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, modelViewProjection, offset);
+            mBufferManager.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+            mDrawCalls++;
+        }
+    }
+
+    /*
+     * every copy transformed once into world space and drawn a VBO at a time.
+     * the rotation is baked in too, so dragging the models around rebuilds the batch.
+     */
+    private void drawStaticBatch() {
+        final int batched = Math.min(mModelsInScene, mStaticBatch.getMaxCopies());
+
+        if (mBatchedModels != batched || !Arrays.equals(mBatchedRotation, mAccumulatedRotation)) {
+            for (int i = 0; i < batched; i++) {
+                Matrix.setIdentityM(mModelMatrix, 0);
                 Matrix.translateM(mModelMatrix,
                         0,
-                        xoffsetArray[i] * dispersion,
-                        yoffsetArray[i] * dispersion,
-                        zoffset);
+                        mModelOffsets[i * 3],
+                        mModelOffsets[i * 3 + 1],
+                        mModelOffsets[i * 3 + 2]);
+                Matrix.scaleM(mModelMatrix,
+                        0, MODEL_SCALE, MODEL_SCALE, MODEL_SCALE);
+                Matrix.multiplyMM(mBatchMatrices, i * 16, mModelMatrix, 0, mAccumulatedRotation, 0);
             }
-            Matrix.scaleM(mModelMatrix,
-                    0, .03f, .03f, .03f);
-            do_matrix_setup();
-            mBufferManager.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+            mStaticBatch.build(mBatchMatrices, batched);
+            System.arraycopy(mAccumulatedRotation, 0, mBatchedRotation, 0, 16);
+            mBatchedModels = batched;
+            mStatsRebuilds++;
+        }
+
+        // already in world space
+        Matrix.setIdentityM(mModelMatrix, 0);
+        set_matrix_uniforms();
+        // whole VBOs of copies are kept or dropped together
+        int visible = mStaticBatch.cull(mCullingEnabled ? mFrustum : null);
+        mVisibleCopies += visible;
+        mCulledCopies += batched - visible;
+        mStaticBatch.render(mPositionHandle, mColorHandle, mNormalHandle, mWireFrameRenderingFlag);
+        mDrawCalls += mStaticBatch.getDrawCalls();
+
+        // anything past what the batch holds goes the slow way
+        drawCopies(batched, mModelsInScene);
+    }
+
+    /*
+     * the copies only differ by a translation, so the shader gets one shared
+     * model-view (scale and rotation) and a vec4 eye space offset per copy
+     */
+    private void drawPseudoInstanced() {
+        final int count = mModelsInScene;
+        if (mInstanceOffsets.length < count * PseudoInstancedMesh.OFFSET_SIZE_IN_ELEMENTS) {
+            mInstanceOffsets = new float[count * PseudoInstancedMesh.OFFSET_SIZE_IN_ELEMENTS];
+        }
+
+        /*
+         * pack only the copies whose sphere touches the frustum - each copy's sphere
+         * is centered on its offset, the rotation does not move it.  the world offsets
+         * are rotated into eye space; the view's translation is already in the shared matrix.
+         */
+        final float[] v = mViewMatrix;
+        final float radius = ToroidHelix.BOUNDING_RADIUS * MODEL_SCALE;
+        int visible = 0;
+        for (int i = 0; i < count; i++) {
+            float x = mModelOffsets[i * 3];
+            float y = mModelOffsets[i * 3 + 1];
+            float z = mModelOffsets[i * 3 + 2];
+            if (mCullingEnabled && !mFrustum.isSphereVisible(x, y, z, radius)) {
+                continue;
+            }
+            int o = visible++ * PseudoInstancedMesh.OFFSET_SIZE_IN_ELEMENTS;
+            mInstanceOffsets[o] = v[0] * x + v[4] * y + v[8] * z;
+            mInstanceOffsets[o + 1] = v[1] * x + v[5] * y + v[9] * z;
+            mInstanceOffsets[o + 2] = v[2] * x + v[6] * y + v[10] * z;
+            mInstanceOffsets[o + 3] = 0f;
         }
+        mVisibleCopies += visible;
+        mCulledCopies += count - visible;
+
+        Matrix.setIdentityM(mModelMatrix, 0);
+        Matrix.scaleM(mModelMatrix, 0, MODEL_SCALE, MODEL_SCALE, MODEL_SCALE);
+        Matrix.multiplyMM(mTemporaryMatrix, 0, mModelMatrix, 0, mAccumulatedRotation, 0);
+        Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mTemporaryMatrix, 0);
+
+        GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mProjectionMatrixHandle, 1, false, mProjectionMatrix, 0);
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+
+        mInstancedMesh.render(mPositionHandle, mColorHandle, mNormalHandle, mInstanceHandle,
+                mOffsetsHandle, mInstanceOffsets, visible, mWireFrameRenderingFlag);
+        mDrawCalls += mInstancedMesh.getDrawCalls();
     }
 
+    private void updateRotation() {
+        final float deltaX = mDeltaX;
+        final float deltaY = mDeltaY;
+        mDeltaX = 0.0f;
+        mDeltaY = 0.0f;
 
+        if (deltaX == 0.0f && deltaY == 0.0f) {
+            return;
+        }
 
-    private void do_matrix_setup() {
         /*
          * Set a matrix that contains the additional *incremental* rotation
          * as indicated by the user touching the screen
          */
         Matrix.setIdentityM(mIncrementalRotation, 0);
-        Matrix.rotateM(mIncrementalRotation, 0, mDeltaX, 0.0f, 1.0f, 0.0f);
-        Matrix.rotateM(mIncrementalRotation, 0, mDeltaY, 1.0f, 0.0f, 0.0f);
-        mDeltaX = 0.0f;
-        mDeltaY = 0.0f;
+        Matrix.rotateM(mIncrementalRotation, 0, deltaX, 0.0f, 1.0f, 0.0f);
+        Matrix.rotateM(mIncrementalRotation, 0, deltaY, 1.0f, 0.0f, 0.0f);
 
         // Multiply the current rotation by the accumulated rotation, and then set the accumulated rotation to the result.
         Matrix.multiplyMM(mTemporaryMatrix, 0, mIncrementalRotation, 0, mAccumulatedRotation, 0);
         System.arraycopy(mTemporaryMatrix, 0, mAccumulatedRotation, 0, 16);
 
-        // Rotate the object taking the overall rotation into account.
-        Matrix.multiplyMM(mTemporaryMatrix, 0, mModelMatrix, 0, mAccumulatedRotation, 0);
-        System.arraycopy(mTemporaryMatrix, 0, mModelMatrix, 0, 16);
+        for (int i = 0; i < mSpinNodeCount; i++) {
+            mSceneGraph.setLocal(mSpinNodes[i], mAccumulatedRotation, 0);
+        }
+    }
 
+    private void set_matrix_uniforms() {
         // This multiplies the view matrix by the model matrix, and stores
         // the result in the MVP matrix
         // (which currently contains model * view).
         Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
 
         // Pass in the modelview matrix.
-        GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);
 
         // This multiplies the modelview matrix by the projection matrix,
         // and stores the result in the MVP matrix
@@ -538,122 +823,119 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
         System.arraycopy(mTemporaryMatrix, 0, mMVPMatrix, 0, 16);
 
         // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 
         // Pass in the light position in eye space.
-        GLES20.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
 
-        int glError;
-        glError = GLES20.glGetError();
-        if (glError != GLES20.GL_NO_ERROR) {
-            Log.e(LOG_TAG, "GLERROR: " + glError);
-        }
+        GLDebug.check("RendererDisplayScaled.set_matrix_uniforms");
     }
 
-    /**
-     * Draws a point representing the position of the light.
+    /*
+     * frame statistics - once a second the average and worst frame time and the
+     * time spent issuing the draws go to logcat and the screen.  during a sweep
+     * the last report of each step is also logged as one point of the curve:
+     *
+     *   curve,<mode>,<models>,<avg frame ms>,<worst frame ms>,<draw ms>,<draw calls>,<culled>
+     *
+     *   adb logcat -s Renderer | grep curve
      */
-    private void drawLight() {
-        final int pointMVPMatrixHandle = GLES20.glGetUniformLocation(mPointProgramHandle, "u_MVPMatrix");
-        final int pointPositionHandle = GLES20.glGetAttribLocation(mPointProgramHandle, "a_Position");
+    private void resetStats() {
+        mLastFrameNanos = 0;
+        mStatsStart = SystemClock.uptimeMillis();
+        mStatsFrames = 0;
+        mStatsFrameNanos = 0;
+        mStatsWorstFrameNanos = 0;
+        mStatsDrawNanos = 0;
+        mStatsRebuilds = 0;
+    }
 
-        // Pass in the position.
-        GLES20.glVertexAttrib3f(pointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
+    private void reportStats() {
+        long nowNanos = System.nanoTime();
+        if (mLastFrameNanos != 0) {
+            long frame = nowNanos - mLastFrameNanos;
+            mStatsFrames++;
+            mStatsFrameNanos += frame;
+            mStatsWorstFrameNanos = Math.max(mStatsWorstFrameNanos, frame);
+        }
+        mLastFrameNanos = nowNanos;
 
-        // Since we are not using a buffer object, disable vertex arrays for this attribute.
-        GLES20.glDisableVertexAttribArray(pointPositionHandle);
+        long now = SystemClock.uptimeMillis();
+        if (now - mStatsStart < 1000 || mStatsFrames == 0) {
+            return;
+        }
 
-        // Pass in the transformation matrix.
-        Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mLightModelMatrix, 0);
-        Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
-        GLES20.glUniformMatrix4fv(pointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        final float averageMillis = mStatsFrameNanos / 1e6f / mStatsFrames;
+        final float worstMillis = mStatsWorstFrameNanos / 1e6f;
+        final float drawMillis = mStatsDrawNanos / 1e6f / mStatsFrames;
+        final String stats = String.format(
+                "%-12s %4d models %3d draws  visible %4d culled %4d  state %4d elided %4d  checks %-3s  frame %6.2f / %6.2f ms  draw %6.2f ms  rebuilds %d",
+                MODE_NAMES[mRenderMode], mModelsInScene, mDrawCalls, mVisibleCopies, mCulledCopies,
+                mStateCallsIssued, mStateCallsElided, GLDebug.isEnabled() ? "on" : "off",
+                averageMillis, worstMillis, drawMillis, mStatsRebuilds);
+        Log.w(LOG_TAG, stats);
+        mLessonCylActivity.updateFrameStats(stats);
+
+        if (mSweepStep >= 0 && ++mSweepReports == SWEEP_REPORTS_PER_STEP) {
+            Log.w(LOG_TAG, String.format("curve,%s,%d,%s,%.2f,%.2f,%.2f,%d,%d",
+                    MODE_NAMES[mRenderMode], mModelsInScene, GLDebug.isEnabled() ? "on" : "off",
+                    averageMillis, worstMillis, drawMillis, mDrawCalls, mCulledCopies));
+            nextSweepStep();
+        }
 
-        // Draw the point.
-        GLES20.glDrawArrays(GLES20.GL_POINTS, 0, 1);
+        resetStats();
+        mLastFrameNanos = nowNanos;
     }
 
-    /**
-     * Helper function to compile a shader.
-     *
-     * @param shaderType   The shader type.
-     * @param shaderSource The shader source code.
-     * @return An OpenGL handle to the shader.
+    /*
+     * sweep: every mode at every SWEEP_MODEL_COUNTS, a few seconds each - the first
+     * reports of a step settle (and include any rebuild), the last one is the sample.
+     * debug builds run each step twice, GL error checks off then on, so the cost of
+     * the glGetError syncs shows up as neighbouring rows of the curve.
      */
-    private int compileShader(final int shaderType, final String shaderSource) {
-        int shaderHandle = GLES20.glCreateShader(shaderType);
-
-        if (shaderHandle != 0) {
-            // Pass in the shader source.
-            GLES20.glShaderSource(shaderHandle, shaderSource);
-
-            // Compile the shader.
-            GLES20.glCompileShader(shaderHandle);
-
-            // Get the compilation status.
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-            // If the compilation failed, delete the shader.
-            if (compileStatus[0] == 0) {
-                Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shaderHandle));
-                GLES20.glDeleteShader(shaderHandle);
-                shaderHandle = 0;
-            }
-        }
-
-        if (shaderHandle == 0) {
-            throw new RuntimeException("Error creating shader.");
+    private void nextSweepStep() {
+        final int passes = GLDebug.AVAILABLE ? 2 : 1;
+        mSweepStep++;
+        mSweepReports = 0;
+        if (mSweepStep == MODE_NAMES.length * SWEEP_MODEL_COUNTS.length * passes) {
+            Log.w(LOG_TAG, "sweep done");
+            stopSweep();
+            return;
         }
+        final int step = mSweepStep / passes;
+        GLDebug.setEnabled(mSweepStep % passes == 1);
+        mRenderMode = step / SWEEP_MODEL_COUNTS.length;
+        mModelsInScene = SWEEP_MODEL_COUNTS[step % SWEEP_MODEL_COUNTS.length];
+        mLessonCylActivity.updateRenderModeStatus((mRenderMode + 1) % MODE_NAMES.length);
+    }
 
-        return shaderHandle;
+    private void stopSweep() {
+        mSweepStep = -1;
+        mRenderMode = mSweepSavedMode;
+        mModelsInScene = mSweepSavedModels;
+        GLDebug.setEnabled(mSweepSavedChecks);
+        mLessonCylActivity.updateRenderModeStatus((mRenderMode + 1) % MODE_NAMES.length);
+        mLessonCylActivity.updateSweepStatus(false);
     }
 
     /**
-     * Helper function to compile and link a program.
-     *
-     * @param vertexShaderHandle   An OpenGL handle to an already-compiled vertex shader.
-     * @param fragmentShaderHandle An OpenGL handle to an already-compiled fragment shader.
-     * @param attributes           Attributes that need to be bound to the program.
-     * @return An OpenGL handle to the program.
-     */
-    private int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) {
-        int programHandle = GLES20.glCreateProgram();
-
-        if (programHandle != 0) {
-            // Bind the vertex shader to the program.
-            GLES20.glAttachShader(programHandle, vertexShaderHandle);
-
-            // Bind the fragment shader to the program.
-            GLES20.glAttachShader(programHandle, fragmentShaderHandle);
-
-            // Bind attributes
-            if (attributes != null) {
-                final int size = attributes.length;
-                for (int i = 0; i < size; i++) {
-                    GLES20.glBindAttribLocation(programHandle, i, attributes[i]);
-                }
-            }
-
-            // Link the two shaders together into a program.
-            GLES20.glLinkProgram(programHandle);
-
-            // Get the link status.
-            final int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+     * Draws a point representing the position of the light.
+     */
+    private void drawLight() {
+        // Pass in the position.
+        GL.glVertexAttrib3f(mPointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
 
-            // If the link failed, delete the program.
-            if (linkStatus[0] == 0) {
-                Log.e(TAG, "Error compiling program: " + GLES20.glGetProgramInfoLog(programHandle));
-                GLES20.glDeleteProgram(programHandle);
-                programHandle = 0;
-            }
-        }
+        // Since we are not using a buffer object, disable vertex arrays for this attribute.
+        GLState.disableVertexAttribArray(mPointPositionHandle);
 
-        if (programHandle == 0) {
-            throw new RuntimeException("Error creating program.");
-        }
+        // Pass in the transformation matrix.
+        Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mLightModelMatrix, 0);
+        Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mPointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 
-        return programHandle;
+        // Draw the point.
+        FrameProfiler.drawArrays(GLES20.GL_POINTS, 0, 1);
+        GLDebug.check("RendererDisplayScaled.drawLight glDrawArrays");
     }
 
     public void toggleShader() {
@@ -676,6 +958,37 @@ public class RendererDisplayScaled implements GLSurfaceView.Renderer {
         }
     }
 
+    public void nextRenderMode() {
+        if (mSweepStep >= 0) {
+            return;
+        }
+        mRenderMode = (mRenderMode + 1) % MODE_NAMES.length;
+        resetStats();
+        mLessonCylActivity.updateRenderModeStatus((mRenderMode + 1) % MODE_NAMES.length);
+    }
+
+    public void toggleCulling() {
+        mCullingEnabled = !mCullingEnabled;
+        mSceneGraph.setCullingEnabled(mCullingEnabled);
+        resetStats();
+        mLessonCylActivity.updateCullingStatus(mCullingEnabled);
+    }
+
+    public void toggleSweep() {
+        if (mSweepStep >= 0) {
+            Log.w(LOG_TAG, "sweep stopped");
+            stopSweep();
+        } else {
+            mSweepSavedMode = mRenderMode;
+            mSweepSavedModels = mModelsInScene;
+            mSweepSavedChecks = GLDebug.isEnabled();
+            Log.w(LOG_TAG, "curve,mode,models,gl checks,frame ms,worst frame ms,draw ms,draw calls,culled");
+            nextSweepStep();
+            mLessonCylActivity.updateSweepStatus(true);
+        }
+        resetStats();
+    }
+
     public void fewerTris() {
         if (mModelsInScene == 1) {
             return;
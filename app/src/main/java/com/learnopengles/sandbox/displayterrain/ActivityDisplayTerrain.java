@@ -0,0 +1,175 @@
+package com.learnopengles.sandbox.displayterrain;
+
+import android.app.Activity;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.pm.ConfigurationInfo;
+import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
+
+public class ActivityDisplayTerrain extends Activity
+{
+    /** Hold a reference to our GLSurfaceView */
+	private GLSurfaceViewDisplayTerrain mGLSurfaceView;
+	private RendererDisplayTerrain mRenderer;
+
+	@Override
+	public void onCreate(Bundle savedInstanceState)
+	{
+		super.onCreate(savedInstanceState);
+
+        setContentView(R.layout.display_terrain);
+        ProfilerOverlay.attach(this);
+
+        mGLSurfaceView = (GLSurfaceViewDisplayTerrain) findViewById(R.id.gl_surface_view);
+
+		// Check if the system supports OpenGL ES 2.0.
+		final ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+		final ConfigurationInfo configurationInfo = activityManager.getDeviceConfigurationInfo();
+		final boolean supportsEs2 = configurationInfo.reqGlEsVersion >= 0x20000;
+
+		if (supportsEs2)
+		{
+			// Request an OpenGL ES 2.0 compatible context.
+			mGLSurfaceView.setEGLContextClientVersion(2);
+
+            final DisplayMetrics displayMetrics = new DisplayMetrics();
+            getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
+
+            mRenderer = new RendererDisplayTerrain(this, mGLSurfaceView);
+			mGLSurfaceView.setRenderer(mRenderer, displayMetrics.density);
+		}
+		else
+		{
+			// This is where you could create an OpenGL ES 1.x compatible
+			// renderer if you wanted to support both ES 1 and ES 2.
+			return;
+		}
+
+		findViewById(R.id.button_terrain_lod).setOnClickListener(new View.OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				toggleLod();
+			}
+		});
+
+		findViewById(R.id.button_terrain_culling).setOnClickListener(new View.OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				toggleCulling();
+			}
+		});
+
+		findViewById(R.id.button_switch_rendering_mode).setOnClickListener(new View.OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				toggleWireframe();
+			}
+		});
+	}
+
+	@Override
+	protected void onResume() {
+		// The activity must call the GL surface view's onResume() on activity
+		// onResume().
+		super.onResume();
+		mGLSurfaceView.onResume();
+		if (mRenderer != null) {
+			mRenderer.getRenderScheduler().resetStats();
+		}
+	}
+
+	@Override
+	protected void onPause() {
+		// The activity must call the GL surface view's onPause() on activity
+		// onPause().
+		super.onPause();
+		mGLSurfaceView.onPause();
+		if (mRenderer != null) {
+			mRenderer.getRenderScheduler().logStats();
+		}
+	}
+
+    protected void toggleLod() {
+        mGLSurfaceView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.toggleLod();
+            }
+        });
+    }
+
+    protected void toggleCulling() {
+        mGLSurfaceView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.toggleCulling();
+            }
+        });
+    }
+
+    protected void toggleWireframe() {
+        mGLSurfaceView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.toggleWireframeFlag();
+            }
+        });
+    }
+
+    public void updateFrameStats(final String stats) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                ((TextView) findViewById(R.id.text_terrain_stats)).setText(stats);
+            }
+        });
+    }
+
+    public void updateLodStatus(final boolean lodEnabled) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (lodEnabled) {
+                    ((Button) findViewById(R.id.button_terrain_lod)).setText(R.string.button_terrain_full_detail);
+                } else {
+                    ((Button) findViewById(R.id.button_terrain_lod)).setText(R.string.button_terrain_geomipmap);
+                }
+            }
+        });
+    }
+
+    public void updateCullingStatus(final boolean cullingEnabled) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (cullingEnabled) {
+                    ((Button) findViewById(R.id.button_terrain_culling)).setText(R.string.button_terrain_no_culling);
+                } else {
+                    ((Button) findViewById(R.id.button_terrain_culling)).setText(R.string.button_terrain_culling);
+                }
+            }
+        });
+    }
+
+    public void updateWireframeStatus(final boolean wireFrameRendering) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (wireFrameRendering) {
+                    ((Button) findViewById(
+                            R.id.button_switch_rendering_mode)).setText(R.string.button_objects_using_triangle_rendering);
+                } else {
+                    ((Button) findViewById(
+                            R.id.button_switch_rendering_mode)).setText(R.string.button_objects_using_wireframe_rendering);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.learnopengles.sandbox.displayterrain;
+
+import android.content.Context;
+import android.opengl.GLSurfaceView;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+
+import com.learnopengles.sandbox.common.FrameProfiler;
+
+public class GLSurfaceViewDisplayTerrain extends GLSurfaceView
+{
+	private RendererDisplayTerrain mRenderer;
+
+	// Offsets for touch events
+    private float mPreviousX;
+    private float mPreviousY;
+    private float mDensity;
+
+	public GLSurfaceViewDisplayTerrain(Context context)
+	{
+		super(context);
+	}
+
+	public GLSurfaceViewDisplayTerrain(Context context, AttributeSet attrs)
+	{
+		super(context, attrs);
+	}
+
+	@Override
+	public boolean onTouchEvent(MotionEvent m)
+	{
+		if (m != null)
+		{
+			float x = m.getX();
+			float y = m.getY();
+
+			if (m.getAction() == MotionEvent.ACTION_MOVE) {
+				if (mRenderer != null) {
+					float deltaX = (x - mPreviousX) / mDensity / 2f;
+					float deltaY = (y - mPreviousY) / mDensity / 2f;
+
+					mRenderer.mDeltaX += deltaX;
+					mRenderer.mDeltaY += deltaY;
+					requestRender();
+				}
+			}
+			mPreviousX = x;
+			mPreviousY = y;
+
+			return true;
+		}
+		else
+		{
+			return super.onTouchEvent(m);
+		}
+	}
+
+	// Hides superclass method.
+	public void setRenderer(RendererDisplayTerrain renderer, float density)
+	{
+		mRenderer = renderer;
+		mDensity = density;
+		super.setRenderer(FrameProfiler.wrap(renderer));
+		renderer.getRenderScheduler().attach();
+	}
+}
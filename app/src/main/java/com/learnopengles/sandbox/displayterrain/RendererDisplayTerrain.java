@@ -0,0 +1,340 @@
+package com.learnopengles.sandbox.displayterrain;
+
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.opengl.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.RenderScheduler;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
+import com.learnopengles.sandbox.common.WorkerPool;
+import com.learnopengles.sandbox.objects.HeightField;
+import com.learnopengles.sandbox.objects.Terrain;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/*
+ * walk over a large chunked Terrain
+ *
+ *   drag left / right to turn, up / down to move.
+ *   the buttons switch geomipmapping and chunk culling off, to compare
+ *   against drawing every chunk at full detail.
+ *
+ *   the height field and the chunk data are built once, on a background thread,
+ *   and kept; the GL thread uploads them once they are ready, and again into
+ *   every new context.
+ *
+ *   the camera only moves when dragged, so frames are drawn on demand.
+ */
+public class RendererDisplayTerrain implements GLSurfaceView.Renderer {
+
+    private static final String LOG_TAG = "RendererTerrain";
+
+    public static final int TERRAIN_SIZE = 1024;
+    private static final float CELL_SIZE = 0.1f;
+    private static final float HEIGHT_SCALE = 10f;
+    private static final float EYE_HEIGHT = 1.5f;
+
+    /** Identifiers for our uniforms and attributes inside the shaders. */
+    private static final String MVP_MATRIX_UNIFORM = "u_MVPMatrix";
+    private static final String MV_MATRIX_UNIFORM = "u_MVMatrix";
+    private static final String LIGHT_POSITION_UNIFORM = "u_LightPos";
+
+    private static final String POSITION_ATTRIBUTE = "a_Position";
+    private static final String NORMAL_ATTRIBUTE = "a_Normal";
+    private static final String COLOR_ATTRIBUTE = "a_Color";
+
+    // update to add touch control - these are set by the SurfaceView class
+    public volatile float mDeltaX;
+    public volatile float mDeltaY;
+
+    private final ActivityDisplayTerrain mActivity;
+    private final RenderScheduler mRenderScheduler;
+
+    private final float[] mViewMatrix = new float[16];
+    private final float[] mProjectionMatrix = new float[16];
+    private final float[] mMVPMatrix = new float[16];
+
+    /** The light sits high over the middle of the field. */
+    private final float[] mLightPosInWorldSpace = new float[]{0.0f, 60.0f, 0.0f, 1.0f};
+    private final float[] mLightPosInEyeSpace = new float[4];
+
+    private ShaderProgram mProgram;
+    private int mMVPMatrixUniform;
+    private int mMVMatrixUniform;
+    private int mLightPosUniform;
+    private int mPositionAttribute;
+    private int mNormalAttribute;
+    private int mColorAttribute;
+
+    private Terrain mTerrain;
+
+    /*
+     * handed over from the builder thread, staging data and all, so a lost
+     * GL context only costs an upload
+     */
+    private volatile Terrain mBuiltTerrain;
+
+    /*
+     * not on the worker pool itself - the build fans out over the pool and
+     * would run serially from inside it
+     */
+    private final ExecutorService mBuilder;
+
+    private boolean mWireFrameRenderingFlag = false;
+    private boolean mLodEnabled = true;
+    private boolean mCullingEnabled = true;
+
+    /*
+     * camera - heading in degrees, 0 looks toward -z
+     */
+    private float mCameraX = 0f;
+    private float mCameraZ = TERRAIN_SIZE * CELL_SIZE * 0.4f;
+    private float mHeading = 0f;
+
+    /*
+     * frame statistics, reported once a second
+     */
+    private long mStatsStart;
+    private int mStatsFrames;
+    private long mStatsTriangles;
+
+    public RendererDisplayTerrain(final ActivityDisplayTerrain activity, final GLSurfaceView glSurfaceView) {
+        mActivity = activity;
+        mRenderScheduler = new RenderScheduler("RendererDisplayTerrain", glSurfaceView);
+
+        mBuilder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, LOG_TAG + "-build");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        startBuild();
+        // one build, kept for every context - the thread goes when it is done
+        mBuilder.shutdown();
+    }
+
+    public RenderScheduler getRenderScheduler() {
+        return mRenderScheduler;
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
+        // a new context starts from the GL defaults, whatever the last one left set
+        GLState.reset();
+        ProgramCache.reset(mActivity);
+
+
+        // Set the background clear color to a hazy sky.
+        GL.glClearColor(0.55f, 0.65f, 0.8f, 0.0f);
+
+        // Use culling to remove back faces.
+        GLState.enable(GLES20.GL_CULL_FACE);
+
+        // Enable depth testing
+        GLState.enable(GLES20.GL_DEPTH_TEST);
+
+        // per pixel lighting, lit from behind as well - the surface is seen from both sides
+        mProgram = new ShaderVariants(mActivity).get(ShaderVariants.VERTEX_COLOR
+                | ShaderVariants.TWO_SIDED_LIGHTING | ShaderVariants.ATTENUATION);
+        mMVPMatrixUniform = mProgram.getUniform(MVP_MATRIX_UNIFORM);
+        mMVMatrixUniform = mProgram.getUniform(MV_MATRIX_UNIFORM);
+        mLightPosUniform = mProgram.getUniform(LIGHT_POSITION_UNIFORM);
+        mPositionAttribute = mProgram.getAttribute(POSITION_ATTRIBUTE);
+        mNormalAttribute = mProgram.getAttribute(NORMAL_ATTRIBUTE);
+        mColorAttribute = mProgram.getAttribute(COLOR_ATTRIBUTE);
+
+        // any buffers from a previous context are gone with it; the built terrain
+        // is uploaded again at the next frame
+        mTerrain = null;
+
+        mStatsStart = SystemClock.uptimeMillis();
+        mStatsFrames = 0;
+        mStatsTriangles = 0;
+
+        ProgramCache.logStats("RendererDisplayTerrain");
+    }
+
+    private void startBuild() {
+        mBuilder.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.uptimeMillis();
+                float heights[] = generateHeights(TERRAIN_SIZE);
+                HeightField field = HeightField.fromHeights(heights, TERRAIN_SIZE, TERRAIN_SIZE,
+                        CELL_SIZE, HEIGHT_SCALE);
+                Log.w(LOG_TAG, "height field " + TERRAIN_SIZE + " x " + TERRAIN_SIZE + " in "
+                        + (SystemClock.uptimeMillis() - start) + " ms");
+
+                Terrain terrain = new Terrain(field);
+                terrain.setRetainStagingData(true);
+                mBuiltTerrain = terrain;
+                mRenderScheduler.requestFrame();
+            }
+        });
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 glUnused, int width, int height) {
+        // Set the OpenGL viewport to the same size as the surface.
+        GL.glViewport(0, 0, width, height);
+
+        final float ratio = (float) width / height;
+        final float near = 0.1f;
+        final float far = TERRAIN_SIZE * CELL_SIZE;
+
+        Matrix.perspectiveM(mProjectionMatrix, 0, 60f, ratio, near, far);
+    }
+
+    @Override
+    public void onDrawFrame(GL10 glUnused) {
+        GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+
+        if (mTerrain == null) {
+            Terrain built = mBuiltTerrain;
+            if (built == null) {
+                mRenderScheduler.frameDrawn(false);
+                return;
+            }
+            built.uploadToGl();
+            built.setLodEnabled(mLodEnabled);
+            built.setCullingEnabled(mCullingEnabled);
+            mTerrain = built;
+        }
+
+        moveCamera();
+
+        // the terrain sits at the origin, so model-view is just the view
+        Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
+        mTerrain.update(mViewMatrix, mMVPMatrix);
+
+        mProgram.use();
+
+        Matrix.multiplyMV(mLightPosInEyeSpace, 0, mViewMatrix, 0, mLightPosInWorldSpace, 0);
+
+        GL.glUniformMatrix4fv(mMVMatrixUniform, 1, false, mViewMatrix, 0);
+        GL.glUniformMatrix4fv(mMVPMatrixUniform, 1, false, mMVPMatrix, 0);
+        GL.glUniform3f(mLightPosUniform, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+
+        mTerrain.render(mPositionAttribute, mColorAttribute, mNormalAttribute, mWireFrameRenderingFlag);
+
+        reportStats();
+        mRenderScheduler.frameDrawn(false);
+    }
+
+    /*
+     * turn with x, walk with y, and stay a fixed height over the ground
+     */
+    private void moveCamera() {
+        mHeading += mDeltaX;
+        float move = -mDeltaY * 0.05f;
+        mDeltaX = 0f;
+        mDeltaY = 0f;
+
+        final float headingRadians = (float) Math.toRadians(mHeading);
+        final float forwardX = (float) Math.sin(headingRadians);
+        final float forwardZ = (float) -Math.cos(headingRadians);
+
+        final float limit = (TERRAIN_SIZE - 1) * CELL_SIZE / 2f;
+        mCameraX = Math.max(-limit, Math.min(limit, mCameraX + forwardX * move));
+        mCameraZ = Math.max(-limit, Math.min(limit, mCameraZ + forwardZ * move));
+
+        final float eyeY = mTerrain.getHeightAt(mCameraX, mCameraZ) + EYE_HEIGHT;
+
+        // look ahead and slightly down
+        Matrix.setLookAtM(mViewMatrix, 0,
+                mCameraX, eyeY, mCameraZ,
+                mCameraX + forwardX * 10f, eyeY - 2f, mCameraZ + forwardZ * 10f,
+                0.0f, 1.0f, 0.0f);
+    }
+
+    private void reportStats() {
+        mStatsFrames++;
+        mStatsTriangles += mTerrain.getTrianglesDrawn();
+
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mStatsStart;
+        if (elapsed < 1000) {
+            return;
+        }
+
+        final String stats = String.format("%5.1f fps  %6.2f ms  chunks %d / %d  culled %d  tris %d",
+                mStatsFrames * 1000f / elapsed,
+                (float) elapsed / mStatsFrames,
+                mTerrain.getVisibleChunks(),
+                mTerrain.getChunkCount(),
+                mTerrain.getCulledChunks(),
+                mStatsTriangles / mStatsFrames);
+        Log.w(LOG_TAG, stats);
+        mActivity.updateFrameStats(stats);
+
+        mStatsStart = now;
+        mStatsFrames = 0;
+        mStatsTriangles = 0;
+    }
+
+    /*
+     * rolling hills: a few octaves of crossed sine waves, spread over the worker pool
+     */
+    public static float[] generateHeights(final int size) {
+        final float heights[] = new float[size * size];
+
+        WorkerPool.forRange(size, 16, new WorkerPool.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int z = start; z < end; z++) {
+                    for (int x = 0; x < size; x++) {
+                        float h = 0f;
+                        float amplitude = 0.5f;
+                        float frequency = 2f * (float) Math.PI / 256f;
+                        for (int octave = 0; octave < 5; octave++) {
+                            h += amplitude * (float) (Math.sin(x * frequency + octave * 1.7f)
+                                    * Math.cos(z * frequency * 1.3f + octave * 0.9f));
+                            amplitude *= 0.5f;
+                            frequency *= 2.03f;
+                        }
+                        // the octaves sum to within -1..1
+                        heights[z * size + x] = (h + 1f) / 2f;
+                    }
+                }
+            }
+        });
+        return heights;
+    }
+
+    public void toggleWireframeFlag() {
+        mWireFrameRenderingFlag = !mWireFrameRenderingFlag;
+        mActivity.updateWireframeStatus(mWireFrameRenderingFlag);
+        mRenderScheduler.requestFrame();
+    }
+
+    public void toggleLod() {
+        mLodEnabled = !mLodEnabled;
+        if (mTerrain != null) {
+            mTerrain.setLodEnabled(mLodEnabled);
+        }
+        mActivity.updateLodStatus(mLodEnabled);
+        mRenderScheduler.requestFrame();
+    }
+
+    public void toggleCulling() {
+        mCullingEnabled = !mCullingEnabled;
+        if (mTerrain != null) {
+            mTerrain.setCullingEnabled(mCullingEnabled);
+        }
+        mActivity.updateCullingStatus(mCullingEnabled);
+        mRenderScheduler.requestFrame();
+    }
+}
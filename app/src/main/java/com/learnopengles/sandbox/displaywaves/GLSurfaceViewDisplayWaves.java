@@ -0,0 +1,64 @@
+package com.learnopengles.sandbox.displaywaves;
+
+import android.content.Context;
+import android.opengl.GLSurfaceView;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+
+import com.learnopengles.sandbox.common.FrameProfiler;
+
+public class GLSurfaceViewDisplayWaves extends GLSurfaceView
+{
+	private RendererDisplayWaves mRenderer;
+
+	// Offsets for touch events
+    private float mPreviousX;
+    private float mPreviousY;
+    private float mDensity;
+
+	public GLSurfaceViewDisplayWaves(Context context)
+	{
+		super(context);
+	}
+
+	public GLSurfaceViewDisplayWaves(Context context, AttributeSet attrs)
+	{
+		super(context, attrs);
+	}
+
+	@Override
+	public boolean onTouchEvent(MotionEvent m)
+	{
+		if (m != null)
+		{
+			float x = m.getX();
+			float y = m.getY();
+
+			if (m.getAction() == MotionEvent.ACTION_MOVE) {
+				if (mRenderer != null) {
+					float deltaX = (x - mPreviousX) / mDensity / 2f;
+					float deltaY = (y - mPreviousY) / mDensity / 2f;
+
+					mRenderer.mDeltaX += deltaX;
+					mRenderer.mDeltaY += deltaY;
+				}
+			}
+			mPreviousX = x;
+			mPreviousY = y;
+
+			return true;
+		}
+		else
+		{
+			return super.onTouchEvent(m);
+		}
+	}
+
+	// Hides superclass method.
+	public void setRenderer(RendererDisplayWaves renderer, float density)
+	{
+		mRenderer = renderer;
+		mDensity = density;
+		super.setRenderer(FrameProfiler.wrap(renderer));
+	}
+}
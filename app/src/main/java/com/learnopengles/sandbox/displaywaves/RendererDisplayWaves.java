@@ -0,0 +1,239 @@
+package com.learnopengles.sandbox.displaywaves;
+
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.opengl.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
+import com.learnopengles.sandbox.objects.DynamicHeightMap;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/*
+ * an animated surface, regenerated every frame off the GL thread
+ *
+ *   drag to rotate.  the grid button steps through 32, 64, 128 and 256 vertices a side;
+ *   once a second the frame time (average and worst), generation and upload
+ *   times and the number of frames that had to reuse the previous surface are
+ *   shown and logged.
+ */
+public class RendererDisplayWaves implements GLSurfaceView.Renderer {
+
+    private static final String LOG_TAG = "RendererWaves";
+
+    private static final int GRID_SIZES[] = {32, 64, 128, 256};
+
+    /** Identifiers for our uniforms and attributes inside the shaders. */
+    private static final String MVP_MATRIX_UNIFORM = "u_MVPMatrix";
+    private static final String MV_MATRIX_UNIFORM = "u_MVMatrix";
+    private static final String LIGHT_POSITION_UNIFORM = "u_LightPos";
+
+    private static final String POSITION_ATTRIBUTE = "a_Position";
+    private static final String NORMAL_ATTRIBUTE = "a_Normal";
+    private static final String COLOR_ATTRIBUTE = "a_Color";
+
+    // update to add touch control - these are set by the SurfaceView class
+    public volatile float mDeltaX;
+    public volatile float mDeltaY;
+
+    private final ActivityDisplayWaves mActivity;
+
+    private final float[] mModelMatrix = new float[16];
+    private final float[] mViewMatrix = new float[16];
+    private final float[] mProjectionMatrix = new float[16];
+    private final float[] mMVMatrix = new float[16];
+    private final float[] mMVPMatrix = new float[16];
+    private final float[] mAccumulatedRotation = new float[16];
+    private final float[] mCurrentRotation = new float[16];
+    private final float[] mTemporaryMatrix = new float[16];
+
+    private final float[] mLightPosInWorldSpace = new float[]{0.0f, 6.0f, 2.0f, 1.0f};
+    private final float[] mLightPosInEyeSpace = new float[4];
+
+    private final float[] mWaterColor = new float[]{0.15f, 0.45f, 0.75f, 1.0f};
+
+    private ShaderProgram mProgram;
+    private int mMVPMatrixUniform;
+    private int mMVMatrixUniform;
+    private int mLightPosUniform;
+    private int mPositionAttribute;
+    private int mNormalAttribute;
+    private int mColorAttribute;
+
+    private DynamicHeightMap mSurface;
+    private int mGridSizeIndex = 2;
+    private boolean mWireFrameRenderingFlag = false;
+
+    private long mStartTime;
+
+    /*
+     * frame statistics, reported once a second
+     */
+    private long mLastFrameNanos;
+    private long mStatsStart;
+    private int mStatsFrames;
+    private long mStatsFrameNanos;
+    private long mStatsWorstFrameNanos;
+    private long mStatsGenerateNanos;
+    private long mStatsUploadNanos;
+
+    public RendererDisplayWaves(final ActivityDisplayWaves activity) {
+        mActivity = activity;
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
+        // a new context starts from the GL defaults, whatever the last one left set
+        GLState.reset();
+        ProgramCache.reset(mActivity);
+
+
+        // Set the background clear color to black.
+        GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+
+        // Enable depth testing
+        GLState.enable(GLES20.GL_DEPTH_TEST);
+
+        Matrix.setLookAtM(mViewMatrix, 0,
+                0.0f, 6.0f, 9.0f,
+                0.0f, 0.0f, 0.0f,
+                0.0f, 1.0f, 0.0f);
+
+        // per pixel lighting, lit from behind as well - the surface is seen from both sides
+        mProgram = new ShaderVariants(mActivity).get(ShaderVariants.VERTEX_COLOR
+                | ShaderVariants.TWO_SIDED_LIGHTING | ShaderVariants.ATTENUATION);
+        mMVPMatrixUniform = mProgram.getUniform(MVP_MATRIX_UNIFORM);
+        mMVMatrixUniform = mProgram.getUniform(MV_MATRIX_UNIFORM);
+        mLightPosUniform = mProgram.getUniform(LIGHT_POSITION_UNIFORM);
+        mPositionAttribute = mProgram.getAttribute(POSITION_ATTRIBUTE);
+        mNormalAttribute = mProgram.getAttribute(NORMAL_ATTRIBUTE);
+        mColorAttribute = mProgram.getAttribute(COLOR_ATTRIBUTE);
+
+        // Initialize the accumulated rotation matrix
+        Matrix.setIdentityM(mAccumulatedRotation, 0);
+
+        // the old context took its buffers with it; only the generator thread needs stopping
+        if (mSurface != null) {
+            mSurface.shutdown();
+        }
+        mSurface = new DynamicHeightMap(GRID_SIZES[mGridSizeIndex], DynamicHeightMap.WAVES, mWaterColor);
+        mStartTime = SystemClock.uptimeMillis();
+        resetStats();
+
+        ProgramCache.logStats("RendererDisplayWaves");
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 glUnused, int width, int height) {
+        // Set the OpenGL viewport to the same size as the surface.
+        GL.glViewport(0, 0, width, height);
+
+        final float ratio = (float) width / height;
+        Matrix.perspectiveM(mProjectionMatrix, 0, 50f, ratio, 1.0f, 100.0f);
+    }
+
+    @Override
+    public void onDrawFrame(GL10 glUnused) {
+        GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+
+        // upload whatever the generator has finished and ask for the next frame
+        final float time = (SystemClock.uptimeMillis() - mStartTime) / 1000f;
+        mSurface.update(time);
+
+        mProgram.use();
+
+        Matrix.multiplyMV(mLightPosInEyeSpace, 0, mViewMatrix, 0, mLightPosInWorldSpace, 0);
+
+        // Set a matrix that contains the current rotation.
+        Matrix.setIdentityM(mCurrentRotation, 0);
+        Matrix.rotateM(mCurrentRotation, 0, mDeltaX, 0.0f, 1.0f, 0.0f);
+        Matrix.rotateM(mCurrentRotation, 0, mDeltaY, 1.0f, 0.0f, 0.0f);
+        mDeltaX = 0.0f;
+        mDeltaY = 0.0f;
+
+        // Multiply the current rotation by the accumulated rotation, and then
+        // set the accumulated rotation to the result.
+        Matrix.multiplyMM(mTemporaryMatrix, 0, mCurrentRotation, 0, mAccumulatedRotation, 0);
+        System.arraycopy(mTemporaryMatrix, 0, mAccumulatedRotation, 0, 16);
+        System.arraycopy(mAccumulatedRotation, 0, mModelMatrix, 0, 16);
+
+        Matrix.multiplyMM(mMVMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
+        Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVMatrix, 0);
+
+        GL.glUniformMatrix4fv(mMVMatrixUniform, 1, false, mMVMatrix, 0);
+        GL.glUniformMatrix4fv(mMVPMatrixUniform, 1, false, mMVPMatrix, 0);
+        GL.glUniform3f(mLightPosUniform, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+
+        mSurface.render(mPositionAttribute, mColorAttribute, mNormalAttribute, mWireFrameRenderingFlag);
+
+        reportStats();
+    }
+
+    private void resetStats() {
+        mLastFrameNanos = 0;
+        mStatsStart = SystemClock.uptimeMillis();
+        mStatsFrames = 0;
+        mStatsFrameNanos = 0;
+        mStatsWorstFrameNanos = 0;
+        mStatsGenerateNanos = 0;
+        mStatsUploadNanos = 0;
+        mSurface.resetFrameCounts();
+    }
+
+    private void reportStats() {
+        long nowNanos = System.nanoTime();
+        if (mLastFrameNanos != 0) {
+            long frame = nowNanos - mLastFrameNanos;
+            mStatsFrames++;
+            mStatsFrameNanos += frame;
+            mStatsWorstFrameNanos = Math.max(mStatsWorstFrameNanos, frame);
+            mStatsGenerateNanos += mSurface.getLastGenerateNanos();
+            mStatsUploadNanos += mSurface.getLastUploadNanos();
+        }
+        mLastFrameNanos = nowNanos;
+
+        long now = SystemClock.uptimeMillis();
+        if (now - mStatsStart < 1000 || mStatsFrames == 0) {
+            return;
+        }
+
+        final int size = mSurface.getSizePerSide();
+        final String stats = String.format(
+                "%3d x %-3d %5.1f fps  frame %6.2f / %6.2f ms  gen %6.2f ms  upload %5.2f ms  stale %d / %d",
+                size, size,
+                mStatsFrames * 1e9f / mStatsFrameNanos,
+                mStatsFrameNanos / 1e6f / mStatsFrames,
+                mStatsWorstFrameNanos / 1e6f,
+                mStatsGenerateNanos / 1e6f / mStatsFrames,
+                mStatsUploadNanos / 1e6f / mStatsFrames,
+                mSurface.getFramesStale(),
+                mSurface.getFramesStale() + mSurface.getFramesUploaded());
+        Log.w(LOG_TAG, stats);
+        mActivity.updateFrameStats(stats);
+
+        resetStats();
+        mLastFrameNanos = nowNanos;
+    }
+
+    public void nextGridSize() {
+        mGridSizeIndex = (mGridSizeIndex + 1) % GRID_SIZES.length;
+        if (mSurface != null) {
+            mSurface.release();
+            mSurface = new DynamicHeightMap(GRID_SIZES[mGridSizeIndex], DynamicHeightMap.WAVES, mWaterColor);
+            resetStats();
+        }
+        mActivity.updateGridSizeStatus(GRID_SIZES[(mGridSizeIndex + 1) % GRID_SIZES.length]);
+    }
+
+    public void toggleWireframeFlag() {
+        mWireFrameRenderingFlag = !mWireFrameRenderingFlag;
+        mActivity.updateWireframeStatus(mWireFrameRenderingFlag);
+    }
+}
@@ -7,6 +7,9 @@ import android.content.pm.ConfigurationInfo;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
+
 public class LessonOneActivity extends Activity 
 {
 	/** Hold a reference to our GLSurfaceView */
@@ -30,7 +33,7 @@ public class LessonOneActivity extends Activity
 			mGLSurfaceView.setEGLContextClientVersion(2);
 
 			// Set the renderer to our demo renderer, defined below.
-			mGLSurfaceView.setRenderer(new LessonOneRenderer());
+			mGLSurfaceView.setRenderer(FrameProfiler.wrap(new LessonOneRenderer()));
 		} 
 		else 
 		{
@@ -40,6 +43,7 @@ public class LessonOneActivity extends Activity
 		}
 
 		setContentView(mGLSurfaceView);
+		ProfilerOverlay.attach(this);
 	}
 
 	@Override
@@ -12,6 +12,10 @@ import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 import android.os.SystemClock;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+
 /**
  * This class implements our custom renderer. Note that the GL10 parameter passed in is unused for OpenGL ES 2.0
  * renderers -- the static class GLES20 is used instead.
@@ -130,8 +134,11 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) 
 	{
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+
 		// Set the background clear color to gray.
-		GLES20.glClearColor(0.5f, 0.5f, 0.5f, 0.5f);
+		GL.glClearColor(0.5f, 0.5f, 0.5f, 0.5f);
 	
 		// Position the eye behind the origin.
 		final float eyeX = 0.0f;
@@ -180,24 +187,24 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
 		  + "}                              \n";												
 		
 		// Load in the vertex shader.
-		int vertexShaderHandle = GLES20.glCreateShader(GLES20.GL_VERTEX_SHADER);
+		int vertexShaderHandle = GL.glCreateShader(GLES20.GL_VERTEX_SHADER);
 
 		if (vertexShaderHandle != 0) 
 		{
 			// Pass in the shader source.
-			GLES20.glShaderSource(vertexShaderHandle, vertexShader);
+			GL.glShaderSource(vertexShaderHandle, vertexShader);
 
 			// Compile the shader.
-			GLES20.glCompileShader(vertexShaderHandle);
+			GL.glCompileShader(vertexShaderHandle);
 
 			// Get the compilation status.
 			final int[] compileStatus = new int[1];
-			GLES20.glGetShaderiv(vertexShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+			GL.glGetShaderiv(vertexShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
 
 			// If the compilation failed, delete the shader.
 			if (compileStatus[0] == 0) 
 			{				
-				GLES20.glDeleteShader(vertexShaderHandle);
+				GL.glDeleteShader(vertexShaderHandle);
 				vertexShaderHandle = 0;
 			}
 		}
@@ -208,24 +215,24 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
 		}
 		
 		// Load in the fragment shader shader.
-		int fragmentShaderHandle = GLES20.glCreateShader(GLES20.GL_FRAGMENT_SHADER);
+		int fragmentShaderHandle = GL.glCreateShader(GLES20.GL_FRAGMENT_SHADER);
 
 		if (fragmentShaderHandle != 0) 
 		{
 			// Pass in the shader source.
-			GLES20.glShaderSource(fragmentShaderHandle, fragmentShader);
+			GL.glShaderSource(fragmentShaderHandle, fragmentShader);
 
 			// Compile the shader.
-			GLES20.glCompileShader(fragmentShaderHandle);
+			GL.glCompileShader(fragmentShaderHandle);
 
 			// Get the compilation status.
 			final int[] compileStatus = new int[1];
-			GLES20.glGetShaderiv(fragmentShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+			GL.glGetShaderiv(fragmentShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
 
 			// If the compilation failed, delete the shader.
 			if (compileStatus[0] == 0) 
 			{				
-				GLES20.glDeleteShader(fragmentShaderHandle);
+				GL.glDeleteShader(fragmentShaderHandle);
 				fragmentShaderHandle = 0;
 			}
 		}
@@ -236,31 +243,31 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
 		}
 		
 		// Create a program object and store the handle to it.
-		int programHandle = GLES20.glCreateProgram();
+		int programHandle = GL.glCreateProgram();
 		
 		if (programHandle != 0) 
 		{
 			// Bind the vertex shader to the program.
-			GLES20.glAttachShader(programHandle, vertexShaderHandle);			
+			GL.glAttachShader(programHandle, vertexShaderHandle);			
 
 			// Bind the fragment shader to the program.
-			GLES20.glAttachShader(programHandle, fragmentShaderHandle);
+			GL.glAttachShader(programHandle, fragmentShaderHandle);
 			
 			// Bind attributes
-			GLES20.glBindAttribLocation(programHandle, 0, "a_Position");
-			GLES20.glBindAttribLocation(programHandle, 1, "a_Color");
+			GL.glBindAttribLocation(programHandle, 0, "a_Position");
+			GL.glBindAttribLocation(programHandle, 1, "a_Color");
 			
 			// Link the two shaders together into a program.
-			GLES20.glLinkProgram(programHandle);
+			GL.glLinkProgram(programHandle);
 
 			// Get the link status.
 			final int[] linkStatus = new int[1];
-			GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+			GL.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
 
 			// If the link failed, delete the program.
 			if (linkStatus[0] == 0) 
 			{				
-				GLES20.glDeleteProgram(programHandle);
+				GLState.deleteProgram(programHandle);
 				programHandle = 0;
 			}
 		}
@@ -271,19 +278,19 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
 		}
         
         // Set program handles. These will later be used to pass in values to the program.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(programHandle, "u_MVPMatrix");        
-        mPositionHandle = GLES20.glGetAttribLocation(programHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(programHandle, "a_Color");        
+        mMVPMatrixHandle = GL.glGetUniformLocation(programHandle, "u_MVPMatrix");        
+        mPositionHandle = GL.glGetAttribLocation(programHandle, "a_Position");
+        mColorHandle = GL.glGetAttribLocation(programHandle, "a_Color");        
         
         // Tell OpenGL to use this program when rendering.
-        GLES20.glUseProgram(programHandle);        
+        GLState.useProgram(programHandle);        
 	}	
 	
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) 
 	{
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
 
 		// Create a new perspective projection matrix. The height will stay the same
 		// while the width will vary as per aspect ratio.
@@ -301,7 +308,7 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onDrawFrame(GL10 glUnused) 
 	{
-		GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);			        
+		GL.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);			        
                 
         // Do a complete rotation every 10 seconds.
         long time = SystemClock.uptimeMillis() % 10000L;
@@ -336,17 +343,17 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
 	{		
 		// Pass in the position information
 		aTriangleBuffer.position(mPositionOffset);
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
         		mStrideBytes, aTriangleBuffer);        
                 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);        
+        GLState.enableVertexAttribArray(mPositionHandle);        
         
         // Pass in the color information
         aTriangleBuffer.position(mColorOffset);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
         		mStrideBytes, aTriangleBuffer);        
         
-        GLES20.glEnableVertexAttribArray(mColorHandle);
+        GLState.enableVertexAttribArray(mColorHandle);
         
 		// This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
         // (which currently contains model * view).
@@ -356,7 +363,7 @@ public class LessonOneRenderer implements GLSurfaceView.Renderer
         // (which now contains model * view * projection).
         Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
 
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);                               
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, 3);                               
 	}
 }
@@ -7,6 +7,9 @@ import android.content.pm.ConfigurationInfo;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
+
 public class LessonTwoActivity extends Activity 
 {
 	/** Hold a reference to our GLSurfaceView */
@@ -30,7 +33,7 @@ public class LessonTwoActivity extends Activity
 			mGLSurfaceView.setEGLContextClientVersion(2);
 
 			// Set the renderer to our demo renderer, defined below.
-			mGLSurfaceView.setRenderer(new LessonTwoRenderer());
+			mGLSurfaceView.setRenderer(FrameProfiler.wrap(new LessonTwoRenderer(this)));
 		} 
 		else 
 		{
@@ -40,6 +43,7 @@ public class LessonTwoActivity extends Activity
 		}
 
 		setContentView(mGLSurfaceView);
+		ProfilerOverlay.attach(this);
 	}
 
 	@Override
@@ -7,12 +7,19 @@ import java.nio.FloatBuffer;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
+import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 import android.os.SystemClock;
 import android.util.Log;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.ShaderProgram;
+
 /*
  *   Alt-Enter to disable annoying Lint warnings...s
  */
@@ -25,6 +32,8 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
 {
 	/** Used for debug logs. */
 	private static final String TAG = "LessonTwoRenderer";
+
+	private final Context mActivityContext;
 	
 	/**
 	 * Store the model matrix. This matrix is used to move models from object space (where each model can be thought
@@ -94,17 +103,23 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
 	/** Used to hold the transformed position of the light in eye space (after transformation via modelview matrix) */
 	private final float[] mLightPosInEyeSpace = new float[4];
 	
-	/** This is a handle to our per-vertex cube shading program. */
-	private int mPerVertexProgramHandle;
+	/** Our per-vertex cube shading program. */
+	private ShaderProgram mPerVertexProgram;
 		
-	/** This is a handle to our light point program. */
-	private int mPointProgramHandle;	
+	/** Our light point program. */
+	private ShaderProgram mPointProgram;
+
+	/** Handles into the light point program. */
+	private int mPointMVPMatrixHandle;
+	private int mPointPositionHandle;
 						
 	/**
 	 * Initialize the model data.
 	 */
-	public LessonTwoRenderer()
+	public LessonTwoRenderer(final Context activityContext)
 	{	
+		mActivityContext = activityContext;
+
 		// Define points for a cube.		
 		
 		// X, Y, Z
@@ -342,14 +357,18 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) 
 	{
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+		ProgramCache.reset(mActivityContext);
+
 		// Set the background clear color to black.
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		
 		// Use culling to remove back faces.
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
+		GLState.enable(GLES20.GL_CULL_FACE);
 		
 		// Enable depth testing
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+		GLState.enable(GLES20.GL_DEPTH_TEST);
 			
 		// Position the eye in front of the origin.
 		final float eyeX = 0.0f;
@@ -374,11 +393,16 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
 		final String vertexShader = getVertexShader();   		
  		final String fragmentShader = getFragmentShader();			
 		
-		final int vertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);		
-		final int fragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);		
-		
-		mPerVertexProgramHandle = createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, 
-				new String[] {"a_Position",  "a_Color", "a_Normal"});								                                							       
+		mPerVertexProgram = new ShaderProgram(vertexShader, fragmentShader,
+				new String[] {"a_Position",  "a_Color", "a_Normal"});
+
+        // Set program handles for cube drawing. They stay valid as long as the program does.
+        mMVPMatrixHandle = mPerVertexProgram.getUniform("u_MVPMatrix");
+        mMVMatrixHandle = mPerVertexProgram.getUniform("u_MVMatrix");
+        mLightPosHandle = mPerVertexProgram.getUniform("u_LightPos");
+        mPositionHandle = mPerVertexProgram.getAttribute("a_Position");
+        mColorHandle = mPerVertexProgram.getAttribute("a_Color");
+        mNormalHandle = mPerVertexProgram.getAttribute("a_Normal");								                                							       
         
         // Define a simple shader program for our point.
         final String pointVertexShader =
@@ -399,17 +423,19 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
           + "   1.0, 1.0, 1.0);             \n"
           + "}                              \n";
         
-        final int pointVertexShaderHandle = compileShader(GLES20.GL_VERTEX_SHADER, pointVertexShader);
-        final int pointFragmentShaderHandle = compileShader(GLES20.GL_FRAGMENT_SHADER, pointFragmentShader);
-        mPointProgramHandle = createAndLinkProgram(pointVertexShaderHandle, pointFragmentShaderHandle, 
-        		new String[] {"a_Position"});                 
+        mPointProgram = new ShaderProgram(pointVertexShader, pointFragmentShader,
+        		new String[] {"a_Position"});
+        mPointMVPMatrixHandle = mPointProgram.getUniform("u_MVPMatrix");
+        mPointPositionHandle = mPointProgram.getAttribute("a_Position");
+
+		ProgramCache.logStats(getClass().getSimpleName());
 	}	
 		
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) 
 	{
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
 
 		// Create a new perspective projection matrix. The height will stay the same
 		// while the width will vary as per aspect ratio.
@@ -427,7 +453,7 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onDrawFrame(GL10 glUnused) 
 	{
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
+		GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
                 
         // Do a complete rotation every 10 seconds.
         long time = SystemClock.uptimeMillis() % 10000L;        
@@ -435,15 +461,7 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
         float lightangleInDegrees = (360.0f / 7000.0f) * ((int) (SystemClock.uptimeMillis() % 7000L));
 
         // Set our per-vertex lighting program.
-        GLES20.glUseProgram(mPerVertexProgramHandle);
-        
-        // Set program handles for cube drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mPerVertexProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mPerVertexProgramHandle, "u_MVMatrix");
-        mLightPosHandle = GLES20.glGetUniformLocation(mPerVertexProgramHandle, "u_LightPos");
-        mPositionHandle = GLES20.glGetAttribLocation(mPerVertexProgramHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(mPerVertexProgramHandle, "a_Color");
-        mNormalHandle = GLES20.glGetAttribLocation(mPerVertexProgramHandle, "a_Normal"); 
+        mPerVertexProgram.use();
         
         // Calculate position of the light. Rotate and then push into the distance.
         Matrix.setIdentityM(mLightModelMatrix, 0);
@@ -480,7 +498,7 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
         drawCube();
         
         // Draw a point to indicate the light.
-        GLES20.glUseProgram(mPointProgramHandle);        
+        mPointProgram.use();
         drawLight();
 	}				
 	
@@ -491,44 +509,44 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
 	{		
 		// Pass in the position information
 		mCubePositions.position(0);		
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
         		0, mCubePositions);        
                 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);        
+        GLState.enableVertexAttribArray(mPositionHandle);        
         
         // Pass in the color information
         mCubeColors.position(0);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
         		0, mCubeColors);        
         
-        GLES20.glEnableVertexAttribArray(mColorHandle);
+        GLState.enableVertexAttribArray(mColorHandle);
         
         // Pass in the normal information
         mCubeNormals.position(0);
-        GLES20.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false, 
+        GL.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false, 
         		0, mCubeNormals);
         
-        GLES20.glEnableVertexAttribArray(mNormalHandle);
+        GLState.enableVertexAttribArray(mNormalHandle);
         
 		// This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
         // (which currently contains model * view).
         Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);   
         
         // Pass in the modelview matrix.
-        GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);                
+        GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);                
         
         // This multiplies the modelview matrix by the projection matrix, and stores the result in the MVP matrix
         // (which now contains model * view * projection).
         Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
 
         // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
         
         // Pass in the light position in eye space.        
-        GLES20.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
         
         // Draw the cube.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
+        FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
 	}	
 	
 	/**
@@ -536,115 +554,20 @@ public class LessonTwoRenderer implements GLSurfaceView.Renderer
 	 */
 	private void drawLight()
 	{
-		final int pointMVPMatrixHandle = GLES20.glGetUniformLocation(mPointProgramHandle, "u_MVPMatrix");
-        final int pointPositionHandle = GLES20.glGetAttribLocation(mPointProgramHandle, "a_Position");
-        
 		// Pass in the position.
-		GLES20.glVertexAttrib3f(pointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
+		GL.glVertexAttrib3f(mPointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
 
 		// Since we are not using a buffer object, disable vertex arrays for this attribute.
-        GLES20.glDisableVertexAttribArray(pointPositionHandle);  
+        GLState.disableVertexAttribArray(mPointPositionHandle);  
 		
 		// Pass in the transformation matrix.
 		Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mLightModelMatrix, 0);
 		Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
-		GLES20.glUniformMatrix4fv(pointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+		GL.glUniformMatrix4fv(mPointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 		
 		// Draw the point.
-		GLES20.glDrawArrays(GLES20.GL_POINTS, 0, 1);
+		FrameProfiler.drawArrays(GLES20.GL_POINTS, 0, 1);
 	}
 	
-	/** 
-	 * Helper function to compile a shader.
-	 * 
-	 * @param shaderType The shader type.
-	 * @param shaderSource The shader source code.
-	 * @return An OpenGL handle to the shader.
-	 */
-	private int compileShader(final int shaderType, final String shaderSource) 
-	{
-		int shaderHandle = GLES20.glCreateShader(shaderType);
-
-		if (shaderHandle != 0) 
-		{
-			// Pass in the shader source.
-			GLES20.glShaderSource(shaderHandle, shaderSource);
-
-			// Compile the shader.
-			GLES20.glCompileShader(shaderHandle);
-
-			// Get the compilation status.
-			final int[] compileStatus = new int[1];
-			GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-			// If the compilation failed, delete the shader.
-			if (compileStatus[0] == 0) 
-			{
-				Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shaderHandle));
-				GLES20.glDeleteShader(shaderHandle);
-				shaderHandle = 0;
-			}
-		}
-
-		if (shaderHandle == 0)
-		{			
-			throw new RuntimeException("Error creating shader.");
-		}
-		
-		return shaderHandle;
-	}	
 	
-	/**
-	 * Helper function to compile and link a program.
-	 * 
-	 * @param vertexShaderHandle An OpenGL handle to an already-compiled vertex shader.
-	 * @param fragmentShaderHandle An OpenGL handle to an already-compiled fragment shader.
-	 * @param attributes Attributes that need to be bound to the program.
-	 * @return An OpenGL handle to the program.
-	 */
-	private int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) 
-	{
-		int programHandle = GLES20.glCreateProgram();
-		
-		if (programHandle != 0) 
-		{
-			// Bind the vertex shader to the program.
-			GLES20.glAttachShader(programHandle, vertexShaderHandle);			
-
-			// Bind the fragment shader to the program.
-			GLES20.glAttachShader(programHandle, fragmentShaderHandle);
-			
-			// Bind attributes
-			if (attributes != null)
-			{
-				final int size = attributes.length;
-				for (int i = 0; i < size; i++)
-				{
-					GLES20.glBindAttribLocation(programHandle, i, attributes[i]);
-				}						
-			}
-			
-			// Link the two shaders together into a program.
-			GLES20.glLinkProgram(programHandle);
-
-			// Get the link status.
-			final int[] linkStatus = new int[1];
-			GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
-
-			// If the link failed, delete the program.
-			if (linkStatus[0] == 0) 
-			{				
-				Log.e(TAG, "Error compiling program: " + GLES20.glGetProgramInfoLog(programHandle));
-				GLES20.glDeleteProgram(programHandle);
-				programHandle = 0;
-			}
-		}
-		
-		if (programHandle == 0)
-		{
-			throw new RuntimeException("Error creating program.");
-		}
-		
-		return programHandle;
-	}
 }
@@ -7,6 +7,9 @@ import android.content.pm.ConfigurationInfo;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
+
 public class LessonThreeActivity extends Activity 
 {
 	/** Hold a reference to our GLSurfaceView */
@@ -30,7 +33,7 @@ public class LessonThreeActivity extends Activity
 			mGLSurfaceView.setEGLContextClientVersion(2);
 
 			// Set the renderer to our demo renderer, defined below.
-			mGLSurfaceView.setRenderer(new LessonThreeRenderer());
+			mGLSurfaceView.setRenderer(FrameProfiler.wrap(new LessonThreeRenderer(this)));
 		} 
 		else 
 		{
@@ -40,6 +43,7 @@ public class LessonThreeActivity extends Activity
 		}
 
 		setContentView(mGLSurfaceView);
+		ProfilerOverlay.attach(this);
 	}
 
 	@Override
@@ -1,5 +1,7 @@
 package com.learnopengles.sandbox.lesson3;
 
+import android.content.Context;
+
 import com.learnopengles.sandbox.lesson2.LessonTwoRenderer;
 
 /**
@@ -8,6 +10,11 @@ import com.learnopengles.sandbox.lesson2.LessonTwoRenderer;
  */
 public class LessonThreeRenderer extends LessonTwoRenderer
 {
+	public LessonThreeRenderer(final Context activityContext)
+	{
+		super(activityContext);
+	}
+
 	@Override
 	protected String getVertexShader()
 	{
@@ -7,6 +7,9 @@ import android.content.pm.ConfigurationInfo;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
+
 public class LessonFourActivity extends Activity 
 {
 	/** Hold a reference to our GLSurfaceView */
@@ -30,7 +33,7 @@ public class LessonFourActivity extends Activity
 			mGLSurfaceView.setEGLContextClientVersion(2);
 
 			// Set the renderer to our demo renderer, defined below.
-			mGLSurfaceView.setRenderer(new LessonFourRenderer(this));
+			mGLSurfaceView.setRenderer(FrameProfiler.wrap(new LessonFourRenderer(this)));
 		} 
 		else 
 		{
@@ -40,6 +43,7 @@ public class LessonFourActivity extends Activity
 		}
 
 		setContentView(mGLSurfaceView);
+		ProfilerOverlay.attach(this);
 	}
 
 	@Override
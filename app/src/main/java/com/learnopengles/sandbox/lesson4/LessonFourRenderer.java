@@ -14,9 +14,14 @@ import android.opengl.Matrix;
 import android.os.SystemClock;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
 import com.learnopengles.sandbox.common.RawResourceReader;
-import com.learnopengles.sandbox.common.ShaderHelper;
-import com.learnopengles.sandbox.common.TextureHelper;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
+import com.learnopengles.sandbox.common.TextureLoader;
 
 /**
  * This class implements our custom renderer. Note that the GL10 parameter passed in is unused for OpenGL ES 2.0
@@ -107,14 +112,21 @@ public class LessonFourRenderer implements GLSurfaceView.Renderer
 	/** Used to hold the transformed position of the light in eye space (after transformation via modelview matrix) */
 	private final float[] mLightPosInEyeSpace = new float[4];
 	
-	/** This is a handle to our cube shading program. */
-	private int mProgramHandle;
+	/** Our cube shading program. */
+	private ShaderProgram mProgram;
 		
-	/** This is a handle to our light point program. */
-	private int mPointProgramHandle;
+	/** Our light point program. */
+	private ShaderProgram mPointProgram;
+
+	/** Handles into the light point program. */
+	private int mPointMVPMatrixHandle;
+	private int mPointPositionHandle;
 	
 	/** This is a handle to our texture data. */
 	private int mTextureDataHandle;
+
+	/** Streams the texture in from the background, a small version first; uploads happen in onDrawFrame. */
+	private TextureLoader mTextureLoader;
 	
 	/**
 	 * Initialize the model data.
@@ -363,27 +375,21 @@ public class LessonFourRenderer implements GLSurfaceView.Renderer
 		mCubeTextureCoordinates.put(cubeTextureCoordinateData).position(0);
 	}
 	
-	protected String getVertexShader()
-	{
-		return RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.per_pixel_vertex_shader);
-	}
-	
-	protected String getFragmentShader()
-	{
-		return RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.per_pixel_fragment_shader);
-	}
-	
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) 
 	{
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+		ProgramCache.reset(mActivityContext);
+
 		// Set the background clear color to black.
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		
 		// Use culling to remove back faces.
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
+		GLState.enable(GLES20.GL_CULL_FACE);
 		
 		// Enable depth testing
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+		GLState.enable(GLES20.GL_DEPTH_TEST);
 		
 		// The below glEnable() call is a holdover from OpenGL ES 1, and is not needed in OpenGL ES 2.
 		// Enable texture mapping
@@ -409,33 +415,41 @@ public class LessonFourRenderer implements GLSurfaceView.Renderer
 		// view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
 		Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);		
 
-		final String vertexShader = getVertexShader();   		
- 		final String fragmentShader = getFragmentShader();			
-		
-		final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);		
-		final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);		
-		
-		mProgramHandle = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, 
-				new String[] {"a_Position",  "a_Color", "a_Normal", "a_TexCoordinate"});								                                							       
+		// per pixel lighting of a colored, textured cube - the default light constants
+		mProgram = new ShaderVariants(mActivityContext).get(ShaderVariants.VERTEX_COLOR | ShaderVariants.TEXTURE
+				| ShaderVariants.PER_PIXEL_LIGHTING | ShaderVariants.ATTENUATION);
+
+        // Set program handles for cube drawing. They stay valid as long as the program does.
+        mMVPMatrixHandle = mProgram.getUniform("u_MVPMatrix");
+        mMVMatrixHandle = mProgram.getUniform("u_MVMatrix");
+        mLightPosHandle = mProgram.getUniform("u_LightPos");
+        mTextureUniformHandle = mProgram.getUniform("u_Texture");
+        mPositionHandle = mProgram.getAttribute("a_Position");
+        mColorHandle = mProgram.getAttribute("a_Color");
+        mNormalHandle = mProgram.getAttribute("a_Normal");
+        mTextureCoordinateHandle = mProgram.getAttribute("a_TexCoordinate");								                                							       
         
         // Define a simple shader program for our point.
         final String pointVertexShader = RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.point_vertex_shader);        	       
         final String pointFragmentShader = RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.point_fragment_shader);
         
-        final int pointVertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, pointVertexShader);
-        final int pointFragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, pointFragmentShader);
-        mPointProgramHandle = ShaderHelper.createAndLinkProgram(pointVertexShaderHandle, pointFragmentShaderHandle, 
-        		new String[] {"a_Position"}); 
+        mPointProgram = new ShaderProgram(pointVertexShader, pointFragmentShader,
+        		new String[] {"a_Position"});
+        mPointMVPMatrixHandle = mPointProgram.getUniform("u_MVPMatrix");
+        mPointPositionHandle = mPointProgram.getAttribute("a_Position");
         
         // Load the texture
-        mTextureDataHandle = TextureHelper.loadTexture(mActivityContext, R.drawable.bumpy_bricks_public_domain);
+        mTextureLoader = new TextureLoader(mActivityContext);
+        mTextureDataHandle = mTextureLoader.stream(R.drawable.bumpy_bricks_public_domain, false);
+
+		ProgramCache.logStats("LessonFourRenderer");
 	}	
 		
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) 
 	{
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
 
 		// Create a new perspective projection matrix. The height will stay the same
 		// while the width will vary as per aspect ratio.
@@ -453,33 +467,25 @@ public class LessonFourRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onDrawFrame(GL10 glUnused) 
 	{
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
+		mTextureLoader.uploadPending();
+
+		GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
                 
         // Do a complete rotation every 10 seconds.
         long time = SystemClock.uptimeMillis() % 10000L;        
         float angleInDegrees = (360.0f / 10000.0f) * ((int) time);                
         
         // Set our per-vertex lighting program.
-        GLES20.glUseProgram(mProgramHandle);
-        
-        // Set program handles for cube drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVMatrix"); 
-        mLightPosHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_LightPos");
-        mTextureUniformHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_Texture");
-        mPositionHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Color");
-        mNormalHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Normal"); 
-        mTextureCoordinateHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
+        mProgram.use();
         
         // Set the active texture unit to texture unit 0.
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GL.glActiveTexture(GLES20.GL_TEXTURE0);
         
         // Bind the texture to this unit.
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureDataHandle);
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureDataHandle);
         
         // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
-        GLES20.glUniform1i(mTextureUniformHandle, 0);        
+        GL.glUniform1i(mTextureUniformHandle, 0);        
         
         // Calculate position of the light. Rotate and then push into the distance.
         Matrix.setIdentityM(mLightModelMatrix, 0);
@@ -516,7 +522,7 @@ public class LessonFourRenderer implements GLSurfaceView.Renderer
         drawCube();      
         
         // Draw a point to indicate the light.
-        GLES20.glUseProgram(mPointProgramHandle);        
+        mPointProgram.use();
         drawLight();
 	}				
 	
@@ -527,51 +533,51 @@ public class LessonFourRenderer implements GLSurfaceView.Renderer
 	{		
 		// Pass in the position information
 		mCubePositions.position(0);		
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
         		0, mCubePositions);        
                 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);        
+        GLState.enableVertexAttribArray(mPositionHandle);        
         
         // Pass in the color information
         mCubeColors.position(0);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
         		0, mCubeColors);        
         
-        GLES20.glEnableVertexAttribArray(mColorHandle);
+        GLState.enableVertexAttribArray(mColorHandle);
         
         // Pass in the normal information
         mCubeNormals.position(0);
-        GLES20.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false, 
+        GL.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false, 
         		0, mCubeNormals);
         
-        GLES20.glEnableVertexAttribArray(mNormalHandle);
+        GLState.enableVertexAttribArray(mNormalHandle);
         
         // Pass in the texture coordinate information
         mCubeTextureCoordinates.position(0);
-        GLES20.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false, 
+        GL.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false, 
         		0, mCubeTextureCoordinates);
         
-        GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
+        GLState.enableVertexAttribArray(mTextureCoordinateHandle);
         
 		// This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
         // (which currently contains model * view).
         Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);   
         
         // Pass in the modelview matrix.
-        GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);                
+        GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);                
         
         // This multiplies the modelview matrix by the projection matrix, and stores the result in the MVP matrix
         // (which now contains model * view * projection).
         Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
 
         // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
         
         // Pass in the light position in eye space.        
-        GLES20.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
         
         // Draw the cube.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
+        FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
 	}	
 	
 	/**
@@ -579,21 +585,18 @@ public class LessonFourRenderer implements GLSurfaceView.Renderer
 	 */
 	private void drawLight()
 	{
-		final int pointMVPMatrixHandle = GLES20.glGetUniformLocation(mPointProgramHandle, "u_MVPMatrix");
-        final int pointPositionHandle = GLES20.glGetAttribLocation(mPointProgramHandle, "a_Position");
-        
 		// Pass in the position.
-		GLES20.glVertexAttrib3f(pointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
+		GL.glVertexAttrib3f(mPointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
 
 		// Since we are not using a buffer object, disable vertex arrays for this attribute.
-        GLES20.glDisableVertexAttribArray(pointPositionHandle);  
+        GLState.disableVertexAttribArray(mPointPositionHandle);  
 		
 		// Pass in the transformation matrix.
 		Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mLightModelMatrix, 0);
 		Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
-		GLES20.glUniformMatrix4fv(pointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+		GL.glUniformMatrix4fv(mPointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 		
 		// Draw the point.
-		GLES20.glDrawArrays(GLES20.GL_POINTS, 0, 1);
+		FrameProfiler.drawArrays(GLES20.GL_POINTS, 0, 1);
 	}
 }
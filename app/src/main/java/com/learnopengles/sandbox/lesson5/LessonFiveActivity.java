@@ -8,6 +8,7 @@ import android.os.Bundle;
 import android.widget.Toast;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
 
 public class LessonFiveActivity extends Activity 
 {
@@ -44,6 +45,7 @@ public class LessonFiveActivity extends Activity
 		}
 
 		setContentView(mGLSurfaceView);
+		ProfilerOverlay.attach(this);
 		
 		// Show a short help message to the user.
 		if (savedInstanceState == null || !savedInstanceState.getBoolean(SHOWED_TOAST, false))
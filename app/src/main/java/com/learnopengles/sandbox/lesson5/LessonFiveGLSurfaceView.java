@@ -4,6 +4,8 @@ import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.view.MotionEvent;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+
 public class LessonFiveGLSurfaceView extends GLSurfaceView 
 {
 	private LessonFiveRenderer mRenderer;
@@ -45,6 +47,6 @@ public class LessonFiveGLSurfaceView extends GLSurfaceView
 	public void setRenderer(LessonFiveRenderer renderer) 
 	{
 		mRenderer = renderer;
-		super.setRenderer(renderer);
+		super.setRenderer(FrameProfiler.wrap(renderer));
 	}
 }
@@ -13,9 +13,12 @@ import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 import android.os.SystemClock;
 
-import com.learnopengles.sandbox.R;
-import com.learnopengles.sandbox.common.RawResourceReader;
-import com.learnopengles.sandbox.common.ShaderHelper;
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
 import com.learnopengles.sandbox.common.ShapeBuilder;
 
 /**
@@ -69,8 +72,8 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
 	/** Size of the color data in elements. */
 	private final int mColorDataSize = 4;					
 	
-	/** This is a handle to our cube shading program. */
-	private int mProgramHandle;		
+	/** Our cube shading program. */
+	private ShaderProgram mProgram;
 	
 	/** This will be used to switch between blending mode and regular mode. */
 	private boolean mBlending = true;
@@ -118,16 +121,6 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
 		mCubeColors.put(cubeColorData).position(0);
 	}								  
 	
-	protected String getVertexShader()
-	{
-		return RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.color_vertex_shader);
-	}
-	
-	protected String getFragmentShader()
-	{
-		return RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.color_fragment_shader);
-	}
-	
 	public void switchMode()
 	{				
 		mBlending = !mBlending;
@@ -135,43 +128,47 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
 		if (mBlending)
 		{
 			// No culling of back faces
-			GLES20.glDisable(GLES20.GL_CULL_FACE);
+			GLState.disable(GLES20.GL_CULL_FACE);
 			
 			// No depth testing
-			GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+			GLState.disable(GLES20.GL_DEPTH_TEST);
 			
 			// Enable blending
-			GLES20.glEnable(GLES20.GL_BLEND);
-			GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE);			
+			GLState.enable(GLES20.GL_BLEND);
+			GL.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE);			
 		}
 		else
 		{
 			// Cull back faces
-			GLES20.glEnable(GLES20.GL_CULL_FACE);
+			GLState.enable(GLES20.GL_CULL_FACE);
 			
 			// Enable depth testing
-			GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+			GLState.enable(GLES20.GL_DEPTH_TEST);
 			
 			// Disable blending
-			GLES20.glDisable(GLES20.GL_BLEND);
+			GLState.disable(GLES20.GL_BLEND);
 		}
 	}
 	
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) 
 	{				
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+		ProgramCache.reset(mActivityContext);
+
 		// Set the background clear color to black.
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		
 		// No culling of back faces
-		GLES20.glDisable(GLES20.GL_CULL_FACE);
+		GLState.disable(GLES20.GL_CULL_FACE);
 		
 		// No depth testing
-		GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+		GLState.disable(GLES20.GL_DEPTH_TEST);
 		
 		// Enable blending
-		GLES20.glEnable(GLES20.GL_BLEND);
-		GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE);
+		GLState.enable(GLES20.GL_BLEND);
+		GL.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE);
 //		GLES20.glBlendEquation(GLES20.GL_FUNC_ADD);
 			
 		// Position the eye in front of the origin.
@@ -194,21 +191,22 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
 		// view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
 		Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);		
 
-		final String vertexShader = getVertexShader();   		
- 		final String fragmentShader = getFragmentShader();			
-		
-		final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);		
-		final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);		
-		
-		mProgramHandle = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, 
-				new String[] {"a_Position",  "a_Color"});								                                							                                            
+		// vertex colors, nothing else
+		mProgram = new ShaderVariants(mActivityContext).get(ShaderVariants.VERTEX_COLOR);
+
+        // Set program handles for cube drawing. They stay valid as long as the program does.
+        mMVPMatrixHandle = mProgram.getUniform("u_MVPMatrix");
+        mPositionHandle = mProgram.getAttribute("a_Position");
+        mColorHandle = mProgram.getAttribute("a_Color");
+
+		ProgramCache.logStats("LessonFiveRenderer");
 	}	
 		
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) 
 	{
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
 
 		// Create a new perspective projection matrix. The height will stay the same
 		// while the width will vary as per aspect ratio.
@@ -228,11 +226,11 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
 	{
 		if (mBlending)
 		{
-			GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+			GL.glClear(GLES20.GL_COLOR_BUFFER_BIT);
 		}
 		else
 		{
-			GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+			GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 		}
                 
         // Do a complete rotation every 10 seconds.
@@ -240,12 +238,7 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
         float angleInDegrees = (360.0f / 10000.0f) * ((int) time);                
         
         // Set our program
-        GLES20.glUseProgram(mProgramHandle);
-        
-        // Set program handles for cube drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");                         
-        mPositionHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Color");                                               
+        mProgram.use();
         
         // Draw some cubes.        
         Matrix.setIdentityM(mModelMatrix, 0);
@@ -280,17 +273,17 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
 	{		
 		// Pass in the position information
 		mCubePositions.position(0);		
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
         		0, mCubePositions);        
                 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);        
+        GLState.enableVertexAttribArray(mPositionHandle);        
         
         // Pass in the color information
         mCubeColors.position(0);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
         		0, mCubeColors);        
         
-        GLES20.glEnableVertexAttribArray(mColorHandle);               
+        GLState.enableVertexAttribArray(mColorHandle);               
         
 		// This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
         // (which currently contains model * view).
@@ -301,9 +294,9 @@ public class LessonFiveRenderer implements GLSurfaceView.Renderer
         Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
 
         // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);               
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);               
         
         // Draw the cube.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
+        FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
 	}			
 }
@@ -14,6 +14,7 @@ import android.view.View;
 import android.view.View.OnClickListener;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
 
 public class LessonSixActivity extends Activity 
 {
@@ -36,6 +37,7 @@ public class LessonSixActivity extends Activity
 		super.onCreate(savedInstanceState);
 		
 		setContentView(R.layout.lesson_six);
+		ProfilerOverlay.attach(this);
 
 		mGLSurfaceView = (LessonSixGLSurfaceView)findViewById(R.id.gl_surface_view);
 
@@ -14,9 +14,14 @@ import android.opengl.Matrix;
 import android.os.SystemClock;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
 import com.learnopengles.sandbox.common.RawResourceReader;
-import com.learnopengles.sandbox.common.ShaderHelper;
-import com.learnopengles.sandbox.common.TextureHelper;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
+import com.learnopengles.sandbox.common.TextureLoader;
 
 /**
  * This class implements our custom renderer. Note that the GL10 parameter passed in is unused for OpenGL ES 2.0
@@ -110,15 +115,22 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 	/** Used to hold the transformed position of the light in eye space (after transformation via modelview matrix) */
 	private final float[] mLightPosInEyeSpace = new float[4];
 	
-	/** This is a handle to our cube shading program. */
-	private int mProgramHandle;
+	/** Our cube shading program. */
+	private ShaderProgram mProgram;
 		
-	/** This is a handle to our light point program. */
-	private int mPointProgramHandle;
+	/** Our light point program. */
+	private ShaderProgram mPointProgram;
+
+	/** Handles into the light point program. */
+	private int mPointMVPMatrixHandle;
+	private int mPointPositionHandle;
 	
 	/** These are handles to our texture data. */
 	private int mBrickDataHandle;
 	private int mGrassDataHandle;
+
+	/** Streams the textures and their mip chains in from the background, small versions first; uploads happen in onDrawFrame. */
+	private TextureLoader mTextureLoader;
 	
 	/** Temporary place to save the min and mag filter, in case the activity was restarted. */
 	private int mQueuedMinFilter;
@@ -382,14 +394,18 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) 
 	{
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+		ProgramCache.reset(mActivityContext);
+
 		// Set the background clear color to black.
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		
 		// Use culling to remove back faces.
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
+		GLState.enable(GLES20.GL_CULL_FACE);
 		
 		// Enable depth testing
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+		GLState.enable(GLES20.GL_DEPTH_TEST);
 		
 		// The below glEnable() call is a holdover from OpenGL ES 1, and is not needed in OpenGL ES 2.
 		// Enable texture mapping
@@ -415,30 +431,34 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 		// view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
 		Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);		
 
-		final String vertexShader = RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.per_pixel_vertex_shader_tex_and_light);   		
- 		final String fragmentShader = RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.per_pixel_fragment_shader_tex_and_light);			
-		
-		final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);		
-		final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);		
-		
-		mProgramHandle = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, 
-				new String[] {"a_Position",  "a_Normal", "a_TexCoordinate"});								                                							       
+		// per pixel lighting of a textured surface, brighter and with a steeper fall-off than the default
+		mProgram = new ShaderVariants(mActivityContext)
+				.setConstant("LIGHT_ATTENUATION_LINEAR", "0.25")
+				.setConstant("LIGHT_AMBIENT", "0.7")
+				.get(ShaderVariants.TEXTURE | ShaderVariants.PER_PIXEL_LIGHTING | ShaderVariants.ATTENUATION);
+
+        // Set program handles for cube drawing. They stay valid as long as the program does.
+        mMVPMatrixHandle = mProgram.getUniform("u_MVPMatrix");
+        mMVMatrixHandle = mProgram.getUniform("u_MVMatrix");
+        mLightPosHandle = mProgram.getUniform("u_LightPos");
+        mTextureUniformHandle = mProgram.getUniform("u_Texture");
+        mPositionHandle = mProgram.getAttribute("a_Position");
+        mNormalHandle = mProgram.getAttribute("a_Normal");
+        mTextureCoordinateHandle = mProgram.getAttribute("a_TexCoordinate");
         
         // Define a simple shader program for our point.
         final String pointVertexShader = RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.point_vertex_shader);        	       
         final String pointFragmentShader = RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.point_fragment_shader);
         
-        final int pointVertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, pointVertexShader);
-        final int pointFragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, pointFragmentShader);
-        mPointProgramHandle = ShaderHelper.createAndLinkProgram(pointVertexShaderHandle, pointFragmentShaderHandle, 
-        		new String[] {"a_Position"}); 
+        mPointProgram = new ShaderProgram(pointVertexShader, pointFragmentShader,
+        		new String[] {"a_Position"});
+        mPointMVPMatrixHandle = mPointProgram.getUniform("u_MVPMatrix");
+        mPointPositionHandle = mPointProgram.getAttribute("a_Position");
         
         // Load the texture
-        mBrickDataHandle = TextureHelper.loadTexture(mActivityContext, R.drawable.stone_wall_public_domain);        
-        GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
-        
-        mGrassDataHandle = TextureHelper.loadTexture(mActivityContext, R.drawable.noisy_grass_public_domain);
-        GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+        mTextureLoader = new TextureLoader(mActivityContext);
+        mBrickDataHandle = mTextureLoader.stream(R.drawable.stone_wall_public_domain, true);
+        mGrassDataHandle = mTextureLoader.stream(R.drawable.noisy_grass_public_domain, true);
         
         if (mQueuedMinFilter != 0)
         {
@@ -452,13 +472,15 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
         
         // Initialize the accumulated rotation matrix
         Matrix.setIdentityM(mAccumulatedRotation, 0);
+
+		ProgramCache.logStats("LessonSixRenderer");
 	}	
 		
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) 
 	{
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
 
 		// Create a new perspective projection matrix. The height will stay the same
 		// while the width will vary as per aspect ratio.
@@ -476,7 +498,9 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 	@Override
 	public void onDrawFrame(GL10 glUnused) 
 	{
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
+		mTextureLoader.uploadPending();
+
+		GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			        
                 
         // Do a complete rotation every 10 seconds.
         long time = SystemClock.uptimeMillis() % 10000L;
@@ -485,16 +509,7 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
         float slowAngleInDegrees = (360.0f / 100000.0f) * ((int) slowTime); 
         
         // Set our per-vertex lighting program.
-        GLES20.glUseProgram(mProgramHandle);
-        
-        // Set program handles for cube drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVMatrix"); 
-        mLightPosHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_LightPos");
-        mTextureUniformHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_Texture");
-        mPositionHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Position");        
-        mNormalHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Normal"); 
-        mTextureCoordinateHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");                        
+        mProgram.use();
         
         // Calculate position of the light. Rotate and then push into the distance.
         Matrix.setIdentityM(mLightModelMatrix, 0);
@@ -526,20 +541,20 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
     	System.arraycopy(mTemporaryMatrix, 0, mModelMatrix, 0, 16);
     	
     	// Set the active texture unit to texture unit 0.
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GL.glActiveTexture(GLES20.GL_TEXTURE0);
         
         // Bind the texture to this unit.
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mBrickDataHandle);
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, mBrickDataHandle);
         
         // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
-        GLES20.glUniform1i(mTextureUniformHandle, 0);
+        GL.glUniform1i(mTextureUniformHandle, 0);
         
         // Pass in the texture coordinate information
         mCubeTextureCoordinates.position(0);
-        GLES20.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false, 
+        GL.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false, 
         		0, mCubeTextureCoordinates);
 
-        GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
+        GLState.enableVertexAttribArray(mTextureCoordinateHandle);
         
         drawCube();  
         
@@ -550,25 +565,25 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
         Matrix.rotateM(mModelMatrix, 0, slowAngleInDegrees, 0.0f, 1.0f, 0.0f);
         
         // Set the active texture unit to texture unit 0.
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GL.glActiveTexture(GLES20.GL_TEXTURE0);
         
         // Bind the texture to this unit.
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mGrassDataHandle);
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, mGrassDataHandle);
         
         // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
-        GLES20.glUniform1i(mTextureUniformHandle, 0);
+        GL.glUniform1i(mTextureUniformHandle, 0);
         
         // Pass in the texture coordinate information
         mCubeTextureCoordinatesForPlane.position(0);
-        GLES20.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false, 
+        GL.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false, 
         		0, mCubeTextureCoordinatesForPlane);
         
-        GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
+        GLState.enableVertexAttribArray(mTextureCoordinateHandle);
         
         drawCube();
         
         // Draw a point to indicate the light.
-        GLES20.glUseProgram(mPointProgramHandle);        
+        mPointProgram.use();
         drawLight();
 	}	
 	
@@ -576,10 +591,10 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 	{
 		if (mBrickDataHandle != 0 && mGrassDataHandle != 0)
 		{
-			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mBrickDataHandle);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
-			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mGrassDataHandle);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
+			GL.glBindTexture(GLES20.GL_TEXTURE_2D, mBrickDataHandle);
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
+			GL.glBindTexture(GLES20.GL_TEXTURE_2D, mGrassDataHandle);
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
 		}
 		else
 		{
@@ -591,10 +606,10 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 	{
 		if (mBrickDataHandle != 0 && mGrassDataHandle != 0)
 		{
-			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mBrickDataHandle);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
-			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mGrassDataHandle);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
+			GL.glBindTexture(GLES20.GL_TEXTURE_2D, mBrickDataHandle);
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
+			GL.glBindTexture(GLES20.GL_TEXTURE_2D, mGrassDataHandle);
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
 		}
 		else
 		{
@@ -609,24 +624,24 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 	{		
 		// Pass in the position information
 		mCubePositions.position(0);		
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
         		0, mCubePositions);        
                 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);                       
+        GLState.enableVertexAttribArray(mPositionHandle);                       
         
         // Pass in the normal information
         mCubeNormals.position(0);
-        GLES20.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false, 
+        GL.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false, 
         		0, mCubeNormals);
         
-        GLES20.glEnableVertexAttribArray(mNormalHandle);                
+        GLState.enableVertexAttribArray(mNormalHandle);                
         
 		// This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
         // (which currently contains model * view).
         Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);   
         
         // Pass in the modelview matrix.
-        GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);                
+        GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);                
         
         // This multiplies the modelview matrix by the projection matrix, and stores the result in the MVP matrix
         // (which now contains model * view * projection).        
@@ -634,13 +649,13 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
         System.arraycopy(mTemporaryMatrix, 0, mMVPMatrix, 0, 16);
 
         // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
         
         // Pass in the light position in eye space.        
-        GLES20.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+        GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
         
         // Draw the cube.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
+        FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, 36);                               
 	}			
 	
 	/**
@@ -648,22 +663,19 @@ public class LessonSixRenderer implements GLSurfaceView.Renderer
 	 */
 	private void drawLight()
 	{
-		final int pointMVPMatrixHandle = GLES20.glGetUniformLocation(mPointProgramHandle, "u_MVPMatrix");
-        final int pointPositionHandle = GLES20.glGetAttribLocation(mPointProgramHandle, "a_Position");
-        
 		// Pass in the position.
-		GLES20.glVertexAttrib3f(pointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
+		GL.glVertexAttrib3f(mPointPositionHandle, mLightPosInModelSpace[0], mLightPosInModelSpace[1], mLightPosInModelSpace[2]);
 
 		// Since we are not using a buffer object, disable vertex arrays for this attribute.
-        GLES20.glDisableVertexAttribArray(pointPositionHandle);  
+        GLState.disableVertexAttribArray(mPointPositionHandle);  
 		
 		// Pass in the transformation matrix.
 		Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mLightModelMatrix, 0);
 		Matrix.multiplyMM(mTemporaryMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
 		System.arraycopy(mTemporaryMatrix, 0, mMVPMatrix, 0, 16);
-		GLES20.glUniformMatrix4fv(pointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+		GL.glUniformMatrix4fv(mPointMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 		
 		// Draw the point.
-		GLES20.glDrawArrays(GLES20.GL_POINTS, 0, 1);
+		FrameProfiler.drawArrays(GLES20.GL_POINTS, 0, 1);
 	}
 }
@@ -11,6 +11,7 @@ import android.view.View.OnClickListener;
 import android.widget.Button;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.ProfilerOverlay;
 
 public class LessonSevenActivity extends Activity {
 	/** Hold a reference to our GLSurfaceView */
@@ -22,6 +23,7 @@ public class LessonSevenActivity extends Activity {
 		super.onCreate(savedInstanceState);
 
 		setContentView(R.layout.lesson_seven);
+		ProfilerOverlay.attach(this);
 
 		mGLSurfaceView = (LessonSevenGLSurfaceView) findViewById(R.id.gl_surface_view);
 
@@ -73,6 +75,13 @@ public class LessonSevenActivity extends Activity {
 				toggleStride();
 			}
 		});
+
+		findViewById(R.id.button_switch_indexed).setOnClickListener(new OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				toggleIndexed();
+			}
+		});
 	}
 
 	@Override
@@ -127,6 +136,15 @@ public class LessonSevenActivity extends Activity {
 		});	
 	}
 
+	protected void toggleIndexed() {
+		mGLSurfaceView.queueEvent(new Runnable() {
+			@Override
+			public void run() {
+				mRenderer.toggleIndexed();
+			}
+		});
+	}
+
 	public void updateVboStatus(final boolean usingVbos) {
 		runOnUiThread(new Runnable() {
 			@Override
@@ -152,4 +170,17 @@ public class LessonSevenActivity extends Activity {
 			}
 		});
 	}
+
+	public void updateIndexedStatus(final boolean useIndexed) {
+		runOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				if (useIndexed) {
+					((Button) findViewById(R.id.button_switch_indexed)).setText(R.string.lesson_seven_using_indexed);
+				} else {
+					((Button) findViewById(R.id.button_switch_indexed)).setText(R.string.lesson_seven_not_using_indexed);
+				}
+			}
+		});
+	}
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import android.opengl.GLSurfaceView;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+
 public class LessonSevenGLSurfaceView extends GLSurfaceView 
 {	
 	private LessonSevenRenderer mRenderer;
@@ -61,6 +63,6 @@ public class LessonSevenGLSurfaceView extends GLSurfaceView
 	{
 		mRenderer = renderer;
 		mDensity = density;
-		super.setRenderer(renderer);
+		super.setRenderer(FrameProfiler.wrap(renderer));
 	}
 }
@@ -3,18 +3,31 @@ package com.learnopengles.sandbox.lesson7;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
 
 import com.learnopengles.sandbox.R;
-import com.learnopengles.sandbox.common.RawResourceReader;
-import com.learnopengles.sandbox.common.ShaderHelper;
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
 import com.learnopengles.sandbox.common.ShapeBuilder;
-import com.learnopengles.sandbox.common.TextureHelper;
+import com.learnopengles.sandbox.common.TextureLoader;
+import com.learnopengles.sandbox.common.WorkerPool;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -96,6 +109,14 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	
 	/** Control whether strides will be used. */
 	private boolean mUseStride = true;
+
+	/** Control whether cubes are drawn indexed, from 24 distinct vertices each - VBOs and stride always. */
+	private boolean mUseIndexed = false;
+
+	/** The modes asked for - the cubes being generated are laid out for these. */
+	private boolean mRequestedVbos = true;
+	private boolean mRequestedStride = true;
+	private boolean mRequestedIndexed = false;
 	
 	/** Size of the position data in elements. */
 	static final int POSITION_DATA_SIZE = 3;	
@@ -108,6 +129,28 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	
 	/** How many bytes per float. */
 	static final int BYTES_PER_FLOAT = 4;	
+
+	/** How many bytes per index. */
+	static final int BYTES_PER_SHORT = 2;
+
+	/** Floats in one vertex with everything in it. */
+	static final int VERTEX_DATA_SIZE = POSITION_DATA_SIZE + NORMAL_DATA_SIZE + TEXTURE_COORDINATE_DATA_SIZE;
+
+	/**
+	 * How generateBuffers lays out the field: a buffer each for positions, normals and
+	 * texture coordinates; the three interleaved in one; or interleaved with only the 24
+	 * distinct vertices of each cube, for indexed drawing.
+	 */
+	static final int LAYOUT_SEPARATE = 0;
+	static final int LAYOUT_INTERLEAVED = 1;
+	static final int LAYOUT_INDEXED = 2;
+
+	/** Cubes one draw of 16 bit indices reaches. */
+	static final int CUBES_PER_INDEXED_DRAW = 65536 / ShapeBuilder.CUBE_UNIQUE_VERTICES;
+
+	/** Cubes in one chunk of a field too big to build at once, and how many chunks may be around. */
+	static final int CHUNK_CUBES = 2048;
+	static final int CHUNK_BUFFERS = 2;
 	
 	/** Used to hold a light centered on the origin in model space. We need a 4th coordinate so we can get translations to work when
 	 *  we multiply this by our transformation matrices. */
@@ -119,11 +162,14 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	/** Used to hold the transformed position of the light in eye space (after transformation via modelview matrix) */
 	private final float[] mLightPosInEyeSpace = new float[4];
 	
-	/** This is a handle to our cube shading program. */
-	private int mProgramHandle;
+	/** Our cube shading program. */
+	private ShaderProgram mProgram;
 	
 	/** These are handles to our texture data. */
 	private int mAndroidDataHandle;		
+
+	/** Decodes the texture and its mip chain in the background; it is uploaded from onDrawFrame. */
+	private TextureLoader mTextureLoader;
 	
 	// These still work without volatile, but refreshes are not guaranteed to happen.					
 	public volatile float mDeltaX;					
@@ -135,6 +181,27 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	/** The current cubes object. */
 	private Cubes mCubes;
 
+	/** Off builds and uploads every request in turn, to compare against. */
+	private static boolean sCoalesceRequests = true;
+
+	/** Most vertex data to hold at once; a bigger field is uploaded in chunks. */
+	private static int sMemoryBudget = (int) Math.min(16 << 20, Runtime.getRuntime().maxMemory() / 4);
+
+	/** Chunks generated and waiting for onDrawFrame to upload them. */
+	private final ConcurrentLinkedQueue<Chunk> mChunks = new ConcurrentLinkedQueue<Chunk>();
+
+	/** The generation asked for last; anything before it is obsolete. GL thread. */
+	private GenDataRunnable mLatestJob;
+
+	/*
+	 * a burst of requests, from the first since the cubes last caught up to the
+	 * upload of the last one - logged as the time to the final state
+	 */
+	private long mBurstStart = -1;
+	private int mBurstRequests;
+	private final AtomicInteger mBurstSkipped = new AtomicInteger();
+	private final AtomicInteger mBurstCancelled = new AtomicInteger();
+
 	/**
 	 * Initialize the model data.
 	 */
@@ -145,253 +212,404 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	}
 
 	private void generateCubes(int cubeFactor, boolean toggleVbos, boolean toggleStride) {
-		mSingleThreadedExecutor.submit(new GenDataRunnable(cubeFactor, toggleVbos, toggleStride));		
+		generateCubes(cubeFactor, toggleVbos, toggleStride, false);
+	}
+
+	private void generateCubes(int cubeFactor, boolean toggleVbos, boolean toggleStride, boolean toggleIndexed) {
+		// the layout of the buffers depends on the mode, so settle it now rather than when they're uploaded
+		mRequestedVbos ^= toggleVbos;
+		mRequestedStride ^= toggleStride;
+		mRequestedIndexed ^= toggleIndexed;
+
+		// client-side arrays have to hold the whole field; past the budget only VBOs, filled
+		// a chunk at a time, can show it
+		final int layout = mRequestedIndexed ? LAYOUT_INDEXED : mRequestedStride ? LAYOUT_INTERLEAVED : LAYOUT_SEPARATE;
+		if (!mRequestedVbos && !mRequestedIndexed && estimateBytes(cubeFactor, layout) > sMemoryBudget) {
+			Log.w(TAG, String.format("cube factor %d needs %d KB, over the %d KB budget for client-side arrays; using VBOs",
+					cubeFactor, estimateBytes(cubeFactor, layout) / 1024, sMemoryBudget / 1024));
+			mRequestedVbos = true;
+		}
+
+		if (mBurstStart < 0) {
+			mBurstStart = SystemClock.uptimeMillis();
+			mBurstRequests = 0;
+			mBurstSkipped.set(0);
+			mBurstCancelled.set(0);
+		}
+		mBurstRequests++;
+
+		// only the latest state is worth building: a job still queued won't start, one
+		// under way stops at its next slab row, and a finished one won't be uploaded
+		if (sCoalesceRequests && mLatestJob != null) {
+			mLatestJob.mCancelled.set(true);
+		}
+		mLatestJob = new GenDataRunnable(cubeFactor, mRequestedVbos, mRequestedStride, mRequestedIndexed);
+		mSingleThreadedExecutor.submit(mLatestJob);
+	}
+
+	public static void setCoalesceRequests(boolean coalesce) {
+		sCoalesceRequests = coalesce;
+	}
+
+	public static boolean isCoalesceRequests() {
+		return sCoalesceRequests;
+	}
+
+	public static void setMemoryBudget(int bytes) {
+		sMemoryBudget = bytes;
+	}
+
+	public static int getMemoryBudget() {
+		return sMemoryBudget;
+	}
+
+	/**
+	 * Bytes of vertex data in a field of cubeFactor cubes a side.
+	 */
+	static long estimateBytes(int cubeFactor, int layout) {
+		return (long) cubeFactor * cubeFactor * cubeFactor * bytesPerCube(layout);
+	}
+
+	/**
+	 * Positions, normals and texture coordinates of one cube; 24 vertices indexed, else 36.
+	 */
+	static int bytesPerCube(int layout) {
+		return (layout == LAYOUT_INDEXED ? ShapeBuilder.CUBE_UNIQUE_VERTICES : ShapeBuilder.CUBE_VERTICES)
+				* VERTEX_DATA_SIZE * BYTES_PER_FLOAT;
 	}
 	
 	class GenDataRunnable implements Runnable {
 		final int mRequestedCubeFactor;
-		final boolean mToggleVbos;
-		final boolean mToggleStride;
+		final boolean mVbos;
+		final boolean mStride;
+		final boolean mIndexed;
+		final int mLayout;
+		/* superseded by a later request */
+		final AtomicBoolean mCancelled = new AtomicBoolean();
+
+		/* uploading in chunks: buffers the GL thread has handed back, and the cubes they go into (GL thread) */
+		final ArrayBlockingQueue<FloatBuffer[]> mFreeChunks = new ArrayBlockingQueue<FloatBuffer[]>(CHUNK_BUFFERS);
+		ChunkedCubes mTarget;
 		
-		GenDataRunnable(int requestedCubeFactor, boolean toggleVbos, boolean toggleStride) {
+		GenDataRunnable(int requestedCubeFactor, boolean vbos, boolean stride, boolean indexed) {
 			mRequestedCubeFactor = requestedCubeFactor; 
-			mToggleVbos = toggleVbos;	
-			mToggleStride = toggleStride;
+			mVbos = vbos;	
+			mStride = stride;
+			mIndexed = indexed;
+			mLayout = indexed ? LAYOUT_INDEXED : stride ? LAYOUT_INTERLEAVED : LAYOUT_SEPARATE;
 		}
 		
 		@Override
 		public void run() {			
-			try {
-				// X, Y, Z
-				// The normal is used in light calculations and is a vector which points
-				// orthogonal to the plane of the surface. For a cube model, the normals
-				// should be orthogonal to the points of each face.
-				final float[] cubeNormalData =
-				{												
-						// Front face
-						0.0f, 0.0f, 1.0f,				
-						0.0f, 0.0f, 1.0f,
-						0.0f, 0.0f, 1.0f,
-						0.0f, 0.0f, 1.0f,				
-						0.0f, 0.0f, 1.0f,
-						0.0f, 0.0f, 1.0f,
-						
-						// Right face 
-						1.0f, 0.0f, 0.0f,				
-						1.0f, 0.0f, 0.0f,
-						1.0f, 0.0f, 0.0f,
-						1.0f, 0.0f, 0.0f,				
-						1.0f, 0.0f, 0.0f,
-						1.0f, 0.0f, 0.0f,
-						
-						// Back face 
-						0.0f, 0.0f, -1.0f,				
-						0.0f, 0.0f, -1.0f,
-						0.0f, 0.0f, -1.0f,
-						0.0f, 0.0f, -1.0f,				
-						0.0f, 0.0f, -1.0f,
-						0.0f, 0.0f, -1.0f,
-						
-						// Left face 
-						-1.0f, 0.0f, 0.0f,				
-						-1.0f, 0.0f, 0.0f,
-						-1.0f, 0.0f, 0.0f,
-						-1.0f, 0.0f, 0.0f,				
-						-1.0f, 0.0f, 0.0f,
-						-1.0f, 0.0f, 0.0f,
-						
-						// Top face 
-						0.0f, 1.0f, 0.0f,			
-						0.0f, 1.0f, 0.0f,
-						0.0f, 1.0f, 0.0f,
-						0.0f, 1.0f, 0.0f,				
-						0.0f, 1.0f, 0.0f,
-						0.0f, 1.0f, 0.0f,
-						
-						// Bottom face 
-						0.0f, -1.0f, 0.0f,			
-						0.0f, -1.0f, 0.0f,
-						0.0f, -1.0f, 0.0f,
-						0.0f, -1.0f, 0.0f,				
-						0.0f, -1.0f, 0.0f,
-						0.0f, -1.0f, 0.0f
-				};
-				
-				// S, T (or X, Y)
-				// Texture coordinate data.
-				// Because images have a Y axis pointing downward (values increase as you move down the image) while
-				// OpenGL has a Y axis pointing upward, we adjust for that here by flipping the Y axis.
-				// What's more is that the texture coordinates are the same for every face.
-				final float[] cubeTextureCoordinateData =
-				{												
-						// Front face
-						0.0f, 0.0f, 				
-						0.0f, 1.0f,
-						1.0f, 0.0f,
-						0.0f, 1.0f,
-						1.0f, 1.0f,
-						1.0f, 0.0f,				
-						
-						// Right face 
-						0.0f, 0.0f, 				
-						0.0f, 1.0f,
-						1.0f, 0.0f,
-						0.0f, 1.0f,
-						1.0f, 1.0f,
-						1.0f, 0.0f,	
-						
-						// Back face 
-						0.0f, 0.0f, 				
-						0.0f, 1.0f,
-						1.0f, 0.0f,
-						0.0f, 1.0f,
-						1.0f, 1.0f,
-						1.0f, 0.0f,	
-						
-						// Left face 
-						0.0f, 0.0f, 				
-						0.0f, 1.0f,
-						1.0f, 0.0f,
-						0.0f, 1.0f,
-						1.0f, 1.0f,
-						1.0f, 0.0f,	
-						
-						// Top face 
-						0.0f, 0.0f, 				
-						0.0f, 1.0f,
-						1.0f, 0.0f,
-						0.0f, 1.0f,
-						1.0f, 1.0f,
-						1.0f, 0.0f,	
-						
-						// Bottom face 
-						0.0f, 0.0f, 				
-						0.0f, 1.0f,
-						1.0f, 0.0f,
-						0.0f, 1.0f,
-						1.0f, 1.0f,
-						1.0f, 0.0f
-				};		
-							
-				final float[] cubePositionData = new float[108 * mRequestedCubeFactor * mRequestedCubeFactor * mRequestedCubeFactor];
-				int cubePositionDataOffset = 0;
-									
-				final int segments = mRequestedCubeFactor + (mRequestedCubeFactor - 1);
-				final float minPosition = -1.0f;
-				final float maxPosition = 1.0f;
-				final float positionRange = maxPosition - minPosition;
-				
-				for (int x = 0; x < mRequestedCubeFactor; x++) {
-					for (int y = 0; y < mRequestedCubeFactor; y++) {
-						for (int z = 0; z < mRequestedCubeFactor; z++) {
-							final float x1 = minPosition + ((positionRange / segments) * (x * 2));
-							final float x2 = minPosition + ((positionRange / segments) * ((x * 2) + 1));
-							
-							final float y1 = minPosition + ((positionRange / segments) * (y * 2));
-							final float y2 = minPosition + ((positionRange / segments) * ((y * 2) + 1));
-							
-							final float z1 = minPosition + ((positionRange / segments) * (z * 2));
-							final float z2 = minPosition + ((positionRange / segments) * ((z * 2) + 1));
-							
-							// Define points for a cube.
-							// X, Y, Z
-							final float[] p1p = { x1, y2, z2 };
-							final float[] p2p = { x2, y2, z2 };
-							final float[] p3p = { x1, y1, z2 };
-							final float[] p4p = { x2, y1, z2 };
-							final float[] p5p = { x1, y2, z1 };
-							final float[] p6p = { x2, y2, z1 };
-							final float[] p7p = { x1, y1, z1 };
-							final float[] p8p = { x2, y1, z1 };
-
-							final float[] thisCubePositionData = ShapeBuilder.generateCubeData(p1p, p2p, p3p, p4p, p5p, p6p, p7p, p8p,
-									p1p.length);
-							
-							System.arraycopy(
-                                    thisCubePositionData, 0,     // source + offset
-                                    cubePositionData, cubePositionDataOffset, //dest
-                                    thisCubePositionData.length); // how many
-
-							cubePositionDataOffset += thisCubePositionData.length;
-						}
+			if (mCancelled.get()) {
+				mBurstSkipped.incrementAndGet();
+				return;
+			}
+
+			// X, Y, Z
+			// The normal is used in light calculations and is a vector which points
+			// orthogonal to the plane of the surface. For a cube model, the normals
+			// should be orthogonal to the points of each face.
+			final float[] cubeNormalData =
+			{												
+					// Front face
+					0.0f, 0.0f, 1.0f,				
+					0.0f, 0.0f, 1.0f,
+					0.0f, 0.0f, 1.0f,
+					0.0f, 0.0f, 1.0f,				
+					0.0f, 0.0f, 1.0f,
+					0.0f, 0.0f, 1.0f,
+					
+					// Right face 
+					1.0f, 0.0f, 0.0f,				
+					1.0f, 0.0f, 0.0f,
+					1.0f, 0.0f, 0.0f,
+					1.0f, 0.0f, 0.0f,				
+					1.0f, 0.0f, 0.0f,
+					1.0f, 0.0f, 0.0f,
+					
+					// Back face 
+					0.0f, 0.0f, -1.0f,				
+					0.0f, 0.0f, -1.0f,
+					0.0f, 0.0f, -1.0f,
+					0.0f, 0.0f, -1.0f,				
+					0.0f, 0.0f, -1.0f,
+					0.0f, 0.0f, -1.0f,
+					
+					// Left face 
+					-1.0f, 0.0f, 0.0f,				
+					-1.0f, 0.0f, 0.0f,
+					-1.0f, 0.0f, 0.0f,
+					-1.0f, 0.0f, 0.0f,				
+					-1.0f, 0.0f, 0.0f,
+					-1.0f, 0.0f, 0.0f,
+					
+					// Top face 
+					0.0f, 1.0f, 0.0f,			
+					0.0f, 1.0f, 0.0f,
+					0.0f, 1.0f, 0.0f,
+					0.0f, 1.0f, 0.0f,				
+					0.0f, 1.0f, 0.0f,
+					0.0f, 1.0f, 0.0f,
+					
+					// Bottom face 
+					0.0f, -1.0f, 0.0f,			
+					0.0f, -1.0f, 0.0f,
+					0.0f, -1.0f, 0.0f,
+					0.0f, -1.0f, 0.0f,				
+					0.0f, -1.0f, 0.0f,
+					0.0f, -1.0f, 0.0f
+			};
+			
+			// S, T (or X, Y)
+			// Texture coordinate data.
+			// Because images have a Y axis pointing downward (values increase as you move down the image) while
+			// OpenGL has a Y axis pointing upward, we adjust for that here by flipping the Y axis.
+			// What's more is that the texture coordinates are the same for every face.
+			final float[] cubeTextureCoordinateData =
+			{												
+					// Front face
+					0.0f, 0.0f, 				
+					0.0f, 1.0f,
+					1.0f, 0.0f,
+					0.0f, 1.0f,
+					1.0f, 1.0f,
+					1.0f, 0.0f,				
+					
+					// Right face 
+					0.0f, 0.0f, 				
+					0.0f, 1.0f,
+					1.0f, 0.0f,
+					0.0f, 1.0f,
+					1.0f, 1.0f,
+					1.0f, 0.0f,	
+					
+					// Back face 
+					0.0f, 0.0f, 				
+					0.0f, 1.0f,
+					1.0f, 0.0f,
+					0.0f, 1.0f,
+					1.0f, 1.0f,
+					1.0f, 0.0f,	
+					
+					// Left face 
+					0.0f, 0.0f, 				
+					0.0f, 1.0f,
+					1.0f, 0.0f,
+					0.0f, 1.0f,
+					1.0f, 1.0f,
+					1.0f, 0.0f,	
+					
+					// Top face 
+					0.0f, 0.0f, 				
+					0.0f, 1.0f,
+					1.0f, 0.0f,
+					0.0f, 1.0f,
+					1.0f, 1.0f,
+					1.0f, 0.0f,	
+					
+					// Bottom face 
+					0.0f, 0.0f, 				
+					0.0f, 1.0f,
+					1.0f, 0.0f,
+					0.0f, 1.0f,
+					1.0f, 1.0f,
+					1.0f, 0.0f
+			};		
+
+			final long start = System.nanoTime();
+			if (estimateBytes(mRequestedCubeFactor, mLayout) > sMemoryBudget) {
+				generateChunks(cubeNormalData, cubeTextureCoordinateData, start);
+				return;
+			}
+
+			final FloatBuffer[] buffers = generateBuffers(mRequestedCubeFactor, mLayout,
+					cubeNormalData, cubeTextureCoordinateData, mCancelled);
+			if (buffers == null) {
+				mBurstCancelled.incrementAndGet();
+				return;
+			}
+			Log.w(TAG, String.format("cube factor %d: %d cubes generated in %.2f ms, %d slabs on %d threads; %d KB %s",
+					mRequestedCubeFactor, mRequestedCubeFactor * mRequestedCubeFactor * mRequestedCubeFactor,
+					(System.nanoTime() - start) / 1e6f, mRequestedCubeFactor,
+					Math.min(mRequestedCubeFactor, WorkerPool.getParallelism()),
+					estimateBytes(mRequestedCubeFactor, mLayout) / 1024, describeLayout(mLayout)));
+			
+			// Run on the GL thread -- the same thread the other members of the renderer run in.
+			mGlSurfaceView.queueEvent(new Runnable() {
+				@Override
+				public void run() {												
+					if (mCancelled.get()) {
+						// superseded while it waited for the GL thread
+						return;
 					}
-				}					
-				
-				// Run on the GL thread -- the same thread the other members of the renderer run in.
-				mGlSurfaceView.queueEvent(new Runnable() {
-					@Override
-					public void run() {												
-						if (mCubes != null) {
-							mCubes.release();
-							mCubes = null;
+
+					final Cubes cubes;
+					if (mIndexed) {
+						cubes = new CubesIndexed(buffers[0]);
+					} else if (mStride) {
+						if (mVbos) {
+							cubes = new CubesWithVboWithStride(buffers[0]);
+						} else {
+							cubes = new CubesClientSideWithStride(buffers[0]);
 						}
-						
-						// Not supposed to manually call this, but Dalvik sometimes needs some additional prodding to clean up the heap.
-						// HACK: remove for now
-						// System.gc();
-						
-						try {
-							boolean useVbos = mUseVBOs;
-							boolean useStride = mUseStride;	
-							
-							if (mToggleVbos) {
-								useVbos = !useVbos;
-							}
-							
-							if (mToggleStride) {
-								useStride = !useStride;
-							}
-							
-							if (useStride) {
-								if (useVbos) {
-									mCubes = new CubesWithVboWithStride(cubePositionData, cubeNormalData, cubeTextureCoordinateData, mRequestedCubeFactor);											
-								} else {
-									mCubes = new CubesClientSideWithStride(cubePositionData, cubeNormalData, cubeTextureCoordinateData, mRequestedCubeFactor);
-								}
-							} else {
-								if (useVbos) {
-									mCubes = new CubesWithVbo(cubePositionData, cubeNormalData, cubeTextureCoordinateData, mRequestedCubeFactor);											
-								} else {
-									mCubes = new CubesClientSide(cubePositionData, cubeNormalData, cubeTextureCoordinateData, mRequestedCubeFactor);
-								}
-							}	
-																			
-							mUseVBOs = useVbos;
-							mLessonSevenActivity.updateVboStatus(mUseVBOs);
-						
-							mUseStride = useStride;
-							mLessonSevenActivity.updateStrideStatus(mUseStride);																					
-							
-							mActualCubeFactor = mRequestedCubeFactor;
-						} catch (OutOfMemoryError err) {
-							if (mCubes != null) {
-								mCubes.release();
-								mCubes = null;
-							}
-							
-							// Not supposed to manually call this, but Dalvik sometimes needs some additional prodding to clean up the heap.
-							System.gc();
-							
-							mLessonSevenActivity.runOnUiThread(new Runnable() {							
-								@Override
-								public void run() {
-//									Toast.makeText(mLessonSevenActivity, "Out of memory; Dalvik takes a while to clean up the memory. Please try again.\nExternal bytes allocated=" + dalvik.system.VMRuntime.getRuntime().getExternalBytesAllocated(), Toast.LENGTH_LONG).show();								
-								}
-							});										
-						}																	
-					}				
-				});
-			} catch (OutOfMemoryError e) {
-				// Not supposed to manually call this, but Dalvik sometimes needs some additional prodding to clean up the heap.
-				System.gc();
-				
-				mLessonSevenActivity.runOnUiThread(new Runnable() {							
-					@Override
-					public void run() {
-//						Toast.makeText(mLessonSevenActivity, "Out of memory; Dalvik takes a while to clean up the memory. Please try again.\nExternal bytes allocated=" + dalvik.system.VMRuntime.getRuntime().getExternalBytesAllocated(), Toast.LENGTH_LONG).show();								
+					} else {
+						if (mVbos) {
+							cubes = new CubesWithVbo(buffers);
+						} else {
+							cubes = new CubesClientSide(buffers);
+						}
+					}	
+					show(GenDataRunnable.this, cubes);
+					finished(GenDataRunnable.this);
+				}				
+			});
+		}
+
+		/*
+		 * too big to hold at once: room for the whole field in the VBOs first, then a
+		 * chunk of rows of cubes at a time through CHUNK_BUFFERS reusable buffers, each
+		 * uploaded from onDrawFrame and handed back - at most one chunk a frame
+		 */
+		private void generateChunks(float[] cubeNormalData, float[] cubeTextureCoordinateData, long start) {
+			final int rows = mRequestedCubeFactor * mRequestedCubeFactor;
+			final int rowsPerChunk = Math.max(1, CHUNK_CUBES / mRequestedCubeFactor);
+			for (int i = 0; i < CHUNK_BUFFERS; i++) {
+				mFreeChunks.add(allocateBuffers(rowsPerChunk * mRequestedCubeFactor, mLayout));
+			}
+
+			mGlSurfaceView.queueEvent(new Runnable() {
+				@Override
+				public void run() {
+					if (mCancelled.get()) {
+						return;
+					}
+					final int numCubes = mRequestedCubeFactor * mRequestedCubeFactor * mRequestedCubeFactor;
+					if (mIndexed) {
+						mTarget = new CubesIndexed(numCubes);
+					} else if (mStride) {
+						mTarget = new CubesWithVboWithStride(numCubes);
+					} else {
+						mTarget = new CubesWithVbo(numCubes);
 					}
-				});
-			}			
+					show(GenDataRunnable.this, mTarget);
+				}
+			});
+
+			int chunks = 0;
+			for (int row = 0; row < rows; row += rowsPerChunk) {
+				final FloatBuffer[] buffers;
+				try {
+					buffers = takeFreeChunk();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				final int rowEnd = Math.min(rows, row + rowsPerChunk);
+				if (buffers == null || !generateRows(mRequestedCubeFactor, row, rowEnd, mLayout, buffers,
+						cubeNormalData, cubeTextureCoordinateData, mCancelled)) {
+					mBurstCancelled.incrementAndGet();
+					return;
+				}
+				mChunks.add(new Chunk(this, buffers, row * mRequestedCubeFactor, (rowEnd - row) * mRequestedCubeFactor));
+				chunks++;
+			}
+			Log.w(TAG, String.format("cube factor %d: %d cubes generated in %.2f ms, %d chunks of %d KB; %d KB %s",
+					mRequestedCubeFactor, rows * mRequestedCubeFactor, (System.nanoTime() - start) / 1e6f,
+					chunks, rowsPerChunk * mRequestedCubeFactor * bytesPerCube(mLayout) / 1024,
+					estimateBytes(mRequestedCubeFactor, mLayout) / 1024, describeLayout(mLayout)));
+		}
+
+		/*
+		 * waits for the GL thread to hand one back; null once cancelled
+		 */
+		private FloatBuffer[] takeFreeChunk() throws InterruptedException {
+			while (!mCancelled.get()) {
+				final FloatBuffer[] buffers = mFreeChunks.poll(100, TimeUnit.MILLISECONDS);
+				if (buffers != null) {
+					return buffers;
+				}
+			}
+			return null;
+		}
+	}
+
+	/*
+	 * a piece of a field being uploaded in chunks, ready for its VBOs
+	 */
+	static class Chunk {
+		final GenDataRunnable mJob;
+		final FloatBuffer[] mBuffers;
+		final int mFirstCube;
+		final int mCubes;
+
+		Chunk(GenDataRunnable job, FloatBuffer[] buffers, int firstCube, int cubes) {
+			mJob = job;
+			mBuffers = buffers;
+			mFirstCube = firstCube;
+			mCubes = cubes;
+		}
+	}
+
+	/*
+	 * GL thread: the new cubes replace the old
+	 */
+	private void show(GenDataRunnable job, Cubes cubes) {
+		if (mCubes != null) {
+			mCubes.release();
+		}
+		mCubes = cubes;
+
+		mUseVBOs = job.mVbos;
+		mLessonSevenActivity.updateVboStatus(mUseVBOs);
+	
+		mUseStride = job.mStride;
+		mLessonSevenActivity.updateStrideStatus(mUseStride);																					
+
+		mUseIndexed = job.mIndexed;
+		mLessonSevenActivity.updateIndexedStatus(mUseIndexed);
+		
+		mActualCubeFactor = job.mRequestedCubeFactor;
+	}
+
+	/*
+	 * GL thread: the cubes are all there
+	 */
+	private void finished(GenDataRunnable job) {
+		if (job == mLatestJob) {
+			Log.w(TAG, String.format("cube factor %d reached %d ms after the first of %d requests; "
+							+ "%d generations skipped, %d cancelled (%s)",
+					job.mRequestedCubeFactor, SystemClock.uptimeMillis() - mBurstStart, mBurstRequests,
+					mBurstSkipped.get(), mBurstCancelled.get(),
+					sCoalesceRequests ? "coalesced" : "every request built"));
+			mBurstStart = -1;
+		}
+	}
+
+	/*
+	 * GL thread: the next chunk into its VBOs, if one is ready
+	 */
+	private void uploadChunk() {
+		Chunk chunk;
+		while ((chunk = mChunks.peek()) != null) {
+			final GenDataRunnable job = chunk.mJob;
+			if (job.mCancelled.get() || (job.mTarget != null && job.mTarget != mCubes)) {
+				// superseded, or its cubes already replaced - stop generating the rest
+				job.mCancelled.set(true);
+				mChunks.poll();
+				continue;
+			}
+			if (job.mTarget == null) {
+				// its VBOs aren't made yet
+				return;
+			}
+			mChunks.poll();
+			job.mTarget.upload(chunk.mBuffers, chunk.mFirstCube, chunk.mCubes);
+			job.mFreeChunks.add(chunk.mBuffers);
+			if (job.mTarget.mCubesReady == job.mTarget.mCubeCount) {
+				finished(job);
+			}
+			return;
 		}
 	}
 
@@ -414,21 +632,32 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	public void toggleStride() {
 		generateCubes(mLastRequestedCubeFactor, false, true);		
 	}
+
+	public void toggleIndexed() {
+		generateCubes(mLastRequestedCubeFactor, false, false, true);
+	}
 	
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) 
 	{		
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+		ProgramCache.reset(mLessonSevenActivity);
+
 		mLastRequestedCubeFactor = mActualCubeFactor = 3;
+		mRequestedVbos = mUseVBOs;
+		mRequestedStride = mUseStride;
+		mRequestedIndexed = mUseIndexed;
 		generateCubes(mActualCubeFactor, false, false);			
 		
 		// Set the background clear color to black.
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		
 		// Use culling to remove back faces.
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
+		GLState.enable(GLES20.GL_CULL_FACE);
 		
 		// Enable depth testing
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);						
+		GLState.enable(GLES20.GL_DEPTH_TEST);						
 		
 		// Position the eye in front of the origin.
 		final float eyeX = 0.0f;
@@ -450,36 +679,44 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 		// view matrix. In OpenGL 2, we can keep track of these matrices separately if we choose.
 		Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);		
 
-		final String vertexShader = RawResourceReader.readTextFileFromRawResource(mLessonSevenActivity, R.raw.lesson_seven_vertex_shader);   		
- 		final String fragmentShader = RawResourceReader.readTextFileFromRawResource(mLessonSevenActivity, R.raw.lesson_seven_fragment_shader);
- 				
-		final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);		
-		final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);		
-		
-		mProgramHandle = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, 
-				new String[] {"a_Position",  "a_Normal", "a_TexCoordinate"});		            
+		// per pixel lighting of textured cubes, falling off as 1 / distance
+		mProgram = new ShaderVariants(mLessonSevenActivity)
+				.setConstant("LIGHT_ATTENUATION_CONSTANT", "0.0")
+				.setConstant("LIGHT_ATTENUATION_LINEAR", "1.0")
+				.setConstant("LIGHT_AMBIENT", "0.2")
+				.get(ShaderVariants.TEXTURE | ShaderVariants.PER_PIXEL_LIGHTING | ShaderVariants.ATTENUATION);
+
+        // Set program handles for cube drawing. They stay valid as long as the program does.
+        mMVPMatrixHandle = mProgram.getUniform("u_MVPMatrix");
+        mMVMatrixHandle = mProgram.getUniform("u_MVMatrix");
+        mLightPosHandle = mProgram.getUniform("u_LightPos");
+        mTextureUniformHandle = mProgram.getUniform("u_Texture");
+        mPositionHandle = mProgram.getAttribute("a_Position");
+        mNormalHandle = mProgram.getAttribute("a_Normal");
+        mTextureCoordinateHandle = mProgram.getAttribute("a_TexCoordinate");
         
 		// Load the texture
-		// mAndroidDataHandle = TextureHelper.loadTexture(mLessonSevenActivity, R.drawable.usb_android);
-		mAndroidDataHandle = TextureHelper.loadTexture(mLessonSevenActivity, R.drawable.android);
-
-		GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+		mTextureLoader = new TextureLoader(mLessonSevenActivity);
+		// mAndroidDataHandle = mTextureLoader.load(R.drawable.usb_android, true);
+		mAndroidDataHandle = mTextureLoader.load(R.drawable.android, true);
 		
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mAndroidDataHandle);		
-		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);		
+		GL.glBindTexture(GLES20.GL_TEXTURE_2D, mAndroidDataHandle);		
+		GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);		
 		
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mAndroidDataHandle);		
-		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);		
+		GL.glBindTexture(GLES20.GL_TEXTURE_2D, mAndroidDataHandle);		
+		GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);		
         
         // Initialize the accumulated rotation matrix
-        Matrix.setIdentityM(mAccumulatedRotation, 0);        
+        Matrix.setIdentityM(mAccumulatedRotation, 0);
+
+		ProgramCache.logStats("LessonSevenRenderer");
 	}	
 		
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) 
 	{
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
 
 		// Create a new perspective projection matrix. The height will stay the same
 		// while the width will vary as per aspect ratio.
@@ -497,19 +734,13 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	@Override
 	public void onDrawFrame(GL10 glUnused) 
 	{		
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			                                    
+		mTextureLoader.uploadPending();
+		uploadChunk();
+
+		GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);			                                    
         
         // Set our per-vertex lighting program.
-        GLES20.glUseProgram(mProgramHandle);   
-        
-        // Set program handles for cube drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVMatrix"); 
-        mLightPosHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_LightPos");
-        mTextureUniformHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_Texture");
-        mPositionHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Position");        
-        mNormalHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Normal"); 
-        mTextureCoordinateHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
+        mProgram.use();
         
         // Calculate position of the light. Push into the distance.
         Matrix.setIdentityM(mLightModelMatrix, 0);                     
@@ -544,7 +775,7 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 		Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
 
 		// Pass in the modelview matrix.
-		GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);
+		GL.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mMVPMatrix, 0);
 
 		// This multiplies the modelview matrix by the projection matrix,
 		// and stores the result in the MVP matrix
@@ -553,127 +784,246 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 		System.arraycopy(mTemporaryMatrix, 0, mMVPMatrix, 0, 16);
 
 		// Pass in the combined matrix.
-		GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+		GL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
 
 		// Pass in the light position in eye space.
-		GLES20.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
+		GL.glUniform3f(mLightPosHandle, mLightPosInEyeSpace[0], mLightPosInEyeSpace[1], mLightPosInEyeSpace[2]);
 		
 		// Pass in the texture information
 		// Set the active texture unit to texture unit 0.
-		GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+		GL.glActiveTexture(GLES20.GL_TEXTURE0);
 
 		// Bind the texture to this unit.
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mAndroidDataHandle);
+		GL.glBindTexture(GLES20.GL_TEXTURE_2D, mAndroidDataHandle);
 
 		// Tell the texture uniform sampler to use this texture in the
 		// shader by binding to texture unit 0.
-		GLES20.glUniform1i(mTextureUniformHandle, 0);
+		GL.glUniform1i(mTextureUniformHandle, 0);
         
 		if (mCubes != null) {
 			mCubes.render();
 		}
 	}		
 	
-	abstract class Cubes {
-		abstract void render();
+	/**
+	 * The cube field straight into the buffers the Cubes take, one slab of cubes along x
+	 * per core. Each slab reuses one small array for its cube's corners; nothing else is
+	 * allocated per cube.
+	 *
+	 * @param layout    One of the LAYOUT_ constants.
+	 * @param cancelled Checked between rows of cubes; once it is set the rest is skipped.
+	 * @return Positions, normals and texture coordinates, or interleaved all three in one
+	 * buffer. Null if cancelled.
+	 */
+	static FloatBuffer[] generateBuffers(int cubeFactor, int layout,
+			float[] cubeNormals, float[] cubeTextureCoordinates, AtomicBoolean cancelled) {
+		final FloatBuffer[] buffers = allocateBuffers(cubeFactor * cubeFactor * cubeFactor, layout);
+		return generateRows(cubeFactor, 0, cubeFactor * cubeFactor, layout, buffers, cubeNormals, cubeTextureCoordinates,
+				cancelled) ? buffers : null;
+	}
 
-		abstract void release();	
-		
-		FloatBuffer[] getBuffers(float[] cubePositions, float[] cubeNormals, float[] cubeTextureCoordinates, int generatedCubeFactor) {
-			// First, copy cube information into client-side floating point buffers.
-			final FloatBuffer cubePositionsBuffer;
-			final FloatBuffer cubeNormalsBuffer;
-			final FloatBuffer cubeTextureCoordinatesBuffer;
-			int numCubes = generatedCubeFactor * generatedCubeFactor * generatedCubeFactor;
-			
-			cubePositionsBuffer = ByteBuffer.allocateDirect(cubePositions.length * BYTES_PER_FLOAT)
-			.order(ByteOrder.nativeOrder()).asFloatBuffer();						
-			cubePositionsBuffer.put(cubePositions).position(0);
-			
-			cubeNormalsBuffer = ByteBuffer.allocateDirect(cubeNormals.length * BYTES_PER_FLOAT * numCubes)
-			.order(ByteOrder.nativeOrder()).asFloatBuffer();
-			
-			for (int i = 0; i < (numCubes); i++) {
-				cubeNormalsBuffer.put(cubeNormals);
-			}
+	/**
+	 * Room for numCubes in the layout generateBuffers uses.
+	 */
+	static FloatBuffer[] allocateBuffers(int numCubes, int layout) {
+		switch (layout) {
+			case LAYOUT_INDEXED:
+				return new FloatBuffer[] {allocate(numCubes * ShapeBuilder.CUBE_UNIQUE_VERTICES * VERTEX_DATA_SIZE)};
+			case LAYOUT_INTERLEAVED:
+				return new FloatBuffer[] {allocate(numCubes * ShapeBuilder.CUBE_VERTICES * VERTEX_DATA_SIZE)};
+			default:
+				final int vertices = numCubes * ShapeBuilder.CUBE_VERTICES;
+				return new FloatBuffer[] {allocate(vertices * POSITION_DATA_SIZE),
+						allocate(vertices * NORMAL_DATA_SIZE), allocate(vertices * TEXTURE_COORDINATE_DATA_SIZE)};
+		}
+	}
+
+	static String describeLayout(int layout) {
+		switch (layout) {
+			case LAYOUT_INDEXED:
+				return "indexed";
+			case LAYOUT_INTERLEAVED:
+				return "interleaved";
+			default:
+				return "separate";
+		}
+	}
+
+	/**
+	 * Rows [rowStart, rowEnd) of the field - a row is the cubes along z at one x and y,
+	 * x * cubeFactor + y - into buffers from their start, split over the WorkerPool.
+	 *
+	 * @return false if cancelled
+	 */
+	static boolean generateRows(final int cubeFactor, final int rowStart, int rowEnd, final int layout,
+			final FloatBuffer[] buffers, float[] cubeNormals, float[] cubeTextureCoordinates,
+			final AtomicBoolean cancelled) {
+		final int stride = VERTEX_DATA_SIZE;
+		final boolean indexed = layout == LAYOUT_INDEXED;
+		final int cubeVertices = indexed ? ShapeBuilder.CUBE_UNIQUE_VERTICES : ShapeBuilder.CUBE_VERTICES;
+		// normals and texture coordinates are per face, so indexed only needs 4 of each face's 6
+		final float[] normals = indexed ? ShapeBuilder.toIndexedCubeData(cubeNormals, NORMAL_DATA_SIZE) : cubeNormals;
+		final float[] textureCoordinates = indexed
+				? ShapeBuilder.toIndexedCubeData(cubeTextureCoordinates, TEXTURE_COORDINATE_DATA_SIZE)
+				: cubeTextureCoordinates;
+		final int segments = cubeFactor + (cubeFactor - 1);
+		final float minPosition = -1.0f;
+		final float maxPosition = 1.0f;
+		final float positionRange = maxPosition - minPosition;
+
+		WorkerPool.forRange(rowEnd - rowStart, cubeFactor, new WorkerPool.RangeTask() {
+			@Override
+			public void run(int start, int end) {
+				// Points for a cube: front left top, front right top, front left bottom, front right bottom,
+				// then the same at the back. X, Y, Z
+				final float[] points = new float[8 * POSITION_DATA_SIZE];
+
+				for (int row = rowStart + start; row < rowStart + end; row++) {
+					if (cancelled.get()) {
+						return;
+					}
+					final int x = row / cubeFactor;
+					final int y = row % cubeFactor;
+					for (int z = 0; z < cubeFactor; z++) {
+						final float x1 = minPosition + ((positionRange / segments) * (x * 2));
+						final float x2 = minPosition + ((positionRange / segments) * ((x * 2) + 1));
 						
-			cubeNormalsBuffer.position(0);
-			
-			cubeTextureCoordinatesBuffer = ByteBuffer.allocateDirect(cubeTextureCoordinates.length * BYTES_PER_FLOAT * numCubes)
-			.order(ByteOrder.nativeOrder()).asFloatBuffer();
-			
-			for (int i = 0; i < (numCubes); i++) {
-				cubeTextureCoordinatesBuffer.put(cubeTextureCoordinates);
-			}
-			
-			cubeTextureCoordinatesBuffer.position(0);
-			
-			return new FloatBuffer[] {cubePositionsBuffer, cubeNormalsBuffer, cubeTextureCoordinatesBuffer};
-		}		
-		
-		FloatBuffer getInterleavedBuffer(float[] cubePositions, float[] cubeNormals, float[] cubeTextureCoordinates, int generatedCubeFactor) {
-            int numCubes = generatedCubeFactor * generatedCubeFactor * generatedCubeFactor;
-            final int cubeDataLength = cubePositions.length
-	                 + (cubeNormals.length * numCubes) 
-	                 + (cubeTextureCoordinates.length * numCubes);			
-			int cubePositionOffset = 0;
-			int cubeNormalOffset = 0;
-			int cubeTextureOffset = 0;
-			
-			final FloatBuffer cubeBuffer = ByteBuffer.allocateDirect(cubeDataLength * BYTES_PER_FLOAT)
-					.order(ByteOrder.nativeOrder()).asFloatBuffer();											
-			
-			for (int i = 0; i < numCubes; i++) {								
-				for (int v = 0; v < 36; v++) {
-					cubeBuffer.put(cubePositions, cubePositionOffset, POSITION_DATA_SIZE);
-					cubePositionOffset += POSITION_DATA_SIZE;
-					cubeBuffer.put(cubeNormals, cubeNormalOffset, NORMAL_DATA_SIZE);
-					cubeNormalOffset += NORMAL_DATA_SIZE;
-					cubeBuffer.put(cubeTextureCoordinates, cubeTextureOffset, TEXTURE_COORDINATE_DATA_SIZE);
-					cubeTextureOffset += TEXTURE_COORDINATE_DATA_SIZE;					
+						final float y1 = minPosition + ((positionRange / segments) * (y * 2));
+						final float y2 = minPosition + ((positionRange / segments) * ((y * 2) + 1));
+						
+						final float z1 = minPosition + ((positionRange / segments) * (z * 2));
+						final float z2 = minPosition + ((positionRange / segments) * ((z * 2) + 1));
+
+						setPoint(points, 0, x1, y2, z2);
+						setPoint(points, 1, x2, y2, z2);
+						setPoint(points, 2, x1, y1, z2);
+						setPoint(points, 3, x2, y1, z2);
+						setPoint(points, 4, x1, y2, z1);
+						setPoint(points, 5, x2, y2, z1);
+						setPoint(points, 6, x1, y1, z1);
+						setPoint(points, 7, x2, y1, z1);
+
+						final int cube = (row - rowStart) * cubeFactor + z;
+						final int vertex = cube * cubeVertices;
+						if (layout == LAYOUT_SEPARATE) {
+							ShapeBuilder.generateCubeData(points, POSITION_DATA_SIZE, buffers[0],
+									vertex * POSITION_DATA_SIZE, POSITION_DATA_SIZE);
+							putRepeated(buffers[1], vertex * NORMAL_DATA_SIZE, NORMAL_DATA_SIZE,
+									normals, NORMAL_DATA_SIZE, cubeVertices);
+							putRepeated(buffers[2], vertex * TEXTURE_COORDINATE_DATA_SIZE, TEXTURE_COORDINATE_DATA_SIZE,
+									textureCoordinates, TEXTURE_COORDINATE_DATA_SIZE, cubeVertices);
+						} else {
+							if (indexed) {
+								ShapeBuilder.generateIndexedCubeData(points, POSITION_DATA_SIZE, buffers[0],
+										vertex * stride, stride);
+							} else {
+								ShapeBuilder.generateCubeData(points, POSITION_DATA_SIZE, buffers[0], vertex * stride, stride);
+							}
+							putRepeated(buffers[0], vertex * stride + POSITION_DATA_SIZE, stride,
+									normals, NORMAL_DATA_SIZE, cubeVertices);
+							putRepeated(buffers[0], vertex * stride + POSITION_DATA_SIZE + NORMAL_DATA_SIZE, stride,
+									textureCoordinates, TEXTURE_COORDINATE_DATA_SIZE, cubeVertices);
+						}
+					}
 				}
-				
-				// The normal and texture data is repeated for each cube.
-				cubeNormalOffset = 0;
-				cubeTextureOffset = 0;	
 			}
-			
-			cubeBuffer.position(0);
-			
-			return cubeBuffer;
+		});
+
+		return !cancelled.get();
+	}
+
+	private static FloatBuffer allocate(int floats) {
+		return ByteBuffer.allocateDirect(floats * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	private static void setPoint(float[] points, int point, float x, float y, float z) {
+		points[point * POSITION_DATA_SIZE] = x;
+		points[point * POSITION_DATA_SIZE + 1] = y;
+		points[point * POSITION_DATA_SIZE + 2] = z;
+	}
+
+	/*
+	 * one cube's worth of an attribute that is the same for every cube; absolute puts,
+	 * as the slabs share the buffer
+	 */
+	private static void putRepeated(FloatBuffer dest, int offset, int stride, float[] data, int size, int vertices) {
+		for (int v = 0; v < vertices; v++) {
+			for (int i = 0; i < size; i++) {
+				dest.put(offset + v * stride + i, data[v * size + i]);
+			}
 		}
 	}
+
+	abstract class Cubes {
+		/** The cubes there is room for, and how many of them have their data in place. */
+		int mCubeCount;
+		int mCubesReady;
+
+		abstract void render();
+
+		abstract void release();	
+	}
+
+	/**
+	 * Cubes in VBOs, which can be made empty and filled a chunk at a time - the
+	 * only kind a field too big to build at once goes into.
+	 */
+	abstract class ChunkedCubes extends Cubes {
+		/**
+		 * Cubes [firstCube, firstCube + cubes) from the start of chunk.
+		 */
+		abstract void upload(FloatBuffer[] chunk, int firstCube, int cubes);
+	}
+
+	/*
+	 * vertex count to draw for cubes, from the floats per vertex in a buffer of them
+	 */
+	private static int cubesIn(FloatBuffer buffer, int floatsPerVertex) {
+		return buffer.capacity() / (ShapeBuilder.CUBE_VERTICES * floatsPerVertex);
+	}
+
+	/*
+	 * a VBO of this many floats, its contents to come
+	 */
+	private static void allocateVbo(int buffer, int floats) {
+		GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+		GL.glBufferData(GLES20.GL_ARRAY_BUFFER, floats * BYTES_PER_FLOAT, null, GLES20.GL_STATIC_DRAW);
+	}
+
+	private static void uploadToVbo(int buffer, int offsetFloats, int floats, FloatBuffer data) {
+		GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+		GL.glBufferSubData(GLES20.GL_ARRAY_BUFFER, offsetFloats * BYTES_PER_FLOAT, floats * BYTES_PER_FLOAT, data);
+	}
 	
 	class CubesClientSide extends Cubes {
 		private FloatBuffer mCubePositions;
 		private FloatBuffer mCubeNormals;
 		private FloatBuffer mCubeTextureCoordinates;
 
-		CubesClientSide(float[] cubePositions, float[] cubeNormals, float[] cubeTextureCoordinates, int generatedCubeFactor) {	
-			FloatBuffer[] buffers = getBuffers(cubePositions, cubeNormals, cubeTextureCoordinates, generatedCubeFactor);
-			
+		CubesClientSide(FloatBuffer[] buffers) {	
 			mCubePositions = buffers[0];
 			mCubeNormals = buffers[1];
 			mCubeTextureCoordinates = buffers[2];
+			mCubeCount = mCubesReady = cubesIn(mCubePositions, POSITION_DATA_SIZE);
 		}
 
 		@Override
 		public void render() {				        
 			// Pass in the position information
-			GLES20.glEnableVertexAttribArray(mPositionHandle);
-			GLES20.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, 0, mCubePositions);
+			GLState.enableVertexAttribArray(mPositionHandle);
+			GL.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, 0, mCubePositions);
 
 			// Pass in the normal information
-			GLES20.glEnableVertexAttribArray(mNormalHandle);
-			GLES20.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, 0, mCubeNormals);
+			GLState.enableVertexAttribArray(mNormalHandle);
+			GL.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, 0, mCubeNormals);
 			
 			// Pass in the texture information
-			GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
-			GLES20.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
+			GLState.enableVertexAttribArray(mTextureCoordinateHandle);
+			GL.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
 					0, mCubeTextureCoordinates);
 
 			// Draw the cubes.
-			GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mActualCubeFactor * mActualCubeFactor * mActualCubeFactor * 36);
+			FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, mCubesReady * ShapeBuilder.CUBE_VERTICES);
 		}
 
 		@Override
@@ -690,8 +1040,9 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 	class CubesClientSideWithStride extends Cubes {
 		private FloatBuffer mCubeBuffer;		
 
-		CubesClientSideWithStride(float[] cubePositions, float[] cubeNormals, float[] cubeTextureCoordinates, int generatedCubeFactor) {	
-			mCubeBuffer = getInterleavedBuffer(cubePositions, cubeNormals, cubeTextureCoordinates, generatedCubeFactor);						
+		CubesClientSideWithStride(FloatBuffer cubeBuffer) {	
+			mCubeBuffer = cubeBuffer;
+			mCubeCount = mCubesReady = cubesIn(mCubeBuffer, POSITION_DATA_SIZE + NORMAL_DATA_SIZE + TEXTURE_COORDINATE_DATA_SIZE);
 		}
 
 		@Override
@@ -700,22 +1051,22 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 			
 			// Pass in the position information
 			mCubeBuffer.position(0);
-			GLES20.glEnableVertexAttribArray(mPositionHandle);			
-			GLES20.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, stride, mCubeBuffer);
+			GLState.enableVertexAttribArray(mPositionHandle);			
+			GL.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, stride, mCubeBuffer);
 
 			// Pass in the normal information
 			mCubeBuffer.position(POSITION_DATA_SIZE);
-			GLES20.glEnableVertexAttribArray(mNormalHandle);			
-			GLES20.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, stride, mCubeBuffer);
+			GLState.enableVertexAttribArray(mNormalHandle);			
+			GL.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, stride, mCubeBuffer);
 			
 			// Pass in the texture information
 			mCubeBuffer.position(POSITION_DATA_SIZE + NORMAL_DATA_SIZE);
-			GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);		
-			GLES20.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
+			GLState.enableVertexAttribArray(mTextureCoordinateHandle);		
+			GL.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
 					stride, mCubeBuffer);			
 
 			// Draw the cubes.
-			GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mActualCubeFactor * mActualCubeFactor * mActualCubeFactor * 36);
+			FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, mCubesReady * ShapeBuilder.CUBE_VERTICES);
 		}
 
 		@Override
@@ -725,33 +1076,33 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 		}
 	}
 	
-	class CubesWithVbo extends Cubes {
+	class CubesWithVbo extends ChunkedCubes {
 		final int mCubePositionsBufferIdx;
 		final int mCubeNormalsBufferIdx;
 		final int mCubeTexCoordsBufferIdx;
 
-		CubesWithVbo(float[] cubePositions, float[] cubeNormals, float[] cubeTextureCoordinates, int generatedCubeFactor) {
-			FloatBuffer[] floatBuffers = getBuffers(cubePositions, cubeNormals, cubeTextureCoordinates, generatedCubeFactor);
+		CubesWithVbo(FloatBuffer[] floatBuffers) {
 			
 			FloatBuffer cubePositionsBuffer = floatBuffers[0];
 			FloatBuffer cubeNormalsBuffer = floatBuffers[1];
 			FloatBuffer cubeTextureCoordinatesBuffer = floatBuffers[2];			
+			mCubeCount = mCubesReady = cubesIn(cubePositionsBuffer, POSITION_DATA_SIZE);
 			
 			// Second, copy these buffers into OpenGL's memory. After, we don't need to keep the client-side buffers around.					
 			final int buffers[] = new int[3];
-			GLES20.glGenBuffers(3, buffers, 0);						
+			GL.glGenBuffers(3, buffers, 0);						
 
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
-			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, cubePositionsBuffer.capacity() * BYTES_PER_FLOAT, cubePositionsBuffer, GLES20.GL_STATIC_DRAW);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+			GL.glBufferData(GLES20.GL_ARRAY_BUFFER, cubePositionsBuffer.capacity() * BYTES_PER_FLOAT, cubePositionsBuffer, GLES20.GL_STATIC_DRAW);
 
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[1]);
-			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, cubeNormalsBuffer.capacity() * BYTES_PER_FLOAT, cubeNormalsBuffer, GLES20.GL_STATIC_DRAW);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[1]);
+			GL.glBufferData(GLES20.GL_ARRAY_BUFFER, cubeNormalsBuffer.capacity() * BYTES_PER_FLOAT, cubeNormalsBuffer, GLES20.GL_STATIC_DRAW);
 
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[2]);
-			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, cubeTextureCoordinatesBuffer.capacity() * BYTES_PER_FLOAT, cubeTextureCoordinatesBuffer,
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[2]);
+			GL.glBufferData(GLES20.GL_ARRAY_BUFFER, cubeTextureCoordinatesBuffer.capacity() * BYTES_PER_FLOAT, cubeTextureCoordinatesBuffer,
 					GLES20.GL_STATIC_DRAW);
 
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
 			mCubePositionsBufferIdx = buffers[0];
 			mCubeNormalsBufferIdx = buffers[1];
@@ -765,29 +1116,58 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 			cubeTextureCoordinatesBuffer = null;
 		}
 
+		/** Room for numCubes, filled by upload(). */
+		CubesWithVbo(int numCubes) {
+			final int buffers[] = new int[3];
+			GL.glGenBuffers(3, buffers, 0);
+
+			final int vertices = numCubes * ShapeBuilder.CUBE_VERTICES;
+			allocateVbo(buffers[0], vertices * POSITION_DATA_SIZE);
+			allocateVbo(buffers[1], vertices * NORMAL_DATA_SIZE);
+			allocateVbo(buffers[2], vertices * TEXTURE_COORDINATE_DATA_SIZE);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+			mCubePositionsBufferIdx = buffers[0];
+			mCubeNormalsBufferIdx = buffers[1];
+			mCubeTexCoordsBufferIdx = buffers[2];
+			mCubeCount = numCubes;
+		}
+
+		@Override
+		void upload(FloatBuffer[] chunk, int firstCube, int cubes) {
+			final int firstVertex = firstCube * ShapeBuilder.CUBE_VERTICES;
+			final int vertices = cubes * ShapeBuilder.CUBE_VERTICES;
+			uploadToVbo(mCubePositionsBufferIdx, firstVertex * POSITION_DATA_SIZE, vertices * POSITION_DATA_SIZE, chunk[0]);
+			uploadToVbo(mCubeNormalsBufferIdx, firstVertex * NORMAL_DATA_SIZE, vertices * NORMAL_DATA_SIZE, chunk[1]);
+			uploadToVbo(mCubeTexCoordsBufferIdx, firstVertex * TEXTURE_COORDINATE_DATA_SIZE,
+					vertices * TEXTURE_COORDINATE_DATA_SIZE, chunk[2]);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			mCubesReady = firstCube + cubes;
+		}
+
 		@Override
 		public void render() {	      
 			// Pass in the position information
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mCubePositionsBufferIdx);
-			GLES20.glEnableVertexAttribArray(mPositionHandle);
-			GLES20.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, 0, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mCubePositionsBufferIdx);
+			GLState.enableVertexAttribArray(mPositionHandle);
+			GL.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, 0, 0);
 
 			// Pass in the normal information
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeNormalsBufferIdx);
-			GLES20.glEnableVertexAttribArray(mNormalHandle);
-			GLES20.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, 0, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeNormalsBufferIdx);
+			GLState.enableVertexAttribArray(mNormalHandle);
+			GL.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, 0, 0);
 			
 			// Pass in the texture information
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeTexCoordsBufferIdx);
-			GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
-			GLES20.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeTexCoordsBufferIdx);
+			GLState.enableVertexAttribArray(mTextureCoordinateHandle);
+			GL.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
 					0, 0);
 
 			// Clear the currently bound buffer (so future OpenGL calls do not use this buffer).
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
 			// Draw the cubes.
-			GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mActualCubeFactor * mActualCubeFactor * mActualCubeFactor * 36);
+			FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, mCubesReady * ShapeBuilder.CUBE_VERTICES);
 		}
 
 		@Override
@@ -795,63 +1175,173 @@ public class LessonSevenRenderer implements GLSurfaceView.Renderer {
 			// Delete buffers from OpenGL's memory
 			final int[] buffersToDelete = new int[] { mCubePositionsBufferIdx, mCubeNormalsBufferIdx,
 					mCubeTexCoordsBufferIdx };
-			GLES20.glDeleteBuffers(buffersToDelete.length, buffersToDelete, 0);
+			GLState.deleteBuffers(buffersToDelete.length, buffersToDelete, 0);
 		}
 	}
 	
-	class CubesWithVboWithStride extends Cubes {
+	class CubesWithVboWithStride extends ChunkedCubes {
 		final int mCubeBufferIdx;
 
-		CubesWithVboWithStride(float[] cubePositions, float[] cubeNormals, float[] cubeTextureCoordinates, int generatedCubeFactor) {
-			FloatBuffer cubeBuffer = getInterleavedBuffer(cubePositions, cubeNormals, cubeTextureCoordinates, generatedCubeFactor);			
+		CubesWithVboWithStride(FloatBuffer cubeBuffer) {
 			
 			// Second, copy these buffers into OpenGL's memory. After, we don't need to keep the client-side buffers around.					
 			final int buffers[] = new int[1];
-			GLES20.glGenBuffers(1, buffers, 0);						
+			GL.glGenBuffers(1, buffers, 0);						
 
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
-			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, cubeBuffer.capacity() * BYTES_PER_FLOAT, cubeBuffer, GLES20.GL_STATIC_DRAW);			
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+			GL.glBufferData(GLES20.GL_ARRAY_BUFFER, cubeBuffer.capacity() * BYTES_PER_FLOAT, cubeBuffer, GLES20.GL_STATIC_DRAW);			
 
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
 			mCubeBufferIdx = buffers[0];			
+			mCubeCount = mCubesReady = cubesIn(cubeBuffer, POSITION_DATA_SIZE + NORMAL_DATA_SIZE + TEXTURE_COORDINATE_DATA_SIZE);
 			
 			cubeBuffer.limit(0);
 			cubeBuffer = null;
 		}
 
+		/** Room for numCubes, filled by upload(). */
+		CubesWithVboWithStride(int numCubes) {
+			final int buffers[] = new int[1];
+			GL.glGenBuffers(1, buffers, 0);
+
+			allocateVbo(buffers[0], numCubes * ShapeBuilder.CUBE_VERTICES
+					* (POSITION_DATA_SIZE + NORMAL_DATA_SIZE + TEXTURE_COORDINATE_DATA_SIZE));
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+			mCubeBufferIdx = buffers[0];
+			mCubeCount = numCubes;
+		}
+
+		@Override
+		void upload(FloatBuffer[] chunk, int firstCube, int cubes) {
+			final int floatsPerCube = ShapeBuilder.CUBE_VERTICES
+					* (POSITION_DATA_SIZE + NORMAL_DATA_SIZE + TEXTURE_COORDINATE_DATA_SIZE);
+			uploadToVbo(mCubeBufferIdx, firstCube * floatsPerCube, cubes * floatsPerCube, chunk[0]);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			mCubesReady = firstCube + cubes;
+		}
+
 		@Override
 		public void render() {	    
 			final int stride = (POSITION_DATA_SIZE + NORMAL_DATA_SIZE + TEXTURE_COORDINATE_DATA_SIZE) * BYTES_PER_FLOAT;
 			
 			// Pass in the position information
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeBufferIdx);
-			GLES20.glEnableVertexAttribArray(mPositionHandle);
-			GLES20.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, stride, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeBufferIdx);
+			GLState.enableVertexAttribArray(mPositionHandle);
+			GL.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, stride, 0);
 
 			// Pass in the normal information
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeBufferIdx);
-			GLES20.glEnableVertexAttribArray(mNormalHandle);
-			GLES20.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, stride, POSITION_DATA_SIZE * BYTES_PER_FLOAT);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeBufferIdx);
+			GLState.enableVertexAttribArray(mNormalHandle);
+			GL.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, stride, POSITION_DATA_SIZE * BYTES_PER_FLOAT);
 			
 			// Pass in the texture information
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeBufferIdx);
-			GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
-			GLES20.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeBufferIdx);
+			GLState.enableVertexAttribArray(mTextureCoordinateHandle);
+			GL.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
 					stride, (POSITION_DATA_SIZE + NORMAL_DATA_SIZE) * BYTES_PER_FLOAT);
 
 			// Clear the currently bound buffer (so future OpenGL calls do not use this buffer).
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
 			// Draw the cubes.
-			GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mActualCubeFactor * mActualCubeFactor * mActualCubeFactor * 36);
+			FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, mCubesReady * ShapeBuilder.CUBE_VERTICES);
 		}
 
 		@Override
 		public void release() {
 			// Delete buffers from OpenGL's memory
 			final int[] buffersToDelete = new int[] { mCubeBufferIdx };
-			GLES20.glDeleteBuffers(buffersToDelete.length, buffersToDelete, 0);
+			GLState.deleteBuffers(buffersToDelete.length, buffersToDelete, 0);
+		}
+	}
+
+	/**
+	 * VBO with stride, but only the 24 distinct vertices of each cube, drawn through an
+	 * index buffer. 16 bit indices reach CUBES_PER_INDEXED_DRAW cubes, so the index buffer
+	 * holds that many and a bigger field is drawn in batches, each pointing the
+	 * attributes at its first vertex - the same indices serve every batch.
+	 */
+	class CubesIndexed extends ChunkedCubes {
+		final int mCubeBufferIdx;
+		final int mIndexBufferIdx;
+		final int mIndexCount;
+
+		CubesIndexed(FloatBuffer cubeBuffer) {
+			this(cubeBuffer.capacity() / (ShapeBuilder.CUBE_UNIQUE_VERTICES * VERTEX_DATA_SIZE));
+			upload(new FloatBuffer[] {cubeBuffer}, 0, mCubeCount);
+
+			cubeBuffer.limit(0);
+		}
+
+		/** Room for numCubes, filled by upload(). */
+		CubesIndexed(int numCubes) {
+			final int buffers[] = new int[2];
+			GL.glGenBuffers(2, buffers, 0);
+
+			allocateVbo(buffers[0], numCubes * ShapeBuilder.CUBE_UNIQUE_VERTICES * VERTEX_DATA_SIZE);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+			final short[] indices = ShapeBuilder.generateCubeIndices(Math.min(numCubes, CUBES_PER_INDEXED_DRAW));
+			final ShortBuffer indexBuffer = ByteBuffer.allocateDirect(indices.length * BYTES_PER_SHORT)
+					.order(ByteOrder.nativeOrder()).asShortBuffer();
+			indexBuffer.put(indices).position(0);
+			GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, buffers[1]);
+			GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indices.length * BYTES_PER_SHORT, indexBuffer,
+					GLES20.GL_STATIC_DRAW);
+			GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+			mCubeBufferIdx = buffers[0];
+			mIndexBufferIdx = buffers[1];
+			mIndexCount = indices.length;
+			mCubeCount = numCubes;
+
+			Log.w(TAG, String.format("indexed: %d KB of vertices and %d KB of indices, %d draws a frame",
+					estimateBytes(1, LAYOUT_INDEXED) * numCubes / 1024, indices.length * BYTES_PER_SHORT / 1024,
+					(numCubes + CUBES_PER_INDEXED_DRAW - 1) / CUBES_PER_INDEXED_DRAW));
+		}
+
+		@Override
+		void upload(FloatBuffer[] chunk, int firstCube, int cubes) {
+			final int floatsPerCube = ShapeBuilder.CUBE_UNIQUE_VERTICES * VERTEX_DATA_SIZE;
+			uploadToVbo(mCubeBufferIdx, firstCube * floatsPerCube, cubes * floatsPerCube, chunk[0]);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			mCubesReady = firstCube + cubes;
+		}
+
+		@Override
+		public void render() {
+			final int stride = VERTEX_DATA_SIZE * BYTES_PER_FLOAT;
+
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mCubeBufferIdx);
+			GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBufferIdx);
+			GLState.enableVertexAttribArray(mPositionHandle);
+			GLState.enableVertexAttribArray(mNormalHandle);
+			GLState.enableVertexAttribArray(mTextureCoordinateHandle);
+
+			for (int first = 0; first < mCubesReady; first += CUBES_PER_INDEXED_DRAW) {
+				final int offset = first * ShapeBuilder.CUBE_UNIQUE_VERTICES * stride;
+				GL.glVertexAttribPointer(mPositionHandle, POSITION_DATA_SIZE, GLES20.GL_FLOAT, false, stride, offset);
+				GL.glVertexAttribPointer(mNormalHandle, NORMAL_DATA_SIZE, GLES20.GL_FLOAT, false, stride,
+						offset + POSITION_DATA_SIZE * BYTES_PER_FLOAT);
+				GL.glVertexAttribPointer(mTextureCoordinateHandle, TEXTURE_COORDINATE_DATA_SIZE, GLES20.GL_FLOAT, false,
+						stride, offset + (POSITION_DATA_SIZE + NORMAL_DATA_SIZE) * BYTES_PER_FLOAT);
+
+				final int cubes = Math.min(CUBES_PER_INDEXED_DRAW, mCubesReady - first);
+				FrameProfiler.drawElements(GLES20.GL_TRIANGLES, cubes * ShapeBuilder.CUBE_VERTICES, GLES20.GL_UNSIGNED_SHORT, 0);
+			}
+
+			// Clear the currently bound buffers (so future OpenGL calls do not use them).
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		}
+
+		@Override
+		public void release() {
+			// Delete buffers from OpenGL's memory
+			final int[] buffersToDelete = new int[] { mCubeBufferIdx, mIndexBufferIdx };
+			GLState.deleteBuffers(buffersToDelete.length, buffersToDelete, 0);
 		}
 	}
 }
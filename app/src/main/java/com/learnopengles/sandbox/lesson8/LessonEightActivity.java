@@ -7,6 +7,8 @@ import android.content.pm.ConfigurationInfo;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
 
+import com.learnopengles.sandbox.common.ProfilerOverlay;
+
 public class LessonEightActivity extends Activity {	
 	private LessonEightGLSurfaceView glSurfaceView;
 	private LessonEightRenderer renderer;
@@ -18,6 +20,7 @@ public class LessonEightActivity extends Activity {
 		glSurfaceView = new LessonEightGLSurfaceView(this);
 		
 		setContentView(glSurfaceView);
+		ProfilerOverlay.attach(this);
 
 		// Check if the system supports OpenGL ES 2.0.
 		final ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
@@ -7,6 +7,7 @@ import android.view.MotionEvent;
 import android.widget.Toast;
 
 import com.learnopengles.sandbox.R;
+import com.learnopengles.sandbox.common.FrameProfiler;
 
 public class LessonEightGLSurfaceView extends GLSurfaceView implements ErrorHandler
 {	
@@ -90,6 +91,6 @@ public class LessonEightGLSurfaceView extends GLSurfaceView implements ErrorHand
 	{
 		this.renderer = renderer;
 		this.density = density;
-		super.setRenderer(renderer);
+		super.setRenderer(FrameProfiler.wrap(renderer));
 	}
 }
@@ -5,9 +5,12 @@ import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 import android.util.Log;
 
-import com.learnopengles.sandbox.R;
-import com.learnopengles.sandbox.common.RawResourceReader;
-import com.learnopengles.sandbox.common.ShaderHelper;
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.ProgramCache;
+import com.learnopengles.sandbox.common.ShaderProgram;
+import com.learnopengles.sandbox.common.ShaderVariants;
 import com.learnopengles.sandbox.lesson8.ErrorHandler.ErrorType;
 
 import java.nio.ByteBuffer;
@@ -118,8 +121,8 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 	 */
 	private final float[] lightPosInEyeSpace = new float[4];
 
-	/** This is a handle to our cube shading program. */
-	private int program;
+	/** Our cube shading program. */
+	private ShaderProgram program;
 
 	/** Retain the most recent delta for touch events. */
 	// These still work without volatile, but refreshes are not guaranteed to
@@ -141,13 +144,17 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 
 	@Override
 	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
+		// a new context starts from the GL defaults, whatever the last one left set
+		GLState.reset();
+		ProgramCache.reset(lessonEightActivity);
+
 		heightMap = new HeightMap();
 
 		// Set the background clear color to black.
-		GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 
 		// Enable depth testing
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+		GLState.enable(GLES20.GL_DEPTH_TEST);
 
 		// Position the eye in front of the origin.
 		final float eyeX = 0.0f;
@@ -172,25 +179,28 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 		// matrices separately if we choose.
 		Matrix.setLookAtM(viewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
 
-		final String vertexShader = RawResourceReader.readTextFileFromRawResource(lessonEightActivity,
-				R.raw.per_pixel_vertex_shader_no_tex);
-		final String fragmentShader = RawResourceReader.readTextFileFromRawResource(lessonEightActivity,
-				R.raw.per_pixel_fragment_shader_no_tex);
-
-		final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
-		final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
+		// per pixel lighting, lit from behind as well - the surface is seen from both sides
+		program = new ShaderVariants(lessonEightActivity).get(ShaderVariants.VERTEX_COLOR
+				| ShaderVariants.TWO_SIDED_LIGHTING | ShaderVariants.ATTENUATION);
 
-		program = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, new String[] {
-				POSITION_ATTRIBUTE, NORMAL_ATTRIBUTE, COLOR_ATTRIBUTE });
+		// Set program handles for cube drawing. They stay valid as long as the program does.
+		mvpMatrixUniform = program.getUniform(MVP_MATRIX_UNIFORM);
+		mvMatrixUniform = program.getUniform(MV_MATRIX_UNIFORM);
+		lightPosUniform = program.getUniform(LIGHT_POSITION_UNIFORM);
+		positionAttribute = program.getAttribute(POSITION_ATTRIBUTE);
+		normalAttribute = program.getAttribute(NORMAL_ATTRIBUTE);
+		colorAttribute = program.getAttribute(COLOR_ATTRIBUTE);
 
 		// Initialize the accumulated rotation matrix
 		Matrix.setIdentityM(accumulatedRotation, 0);
+
+		ProgramCache.logStats("LessonEightRenderer");
 	}
 
 	@Override
 	public void onSurfaceChanged(GL10 glUnused, int width, int height) {
 		// Set the OpenGL viewport to the same size as the surface.
-		GLES20.glViewport(0, 0, width, height);
+		GL.glViewport(0, 0, width, height);
 
 		// Create a new perspective projection matrix. The height will stay the
 		// same while the width will vary as per aspect ratio.
@@ -207,18 +217,10 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 
 	@Override
 	public void onDrawFrame(GL10 glUnused) {
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+		GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
 		// Set our per-vertex lighting program.
-		GLES20.glUseProgram(program);
-
-		// Set program handles for cube drawing.
-		mvpMatrixUniform = GLES20.glGetUniformLocation(program, MVP_MATRIX_UNIFORM);
-		mvMatrixUniform = GLES20.glGetUniformLocation(program, MV_MATRIX_UNIFORM);
-		lightPosUniform = GLES20.glGetUniformLocation(program, LIGHT_POSITION_UNIFORM);
-		positionAttribute = GLES20.glGetAttribLocation(program, POSITION_ATTRIBUTE);
-		normalAttribute = GLES20.glGetAttribLocation(program, NORMAL_ATTRIBUTE);
-		colorAttribute = GLES20.glGetAttribLocation(program, COLOR_ATTRIBUTE);
+		program.use();
 
 		// Calculate position of the light. Push into the distance.
 		Matrix.setIdentityM(lightModelMatrix, 0);
@@ -254,7 +256,7 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 		Matrix.multiplyMM(mvpMatrix, 0, viewMatrix, 0, modelMatrix, 0);
 
 		// Pass in the modelview matrix.
-		GLES20.glUniformMatrix4fv(mvMatrixUniform, 1, false, mvpMatrix, 0);
+		GL.glUniformMatrix4fv(mvMatrixUniform, 1, false, mvpMatrix, 0);
 
 		// This multiplies the modelview matrix by the projection matrix,
 		// and stores the result in the MVP matrix
@@ -263,10 +265,10 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 		System.arraycopy(temporaryMatrix, 0, mvpMatrix, 0, 16);
 
 		// Pass in the combined matrix.
-		GLES20.glUniformMatrix4fv(mvpMatrixUniform, 1, false, mvpMatrix, 0);
+		GL.glUniformMatrix4fv(mvpMatrixUniform, 1, false, mvpMatrix, 0);
 
 		// Pass in the light position in eye space.
-		GLES20.glUniform3f(lightPosUniform, lightPosInEyeSpace[0], lightPosInEyeSpace[1], lightPosInEyeSpace[2]);
+		GL.glUniform3f(lightPosUniform, lightPosInEyeSpace[0], lightPosInEyeSpace[1], lightPosInEyeSpace[2]);
 
 		// Render the heightmap.
 		heightMap.render();
@@ -350,18 +352,18 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 				for (int y = 0; y < yLength - 1; y++) {
 					if (y > 0) {
 						// Degenerate begin: repeat first vertex
-						heightMapIndexData[offset++] = (short) (y * yLength);
+						heightMapIndexData[offset++] = (short) (y * xLength);
 					}
 
 					for (int x = 0; x < xLength; x++) {
 						// One part of the strip
-						heightMapIndexData[offset++] = (short) ((y * yLength) + x);
-						heightMapIndexData[offset++] = (short) (((y + 1) * yLength) + x);
+						heightMapIndexData[offset++] = (short) ((y * xLength) + x);
+						heightMapIndexData[offset++] = (short) (((y + 1) * xLength) + x);
 					}
 
 					if (y < yLength - 2) {
 						// Degenerate end: repeat last vertex
-						heightMapIndexData[offset++] = (short) (((y + 1) * yLength) + (xLength - 1));
+						heightMapIndexData[offset++] = (short) (((y + 1) * xLength) + (xLength - 1));
 					}
 				}
 
@@ -377,20 +379,20 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 						.asShortBuffer();
 				heightMapIndexDataBuffer.put(heightMapIndexData).position(0);
 
-				GLES20.glGenBuffers(1, vbo, 0);
-				GLES20.glGenBuffers(1, ibo, 0);
+				GL.glGenBuffers(1, vbo, 0);
+				GL.glGenBuffers(1, ibo, 0);
 
 				if (vbo[0] > 0 && ibo[0] > 0) {
-					GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
-					GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, heightMapVertexDataBuffer.capacity() * BYTES_PER_FLOAT,
+					GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+					GL.glBufferData(GLES20.GL_ARRAY_BUFFER, heightMapVertexDataBuffer.capacity() * BYTES_PER_FLOAT,
 							heightMapVertexDataBuffer, GLES20.GL_STATIC_DRAW);
 
-					GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
-					GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, heightMapIndexDataBuffer.capacity()
+					GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+					GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, heightMapIndexDataBuffer.capacity()
 							* BYTES_PER_SHORT, heightMapIndexDataBuffer, GLES20.GL_STATIC_DRAW);
 
-					GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-					GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+					GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+					GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
 				} else {
 					errorHandler.handleError(ErrorType.BUFFER_CREATION_ERROR, "glGenBuffers");
 				}
@@ -402,38 +404,38 @@ public class LessonEightRenderer implements GLSurfaceView.Renderer {
 
 		void render() {
 			if (vbo[0] > 0 && ibo[0] > 0) {				
-				GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+				GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
 
 				// Bind Attributes
-				GLES20.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+				GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
 						STRIDE, 0);
-				GLES20.glEnableVertexAttribArray(positionAttribute);
+				GLState.enableVertexAttribArray(positionAttribute);
 
-				GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+				GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
 						STRIDE, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-				GLES20.glEnableVertexAttribArray(normalAttribute);
+				GLState.enableVertexAttribArray(normalAttribute);
 
-				GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+				GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
 						STRIDE, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-				GLES20.glEnableVertexAttribArray(colorAttribute);
+				GLState.enableVertexAttribArray(colorAttribute);
 
 				// Draw
-				GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
-				GLES20.glDrawElements(GLES20.GL_TRIANGLE_STRIP, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+				GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+				FrameProfiler.drawElements(GLES20.GL_TRIANGLE_STRIP, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
 
-				GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-				GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+				GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+				GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
 			}
 		}
 
 		void release() {
 			if (vbo[0] > 0) {
-				GLES20.glDeleteBuffers(vbo.length, vbo, 0);
+				GLState.deleteBuffers(vbo.length, vbo, 0);
 				vbo[0] = 0;
 			}
 
 			if (ibo[0] > 0) {
-				GLES20.glDeleteBuffers(ibo.length, ibo, 0);
+				GLState.deleteBuffers(ibo.length, ibo, 0);
 				ibo[0] = 0;
 			}
 		}
@@ -4,6 +4,11 @@ import android.content.Context;
 import android.opengl.GLES20;
 import android.util.Log;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -63,6 +68,13 @@ public class BufferManager {
     public int getFloatArrayIndex() {
         return sFloatArrayIndex;
     }
+
+    /*
+     * largest single request getFloatArray() can satisfy
+     */
+    public static int getFloatArrayCapacity() {
+        return sFloatArraySize - 1;
+    }
     private static FloatBuffer sVertexDataFloatBuffer;
 
 
@@ -83,8 +95,9 @@ public class BufferManager {
     }
 
     public static void allocateInitialBuffer() {
-        if (sFloatArrayAlloatedAlready) {
-            // TODO: reset state, erase old buffers
+        if (sFloatArrayAlloatedAlready && mGLarrayList != null) {
+            // the old buffers went with the old context - forget them, don't draw them
+            mGLarrayList.clear();
         }
         sFloatArray = new float[sFloatArraySize];
         if (sFloatArray == null) {
@@ -129,18 +142,19 @@ public class BufferManager {
                 .position(0);
 
 
-        mGLarrayList.add(new GLArrayEntry());
-        GLArrayEntry ae = mGLarrayList.get(sCurrentGlArrayEntry);
-        GLES20.glGenBuffers(1, ae.gl_buf, 0);
+        // each transfer gets its own entry - large objects span several blocks
+        GLArrayEntry ae = new GLArrayEntry();
+        mGLarrayList.add(ae);
+        GL.glGenBuffers(1, ae.gl_buf, 0);
         ae.numVertices = sFloatArrayIndex / STRIDE_IN_FLOATS;
         int numbytes = sFloatArrayIndex * BYTES_PER_FLOAT;
 
         if (ae.gl_buf[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ae.gl_buf[0]);
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, numbytes,
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, ae.gl_buf[0]);
+            GL.glBufferData(GLES20.GL_ARRAY_BUFFER, numbytes,
                     sVertexDataFloatBuffer, GLES20.GL_STATIC_DRAW);
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
             ae.buffer_allocated = true;
         } else {
             // errorHandler(// do something );
@@ -162,7 +176,6 @@ public class BufferManager {
         }
     }
     private static ArrayList<GLArrayEntry> mGLarrayList;
-    private static int sCurrentGlArrayEntry = 0;
 
     public void render(
             int positionAttribute,
@@ -180,23 +193,23 @@ public class BufferManager {
                 continue;
             }
             if (ae.gl_buf[0] > 0) {
-                GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, ae.gl_buf[0]);
+                GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, ae.gl_buf[0]);
                 // associate the attributes with the bound buffer
-                GLES20.glVertexAttribPointer(positionAttribute,
+                GL.glVertexAttribPointer(positionAttribute,
                         POSITION_DATA_SIZE_IN_ELEMENTS,
                         GLES20.GL_FLOAT,
                         false,
                         STRIDE_IN_BYTES,
                         0);  // offset
-                GLES20.glEnableVertexAttribArray(positionAttribute);
+                GLState.enableVertexAttribArray(positionAttribute);
 
-                GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+                GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                         STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-                GLES20.glEnableVertexAttribArray(normalAttribute);
+                GLState.enableVertexAttribArray(normalAttribute);
 
-                GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+                GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                         STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-                GLES20.glEnableVertexAttribArray(colorAttribute);
+                GLState.enableVertexAttribArray(colorAttribute);
 
                 // Draw
                 int todo;
@@ -206,9 +219,9 @@ public class BufferManager {
                     todo = GLES20.GL_TRIANGLES;
                 }
 
-                GLES20.glDrawArrays(todo, 0, ae.numVertices);
+                FrameProfiler.drawArrays(todo, 0, ae.numVertices);
+                GLDebug.check("BufferManager.render glDrawArrays");
 
-                GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);  // release
             }
             else {
                 // errorHandler(// do something );
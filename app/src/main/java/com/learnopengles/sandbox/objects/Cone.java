@@ -2,6 +2,11 @@ package com.learnopengles.sandbox.objects;
 
 import android.opengl.GLES20;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -101,14 +106,14 @@ public class Cone {
                 .asFloatBuffer();
         sphereVertexDataBuffer.put(vertexData).position(0);
 
-        GLES20.glGenBuffers(1, vbo_top, 0);
+        GL.glGenBuffers(1, vbo_top, 0);
 
         if (vbo_top[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top[0]);
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, sphereVertexDataBuffer.capacity() * BYTES_PER_FLOAT,
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top[0]);
+            GL.glBufferData(GLES20.GL_ARRAY_BUFFER, sphereVertexDataBuffer.capacity() * BYTES_PER_FLOAT,
                     sphereVertexDataBuffer, GLES20.GL_STATIC_DRAW);
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         } else {
             // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, "glGenBuffers");
             throw new RuntimeException("error on buffer gen");
@@ -172,14 +177,14 @@ public class Cone {
                 .asFloatBuffer();
         sphereVertexDataBufferBottom.put(vertexData).position(0);
 
-        GLES20.glGenBuffers(1, vbo_bottom, 0);
+        GL.glGenBuffers(1, vbo_bottom, 0);
 
         if (vbo_bottom[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_bottom[0]);
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, sphereVertexDataBufferBottom.capacity() * BYTES_PER_FLOAT,
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_bottom[0]);
+            GL.glBufferData(GLES20.GL_ARRAY_BUFFER, sphereVertexDataBufferBottom.capacity() * BYTES_PER_FLOAT,
                     sphereVertexDataBufferBottom, GLES20.GL_STATIC_DRAW);
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         } else {
             // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, "glGenBuffers");
             throw new RuntimeException("error on buffer gen");
@@ -201,24 +206,24 @@ public class Cone {
         }
 
         if (vbo_bottom[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_bottom[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_bottom[0]);
 
             // Bind Attributes
-            GLES20.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, 0);
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             // Draw - no indexes
-            GLES20.glDrawArrays(todo, 0, mNumIndices+2);
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            FrameProfiler.drawArrays(todo, 0, mNumIndices+2);
+            GLDebug.check("Cone.render glDrawArrays");
 
         }
 
@@ -228,26 +233,26 @@ public class Cone {
             todo = GLES20.GL_TRIANGLE_FAN;
         }
         if (vbo_top[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top[0]);
 
             // Bind Attributes
-            GLES20.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, 0);
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             // Draw - no indexes
             // GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
             // GLES20.glDrawElements(GLES20.GL_TRIANGLE_FAN, mNumIndices, GLES20.GL_UNSIGNED_SHORT, 0);
-            GLES20.glDrawArrays(todo, 0, mNumIndices+2);
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            FrameProfiler.drawArrays(todo, 0, mNumIndices+2);
+            GLDebug.check("Cone.render glDrawArrays");
             // GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
         }
 
@@ -258,11 +263,11 @@ public class Cone {
 
     public void release() {
         if (vbo_top[0] > 0) {
-            GLES20.glDeleteBuffers(vbo_top.length, vbo_top, 0);
+            GLState.deleteBuffers(vbo_top.length, vbo_top, 0);
             vbo_top[0] = 0;
         }
         if (vbo_bottom[0] > 0) {
-            GLES20.glDeleteBuffers(vbo_bottom.length, vbo_bottom, 0);
+            GLState.deleteBuffers(vbo_bottom.length, vbo_bottom, 0);
             vbo_bottom[0] = 0;
         }
 
@@ -2,6 +2,11 @@ package com.learnopengles.sandbox.objects;
 
 import android.opengl.GLES20;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -216,29 +221,33 @@ public class Cube {
             todo = GLES20.GL_TRIANGLES;
         }
 
+        // client-side arrays: no VBO may be left bound from another object's draw
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
         // Pass in the position information
         mCubePositions.position(0);
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
                 0, mCubePositions);
 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        GLState.enableVertexAttribArray(mPositionHandle);
 
         // Pass in the color information
         mCubeColors.position(0);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
                 0, mCubeColors);
 
-        GLES20.glEnableVertexAttribArray(mColorHandle);
+        GLState.enableVertexAttribArray(mColorHandle);
 
         // Pass in the normal information
         mCubeNormals.position(0);
-        GLES20.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false,
                 0, mCubeNormals);
 
-        GLES20.glEnableVertexAttribArray(mNormalHandle);
+        GLState.enableVertexAttribArray(mNormalHandle);
 
         // Draw the cube.
-        GLES20.glDrawArrays(todo, 0, 36);
+        FrameProfiler.drawArrays(todo, 0, 36);
+        GLDebug.check("Cube.render glDrawArrays");
     }
 
 }
@@ -0,0 +1,425 @@
+package com.learnopengles.sandbox.objects;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.WorkerPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * DynamicHeightMap - a square grid whose heights and normals are recomputed every frame
+ *
+ *   a generator thread writes position + normal for the whole grid into one of three
+ *   staging buffers (rows split over the WorkerPool).  update() on the GL thread only
+ *   swaps indices under a short lock - it never waits for a frame to be generated;
+ *   if no new frame is ready it simply draws the last one again.
+ *
+ *   the new frame is copied with glBufferSubData into one of two GL_DYNAMIC_DRAW VBOs,
+ *   alternating, so the upload never overwrites the buffer the previous draw still reads.
+ *
+ *   only position and normal stream (24 bytes a vertex); the color is one constant
+ *   attribute and the strip indices are static.
+ */
+public class DynamicHeightMap {
+
+    private static final String LOG_TAG = DynamicHeightMap.class.getSimpleName();
+
+    private static final int POSITION_DATA_SIZE_IN_ELEMENTS = 3;
+    private static final int NORMAL_DATA_SIZE_IN_ELEMENTS = 3;
+
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int BYTES_PER_SHORT = 2;
+
+    private static final int FLOATS_PER_VERTEX = POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS;
+    private static final int STRIDE = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    public static final int MAX_SIZE_PER_SIDE = 256;  // short indices
+    static final float MIN_POSITION = -5f;
+    static final float POSITION_RANGE = 10f;
+
+    private static final int NUM_STAGING_BUFFERS = 3;
+    private static final int NUM_STREAM_VBOS = 2;
+    private static final int MIN_ROWS_PER_TASK = 8;
+
+    /*
+     * height of the surface at x, z (world units) at a time in seconds;
+     * called from several threads at once, so keep it free of state
+     */
+    public interface HeightFunction {
+        float getHeight(float x, float z, float time);
+    }
+
+    /*
+     * a few crossed travelling waves
+     */
+    public static final HeightFunction WAVES = new HeightFunction() {
+        @Override
+        public float getHeight(float x, float z, float time) {
+            return 0.30f * (float) Math.sin(0.9f * x + 1.3f * time)
+                    + 0.20f * (float) Math.sin(1.4f * z - 0.7f * time)
+                    + 0.08f * (float) Math.sin(3.1f * (x + z) + 2.9f * time);
+        }
+    };
+
+    private final int mSizePerSide;
+    private final float mCellSize;
+    private final HeightFunction mFunction;
+    private final float[] mColor;
+
+    /*
+     * generator side - mHeights and the write buffer belong to the generator thread
+     */
+    private final float[] mHeights;
+    private final FloatBuffer[] mStaging = new FloatBuffer[NUM_STAGING_BUFFERS];
+    private int mWriteIndex = 0;
+    private int mReadyIndex = 1;
+    private int mReadIndex = 2;
+    private boolean mHasNewFrame = false;
+    private final Object mSwapLock = new Object();
+
+    private final ExecutorService mGenerator;
+    private final AtomicBoolean mGenerating = new AtomicBoolean(false);
+    private volatile float mRequestedTime;
+    private volatile boolean mReleased = false;
+
+    /*
+     * GL side
+     */
+    final int[] streamVbo = new int[NUM_STREAM_VBOS];
+    final int[] ibo = new int[1];
+    private int mCurrentVbo = 0;
+    private boolean mHasData = false;
+    private int mIndexCount;
+
+    /*
+     * stats, nanoseconds
+     */
+    private volatile long mLastGenerateNanos;
+    private long mLastUploadNanos;
+    private int mFramesUploaded;
+    private int mFramesStale;
+
+    private final Runnable mGenerateTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                if (mReleased) {
+                    return;
+                }
+                long start = System.nanoTime();
+                generate(mRequestedTime, mStaging[mWriteIndex]);
+                mLastGenerateNanos = System.nanoTime() - start;
+
+                synchronized (mSwapLock) {
+                    int ready = mReadyIndex;
+                    mReadyIndex = mWriteIndex;
+                    mWriteIndex = ready;
+                    mHasNewFrame = true;
+                }
+            } catch (Throwable t) {
+                Log.w(LOG_TAG, t);
+            } finally {
+                mGenerating.set(false);
+            }
+        }
+    };
+
+    /**
+     * GL thread - creates the buffers and starts generating the first frame.
+     *
+     * @param sizePerSide Vertices along each side, 2 .. MAX_SIZE_PER_SIDE.
+     * @param function    The surface.
+     * @param color       RGBA, used for the whole surface.
+     */
+    public DynamicHeightMap(int sizePerSide, HeightFunction function, float[] color) {
+        if (sizePerSide < 2 || sizePerSide > MAX_SIZE_PER_SIDE) {
+            throw new IllegalArgumentException("size per side must be 2 .. " + MAX_SIZE_PER_SIDE);
+        }
+        mSizePerSide = sizePerSide;
+        mCellSize = POSITION_RANGE / (sizePerSide - 1);
+        mFunction = function;
+        mColor = color;
+
+        final int vertexCount = sizePerSide * sizePerSide;
+        mHeights = new float[vertexCount];
+        for (int i = 0; i < NUM_STAGING_BUFFERS; i++) {
+            mStaging[i] = ByteBuffer.allocateDirect(vertexCount * STRIDE)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+
+        try {
+            final ShortBuffer indexBuffer = buildIndexData(sizePerSide);
+            mIndexCount = indexBuffer.capacity();
+
+            GL.glGenBuffers(NUM_STREAM_VBOS, streamVbo, 0);
+            GL.glGenBuffers(1, ibo, 0);
+
+            if (streamVbo[0] > 0 && streamVbo[1] > 0 && ibo[0] > 0) {
+                for (int i = 0; i < NUM_STREAM_VBOS; i++) {
+                    // storage only - the contents arrive each frame through glBufferSubData
+                    GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, streamVbo[i]);
+                    GL.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexCount * STRIDE,
+                            null, GLES20.GL_DYNAMIC_DRAW);
+                }
+
+                GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+                GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.capacity() * BYTES_PER_SHORT,
+                        indexBuffer, GLES20.GL_STATIC_DRAW);
+
+                GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+                GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+            } else {
+                throw new RuntimeException("error on buffer gen");
+            }
+        } catch (Throwable t) {
+            Log.w(LOG_TAG, t);
+            throw new RuntimeException("error on buffer gen");
+        }
+
+        mGenerator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, LOG_TAG);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        requestFrame(0f);
+    }
+
+    /*
+     * one triangle strip over all rows, joined with degenerate triangles - as HeightMap
+     */
+    private static ShortBuffer buildIndexData(int sizePerSide) {
+        final int numStripsRequired = sizePerSide - 1;
+        final int numDegensRequired = 2 * (numStripsRequired - 1);
+        final int verticesPerStrip = 2 * sizePerSide;
+
+        final ShortBuffer indices = ByteBuffer
+                .allocateDirect(((verticesPerStrip * numStripsRequired) + numDegensRequired) * BYTES_PER_SHORT)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+
+        for (int z = 0; z < sizePerSide - 1; z++) {
+            if (z > 0) {
+                // Degenerate begin: repeat first vertex
+                indices.put((short) (z * sizePerSide));
+            }
+            for (int x = 0; x < sizePerSide; x++) {
+                indices.put((short) ((z * sizePerSide) + x));
+                indices.put((short) (((z + 1) * sizePerSide) + x));
+            }
+            if (z < sizePerSide - 2) {
+                // Degenerate end: repeat last vertex
+                indices.put((short) (((z + 1) * sizePerSide) + (sizePerSide - 1)));
+            }
+        }
+        indices.position(0);
+        return indices;
+    }
+
+    /*
+     * heights for every vertex first, then positions and central difference
+     * normals - the normals need the neighbouring rows finished
+     */
+    private void generate(final float time, final FloatBuffer dest) {
+        final int n = mSizePerSide;
+
+        WorkerPool.forRange(n, MIN_ROWS_PER_TASK, new WorkerPool.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int z = start; z < end; z++) {
+                    final float zPosition = MIN_POSITION + z * mCellSize;
+                    for (int x = 0; x < n; x++) {
+                        mHeights[z * n + x] = mFunction.getHeight(MIN_POSITION + x * mCellSize, zPosition, time);
+                    }
+                }
+            }
+        });
+
+        WorkerPool.forRange(n, MIN_ROWS_PER_TASK, new WorkerPool.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                final float[] h = mHeights;
+                final float twoCells = 2f * mCellSize;
+                for (int z = start; z < end; z++) {
+                    final int up = Math.max(z - 1, 0) * n;
+                    final int mid = z * n;
+                    final int down = Math.min(z + 1, n - 1) * n;
+                    final float zPosition = MIN_POSITION + z * mCellSize;
+
+                    int o = mid * FLOATS_PER_VERTEX;
+                    for (int x = 0; x < n; x++) {
+                        // Normal of y = f(x, z): (-df/dx, 1, -df/dz), scaled by 2 * cellSize
+                        float nx = h[mid + Math.max(x - 1, 0)] - h[mid + Math.min(x + 1, n - 1)];
+                        float nz = h[up + x] - h[down + x];
+                        float inverseLength = 1f / (float) Math.sqrt(nx * nx + twoCells * twoCells + nz * nz);
+
+                        // absolute puts - the ranges never overlap
+                        dest.put(o, MIN_POSITION + x * mCellSize);
+                        dest.put(o + 1, h[mid + x]);
+                        dest.put(o + 2, zPosition);
+                        dest.put(o + 3, nx * inverseLength);
+                        dest.put(o + 4, twoCells * inverseLength);
+                        dest.put(o + 5, nz * inverseLength);
+                        o += FLOATS_PER_VERTEX;
+                    }
+                }
+            }
+        });
+    }
+
+    /*
+     * kick the generator if it is idle; if it is busy the newest time wins next round
+     */
+    private void requestFrame(float time) {
+        mRequestedTime = time;
+        if (!mReleased && mGenerating.compareAndSet(false, true)) {
+            mGenerator.execute(mGenerateTask);
+        }
+    }
+
+    /**
+     * GL thread, once a frame before render(): upload the newest finished frame,
+     * if there is one, and ask for the next.
+     *
+     * @param time Surface time in seconds for the next frame.
+     */
+    public void update(float time) {
+        boolean newFrame = false;
+        synchronized (mSwapLock) {
+            if (mHasNewFrame) {
+                int ready = mReadyIndex;
+                mReadyIndex = mReadIndex;
+                mReadIndex = ready;
+                mHasNewFrame = false;
+                newFrame = true;
+            }
+        }
+
+        if (newFrame) {
+            long start = System.nanoTime();
+            if (mHasData) {
+                mCurrentVbo = (mCurrentVbo + 1) % NUM_STREAM_VBOS;
+            }
+            final FloatBuffer frame = mStaging[mReadIndex];
+            frame.position(0);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, streamVbo[mCurrentVbo]);
+            GL.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, frame.capacity() * BYTES_PER_FLOAT, frame);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            mLastUploadNanos = System.nanoTime() - start;
+            mHasData = true;
+            mFramesUploaded++;
+        } else {
+            mFramesStale++;
+        }
+
+        requestFrame(time);
+    }
+
+    public void render(
+            int positionAttribute,
+            int colorAttribute,
+            int normalAttribute,
+            boolean doWireframeRendering) {
+
+        if (!mHasData || ibo[0] <= 0) {
+            return;
+        }
+
+        int todo;
+        if (doWireframeRendering) {
+            todo = GLES20.GL_LINE_STRIP;
+        } else {
+            todo = GLES20.GL_TRIANGLE_STRIP;
+        }
+
+        // the surface is seen from both sides
+        GLState.disable(GLES20.GL_CULL_FACE);
+
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, streamVbo[mCurrentVbo]);
+
+        GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+                STRIDE, 0);
+        GLState.enableVertexAttribArray(positionAttribute);
+
+        GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+                STRIDE, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
+        GLState.enableVertexAttribArray(normalAttribute);
+
+        // one color for every vertex
+        GLState.disableVertexAttribArray(colorAttribute);
+        GL.glVertexAttrib4fv(colorAttribute, mColor, 0);
+
+        GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+        FrameProfiler.drawElements(todo, mIndexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+        GLDebug.check("DynamicHeightMap.render glDrawElements");
+
+
+        GLState.enable(GLES20.GL_CULL_FACE);
+    }
+
+    public int getSizePerSide() {
+        return mSizePerSide;
+    }
+
+    public long getLastGenerateNanos() {
+        return mLastGenerateNanos;
+    }
+
+    public long getLastUploadNanos() {
+        return mLastUploadNanos;
+    }
+
+    /*
+     * frames uploaded / frames that reused the previous surface, since the last reset
+     */
+    public int getFramesUploaded() {
+        return mFramesUploaded;
+    }
+
+    public int getFramesStale() {
+        return mFramesStale;
+    }
+
+    public void resetFrameCounts() {
+        mFramesUploaded = 0;
+        mFramesStale = 0;
+    }
+
+    /*
+     * stop the generator thread without touching GL - for when the context,
+     * and the buffers with it, are already gone
+     */
+    public void shutdown() {
+        mReleased = true;
+        mGenerator.shutdownNow();
+    }
+
+    public void release() {
+        shutdown();
+
+        if (streamVbo[0] > 0) {
+            GLState.deleteBuffers(streamVbo.length, streamVbo, 0);
+            streamVbo[0] = 0;
+            streamVbo[1] = 0;
+        }
+
+        if (ibo[0] > 0) {
+            GLState.deleteBuffers(ibo.length, ibo, 0);
+            ibo[0] = 0;
+        }
+        mHasData = false;
+    }
+}
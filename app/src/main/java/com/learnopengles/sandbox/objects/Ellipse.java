@@ -2,6 +2,11 @@ package com.learnopengles.sandbox.objects;
 
 import android.opengl.GLES20;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -147,14 +152,14 @@ public class Ellipse {
                             .asFloatBuffer();
             vertexDataBuffer.put(vertexData).position(0);
 
-            GLES20.glGenBuffers(1, vbo_top_and_bottom, 0);
+            GL.glGenBuffers(1, vbo_top_and_bottom, 0);
 
             if (vbo_top_and_bottom[0] > 0) {
-                GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top_and_bottom[0]);
-                GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexDataBuffer.capacity() * BYTES_PER_FLOAT,
+                GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top_and_bottom[0]);
+                GL.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexDataBuffer.capacity() * BYTES_PER_FLOAT,
                         vertexDataBuffer, GLES20.GL_STATIC_DRAW);
 
-                GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+                GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
             } else {
                 // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, "glGenBuffers");
                 throw new RuntimeException("error on buffer gen");
@@ -261,24 +266,24 @@ public class Ellipse {
         indexDataBuffer.position(0);
         indexDataBuffer.put(indexData).position(0);
 
-        GLES20.glGenBuffers(1, vbo_body, 0);
-        GLES20.glGenBuffers(1, ibo, 0);
+        GL.glGenBuffers(1, vbo_body, 0);
+        GL.glGenBuffers(1, ibo, 0);
         if ((vbo_body[0] > 0) && (ibo[0] > 0)) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_body[0]);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_body[0]);
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
 
-            GLES20.glBufferData(
+            GL.glBufferData(
                     GLES20.GL_ARRAY_BUFFER,
                     cylBodyVertexDataBuffer.capacity() * BYTES_PER_FLOAT,
                     cylBodyVertexDataBuffer, GLES20.GL_STATIC_DRAW);
 
-            GLES20.glBufferData(
+            GL.glBufferData(
                     GLES20.GL_ELEMENT_ARRAY_BUFFER,
                     indexDataBuffer.capacity() * BYTES_PER_SHORT,
                     indexDataBuffer, GLES20.GL_STATIC_DRAW);
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
             cylBodyVertexDataBuffer.limit(0);
             indexDataBuffer.limit(0);
         } else {
@@ -309,29 +314,30 @@ public class Ellipse {
          * no indices needed
          */
         if (vbo_top_and_bottom[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top_and_bottom[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top_and_bottom[0]);
             // associate the attributes with the bound buffer
-            GLES20.glVertexAttribPointer(positionAttribute,
+            GL.glVertexAttribPointer(positionAttribute,
                     POSITION_DATA_SIZE_IN_ELEMENTS,
                     GLES20.GL_FLOAT,
                     false,
                     STRIDE_IN_BYTES,
                     0);  // offset
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             // Draw - no indexes, top and bottom
-            GLES20.glDrawArrays(todo, 0, mNumIndices + 1);
-            GLES20.glDrawArrays(todo, mNumIndices + 1, mNumIndices + 1);
+            FrameProfiler.drawArrays(todo, 0, mNumIndices + 1);
+            GLDebug.check("Ellipse.render glDrawArrays top");
+            FrameProfiler.drawArrays(todo, mNumIndices + 1, mNumIndices + 1);
+            GLDebug.check("Ellipse.render glDrawArrays bottom");
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);  // release
         }
 
         /*
@@ -340,31 +346,31 @@ public class Ellipse {
          * corrected normals for the body.
          */
         if ((vbo_body[0] > 0) && (ibo[0] > 0)) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_body[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_body[0]);
             // associate the attributes with the bound buffer
-            GLES20.glVertexAttribPointer(positionAttribute,
+            GL.glVertexAttribPointer(positionAttribute,
                     POSITION_DATA_SIZE_IN_ELEMENTS,
                     GLES20.GL_FLOAT,
                     false,
                     STRIDE_IN_BYTES,
                     0);  // offset
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
             // for tracking in gllog
-            GLES20.glEnableVertexAttribArray(positionAttribute);
-            GLES20.glEnableVertexAttribArray(positionAttribute);
-            GLES20.glEnableVertexAttribArray(positionAttribute);
-            GLES20.glEnableVertexAttribArray(positionAttribute);
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             if (doWireframeRendering) {
                 todo = GLES20.GL_LINE_STRIP;
@@ -375,14 +381,13 @@ public class Ellipse {
             /*
              * draw using the IBO - index buffer object
              */
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
-            GLES20.glDrawElements(
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+            FrameProfiler.drawElements(
                     todo,
                     mCylinderIndexCount,
                     GLES20.GL_UNSIGNED_SHORT,
                     0);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0); // release
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);  // release
+            GLDebug.check("Ellipse.render glDrawElements");
         }
         // Debug:  Use culling to remove back faces.
         // GLES20.glEnable(GLES20.GL_CULL_FACE);
@@ -390,11 +395,11 @@ public class Ellipse {
 
     public void release() {
         if (vbo_top_and_bottom[0] > 0) {
-            GLES20.glDeleteBuffers(vbo_top_and_bottom.length, vbo_top_and_bottom, 0);
+            GLState.deleteBuffers(vbo_top_and_bottom.length, vbo_top_and_bottom, 0);
             vbo_top_and_bottom[0] = 0;
         }
         if (ibo[0] > 0) {
-            GLES20.glDeleteBuffers(ibo.length, ibo, 0);
+            GLState.deleteBuffers(ibo.length, ibo, 0);
             ibo[0] = 0;
         }
     }
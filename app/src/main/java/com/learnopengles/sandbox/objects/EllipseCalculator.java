@@ -2,6 +2,11 @@ package com.learnopengles.sandbox.objects;
 
 import android.opengl.GLES20;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
 
 /*
 
@@ -266,55 +271,55 @@ public class EllipseCalculator {
          * no indices needed
          */
         if (vbo_top_and_bottom[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top_and_bottom[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_top_and_bottom[0]);
             // associate the attributes with the bound buffer
-            GLES20.glVertexAttribPointer(positionAttribute,
+            GL.glVertexAttribPointer(positionAttribute,
                     POSITION_DATA_SIZE_IN_ELEMENTS,
                     GLES20.GL_FLOAT,
                     false,
                     STRIDE_IN_BYTES,
                     0);  // offset
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             // Draw Triangles (or GL_LINES for debugging)
             // GLES20.glDrawArrays(GLES20.GL_LINES, 0, mNumIndices);
-            GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mNumIndices);
+            FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, mNumIndices);
+            GLDebug.check("EllipseCalculator.render glDrawArrays");
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);  // release
         }
 
         if (vbo_body[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_body[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo_body[0]);
             // associate the attributes with the bound buffer
-            GLES20.glVertexAttribPointer(positionAttribute,
+            GL.glVertexAttribPointer(positionAttribute,
                     POSITION_DATA_SIZE_IN_ELEMENTS,
                     GLES20.GL_FLOAT,
                     false,
                     STRIDE_IN_BYTES,
                     0);  // offset
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             // Draw Triangles (or GL_LINES for debugging)
             // GLES20.glDrawArrays(GLES20.GL_LINES, 0, mNumIndices);
-            GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mNumIndices);
+            FrameProfiler.drawArrays(GLES20.GL_TRIANGLES, 0, mNumIndices);
+            GLDebug.check("EllipseCalculator.render glDrawArrays");
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);  // release
         }
 
 
@@ -324,7 +329,7 @@ public class EllipseCalculator {
 
     public void release() {
         if (vbo_top_and_bottom[0] > 0) {
-            GLES20.glDeleteBuffers(vbo_top_and_bottom.length, vbo_top_and_bottom, 0);
+            GLState.deleteBuffers(vbo_top_and_bottom.length, vbo_top_and_bottom, 0);
             vbo_top_and_bottom[0] = 0;
         }
     }
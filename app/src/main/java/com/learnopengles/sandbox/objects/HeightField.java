@@ -0,0 +1,194 @@
+package com.learnopengles.sandbox.objects;
+
+import android.graphics.Bitmap;
+
+import com.learnopengles.sandbox.common.WorkerPool;
+
+/*
+ * HeightField - the CPU side of a heightmap: one height per sample plus a
+ * unit normal per sample, y up.
+ *
+ *   sourced from a grayscale Bitmap (luminance, 0..1) or straight from a float array.
+ *   rows are split across the WorkerPool; nothing is allocated per sample -
+ *   the only allocations are the output arrays and one row buffer per range.
+ *   normals come from a 3 x 3 Sobel pass over the heights, clamped at the edges.
+ *
+ *   makes no GL calls, so build it on any thread and hand it to HeightMap or
+ *   Terrain for upload on the GL thread.
+ */
+public class HeightField {
+
+    /*
+     * rows handed to one worker at a time - smaller is not worth the hand off
+     */
+    private static final int MIN_ROWS_PER_TASK = 8;
+
+    private final int mWidth;
+    private final int mDepth;
+    private final float mCellSize;
+    private final float mHeightScale;
+
+    private final float[] mHeights;
+    private final float[] mNormals;
+
+    private float mMinHeight;
+    private float mMaxHeight;
+
+    private HeightField(float[] heights, int width, int depth, float cellSize, float heightScale) {
+        if (width < 2 || depth < 2 || heights.length < width * depth) {
+            throw new IllegalArgumentException("height field too small: " + width + " x " + depth);
+        }
+        mWidth = width;
+        mDepth = depth;
+        mCellSize = cellSize;
+        mHeightScale = heightScale;
+        mHeights = heights;
+        mNormals = new float[width * depth * 3];
+    }
+
+    /**
+     * Wrap an existing array of heights - the array is used as is, not copied.
+     *
+     * @param heights     width * depth samples, row-major (x fastest), nominally 0..1.
+     * @param cellSize    World distance between neighbouring samples.
+     * @param heightScale World height of a sample of 1.0.
+     */
+    public static HeightField fromHeights(float[] heights, int width, int depth,
+                                          float cellSize, float heightScale) {
+        HeightField field = new HeightField(heights, width, depth, cellSize, heightScale);
+        field.computeRange();
+        field.computeNormals();
+        return field;
+    }
+
+    /**
+     * One sample per pixel, height taken from the pixel luminance.
+     * The bitmap is only read; recycle it afterwards if it is no longer needed.
+     */
+    public static HeightField fromBitmap(final Bitmap bitmap, float cellSize, float heightScale) {
+        final int width = bitmap.getWidth();
+        final int depth = bitmap.getHeight();
+        final float heights[] = new float[width * depth];
+
+        WorkerPool.forRange(depth, MIN_ROWS_PER_TASK, new WorkerPool.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                final int row[] = new int[width];
+                for (int z = start; z < end; z++) {
+                    bitmap.getPixels(row, 0, width, 0, z, width, 1);
+                    int o = z * width;
+                    for (int x = 0; x < width; x++) {
+                        int pixel = row[x];
+                        // Rec. 601 luma, in fixed point
+                        int luma = (((pixel >> 16) & 0xff) * 77
+                                + ((pixel >> 8) & 0xff) * 150
+                                + (pixel & 0xff) * 29) >> 8;
+                        heights[o + x] = luma / 255f;
+                    }
+                }
+            }
+        });
+
+        return fromHeights(heights, width, depth, cellSize, heightScale);
+    }
+
+    private void computeRange() {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        final int count = mWidth * mDepth;
+        for (int i = 0; i < count; i++) {
+            float h = mHeights[i];
+            if (h < min) min = h;
+            if (h > max) max = h;
+        }
+        mMinHeight = min;
+        mMaxHeight = max;
+    }
+
+    /*
+     * Sobel: the x gradient is the weighted (1 2 1) difference of the columns
+     * either side, the z gradient likewise of the rows; /8 turns that into
+     * height per cell.  The normal of y = f(x, z) is (-df/dx, 1, -df/dz).
+     */
+    private void computeNormals() {
+        final float slopeScale = mHeightScale / (8f * mCellSize);
+
+        WorkerPool.forRange(mDepth, MIN_ROWS_PER_TASK, new WorkerPool.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                final int w = mWidth;
+                final float[] h = mHeights;
+                final float[] n = mNormals;
+
+                for (int z = start; z < end; z++) {
+                    final int up = Math.max(z - 1, 0) * w;
+                    final int mid = z * w;
+                    final int down = Math.min(z + 1, mDepth - 1) * w;
+
+                    for (int x = 0; x < w; x++) {
+                        final int left = Math.max(x - 1, 0);
+                        final int right = Math.min(x + 1, w - 1);
+
+                        float gx = (h[up + right] + 2f * h[mid + right] + h[down + right])
+                                - (h[up + left] + 2f * h[mid + left] + h[down + left]);
+                        float gz = (h[down + left] + 2f * h[down + x] + h[down + right])
+                                - (h[up + left] + 2f * h[up + x] + h[up + right]);
+
+                        float nx = -gx * slopeScale;
+                        float nz = -gz * slopeScale;
+                        float inverseLength = 1f / (float) Math.sqrt(nx * nx + 1f + nz * nz);
+
+                        int o = (mid + x) * 3;
+                        n[o] = nx * inverseLength;
+                        n[o + 1] = inverseLength;
+                        n[o + 2] = nz * inverseLength;
+                    }
+                }
+            }
+        });
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getDepth() {
+        return mDepth;
+    }
+
+    public float getCellSize() {
+        return mCellSize;
+    }
+
+    public float getHeightScale() {
+        return mHeightScale;
+    }
+
+    public float getMinHeight() {
+        return mMinHeight;
+    }
+
+    public float getMaxHeight() {
+        return mMaxHeight;
+    }
+
+    /*
+     * the raw arrays, not copies - treat as read only
+     */
+    public float[] getHeights() {
+        return mHeights;
+    }
+
+    public float[] getNormals() {
+        return mNormals;
+    }
+
+    /**
+     * Sample height, unscaled, with x and z clamped to the field.
+     */
+    public float getHeight(int x, int z) {
+        x = Math.max(0, Math.min(x, mWidth - 1));
+        z = Math.max(0, Math.min(z, mDepth - 1));
+        return mHeights[z * mWidth + x];
+    }
+}
@@ -2,16 +2,31 @@ package com.learnopengles.sandbox.objects;
 
 
 import android.opengl.GLES20;
-import android.opengl.Matrix;
 import android.util.Log;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
+/*
+ * HeightMap - a single VBO / IBO grid, short indexed, so at most 256 x 256 samples.
+ *
+ *   HeightMap() is the original 32 x 32 paraboloid, built and uploaded on the GL thread.
+ *   HeightMap(HeightField) packs a field built elsewhere (image or float array) and
+ *   makes no GL calls; follow it with uploadToGl() on the GL thread. Retained, its
+ *   staging data outlives the upload so a new context only has to upload it again.
+ *   Anything larger belongs in Terrain.
+ */
 public class HeightMap {
 
+    public static final int MAX_SAMPLES = 65536;  // short indices
+
     private static final int POSITION_DATA_SIZE_IN_ELEMENTS = 3;
     private static final int NORMAL_DATA_SIZE_IN_ELEMENTS = 3;
     private static final int COLOR_DATA_SIZE_IN_ELEMENTS = 4;
@@ -39,6 +54,13 @@ public class HeightMap {
 
     int indexCount;
 
+    /*
+     * staging data, dropped once uploaded unless retained
+     */
+    private FloatBuffer mVertexData;
+    private ShortBuffer mIndexData;
+    private boolean mRetainStagingData;
+
     public HeightMap() {
         try {
             final int floatsPerVertex = POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS
@@ -72,20 +94,18 @@ public class HeightMap {
                     final float xSlope = (2 * xPosition) / 10f;
                     final float ySlope = (2 * yPosition) / 10f;
 
-                    // Calculate the normal using the cross product of the slopes.
-                    final float[] planeVectorX = {1f, 0f, xSlope};
-                    final float[] planeVectorY = {0f, 1f, ySlope};
-                    final float[] normalVector = {
-                            (planeVectorX[1] * planeVectorY[2]) - (planeVectorX[2] * planeVectorY[1]),
-                            (planeVectorX[2] * planeVectorY[0]) - (planeVectorX[0] * planeVectorY[2]),
-                            (planeVectorX[0] * planeVectorY[1]) - (planeVectorX[1] * planeVectorY[0])};
+                    // Calculate the normal using the cross product of the slopes,
+                    // (1, 0, xSlope) x (0, 1, ySlope), written out to avoid three arrays per vertex.
+                    final float normalX = -xSlope;
+                    final float normalY = -ySlope;
+                    final float normalZ = 1f;
 
                     // Normalize the normal
-                    final float length = Matrix.length(normalVector[0], normalVector[1], normalVector[2]);
+                    final float length = (float) Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
 
-                    heightMapVertexData[offset++] = normalVector[0] / length;
-                    heightMapVertexData[offset++] = normalVector[1] / length;
-                    heightMapVertexData[offset++] = normalVector[2] / length;
+                    heightMapVertexData[offset++] = normalX / length;
+                    heightMapVertexData[offset++] = normalY / length;
+                    heightMapVertexData[offset++] = normalZ / length;
 
                     // Add some fancy colors.
                     heightMapVertexData[offset++] = xRatio;
@@ -95,68 +115,150 @@ public class HeightMap {
                 }
             }
 
-            // Now build the index data
-            final int numStripsRequired = yLength - 1;
-            final int numDegensRequired = 2 * (numStripsRequired - 1);
-            final int verticesPerStrip = 2 * xLength;
+            mVertexData = ByteBuffer
+                    .allocateDirect(heightMapVertexData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            mVertexData.put(heightMapVertexData).position(0);
 
-            final short[] heightMapIndexData = new short[(verticesPerStrip * numStripsRequired) + numDegensRequired];
+            buildIndexData(xLength, yLength);
+            uploadToGl();
+        } catch (Throwable t) {
+            Log.w("Teapot", t);
+            // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, t.getLocalizedMessage());
+            throw new RuntimeException("error on buffer gen");
+        }
+    }
 
-            offset = 0;
+    /**
+     * Pack a height field into one grid: y up, centred on the origin, colored by height.
+     * Makes no GL calls - call uploadToGl() on the GL thread before render().
+     */
+    public HeightMap(HeightField field) {
+        final int xLength = field.getWidth();
+        final int zLength = field.getDepth();
+        if (xLength * zLength > MAX_SAMPLES) {
+            throw new IllegalArgumentException("height field " + xLength + " x " + zLength
+                    + " is too big for short indices, use Terrain");
+        }
+        final float[] heights = field.getHeights();
+        final float[] normals = field.getNormals();
+        final float cellSize = field.getCellSize();
+        final float heightScale = field.getHeightScale();
+        final float minHeight = field.getMinHeight();
+        final float heightRange = Math.max(field.getMaxHeight() - minHeight, 1e-6f);
+        final float originX = -(xLength - 1) * cellSize / 2f;
+        final float originZ = -(zLength - 1) * cellSize / 2f;
+
+        mVertexData = ByteBuffer
+                .allocateDirect(xLength * zLength * STRIDE).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+
+        int sample = 0;
+        for (int z = 0; z < zLength; z++) {
+            for (int x = 0; x < xLength; x++) {
+                final float h = heights[sample];
+                final float ratio = (h - minHeight) / heightRange;
+
+                // Position
+                mVertexData.put(originX + x * cellSize);
+                mVertexData.put(h * heightScale);
+                mVertexData.put(originZ + z * cellSize);
+
+                // Normal
+                mVertexData.put(normals[sample * 3]);
+                mVertexData.put(normals[sample * 3 + 1]);
+                mVertexData.put(normals[sample * 3 + 2]);
+
+                // Color - low is green, high is white
+                mVertexData.put(ratio);
+                mVertexData.put(0.5f + ratio * 0.5f);
+                mVertexData.put(ratio);
+                mVertexData.put(1f);
+                sample++;
+            }
+        }
+        mVertexData.position(0);
 
-            for (int y = 0; y < yLength - 1; y++) {
-                if (y > 0) {
-                    // Degenerate begin: repeat first vertex
-                    heightMapIndexData[offset++] = (short) (y * yLength);
-                }
+        // rows run toward +z, so the strip order is counter-clockwise seen from above
+        buildIndexData(xLength, zLength);
+    }
 
-                for (int x = 0; x < xLength; x++) {
-                    // One part of the strip
-                    heightMapIndexData[offset++] = (short) ((y * yLength) + x);
-                    heightMapIndexData[offset++] = (short) (((y + 1) * yLength) + x);
-                }
+    /*
+     * one triangle strip over all rows, joined with degenerate triangles
+     */
+    private void buildIndexData(int xLength, int yLength) {
+        final int numStripsRequired = yLength - 1;
+        final int numDegensRequired = 2 * (numStripsRequired - 1);
+        final int verticesPerStrip = 2 * xLength;
 
-                if (y < yLength - 2) {
-                    // Degenerate end: repeat last vertex
-                    heightMapIndexData[offset++] = (short) (((y + 1) * yLength) + (xLength - 1));
-                }
+        final short[] heightMapIndexData = new short[(verticesPerStrip * numStripsRequired) + numDegensRequired];
+
+        int offset = 0;
+
+        for (int y = 0; y < yLength - 1; y++) {
+            if (y > 0) {
+                // Degenerate begin: repeat first vertex
+                heightMapIndexData[offset++] = (short) (y * xLength);
             }
 
-            indexCount = heightMapIndexData.length;
+            for (int x = 0; x < xLength; x++) {
+                // One part of the strip
+                heightMapIndexData[offset++] = (short) ((y * xLength) + x);
+                heightMapIndexData[offset++] = (short) (((y + 1) * xLength) + x);
+            }
 
-            final FloatBuffer heightMapVertexDataBuffer = ByteBuffer
-                    .allocateDirect(heightMapVertexData.length * BYTES_PER_FLOAT).order(ByteOrder.nativeOrder())
-                    .asFloatBuffer();
-            heightMapVertexDataBuffer.put(heightMapVertexData).position(0);
-
-            final ShortBuffer heightMapIndexDataBuffer = ByteBuffer
-                    .allocateDirect(heightMapIndexData.length * BYTES_PER_SHORT).order(ByteOrder.nativeOrder())
-                    .asShortBuffer();
-            heightMapIndexDataBuffer.put(heightMapIndexData).position(0);
-
-            GLES20.glGenBuffers(1, vbo, 0);
-            GLES20.glGenBuffers(1, ibo, 0);
-
-            if (vbo[0] > 0 && ibo[0] > 0) {
-                GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
-                GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, heightMapVertexDataBuffer.capacity() * BYTES_PER_FLOAT,
-                        heightMapVertexDataBuffer, GLES20.GL_STATIC_DRAW);
-
-                GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
-                GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, heightMapIndexDataBuffer.capacity()
-                        * BYTES_PER_SHORT, heightMapIndexDataBuffer, GLES20.GL_STATIC_DRAW);
-
-                GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-                GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-            } else {
-                // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, "glGenBuffers");
-                throw new RuntimeException("error on buffer gen");
+            if (y < yLength - 2) {
+                // Degenerate end: repeat last vertex
+                heightMapIndexData[offset++] = (short) (((y + 1) * xLength) + (xLength - 1));
             }
-        } catch (Throwable t) {
-            Log.w("Teapot", t);
-            // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, t.getLocalizedMessage());
+        }
+
+        indexCount = heightMapIndexData.length;
+
+        mIndexData = ByteBuffer
+                .allocateDirect(heightMapIndexData.length * BYTES_PER_SHORT).order(ByteOrder.nativeOrder())
+                .asShortBuffer();
+        mIndexData.put(heightMapIndexData).position(0);
+    }
+
+    /**
+     * Keep the staged data after uploadToGl(), for uploading again into a new context
+     * without building it again.
+     */
+    public void setRetainStagingData(boolean retain) {
+        mRetainStagingData = retain;
+    }
+
+    /**
+     * Hand the staged data to GL and let go of it, unless retained - then call it once
+     * per context. GL thread only.
+     */
+    public void uploadToGl() {
+        if (mVertexData == null) {
+            return;
+        }
+        GL.glGenBuffers(1, vbo, 0);
+        GL.glGenBuffers(1, ibo, 0);
+
+        if (vbo[0] > 0 && ibo[0] > 0) {
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+            GL.glBufferData(GLES20.GL_ARRAY_BUFFER, mVertexData.capacity() * BYTES_PER_FLOAT,
+                    mVertexData, GLES20.GL_STATIC_DRAW);
+
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+            GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexData.capacity()
+                    * BYTES_PER_SHORT, mIndexData, GLES20.GL_STATIC_DRAW);
+
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        } else {
+            // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, "glGenBuffers");
             throw new RuntimeException("error on buffer gen");
         }
+        if (!mRetainStagingData) {
+            mVertexData = null;
+            mIndexData = null;
+        }
     }
 
     public void render(
@@ -176,43 +278,42 @@ public class HeightMap {
         if (vbo[0] > 0 && ibo[0] > 0) {
 
             // Use culling to remove back faces.
-            GLES20.glDisable(GLES20.GL_CULL_FACE);
+            GLState.disable(GLES20.GL_CULL_FACE);
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
 
             // Bind Attributes
-            GLES20.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE, 0);
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             // Draw
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
-            GLES20.glDrawElements(todo, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+            FrameProfiler.drawElements(todo, indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+            GLDebug.check("HeightMap.render glDrawElements");
 
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
 
             // Use culling to remove back faces.
-            GLES20.glEnable(GLES20.GL_CULL_FACE);
+            GLState.enable(GLES20.GL_CULL_FACE);
         }
     }
 
     public void release() {
         if (vbo[0] > 0) {
-            GLES20.glDeleteBuffers(vbo.length, vbo, 0);
+            GLState.deleteBuffers(vbo.length, vbo, 0);
             vbo[0] = 0;
         }
 
         if (ibo[0] > 0) {
-            GLES20.glDeleteBuffers(ibo.length, ibo, 0);
+            GLState.deleteBuffers(ibo.length, ibo, 0);
             ibo[0] = 0;
         }
     }
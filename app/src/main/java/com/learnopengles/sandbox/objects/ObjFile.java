@@ -3,22 +3,27 @@ package com.learnopengles.sandbox.objects;
 import android.annotation.SuppressLint;
 import android.content.res.AssetManager;
 import android.opengl.GLES20;
-import android.os.Bundle;
 import android.os.SystemClock;
 import android.util.Log;
 
-import com.learnopengles.sandbox.displayobjfile.ActivityDisplayObjFile;
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @SuppressLint("DefaultLocale")
 public class ObjFile {
@@ -28,10 +33,16 @@ public class ObjFile {
     boolean mHaveMaterialColor = false;
     float[] mMaterialColor = new float[3];
 
-    Bundle mMaterial = new Bundle();
+    Map<String, float[]> mMaterial = new HashMap<>();
 
-    public ObjFile(ActivityDisplayObjFile mActivity) {
-        mAssetManager = mActivity.getAssets();
+    public ObjFile(AssetManager assetManager) {
+        mAssetManager = assetManager;
+    }
+
+    /**
+     * For parse(Reader, Reader) only - there are no assets to open.
+     */
+    public ObjFile() {
     }
 
     public void parse(String objFileName) {
@@ -50,37 +61,72 @@ public class ObjFile {
                 + mMinX + " " + mMinY + " " + mMinZ);
     }
 
+    /**
+     * Parse an .obj and its .mtl from any readers - what parse(String) does once the
+     * assets are open. Nothing in it calls Android, so it runs off the device too (benchmarks/).
+     *
+     * @param mtl The material library, or null for none.
+     */
+    public void parse(Reader mtl, Reader obj) throws IOException {
+        flushAllBuffers();
+        if (mtl != null) {
+            parseMaterialTemplateLibrary(new BufferedReader(mtl));
+        }
+        parseObjFile(new BufferedReader(obj));
+    }
+
     private void inputMaterialTemplateLibrary(String objFileName) {
-        InputStream inputStream;
         BufferedReader reader = null;
-        String line = null;
         try {
-            inputStream = mAssetManager.open(objFileName, AssetManager.ACCESS_BUFFER);
-            if (inputStream == null) {
-                Log.d(LOG_TAG, "cannot open" + objFileName + ", returning");
-                return;
-            }
+            reader = openAsset(objFileName);
+            parseMaterialTemplateLibrary(reader);
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "IO error in file " + objFileName + ": " + e.getMessage());
+        } finally {
+            close(reader);
+        }
+    }
 
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String name = null;
-            while ((line = reader.readLine()) != null) {
-                // Log.w(LOG_TAG, "line is: " + line);
-                if (line.length() == 0) {
-                    continue;
-                }
-                if ((line.charAt(0) == 'n') && (line.charAt(1) == 'e')) {
-                    name = parseMaterialTemplateName(line);
-                } else if ((line.charAt(0) == 'K') && (line.charAt(1) == 'a')) {
-                    parseKaColor(name, line);
-                }
-            }
+    private void parseObjFile(String objFileName) {
+        BufferedReader reader = null;
+        try {
+            reader = openAsset(objFileName);
+            parseObjFile(reader);
         } catch (IOException e) {
-            Log.d(LOG_TAG, "IO error in file " + objFileName);
-            if (line != null) {
-                Log.d(LOG_TAG, "IO exception at line: " + line);
+            Log.e(LOG_TAG, "IO error in file " + objFileName + ": " + e.getMessage());
+        } finally {
+            close(reader);
+        }
+    }
+
+    private BufferedReader openAsset(String fileName) throws IOException {
+        InputStream inputStream = mAssetManager.open(fileName, AssetManager.ACCESS_BUFFER);
+        return new BufferedReader(new InputStreamReader(inputStream));
+    }
+
+    private static void close(BufferedReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // everything wanted has been read
             }
+        }
+    }
 
+    private void parseMaterialTemplateLibrary(BufferedReader reader) throws IOException {
+        String line;
+        String name = null;
+        while ((line = reader.readLine()) != null) {
+            // Log.w(LOG_TAG, "line is: " + line);
+            if (line.length() == 0) {
+                continue;
+            }
+            if ((line.charAt(0) == 'n') && (line.charAt(1) == 'e')) {
+                name = parseMaterialTemplateName(line);
+            } else if ((line.charAt(0) == 'K') && (line.charAt(1) == 'a')) {
+                parseKaColor(name, line);
+            }
         }
     }
 
@@ -108,7 +154,7 @@ public class ObjFile {
         color[1] = parseFloat(second_float.substring(0, third_space_index - 1));
         color[2] = parseFloat(third_float);
 
-        mMaterial.putFloatArray(mat_name, color);
+        mMaterial.put(mat_name, color);
         mHaveMaterialColor = true;
     }
 
@@ -124,38 +170,21 @@ public class ObjFile {
         return mtl_name;
     }
 
-    private void parseObjFile(String objFileName) {
-        InputStream inputStream;
-        BufferedReader reader = null;
-        String line = null;
-        try {
-            inputStream = mAssetManager.open(objFileName, AssetManager.ACCESS_BUFFER);
-            if (inputStream == null) {
-                Log.e(LOG_TAG, "cannot open" + objFileName + ", returning");
-                return;
-            }
-
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            while ((line = reader.readLine()) != null) {
-                // Log.w(LOG_TAG, "line is: " + line);
-                if (line.length() == 0) {
-                    continue;
-                }
-                if ((line.charAt(0) == 'v') && (line.charAt(1) == ' ')) {
-                    parseVertex(line);
-                } else if ((line.charAt(0) == 'v') && (line.charAt(1) == 'n')) {
-                    parseNormal(line);
-                } else if (line.charAt(0) == 'f') {
-                    parseTriangle(line);
-                } else if ((line.charAt(0) == 'u') && (line.charAt(1) == 's')) {
-                    parseUsemtl(line);
-                }
+    private void parseObjFile(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            // Log.w(LOG_TAG, "line is: " + line);
+            if (line.length() == 0) {
+                continue;
             }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "IO error in file " + objFileName);
-            if (line != null) {
-                Log.e(LOG_TAG, "IO exception at line: " + line);
+            if ((line.charAt(0) == 'v') && (line.charAt(1) == ' ')) {
+                parseVertex(line);
+            } else if ((line.charAt(0) == 'v') && (line.charAt(1) == 'n')) {
+                parseNormal(line);
+            } else if (line.charAt(0) == 'f') {
+                parseTriangle(line);
+            } else if ((line.charAt(0) == 'u') && (line.charAt(1) == 's')) {
+                parseUsemtl(line);
             }
         }
     }
@@ -169,7 +198,7 @@ public class ObjFile {
         int space_index = line.indexOf(' ') + 1;
         String mtl_name = line.substring(space_index);
         mtl_name = mtl_name.trim();
-        float[] material_color = mMaterial.getFloatArray(mtl_name);
+        float[] material_color = mMaterial.get(mtl_name);
         if (material_color == null) {
             return;
         }
@@ -425,13 +454,13 @@ public class ObjFile {
         vertexDataBuffer.put(vertexData).position(0);
 
         if (vbo[0] > 0) {
-            GLES20.glDeleteBuffers(1, vbo, 0);
+            GLState.deleteBuffers(1, vbo, 0);
         }
-        GLES20.glGenBuffers(1, vbo, 0);
+        GL.glGenBuffers(1, vbo, 0);
 
         if (vbo[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexDataBuffer.capacity() * BYTES_PER_FLOAT,
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+            GL.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexDataBuffer.capacity() * BYTES_PER_FLOAT,
                     vertexDataBuffer, GLES20.GL_STATIC_DRAW);
 
             // GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
@@ -472,16 +501,16 @@ public class ObjFile {
         indexDataBuffer.put(indexData).position(0);
 
         if (ibo[0] > 0) {
-            GLES20.glDeleteBuffers(1, ibo, 0);
+            GLState.deleteBuffers(1, ibo, 0);
         }
-        GLES20.glGenBuffers(1, ibo, 0);
+        GL.glGenBuffers(1, ibo, 0);
         if (ibo[0] > 0) {
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
-            GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER,
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+            GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER,
                     indexDataBuffer.capacity()
                             * BYTES_PER_SHORT, indexDataBuffer, GLES20.GL_STATIC_DRAW);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         } else {
             // errorHandler.handleError(ErrorHandler.ErrorType.BUFFER_CREATION_ERROR, "glGenBuffers");
             throw new RuntimeException("error on buffer gen");
@@ -495,7 +524,7 @@ public class ObjFile {
             boolean doWireframeRendering) {
 
         // Debug: disable culling to remove back faces.
-        GLES20.glDisable(GLES20.GL_CULL_FACE);
+        GLState.disable(GLES20.GL_CULL_FACE);
 
         // TODO : make sure the buffer is NOT released before the Indexes are bound!!
         /*
@@ -504,23 +533,23 @@ public class ObjFile {
          * corrected normals for the body.
          */
         if ((vbo[0] > 0) && (ibo[0] > 0)) {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
             // associate the attributes with the bound buffer
-            GLES20.glVertexAttribPointer(positionAttribute,
+            GL.glVertexAttribPointer(positionAttribute,
                     POSITION_DATA_SIZE_IN_ELEMENTS,
                     GLES20.GL_FLOAT,
                     false,
                     STRIDE_IN_BYTES,
                     0);  // offset
-            GLES20.glEnableVertexAttribArray(positionAttribute);
+            GLState.enableVertexAttribArray(positionAttribute);
 
-            GLES20.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(normalAttribute);
+            GLState.enableVertexAttribArray(normalAttribute);
 
-            GLES20.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+            GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
                     STRIDE_IN_BYTES, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
-            GLES20.glEnableVertexAttribArray(colorAttribute);
+            GLState.enableVertexAttribArray(colorAttribute);
 
             // Draw
             int todo;
@@ -533,26 +562,25 @@ public class ObjFile {
             /*
              * draw using the IBO - index buffer object
              */
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
-            GLES20.glDrawElements(
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+            FrameProfiler.drawElements(
                     todo, /* GLES20.GL_TRIANGLES, */
                     mTriangleIndexCount,
                     GLES20.GL_UNSIGNED_SHORT,
                     1);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0); // release
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);  // release
+            GLDebug.check("ObjFile.render glDrawElements");
         }
         // Debug:  Use culling to remove back faces.
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
+        GLState.enable(GLES20.GL_CULL_FACE);
     }
 
     public void release() {
         if (vbo[0] > 0) {
-            GLES20.glDeleteBuffers(vbo.length, vbo, 0);
+            GLState.deleteBuffers(vbo.length, vbo, 0);
             vbo[0] = 0;
         }
         if (ibo[0] > 0) {
-            GLES20.glDeleteBuffers(ibo.length, ibo, 0);
+            GLState.deleteBuffers(ibo.length, ibo, 0);
             ibo[0] = 0;
         }
     }
@@ -570,7 +598,10 @@ public class ObjFile {
         mNormals.clear();
         mColors.clear();
         mIndices.clear();
+        mNormalIndex.clear();
         mTextureIndex.clear();
+        // a new .mtl is read after this - the last file's materials must not leak into it
+        mMaterial.clear();
         mHaveMaterialColor = false;
     }
 
@@ -0,0 +1,158 @@
+package com.learnopengles.sandbox.objects;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/*
+ * PseudoInstancedMesh - instancing for ES 2.0, which has no glDrawArraysInstanced
+ *
+ *   the mesh is written copiesPerDraw times into one VBO, and every vertex carries
+ *   the number of the copy it belongs to (a_Instance).  the vertex shader uses that
+ *   number to pick the copy's transform out of a uniform array, so one upload of
+ *   the array and one draw cover copiesPerDraw copies.  a last, partial chunk just
+ *   draws fewer vertices - the copies are back to back.
+ *
+ *   the transform per copy is one vec4 (an eye space offset, w unused), which keeps
+ *   the array well inside the 128 uniform vectors every ES 2.0 vertex shader gets.
+ *   vertices are position, normal and the copy number (28 bytes); the color is one
+ *   constant attribute.
+ */
+public class PseudoInstancedMesh {
+
+    private static final String LOG_TAG = PseudoInstancedMesh.class.getSimpleName();
+
+    private static final int POSITION_DATA_SIZE_IN_ELEMENTS = 3;
+    private static final int NORMAL_DATA_SIZE_IN_ELEMENTS = 3;
+    private static final int COLOR_DATA_SIZE_IN_ELEMENTS = 4;
+    private static final int INSTANCE_DATA_SIZE_IN_ELEMENTS = 1;
+    public static final int OFFSET_SIZE_IN_ELEMENTS = 4;
+
+    private static final int BYTES_PER_FLOAT = 4;
+
+    /* layout of the source mesh: XYZ + Normal + RGBA */
+    private static final int SOURCE_STRIDE_IN_FLOATS =
+            POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS + COLOR_DATA_SIZE_IN_ELEMENTS;
+
+    private static final int FLOATS_PER_VERTEX =
+            POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS + INSTANCE_DATA_SIZE_IN_ELEMENTS;
+    private static final int STRIDE = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    private final int mVerticesPerCopy;
+    private final int mCopiesPerDraw;
+    private final float[] mColor;
+
+    private final int[] mVbo = new int[1];
+    private int mDrawCalls;
+
+    /**
+     * Builds the replicated VBO; must be called on the GL thread.
+     *
+     * @param vertexData    packed XYZ + Normal + RGBA triangles of one copy
+     * @param color         RGBA for every copy
+     * @param copiesPerDraw size of the shader's offset array
+     */
+    public PseudoInstancedMesh(float[] vertexData, float[] color, int copiesPerDraw) {
+        mVerticesPerCopy = vertexData.length / SOURCE_STRIDE_IN_FLOATS;
+        mCopiesPerDraw = copiesPerDraw;
+        mColor = color;
+
+        final int floatsPerCopy = mVerticesPerCopy * FLOATS_PER_VERTEX;
+        final float[] copy = new float[floatsPerCopy];
+        final FloatBuffer buffer = ByteBuffer.allocateDirect(copiesPerDraw * floatsPerCopy * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        for (int instance = 0; instance < copiesPerDraw; instance++) {
+            int out = 0;
+            for (int v = 0; v < mVerticesPerCopy; v++) {
+                System.arraycopy(vertexData, v * SOURCE_STRIDE_IN_FLOATS, copy, out,
+                        POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS);
+                out += POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS;
+                copy[out++] = instance;
+            }
+            buffer.put(copy);
+        }
+        buffer.position(0);
+
+        GL.glGenBuffers(1, mVbo, 0);
+        if (mVbo[0] > 0) {
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo[0]);
+            GL.glBufferData(GLES20.GL_ARRAY_BUFFER, buffer.capacity() * BYTES_PER_FLOAT,
+                    buffer, GLES20.GL_STATIC_DRAW);
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        } else {
+            throw new RuntimeException("error on buffer gen");
+        }
+
+        Log.w(LOG_TAG, "replicated " + mVerticesPerCopy + " vertices x " + copiesPerDraw
+                + " (" + (buffer.capacity() * BYTES_PER_FLOAT / 1024) + " KB)");
+    }
+
+    /**
+     * Draw count copies, copiesPerDraw at a time.
+     *
+     * @param offsets       OFFSET_SIZE_IN_ELEMENTS floats per copy, back to back
+     * @param offsetUniform location of the shader's vec4 offset array
+     */
+    public void render(
+            int positionAttribute,
+            int colorAttribute,
+            int normalAttribute,
+            int instanceAttribute,
+            int offsetUniform,
+            float[] offsets,
+            int count,
+            boolean doWireframeRendering) {
+
+        GLState.disableVertexAttribArray(colorAttribute);
+        GL.glVertexAttrib4fv(colorAttribute, mColor, 0);
+
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo[0]);
+        GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS,
+                GLES20.GL_FLOAT, false, STRIDE, 0);
+        GLState.enableVertexAttribArray(positionAttribute);
+        GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS,
+                GLES20.GL_FLOAT, false, STRIDE, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
+        GLState.enableVertexAttribArray(normalAttribute);
+        GL.glVertexAttribPointer(instanceAttribute, INSTANCE_DATA_SIZE_IN_ELEMENTS,
+                GLES20.GL_FLOAT, false, STRIDE,
+                (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
+        GLState.enableVertexAttribArray(instanceAttribute);
+
+        final int mode = doWireframeRendering ? GLES20.GL_LINES : GLES20.GL_TRIANGLES;
+        mDrawCalls = 0;
+        for (int first = 0; first < count; first += mCopiesPerDraw) {
+            int copies = Math.min(mCopiesPerDraw, count - first);
+            GL.glUniform4fv(offsetUniform, copies, offsets, first * OFFSET_SIZE_IN_ELEMENTS);
+            FrameProfiler.drawArrays(mode, 0, copies * mVerticesPerCopy);
+            GLDebug.check("PseudoInstancedMesh.render glDrawArrays");
+            mDrawCalls++;
+        }
+
+        // the instance attribute is ours alone - don't leave it pointing into this buffer
+        GLState.disableVertexAttribArray(instanceAttribute);
+    }
+
+    public int getCopiesPerDraw() {
+        return mCopiesPerDraw;
+    }
+
+    public int getDrawCalls() {
+        return mDrawCalls;
+    }
+
+    public void release() {
+        if (mVbo[0] > 0) {
+            GLState.deleteBuffers(1, mVbo, 0);
+            mVbo[0] = 0;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.learnopengles.sandbox.objects;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.Frustum;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.WorkerPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/*
+ * StaticBatch - many copies of one mesh, pre-transformed into shared VBOs
+ *
+ *   build() runs every copy's vertices through its model matrix on the CPU (copies
+ *   split over the WorkerPool) and uploads the result, so render() is one draw per
+ *   VBO with a single model-view matrix - the view - instead of a matrix setup and
+ *   a draw per copy.  the transform is paid again only when the layout changes.
+ *
+ *   copies are grouped COPIES_PER_VBO to a buffer so a large batch never needs
+ *   one huge allocation.  only position and normal are stored (24 bytes a vertex);
+ *   the color is one constant attribute.
+ *
+ *   each VBO keeps a bounding sphere around its copies so cull() can drop whole
+ *   VBOs that are off screen.
+ *
+ *   memory grows with every copy, so the batch is capped at maxCopies - this
+ *   pays off for small meshes repeated often, not for heavy ones repeated forever.
+ */
+public class StaticBatch {
+
+    private static final String LOG_TAG = StaticBatch.class.getSimpleName();
+
+    private static final int POSITION_DATA_SIZE_IN_ELEMENTS = 3;
+    private static final int NORMAL_DATA_SIZE_IN_ELEMENTS = 3;
+    private static final int COLOR_DATA_SIZE_IN_ELEMENTS = 4;
+
+    private static final int BYTES_PER_FLOAT = 4;
+
+    /* layout of the source mesh: XYZ + Normal + RGBA */
+    private static final int SOURCE_STRIDE_IN_FLOATS =
+            POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS + COLOR_DATA_SIZE_IN_ELEMENTS;
+
+    private static final int FLOATS_PER_VERTEX = POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS;
+    private static final int STRIDE = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    public static final int COPIES_PER_VBO = 8;
+    private static final int MIN_VERTICES_PER_TASK = 4096;
+
+    private final float[] mMesh;
+    private final int mVerticesPerCopy;
+    private final float[] mColor;
+    private final int mMaxCopies;
+
+    private final int[] mVbos;
+    private final int[] mVerticesInVbo;
+    private final int[] mCopiesInVbo;
+    private final float[] mVboBounds;
+    private final boolean[] mVboVisible;
+    private final float mMeshRadius;
+    private int mVbosInUse;
+    private int mCopies;
+
+    private final float[] mStaging;
+    private final FloatBuffer mStagingBuffer;
+
+    private long mLastBuildNanos;
+    private int mDrawCalls;
+
+    /**
+     * @param vertexData packed XYZ + Normal + RGBA triangles of one copy
+     * @param color      RGBA for every copy
+     * @param maxCopies  upper bound on the copies build() accepts
+     */
+    public StaticBatch(float[] vertexData, float[] color, int maxCopies) {
+        mVerticesPerCopy = vertexData.length / SOURCE_STRIDE_IN_FLOATS;
+        mColor = color;
+        mMaxCopies = maxCopies;
+
+        // keep only what gets transformed
+        mMesh = new float[mVerticesPerCopy * FLOATS_PER_VERTEX];
+        float radiusSquared = 0f;
+        for (int v = 0; v < mVerticesPerCopy; v++) {
+            int in = v * SOURCE_STRIDE_IN_FLOATS;
+            System.arraycopy(vertexData, in, mMesh, v * FLOATS_PER_VERTEX, FLOATS_PER_VERTEX);
+            radiusSquared = Math.max(radiusSquared, vertexData[in] * vertexData[in]
+                    + vertexData[in + 1] * vertexData[in + 1] + vertexData[in + 2] * vertexData[in + 2]);
+        }
+        mMeshRadius = (float) Math.sqrt(radiusSquared);
+
+        int floatsPerVbo = COPIES_PER_VBO * mVerticesPerCopy * FLOATS_PER_VERTEX;
+        mStaging = new float[floatsPerVbo];
+        mStagingBuffer = ByteBuffer.allocateDirect(floatsPerVbo * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        int numVbos = (maxCopies + COPIES_PER_VBO - 1) / COPIES_PER_VBO;
+        mVbos = new int[numVbos];
+        mVerticesInVbo = new int[numVbos];
+        mCopiesInVbo = new int[numVbos];
+        mVboBounds = new float[numVbos * 4];
+        mVboVisible = new boolean[numVbos];
+    }
+
+    /**
+     * Transform and upload copies of the mesh; must be called on the GL thread.
+     *
+     * @param modelMatrices one column-major 4x4 per copy, back to back
+     * @param copies        how many copies, at most maxCopies
+     */
+    public void build(final float[] modelMatrices, final int copies) {
+        if (copies < 0 || copies > mMaxCopies || modelMatrices.length < copies * 16) {
+            throw new IllegalArgumentException("StaticBatch: bad copy count " + copies);
+        }
+        long start = System.nanoTime();
+
+        final int vbosNeeded = (copies + COPIES_PER_VBO - 1) / COPIES_PER_VBO;
+        for (int vbo = 0; vbo < vbosNeeded; vbo++) {
+            if (mVbos[vbo] == 0) {
+                GL.glGenBuffers(1, mVbos, vbo);
+                if (mVbos[vbo] <= 0) {
+                    throw new RuntimeException("error on buffer gen");
+                }
+            }
+        }
+
+        for (int vbo = 0; vbo < vbosNeeded; vbo++) {
+            final int firstCopy = vbo * COPIES_PER_VBO;
+            final int copiesInVbo = Math.min(COPIES_PER_VBO, copies - firstCopy);
+            final int vertices = copiesInVbo * mVerticesPerCopy;
+
+            WorkerPool.forRange(vertices, MIN_VERTICES_PER_TASK, new WorkerPool.RangeTask() {
+                @Override
+                public void run(int start, int end) {
+                    transform(modelMatrices, firstCopy, start, end);
+                }
+            });
+
+            mStagingBuffer.position(0);
+            mStagingBuffer.put(mStaging, 0, vertices * FLOATS_PER_VERTEX).position(0);
+
+            // full re-specify each time - lets the driver drop the old storage instead of syncing on it
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbos[vbo]);
+            GL.glBufferData(GLES20.GL_ARRAY_BUFFER, vertices * STRIDE, mStagingBuffer, GLES20.GL_STATIC_DRAW);
+            mVerticesInVbo[vbo] = vertices;
+            mCopiesInVbo[vbo] = copiesInVbo;
+            mVboVisible[vbo] = true;
+            calculateBounds(modelMatrices, firstCopy, copiesInVbo, vbo * 4);
+        }
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        mVbosInUse = vbosNeeded;
+        mCopies = copies;
+        mLastBuildNanos = System.nanoTime() - start;
+        Log.w(LOG_TAG, String.format("built %d copies (%d vertices, %d KB) in %.2f ms",
+                copies, copies * mVerticesPerCopy, copies * mVerticesPerCopy * STRIDE / 1024,
+                mLastBuildNanos / 1e6f));
+    }
+
+    /*
+     * one sphere around all the copies in a VBO: centered on the average of their
+     * origins, out to the furthest copy's origin plus its scaled mesh radius
+     */
+    private void calculateBounds(float[] matrices, int firstCopy, int copies, int b) {
+        float cx = 0f, cy = 0f, cz = 0f;
+        for (int c = firstCopy; c < firstCopy + copies; c++) {
+            cx += matrices[c * 16 + 12];
+            cy += matrices[c * 16 + 13];
+            cz += matrices[c * 16 + 14];
+        }
+        cx /= copies;
+        cy /= copies;
+        cz /= copies;
+
+        float radius = 0f;
+        for (int c = firstCopy; c < firstCopy + copies; c++) {
+            int m = c * 16;
+            float dx = matrices[m + 12] - cx;
+            float dy = matrices[m + 13] - cy;
+            float dz = matrices[m + 14] - cz;
+            float sx = matrices[m] * matrices[m] + matrices[m + 1] * matrices[m + 1] + matrices[m + 2] * matrices[m + 2];
+            float sy = matrices[m + 4] * matrices[m + 4] + matrices[m + 5] * matrices[m + 5] + matrices[m + 6] * matrices[m + 6];
+            float sz = matrices[m + 8] * matrices[m + 8] + matrices[m + 9] * matrices[m + 9] + matrices[m + 10] * matrices[m + 10];
+            float scale = (float) Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+            radius = Math.max(radius, (float) Math.sqrt(dx * dx + dy * dy + dz * dz) + mMeshRadius * scale);
+        }
+
+        mVboBounds[b] = cx;
+        mVboBounds[b + 1] = cy;
+        mVboBounds[b + 2] = cz;
+        mVboBounds[b + 3] = radius;
+    }
+
+    /**
+     * Test each VBO's bounding sphere; render() then skips the ones outside.
+     *
+     * @param frustum planes in world space, or null to draw everything
+     * @return number of copies in the VBOs that will be drawn
+     */
+    public int cull(Frustum frustum) {
+        int visibleCopies = 0;
+        for (int vbo = 0; vbo < mVbosInUse; vbo++) {
+            int b = vbo * 4;
+            mVboVisible[vbo] = frustum == null || frustum.isSphereVisible(
+                    mVboBounds[b], mVboBounds[b + 1], mVboBounds[b + 2], mVboBounds[b + 3]);
+            if (mVboVisible[vbo]) {
+                visibleCopies += mCopiesInVbo[vbo];
+            }
+        }
+        return visibleCopies;
+    }
+
+    /*
+     * vertices [start, end) of the copies starting at firstCopy into mStaging
+     */
+    private void transform(float[] matrices, int firstCopy, int start, int end) {
+        final float[] mesh = mMesh;
+        final float[] dest = mStaging;
+        int copy = start / mVerticesPerCopy;
+        int v = start - copy * mVerticesPerCopy;
+        int m = (firstCopy + copy) * 16;
+        int out = start * FLOATS_PER_VERTEX;
+
+        for (int i = start; i < end; i++) {
+            int in = v * FLOATS_PER_VERTEX;
+            float x = mesh[in];
+            float y = mesh[in + 1];
+            float z = mesh[in + 2];
+            float nx = mesh[in + 3];
+            float ny = mesh[in + 4];
+            float nz = mesh[in + 5];
+
+            dest[out++] = matrices[m] * x + matrices[m + 4] * y + matrices[m + 8] * z + matrices[m + 12];
+            dest[out++] = matrices[m + 1] * x + matrices[m + 5] * y + matrices[m + 9] * z + matrices[m + 13];
+            dest[out++] = matrices[m + 2] * x + matrices[m + 6] * y + matrices[m + 10] * z + matrices[m + 14];
+
+            // w = 0: the normal is turned and scaled exactly as the shader would, never moved
+            dest[out++] = matrices[m] * nx + matrices[m + 4] * ny + matrices[m + 8] * nz;
+            dest[out++] = matrices[m + 1] * nx + matrices[m + 5] * ny + matrices[m + 9] * nz;
+            dest[out++] = matrices[m + 2] * nx + matrices[m + 6] * ny + matrices[m + 10] * nz;
+
+            if (++v == mVerticesPerCopy) {
+                v = 0;
+                m += 16;
+            }
+        }
+    }
+
+    public void render(
+            int positionAttribute,
+            int colorAttribute,
+            int normalAttribute,
+            boolean doWireframeRendering) {
+
+        GLState.disableVertexAttribArray(colorAttribute);
+        GL.glVertexAttrib4fv(colorAttribute, mColor, 0);
+
+        final int mode = doWireframeRendering ? GLES20.GL_LINES : GLES20.GL_TRIANGLES;
+        mDrawCalls = 0;
+        for (int vbo = 0; vbo < mVbosInUse; vbo++) {
+            if (!mVboVisible[vbo]) {
+                continue;
+            }
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mVbos[vbo]);
+            GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS,
+                    GLES20.GL_FLOAT, false, STRIDE, 0);
+            GLState.enableVertexAttribArray(positionAttribute);
+            GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS,
+                    GLES20.GL_FLOAT, false, STRIDE, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
+            GLState.enableVertexAttribArray(normalAttribute);
+
+            FrameProfiler.drawArrays(mode, 0, mVerticesInVbo[vbo]);
+            GLDebug.check("StaticBatch.render glDrawArrays");
+            mDrawCalls++;
+        }
+    }
+
+    public int getCopies() {
+        return mCopies;
+    }
+
+    public int getMaxCopies() {
+        return mMaxCopies;
+    }
+
+    public int getDrawCalls() {
+        return mDrawCalls;
+    }
+
+    public long getLastBuildNanos() {
+        return mLastBuildNanos;
+    }
+
+    public void release() {
+        for (int i = 0; i < mVbos.length; i++) {
+            if (mVbos[i] > 0) {
+                GLState.deleteBuffers(1, mVbos, i);
+                mVbos[i] = 0;
+            }
+        }
+        mVbosInUse = 0;
+        mCopies = 0;
+    }
+}
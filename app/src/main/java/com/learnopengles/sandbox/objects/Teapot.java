@@ -2,6 +2,11 @@ package com.learnopengles.sandbox.objects;
 
 import android.opengl.GLES20;
 
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -84,26 +89,30 @@ public class Teapot {
                        int mNormalHandle,
                        boolean doWireframeRendering ) {
 
+        // client-side arrays and indices: no VBO / IBO may be left bound from another object's draw
+        GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
         // Pass in the position information
         mTeapotPositions.position(0);
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
                 0, mTeapotPositions);
 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        GLState.enableVertexAttribArray(mPositionHandle);
 
         // Pass in the color information
         mTeapotColors.position(0);
-        GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
                 0, mTeapotColors);
 
         // GLES20.glEnableVertexAttribArray(mColorHandle);
 
         // Pass in the normal information
         mTeapotNormals.position(0);
-        GLES20.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false,
+        GL.glVertexAttribPointer(mNormalHandle, mNormalDataSize, GLES20.GL_FLOAT, false,
                 0, mTeapotNormals);
 
-        GLES20.glEnableVertexAttribArray(mNormalHandle);
+        GLState.enableVertexAttribArray(mNormalHandle);
 
         // Draw
         int todo;
@@ -117,15 +126,18 @@ public class Teapot {
         int num_teapot_indices = 2781;
         while (i < num_teapot_indices) {
             if (teapot_indices[i] == -1) {
-                GLES20.glDrawElements(todo, i - start,
+                FrameProfiler.drawElements(todo, i - start,
                         GLES20.GL_UNSIGNED_SHORT, mVertexBuffer.position(start));
+                GLDebug.check("Teapot.render glDrawElements");
                 start = i + 1;
             }
             i++;
         }
-        if (start < num_teapot_indices)
-            GLES20.glDrawElements(todo, i - start - 1,
+        if (start < num_teapot_indices) {
+            FrameProfiler.drawElements(todo, i - start - 1,
                     GL10.GL_UNSIGNED_SHORT, mVertexBuffer.position(start));
+            GLDebug.check("Teapot.render glDrawElements");
+        }
 
 //        // Draw the cube.
 //        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 36);
@@ -0,0 +1,572 @@
+package com.learnopengles.sandbox.objects;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.learnopengles.sandbox.common.FrameProfiler;
+import com.learnopengles.sandbox.common.Frustum;
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLDebug;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.WorkerPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/*
+ * Terrain - a height field of any size, cut into fixed size chunks
+ *
+ *   each chunk is CHUNK_CELLS x CHUNK_CELLS cells (33 x 33 vertices) in its own VBO,
+ *   so a short index always fits.  All chunks share one IBO holding every
+ *   index pattern: one per LOD level (step 1, 2, 4 .. 32) and per combination of
+ *   edges that must be stitched to a coarser neighbour.
+ *
+ *   geomipmapping: each frame a chunk picks its level from the distance to the eye,
+ *   then levels are relaxed so neighbours differ by at most one.  Where a neighbour
+ *   is coarser, the edge vertices that neighbour does not have are snapped onto the
+ *   previous shared vertex, which folds the extra triangles flat and closes the crack.
+ *
+ *   chunks whose bounding box is outside the view frustum are not drawn at all.
+ *
+ *   building is split from uploading: construct from a HeightField on any
+ *   thread (the chunks are filled in parallel on the WorkerPool), then call
+ *   uploadToGl() on the GL thread. Retained, the staging data outlives the
+ *   upload, so a new context only has to upload it again.
+ *
+ * HeightMap is the fixed 32 x 32 teaching version of this.
+ */
+public class Terrain {
+
+    private static final String LOG_TAG = Terrain.class.getSimpleName();
+
+    private static final int POSITION_DATA_SIZE_IN_ELEMENTS = 3;
+    private static final int NORMAL_DATA_SIZE_IN_ELEMENTS = 3;
+    private static final int COLOR_DATA_SIZE_IN_ELEMENTS = 4;
+
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int BYTES_PER_SHORT = 2;
+
+    /*
+     * the color goes in as four unsigned bytes rather than four floats -
+     * 28 bytes a vertex instead of 40 adds up at a million vertices
+     */
+    private static final int STRIDE = (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS)
+            * BYTES_PER_FLOAT + COLOR_DATA_SIZE_IN_ELEMENTS;
+
+    public static final int CHUNK_CELLS = 32;
+    private static final int CHUNK_VERTICES_PER_SIDE = CHUNK_CELLS + 1;
+    private static final int CHUNK_VERTEX_COUNT = CHUNK_VERTICES_PER_SIDE * CHUNK_VERTICES_PER_SIDE;
+
+    /*
+     * level n steps over 2^n cells; the last level is a single quad per chunk
+     */
+    public static final int NUM_LODS = 6;
+
+    private static final int STITCH_NORTH = 1;  // row 0, toward -z
+    private static final int STITCH_EAST = 2;   // last column, toward +x
+    private static final int STITCH_SOUTH = 4;  // last row, toward +z
+    private static final int STITCH_WEST = 8;   // column 0, toward -x
+    private static final int NUM_STITCH_PATTERNS = 16;
+
+    private static final int BOUNDS_PER_CHUNK = 6;
+
+    private final HeightField mField;
+    private final int mWidth;
+    private final int mDepth;
+    private final float mCellSize;
+    private final float mHeightScale;
+    private final float mOriginX;
+    private final float mOriginZ;
+
+    private final int mChunksX;
+    private final int mChunksZ;
+
+    private final int[] mChunkVbo;
+    private final float[] mChunkBounds;
+    private final int[] mChunkLod;
+    private final boolean[] mChunkVisible;
+
+    final int[] ibo = new int[1];
+    private final int[] mPatternOffset = new int[NUM_LODS * NUM_STITCH_PATTERNS];
+    private final int[] mPatternCount = new int[NUM_LODS * NUM_STITCH_PATTERNS];
+
+    /*
+     * staging data, built off the GL thread and dropped once uploaded unless retained
+     */
+    private ShortBuffer mIndexData;
+    private ByteBuffer mVertexData;
+    private boolean mRetainStagingData;
+
+    private final Frustum mFrustum = new Frustum();
+    private final float[] mInverseMV = new float[16];
+
+    private float mLodDistance;
+    private boolean mLodEnabled = true;
+    private boolean mCullingEnabled = true;
+
+    private int mVisibleChunks;
+    private int mCulledChunks;
+    private int mTrianglesDrawn;
+
+    /**
+     * Build and upload in one go, on the GL thread.
+     *
+     * @param heights     width * depth samples, row-major (x fastest), nominally 0..1.
+     * @param width       Samples along x.
+     * @param depth       Samples along z.
+     * @param cellSize    World distance between neighbouring samples.
+     * @param heightScale World height of a sample of 1.0.
+     */
+    public Terrain(float[] heights, int width, int depth, float cellSize, float heightScale) {
+        this(HeightField.fromHeights(heights, width, depth, cellSize, heightScale));
+        uploadToGl();
+    }
+
+    /**
+     * Build the chunk vertex data and index patterns. Makes no GL calls;
+     * call uploadToGl() on the GL thread before the first render().
+     */
+    public Terrain(HeightField field) {
+        mField = field;
+        mWidth = field.getWidth();
+        mDepth = field.getDepth();
+        mCellSize = field.getCellSize();
+        mHeightScale = field.getHeightScale();
+
+        // centre the field on the origin
+        mOriginX = -(mWidth - 1) * mCellSize / 2f;
+        mOriginZ = -(mDepth - 1) * mCellSize / 2f;
+
+        mChunksX = (mWidth - 2) / CHUNK_CELLS + 1;
+        mChunksZ = (mDepth - 2) / CHUNK_CELLS + 1;
+        final int numChunks = mChunksX * mChunksZ;
+
+        mChunkVbo = new int[numChunks];
+        mChunkBounds = new float[numChunks * BOUNDS_PER_CHUNK];
+        mChunkLod = new int[numChunks];
+        mChunkVisible = new boolean[numChunks];
+
+        mLodDistance = 2f * CHUNK_CELLS * mCellSize;
+
+        long start = SystemClock.uptimeMillis();
+        buildIndexPatterns();
+        buildChunks();
+        Log.w(LOG_TAG, mWidth + " x " + mDepth + " samples, " + numChunks + " chunks built in "
+                + (SystemClock.uptimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Keep the staged data after uploadToGl(), for uploading again into a new context
+     * without building it again.
+     */
+    public void setRetainStagingData(boolean retain) {
+        mRetainStagingData = retain;
+    }
+
+    /**
+     * Hand the staged vertex and index data to GL and let go of it, unless retained -
+     * then call it once per context. GL thread only.
+     */
+    public void uploadToGl() {
+        if (mVertexData == null) {
+            return;
+        }
+        long start = SystemClock.uptimeMillis();
+        try {
+            GL.glGenBuffers(1, ibo, 0);
+            GL.glGenBuffers(mChunkVbo.length, mChunkVbo, 0);
+            if (ibo[0] <= 0) {
+                throw new RuntimeException("error on buffer gen");
+            }
+
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+            GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexData.capacity() * BYTES_PER_SHORT,
+                    mIndexData, GLES20.GL_STATIC_DRAW);
+            GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+            for (int chunk = 0; chunk < mChunkVbo.length; chunk++) {
+                if (mChunkVbo[chunk] <= 0) {
+                    throw new RuntimeException("error on buffer gen");
+                }
+                mVertexData.position(chunk * CHUNK_VERTEX_COUNT * STRIDE);
+                GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mChunkVbo[chunk]);
+                GL.glBufferData(GLES20.GL_ARRAY_BUFFER, CHUNK_VERTEX_COUNT * STRIDE,
+                        mVertexData, GLES20.GL_STATIC_DRAW);
+            }
+            GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        } catch (Throwable t) {
+            Log.w(LOG_TAG, t);
+            release();
+            throw new RuntimeException("error on buffer gen");
+        }
+        if (!mRetainStagingData) {
+            mVertexData = null;
+            mIndexData = null;
+        }
+        Log.w(LOG_TAG, mChunkVbo.length + " chunks uploaded in "
+                + (SystemClock.uptimeMillis() - start) + " ms");
+    }
+
+    /*
+     * one pattern per (lod, stitch flags), all packed into a single IBO
+     */
+    private void buildIndexPatterns() {
+        int total = 0;
+        for (int lod = 0; lod < NUM_LODS; lod++) {
+            int cells = CHUNK_CELLS >> lod;
+            total += NUM_STITCH_PATTERNS * cells * cells * 6;
+        }
+        final short[] indices = new short[total];
+
+        int offset = 0;
+        for (int lod = 0; lod < NUM_LODS; lod++) {
+            final int step = 1 << lod;
+            for (int flags = 0; flags < NUM_STITCH_PATTERNS; flags++) {
+                final int pattern = lod * NUM_STITCH_PATTERNS + flags;
+                mPatternOffset[pattern] = offset;
+
+                for (int row = 0; row < CHUNK_CELLS; row += step) {
+                    for (int col = 0; col < CHUNK_CELLS; col += step) {
+                        int tl = snap(col, row, step, flags);
+                        int tr = snap(col + step, row, step, flags);
+                        int bl = snap(col, row + step, step, flags);
+                        int br = snap(col + step, row + step, step, flags);
+
+                        // counter-clockwise seen from above (+y)
+                        offset = addTriangle(indices, offset, tl, bl, tr);
+                        offset = addTriangle(indices, offset, tr, bl, br);
+                    }
+                }
+                mPatternCount[pattern] = offset - mPatternOffset[pattern];
+            }
+        }
+
+        mIndexData = ByteBuffer
+                .allocateDirect(offset * BYTES_PER_SHORT).order(ByteOrder.nativeOrder())
+                .asShortBuffer();
+        mIndexData.put(indices, 0, offset).position(0);
+    }
+
+    /*
+     * Move an edge vertex the coarser neighbour does not have (an odd multiple
+     * of step) back onto the one it does (the previous multiple of 2 * step).
+     * The coarsest level has no coarser neighbour and is never snapped.
+     */
+    static int snap(int col, int row, int step, int flags) {
+        if (step < CHUNK_CELLS) {
+            if (row == 0 && (flags & STITCH_NORTH) != 0 && (col / step) % 2 == 1) {
+                col -= step;
+            } else if (row == CHUNK_CELLS && (flags & STITCH_SOUTH) != 0 && (col / step) % 2 == 1) {
+                col -= step;
+            }
+            if (col == 0 && (flags & STITCH_WEST) != 0 && (row / step) % 2 == 1) {
+                row -= step;
+            } else if (col == CHUNK_CELLS && (flags & STITCH_EAST) != 0 && (row / step) % 2 == 1) {
+                row -= step;
+            }
+        }
+        return row * CHUNK_VERTICES_PER_SIDE + col;
+    }
+
+    /*
+     * snapping folds some triangles flat - leave those out
+     */
+    private static int addTriangle(short[] indices, int offset, int a, int b, int c) {
+        if (a == b || b == c || a == c) {
+            return offset;
+        }
+        // three distinct vertices along one edge where two stitched edges meet
+        final int ax = a % CHUNK_VERTICES_PER_SIDE, az = a / CHUNK_VERTICES_PER_SIDE;
+        final int bx = b % CHUNK_VERTICES_PER_SIDE, bz = b / CHUNK_VERTICES_PER_SIDE;
+        final int cx = c % CHUNK_VERTICES_PER_SIDE, cz = c / CHUNK_VERTICES_PER_SIDE;
+        if ((bx - ax) * (cz - az) == (bz - az) * (cx - ax)) {
+            return offset;
+        }
+        indices[offset++] = (short) a;
+        indices[offset++] = (short) b;
+        indices[offset++] = (short) c;
+        return offset;
+    }
+
+    /*
+     * every chunk lands in its own slice of one staging buffer; chunks are
+     * independent, so they are filled in parallel with absolute puts
+     */
+    private void buildChunks() {
+        final float minHeight = mField.getMinHeight();
+        final float heightRange = Math.max(mField.getMaxHeight() - minHeight, 1e-6f);
+
+        mVertexData = ByteBuffer
+                .allocateDirect(mChunkVbo.length * CHUNK_VERTEX_COUNT * STRIDE).order(ByteOrder.nativeOrder());
+
+        WorkerPool.forRange(mChunkVbo.length, 4, new WorkerPool.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int chunk = start; chunk < end; chunk++) {
+                    fillChunk(chunk % mChunksX, chunk / mChunksX, minHeight, heightRange,
+                            mVertexData, chunk * CHUNK_VERTEX_COUNT * STRIDE, chunk * BOUNDS_PER_CHUNK);
+                }
+            }
+        });
+    }
+
+    private void fillChunk(int cx, int cz, float minHeight, float heightRange,
+                           ByteBuffer dest, int o, int boundsOffset) {
+        final float[] heights = mField.getHeights();
+        final float[] normals = mField.getNormals();
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+
+        for (int row = 0; row < CHUNK_VERTICES_PER_SIDE; row++) {
+            // chunks on the far edges run past the field; clamp, the extra triangles are flat
+            final int sz = Math.min(cz * CHUNK_CELLS + row, mDepth - 1);
+            for (int col = 0; col < CHUNK_VERTICES_PER_SIDE; col++) {
+                final int sx = Math.min(cx * CHUNK_CELLS + col, mWidth - 1);
+                final int sample = sz * mWidth + sx;
+                final float h = heights[sample];
+                final float y = h * mHeightScale;
+
+                // Position
+                dest.putFloat(o, mOriginX + sx * mCellSize);
+                dest.putFloat(o + 4, y);
+                dest.putFloat(o + 8, mOriginZ + sz * mCellSize);
+
+                // Normal
+                dest.putFloat(o + 12, normals[sample * 3]);
+                dest.putFloat(o + 16, normals[sample * 3 + 1]);
+                dest.putFloat(o + 20, normals[sample * 3 + 2]);
+
+                // Color by altitude
+                putColor(dest, o + 24, (h - minHeight) / heightRange);
+                o += STRIDE;
+
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+
+        final int lastX = Math.min((cx + 1) * CHUNK_CELLS, mWidth - 1);
+        final int lastZ = Math.min((cz + 1) * CHUNK_CELLS, mDepth - 1);
+        mChunkBounds[boundsOffset] = mOriginX + cx * CHUNK_CELLS * mCellSize;
+        mChunkBounds[boundsOffset + 1] = minY;
+        mChunkBounds[boundsOffset + 2] = mOriginZ + cz * CHUNK_CELLS * mCellSize;
+        mChunkBounds[boundsOffset + 3] = mOriginX + lastX * mCellSize;
+        mChunkBounds[boundsOffset + 4] = maxY;
+        mChunkBounds[boundsOffset + 5] = mOriginZ + lastZ * mCellSize;
+    }
+
+    /*
+     * grass, then rock, then snow
+     */
+    private static void putColor(ByteBuffer dest, int o, float t) {
+        float r, g, b;
+        if (t < 0.5f) {
+            float f = t / 0.5f;
+            r = 0.20f + f * (0.45f - 0.20f);
+            g = 0.40f + f * (0.36f - 0.40f);
+            b = 0.15f + f * (0.25f - 0.15f);
+        } else {
+            float f = (t - 0.5f) / 0.5f;
+            r = 0.45f + f * (0.95f - 0.45f);
+            g = 0.36f + f * (0.95f - 0.36f);
+            b = 0.25f + f * (0.95f - 0.25f);
+        }
+        dest.put(o, (byte) (r * 255f));
+        dest.put(o + 1, (byte) (g * 255f));
+        dest.put(o + 2, (byte) (b * 255f));
+        dest.put(o + 3, (byte) 255);
+    }
+
+    private float sample(int x, int z) {
+        return mField.getHeight(x, z);
+    }
+
+    /**
+     * Ground height under a world x, z - bilinear between samples,
+     * clamped to the edge of the field.
+     */
+    public float getHeightAt(float worldX, float worldZ) {
+        float fx = Math.max(0f, Math.min((worldX - mOriginX) / mCellSize, mWidth - 1));
+        float fz = Math.max(0f, Math.min((worldZ - mOriginZ) / mCellSize, mDepth - 1));
+        int x = Math.min((int) fx, mWidth - 2);
+        int z = Math.min((int) fz, mDepth - 2);
+        float tx = fx - x;
+        float tz = fz - z;
+        float top = sample(x, z) + (sample(x + 1, z) - sample(x, z)) * tx;
+        float bottom = sample(x, z + 1) + (sample(x + 1, z + 1) - sample(x, z + 1)) * tx;
+        return (top + (bottom - top) * tz) * mHeightScale;
+    }
+
+    /**
+     * Chunks closer than this to the eye get full detail; each doubling of
+     * the distance drops one level.
+     */
+    public void setLodDistance(float lodDistance) {
+        mLodDistance = lodDistance;
+    }
+
+    /*
+     * switches for comparing against the brute force version
+     */
+    public void setLodEnabled(boolean lodEnabled) {
+        mLodEnabled = lodEnabled;
+    }
+
+    public void setCullingEnabled(boolean cullingEnabled) {
+        mCullingEnabled = cullingEnabled;
+    }
+
+    /**
+     * Cull and choose detail levels for this frame.
+     * Call once per frame before render(), after the matrices are set.
+     *
+     * @param mvMatrix  Model-view matrix of the terrain; the eye is taken from its inverse.
+     * @param mvpMatrix Model-view-projection matrix of the terrain.
+     */
+    public void update(float[] mvMatrix, float[] mvpMatrix) {
+        mFrustum.extract(mvpMatrix);
+        Matrix.invertM(mInverseMV, 0, mvMatrix, 0);
+        final float eyeX = mInverseMV[12];
+        final float eyeY = mInverseMV[13];
+        final float eyeZ = mInverseMV[14];
+
+        mVisibleChunks = 0;
+        mCulledChunks = 0;
+
+        for (int chunk = 0; chunk < mChunkLod.length; chunk++) {
+            final int b = chunk * BOUNDS_PER_CHUNK;
+            mChunkVisible[chunk] = !mCullingEnabled || mFrustum.isBoxVisible(mChunkBounds, b);
+            if (mChunkVisible[chunk]) {
+                mVisibleChunks++;
+            } else {
+                mCulledChunks++;
+            }
+
+            // distance from the eye to the nearest point of the box
+            float dx = Math.max(0f, Math.max(mChunkBounds[b] - eyeX, eyeX - mChunkBounds[b + 3]));
+            float dy = Math.max(0f, Math.max(mChunkBounds[b + 1] - eyeY, eyeY - mChunkBounds[b + 4]));
+            float dz = Math.max(0f, Math.max(mChunkBounds[b + 2] - eyeZ, eyeZ - mChunkBounds[b + 5]));
+            float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+            int lod = 0;
+            float threshold = mLodDistance;
+            while (mLodEnabled && distance > threshold && lod < NUM_LODS - 1) {
+                lod++;
+                threshold *= 2f;
+            }
+            mChunkLod[chunk] = lod;
+        }
+
+        // levels only ever come down, so this settles
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int cz = 0; cz < mChunksZ; cz++) {
+                for (int cx = 0; cx < mChunksX; cx++) {
+                    final int chunk = cz * mChunksX + cx;
+                    int limit = NUM_LODS - 1;
+                    if (cz > 0) limit = Math.min(limit, mChunkLod[chunk - mChunksX] + 1);
+                    if (cz < mChunksZ - 1) limit = Math.min(limit, mChunkLod[chunk + mChunksX] + 1);
+                    if (cx > 0) limit = Math.min(limit, mChunkLod[chunk - 1] + 1);
+                    if (cx < mChunksX - 1) limit = Math.min(limit, mChunkLod[chunk + 1] + 1);
+                    if (mChunkLod[chunk] > limit) {
+                        mChunkLod[chunk] = limit;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private int stitchFlags(int cx, int cz, int lod) {
+        final int chunk = cz * mChunksX + cx;
+        int flags = 0;
+        if (cz > 0 && mChunkLod[chunk - mChunksX] > lod) flags |= STITCH_NORTH;
+        if (cx < mChunksX - 1 && mChunkLod[chunk + 1] > lod) flags |= STITCH_EAST;
+        if (cz < mChunksZ - 1 && mChunkLod[chunk + mChunksX] > lod) flags |= STITCH_SOUTH;
+        if (cx > 0 && mChunkLod[chunk - 1] > lod) flags |= STITCH_WEST;
+        return flags;
+    }
+
+    public void render(
+            int positionAttribute,
+            int colorAttribute,
+            int normalAttribute,
+            boolean doWireframeRendering) {
+
+        if (ibo[0] <= 0) {
+            return;
+        }
+
+        int todo;
+        if (doWireframeRendering) {
+            todo = GLES20.GL_LINE_STRIP;
+        } else {
+            todo = GLES20.GL_TRIANGLES;
+        }
+
+        GLState.enableVertexAttribArray(positionAttribute);
+        GLState.enableVertexAttribArray(normalAttribute);
+        GLState.enableVertexAttribArray(colorAttribute);
+        GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, ibo[0]);
+
+        mTrianglesDrawn = 0;
+        for (int cz = 0; cz < mChunksZ; cz++) {
+            for (int cx = 0; cx < mChunksX; cx++) {
+                final int chunk = cz * mChunksX + cx;
+                if (!mChunkVisible[chunk]) {
+                    continue;
+                }
+                final int lod = mChunkLod[chunk];
+                final int pattern = lod * NUM_STITCH_PATTERNS + stitchFlags(cx, cz, lod);
+
+                GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, mChunkVbo[chunk]);
+                GL.glVertexAttribPointer(positionAttribute, POSITION_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+                        STRIDE, 0);
+                GL.glVertexAttribPointer(normalAttribute, NORMAL_DATA_SIZE_IN_ELEMENTS, GLES20.GL_FLOAT, false,
+                        STRIDE, POSITION_DATA_SIZE_IN_ELEMENTS * BYTES_PER_FLOAT);
+                GL.glVertexAttribPointer(colorAttribute, COLOR_DATA_SIZE_IN_ELEMENTS, GLES20.GL_UNSIGNED_BYTE, true,
+                        STRIDE, (POSITION_DATA_SIZE_IN_ELEMENTS + NORMAL_DATA_SIZE_IN_ELEMENTS) * BYTES_PER_FLOAT);
+
+                FrameProfiler.drawElements(todo, mPatternCount[pattern], GLES20.GL_UNSIGNED_SHORT,
+                        mPatternOffset[pattern] * BYTES_PER_SHORT);
+                GLDebug.check("Terrain.render glDrawElements");
+                mTrianglesDrawn += mPatternCount[pattern] / 3;
+            }
+        }
+
+    }
+
+    public int getChunkCount() {
+        return mChunkLod.length;
+    }
+
+    public int getVisibleChunks() {
+        return mVisibleChunks;
+    }
+
+    public int getCulledChunks() {
+        return mCulledChunks;
+    }
+
+    public int getTrianglesDrawn() {
+        return mTrianglesDrawn;
+    }
+
+    public void release() {
+        if (mChunkVbo[0] > 0) {
+            GLState.deleteBuffers(mChunkVbo.length, mChunkVbo, 0);
+            for (int i = 0; i < mChunkVbo.length; i++) {
+                mChunkVbo[i] = 0;
+            }
+        }
+
+        if (ibo[0] > 0) {
+            GLState.deleteBuffers(ibo.length, ibo, 0);
+            ibo[0] = 0;
+        }
+    }
+}
@@ -25,6 +25,21 @@ package com.learnopengles.sandbox.objects;
 import android.os.SystemClock;
 import android.util.Log;
 
+import com.learnopengles.sandbox.common.WorkerPool;
+
+/*
+ * parallel generation:
+ *
+ * surface points live in one flat float[] (x,y,z per point, ring-major),
+ * so ring i / point j is at ((i * pointsPerRing) + j) * 3.  Each ring's
+ * points and each ring's band of triangles only depend on i, so both
+ * passes are split by ring across the WorkerPool.  Every task keeps its own
+ * scratch - nothing static is written during generation.
+ *
+ * The triangles for a band of rings are written straight into the
+ * BufferManager float array; bands are sized to fit, so the ring count is
+ * no longer limited by the array size.
+ */
 public class ToroidHelix {
     private static final String LOG_TAG = ToroidHelix.class.getSimpleName();
 
@@ -41,243 +56,254 @@ public class ToroidHelix {
 
     private static final float NORMAL_BRIGHTNESS_FACTOR = 7f;
 
-    private int mNumIndices = 0;
+    /* for smooth shaded helix, smaller steps - was phi_step = pi / 64, theta_step = pi / 8 */
+    public static final int DEFAULT_NUM_SEGMENTS = 128;
+    public static final int DEFAULT_NUM_SIDES = 16;
 
-    private BufferManager mBufMgr;
+    private static final int FLOATS_PER_QUAD = 2 * 3 * STRIDE_IN_FLOATS;
+    private static final int MIN_RINGS_PER_TASK = 8;
 
-    private static final int LINES = 259;     /* storage max for nx  */
-    // private static final int POINTS = 259;      /* storage max for ny */
-    private static final int POINTS = 20;      /* storage max for ny */
-    private static final int TRIS = 68000;      /* storage max for points   */
+    private static final float pi = 3.141592653589793238462643383279502884197f;
+    private static final float r1 = 8.0f;  /* major radius of torus */
+    private static final float r2 = 4.0f;  /* minor radius of torus */
+    private static final float r3 = 1.0f;  /* minor radius of helix */
+    private static final float F = 8.0f;  /* wrapping factor of r2 around r1 */
 
-    float raw_x[][] = new float[LINES][POINTS];
-    float raw_y[][] = new float[LINES][POINTS];
-    float raw_z[][] = new float[LINES][POINTS];
-    int raw_index[][] = new int[LINES][POINTS];
+    /* no surface point is further than this from the origin */
+    public static final float BOUNDING_RADIUS = r1 + r2 + r3;
 
-    static float[] v1 = new float[3];
-    static float[] v2 = new float[3];
-    static float[] v3 = new float[3];
-    static float[] n = new float[3];
+    private int mNumIndices = 0;
 
-    static int sCount;
+    private BufferManager mBufMgr;
 
     float[] mColor;
 
-    float[] vertexData;
-    int offset;
-
     public ToroidHelix(
             BufferManager mb,
             float[] color /*RGBA*/) {
+        this(mb, color, DEFAULT_NUM_SEGMENTS, DEFAULT_NUM_SIDES);
+    }
+
+    /**
+     * @param numSegments steps around the torus (the old nx - 1)
+     * @param numSides    steps around the helix cross section (the old ny - 1)
+     */
+    public ToroidHelix(
+            BufferManager mb,
+            float[] color /*RGBA*/,
+            int numSegments,
+            int numSides) {
 
         mBufMgr = mb;
         mColor = color;
-        sCount = 0;   // 12288 is normal count
 
-        vertexData = mBufMgr.getFloatArray(12288 * STRIDE_IN_FLOATS);
-        offset = mBufMgr.getFloatArrayIndex();
+        final int nx = numSegments + 1;
+        final int ny = numSides + 1;
+        final int floatsPerRing = numSides * FLOATS_PER_QUAD;
+        if (numSegments < 1 || numSides < 1 || floatsPerRing > BufferManager.getFloatArrayCapacity()) {
+            throw new IllegalArgumentException("ToroidHelix: bad resolution " + numSegments + " x " + numSides);
+        }
 
-        float start_time = SystemClock.uptimeMillis();
+        long start_time = SystemClock.uptimeMillis();
         Log.w(LOG_TAG, "start calculation");
 
-//        int[] tri_raw_p1 = new int[TRIS];
-//        int[] tri_raw_p2 = new int[TRIS];
-//        int[] tri_raw_p3 = new int[TRIS];
+        final float[] points = calculateSurfacePoints(nx, ny, true);
+
+        /*
+         * now build set of points defining surface, a band of rings at a time -
+         *   as many rings as will fit in what is left of the buffer manager's array
+         */
+        int ring = 0;
+        int vertexCount = 0;
+        while (ring < numSegments) {
+            int ringsInBand = Math.min(numSegments - ring,
+                    BufferManager.getFloatArrayCapacity() / floatsPerRing);
+            int floatsInBand = ringsInBand * floatsPerRing;
+
+            float[] vertexData = mBufMgr.getFloatArray(floatsInBand);
+            int offset = mBufMgr.getFloatArrayIndex();
+
+            generateTriangles(points, ny, ring, ring + ringsInBand, mColor, vertexData, offset, true);
+
+            BufferManager.setFloatArrayIndex(offset + floatsInBand);
+            vertexCount += floatsInBand / STRIDE_IN_FLOATS;
+            ring += ringsInBand;
+        }
+
+        float elapsed_time = (SystemClock.uptimeMillis() - start_time) / 1000f;
+        String pretty_print = String.format("%6.3f", elapsed_time);
+        Log.w(LOG_TAG, "end calculating in " + pretty_print + " seconds, count is " + vertexCount
+                + " on " + WorkerPool.getParallelism() + " cores");
+
+        mNumIndices = vertexCount;
+    }
+
+    /**
+     * Number of floats generateTriangles() writes for the given resolution.
+     */
+    public static int getFloatCount(int numSegments, int numSides) {
+        return numSegments * numSides * FLOATS_PER_QUAD;
+    }
+
+    /**
+     * The packed XYZ + Normal + RGBA vertices in an array of their own, for callers
+     * that transform or replicate the helix instead of handing it to the BufferManager.
+     */
+    public static float[] generateVertexData(float[] color, int numSegments, int numSides) {
+        final float[] points = calculateSurfacePoints(numSegments + 1, numSides + 1, true);
+        final float[] vertexData = new float[getFloatCount(numSegments, numSides)];
+        generateTriangles(points, numSides + 1, 0, numSegments, color, vertexData, 0, true);
+        return vertexData;
+    }
 
-        float phi, theta;
-        float phi1, theta1;
-        int i, j;
-        int points, polys;
+    /**
+     * Walk around the torus at radius r1, and around that at r2;
+     * x1+x2 is the center of the generated figure, x3 the skin around it.
+     *
+     * @param nx       number of rings (first and last coincide)
+     * @param ny       points per ring (first and last coincide)
+     * @param parallel split the rings across the WorkerPool
+     * @return flat x,y,z per point, ring-major
+     */
+    public static float[] calculateSurfacePoints(final int nx, final int ny, boolean parallel) {
+        final float[] points = new float[nx * ny * 3];
+        final float phi_step = 2f * pi / (nx - 1);
+        final float theta_step = 2f * pi / (ny - 1);
+
+        WorkerPool.forRange(nx, MIN_RINGS_PER_TASK, parallel ? WorkerPool.getParallelism() : 1,
+                new WorkerPool.RangeTask() {
+                    @Override
+                    public void run(int start, int end) {
+                        for (int i = start; i < end; i++) {
+                            calculateRing(i * phi_step, theta_step, ny, points, i * ny * 3);
+                        }
+                    }
+                });
+        return points;
+    }
+
+    private static void calculateRing(float phi, float theta_step, int ny, float[] points, int offset) {
         float x1, y1, z1;
         float x2, y2, z2;
         float x3, y3, z3;
         float x2d, y2d, z2d, r2d, r2n;
         float vx2, vy2, vz2;
         float rx2, ry2, rz2;
-        float pi = 3.141592653589793238462643383279502884197f;
-        float r1 = 8.0f;  /* major radius of torus */
-        float r2 = 4.0f;  /* minor radius of torus */
-        float r3 = 1.0f;  /* minor radius of helix */
-        float F = 8.0f;  /* wrapping factor of r2 around r1 */
-
-/*   for big helix  */
-//        float phi_step = pi / 128.0f;
-//        int nx = 257;
-//
-//        float theta_step = pi / 8.0f;
-//        int ny = 17;
+        float theta;
 
-/* for smooth shaded helix, smaller steps */
-        float phi_step = pi / 64.0f;
-        int nx = 129;
-        float theta_step = pi / 8.0f;
-        int ny = 17;
+        float sinPhi = (float) Math.sin(phi);
+        float cosPhi = (float) Math.cos(phi);
+        float sinPhiF = (float) Math.sin(phi * F);
+        float cosPhiF = (float) Math.cos(phi * F);
 
-        points = 1; /* that is the standard */
+        x1 = r1 * sinPhi;
+        y1 = r1 * cosPhi;
+        z1 = 0.0f;
 
-        /* loop around toride at radius r2, around that at r2 */
-        /* this makes x1+x2, the center of the generated figure */
-
-        phi1 = 0.0f;
-        for (i = 0; i < nx; i++)   {
-            phi = phi1;
-            phi1 = phi1 + phi_step;
-            x1 = r1 * (float) Math.sin(phi);
-            y1 = r1 * (float) Math.cos(phi);
-            z1 = 0.0f;
-
-            x2 = x1 + r2 * (float) Math.sin(phi) * (float) Math.cos(phi * F); /* F is number of helix loops */
-            y2 = y1 + r2 * (float) Math.cos(phi) * (float) Math.cos(phi * F);
-            z2 = z1 + r2 * (float) Math.sin(phi * F);
+        x2 = x1 + r2 * sinPhi * cosPhiF; /* F is number of helix loops */
+        y2 = y1 + r2 * cosPhi * cosPhiF;
+        z2 = z1 + r2 * sinPhiF;
 
 /* the derivative of x1+x2 to get velocity vector direction */
-            x2d = r1 * (float) Math.cos(phi) + r2 * (float) Math.cos(phi) * (float) Math.cos(phi * F) - F * r2 * (float) Math.sin(phi) * (float) Math.sin(phi * F);
-            y2d = -r1 * (float) Math.sin(phi) - r2 * (float) Math.sin(phi) * (float) Math.cos(phi * F) - F * r2 * (float) Math.cos(phi) * (float) Math.sin(phi * F);
-            z2d = F * r2 * (float) Math.cos(phi * F);
-            r2d = (float) Math.sqrt(x2d * x2d + y2d * y2d + z2d * z2d); /* normalize */
-            x2d = x2d / r2d;
-            y2d = y2d / r2d;
-            z2d = z2d / r2d;
+        x2d = r1 * cosPhi + r2 * cosPhi * cosPhiF - F * r2 * sinPhi * sinPhiF;
+        y2d = -r1 * sinPhi - r2 * sinPhi * cosPhiF - F * r2 * cosPhi * sinPhiF;
+        z2d = F * r2 * cosPhiF;
+        r2d = (float) Math.sqrt(x2d * x2d + y2d * y2d + z2d * z2d); /* normalize */
+        x2d = x2d / r2d;
+        y2d = y2d / r2d;
+        z2d = z2d / r2d;
 
 /* r2,x2,y2,z2 only, thus subtract out r1,x1,y1,z1 */
-            r2n = (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1) + (z2 - z1) * (z2 - z1));
-            rx2 = (x2 - x1) / r2n;
-            ry2 = (y2 - y1) / r2n;
-            rz2 = (z2 - z1) / r2n; /* now have r2 vector, normal to velocity */
-
-            vx2 = ry2 * z2d - rz2 * y2d; /* cross product */
-            vy2 = rz2 * x2d - rx2 * z2d;
-            vz2 = rx2 * y2d - ry2 * x2d; /* this and r2 vector define plane of cross section */
-
-            theta1 = 0.0f;
-            for (j = 0; j < ny; j++)  /* walk around cross section generating skin */ {
-                theta = theta1;
-                theta1 = theta1 + theta_step;
-                x3 = r3 * (rx2 * (float) Math.cos(theta) + vx2 * (float) Math.sin(theta));
-                y3 = r3 * (ry2 * (float) Math.cos(theta) + vy2 * (float) Math.sin(theta));
-                z3 = r3 * (rz2 * (float) Math.cos(theta) + vz2 * (float) Math.sin(theta));
-
-                raw_x[i][j] = x2 + x3;  /* actually sum of x1+x2+x3, the final point on surface */
-                raw_y[i][j] = y2 + y3;
-                raw_z[i][j] = z2 + z3;
-
-                raw_index[i][j] = points;
-                points++;
-            }
-        }
-        points--;
-
-
-        polys = 0;             /* now build set of points defining surface */
-//        for (i = 0; i < (nx - 1); i++) {
-///* reuse last point of i and j as first point */
-//            for (j = 0; j < (ny - 1); j++) {
-//                tri_raw_p1[polys] = raw_index[i][j];
-//                tri_raw_p2[polys] = raw_index[i][j + 1];
-//                tri_raw_p3[polys] = raw_index[i + 1][j + 1];
-//                polys++;
-//                tri_raw_p1[polys] = raw_index[i][j];
-//                tri_raw_p2[polys] = raw_index[i + 1][j + 1];
-//                tri_raw_p3[polys] = raw_index[i + 1][j];
-//                polys++;
-//            }
-//        }
-
-//        for (i = 0; i < nx; i++) {  /* loop around toride at radius r2, around that at r2 */
-//            for (i = 0; i < polys; i++) {  /* now output 3 point polygons */
-////                Log.w(LOG_TAG, "indx are "
-////                        + tri_raw_p1[i] + " "
-////                        + tri_raw_p2[i] + " "
-////                        + tri_raw_p3[i]);
-//            }
-//        }
-
-        polys = 0;             /* now build set of points defining surface */
-        for (i = 0; i < (nx - 1); i++) {
-/* reuse last point of i and j as first point */
-            for (j = 0; j < (ny - 1); j++) {
-//                add_to_buffer(raw_index[i][j], ny);
-//                add_to_buffer(raw_index[i][j + 1], ny);
-//                add_to_buffer(raw_index[i + 1][j + 1], ny);
-                // reverse 2 and 3 winding
-//                add_to_buffer(raw_index[i][j], ny);
-//                add_to_buffer(raw_index[i + 1][j + 1], ny);
-//                add_to_buffer(raw_index[i][j + 1], ny);
-
-                triangle(
-                        raw_index[i][j],
-                        raw_index[i + 1][j + 1],
-                        raw_index[i][j + 1],
-                        ny
-                );
-
-                polys++;
-//                add_to_buffer(raw_index[i][j], ny);
-//                add_to_buffer(raw_index[i + 1][j + 1], ny);
-//                add_to_buffer(raw_index[i + 1][j], ny);
-                // reverse 2 and 3 winding
-//                add_to_buffer(raw_index[i][j], ny);
-//                add_to_buffer(raw_index[i + 1][j], ny);
-//                add_to_buffer(raw_index[i + 1][j + 1], ny);
-
-                triangle(
-                        raw_index[i][j],
-                        raw_index[i + 1][j],
-                        raw_index[i + 1][j + 1],
-                        ny
-                );
-
-                polys++;
-            }
+        r2n = (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1) + (z2 - z1) * (z2 - z1));
+        rx2 = (x2 - x1) / r2n;
+        ry2 = (y2 - y1) / r2n;
+        rz2 = (z2 - z1) / r2n; /* now have r2 vector, normal to velocity */
+
+        vx2 = ry2 * z2d - rz2 * y2d; /* cross product */
+        vy2 = rz2 * x2d - rx2 * z2d;
+        vz2 = rx2 * y2d - ry2 * x2d; /* this and r2 vector define plane of cross section */
+
+        for (int j = 0; j < ny; j++)  /* walk around cross section generating skin */ {
+            theta = j * theta_step;
+            float cosTheta = (float) Math.cos(theta);
+            float sinTheta = (float) Math.sin(theta);
+            x3 = r3 * (rx2 * cosTheta + vx2 * sinTheta);
+            y3 = r3 * (ry2 * cosTheta + vy2 * sinTheta);
+            z3 = r3 * (rz2 * cosTheta + vz2 * sinTheta);
+
+            points[offset++] = x2 + x3;  /* actually sum of x1+x2+x3, the final point on surface */
+            points[offset++] = y2 + y3;
+            points[offset++] = z2 + z3;
         }
-
-        float elapsed_time = (SystemClock.uptimeMillis() - start_time) / 1000;
-        String pretty_print = String.format("%6.2f", elapsed_time);
-        Log.w(LOG_TAG, "end calculating in " + pretty_print + " seconds, count is " + sCount);
-
-        mNumIndices = offset;
-        mBufMgr.setFloatArrayIndex(offset);
     }
 
-    private void triangle(int t1_index, int t2_index, int t3_index, int blocking) {
-        t1_index--;
-        t2_index--;
-        t3_index--;
-        v1[0] = raw_x[t1_index / blocking][t1_index % blocking];
-        v1[1] = raw_y[t1_index / blocking][t1_index % blocking];
-        v1[2] = raw_z[t1_index / blocking][t1_index % blocking];
-
-        v2[0] = raw_x[t2_index / blocking][t2_index % blocking];
-        v2[1] = raw_y[t2_index / blocking][t2_index % blocking];
-        v2[2] = raw_z[t2_index / blocking][t2_index % blocking];
-
-        v3[0] = raw_x[t3_index / blocking][t3_index % blocking];
-        v3[1] = raw_y[t3_index / blocking][t3_index % blocking];
-        v3[2] = raw_z[t3_index / blocking][t3_index % blocking];
-
-        n = XYZ.getNormal(v1, v2, v3);
+    /**
+     * Assemble the TRIs between ring firstRing and ring lastRing (exclusive, each
+     * ring also uses ring + 1) into dest as packed XYZ + Normal + RGBA.
+     * Ring i's triangles always land at the same place, so ranges of rings can
+     * be filled concurrently.
+     */
+    public static void generateTriangles(
+            final float[] points,
+            final int ny,
+            final int firstRing,
+            final int lastRing,
+            final float[] color,
+            final float[] dest,
+            final int destOffset,
+            boolean parallel) {
+
+        final int floatsPerRing = (ny - 1) * FLOATS_PER_QUAD;
+
+        WorkerPool.forRange(lastRing - firstRing, MIN_RINGS_PER_TASK,
+                parallel ? WorkerPool.getParallelism() : 1,
+                new WorkerPool.RangeTask() {
+                    @Override
+                    public void run(int start, int end) {
+                        // per task scratch
+                        final float[] n = new float[3];
+                        int offset = destOffset + start * floatsPerRing;
+                        for (int i = firstRing + start; i < firstRing + end; i++) {
+                            for (int j = 0; j < (ny - 1); j++) {
+                                int p00 = (i * ny + j) * 3;
+                                int p01 = (i * ny + j + 1) * 3;
+                                int p10 = ((i + 1) * ny + j) * 3;
+                                int p11 = ((i + 1) * ny + j + 1) * 3;
+                                // reverse 2 and 3 winding
+                                offset = triangle(points, p00, p11, p01, n, color, dest, offset);
+                                offset = triangle(points, p00, p10, p11, n, color, dest, offset);
+                            }
+                        }
+                    }
+                });
+    }
 
-        add_to_buffer(v1);
-        add_to_buffer(v2);
-        add_to_buffer(v3);
+    private static int triangle(float[] points, int p1, int p2, int p3,
+                                float[] n, float[] color, float[] dest, int offset) {
+        XYZ.getNormal(points, p1, p2, p3, n, 0);
 
+        offset = add_to_buffer(points, p1, n, color, dest, offset);
+        offset = add_to_buffer(points, p2, n, color, dest, offset);
+        offset = add_to_buffer(points, p3, n, color, dest, offset);
+        return offset;
     }
-    private void add_to_buffer(float[] v) {
 
-        vertexData[offset++] = v[0];
-        vertexData[offset++] = v[1];
-        vertexData[offset++] = v[2];
+    private static int add_to_buffer(float[] points, int p, float[] n, float[] color, float[] dest, int offset) {
+
+        dest[offset++] = points[p];
+        dest[offset++] = points[p + 1];
+        dest[offset++] = points[p + 2];
 
-        vertexData[offset++] = n[0] * NORMAL_BRIGHTNESS_FACTOR;
-        vertexData[offset++] = n[1] * NORMAL_BRIGHTNESS_FACTOR;
-        vertexData[offset++] = n[2] * NORMAL_BRIGHTNESS_FACTOR;
+        dest[offset++] = n[0] * NORMAL_BRIGHTNESS_FACTOR;
+        dest[offset++] = n[1] * NORMAL_BRIGHTNESS_FACTOR;
+        dest[offset++] = n[2] * NORMAL_BRIGHTNESS_FACTOR;
 
         // color value
-        vertexData[offset++] = mColor[0];
-        vertexData[offset++] = mColor[1];
-        vertexData[offset++] = mColor[2];
-        vertexData[offset++] = mColor[3];
+        dest[offset++] = color[0];
+        dest[offset++] = color[1];
+        dest[offset++] = color[2];
+        dest[offset++] = color[3];
+        return offset;
     }
 }
 
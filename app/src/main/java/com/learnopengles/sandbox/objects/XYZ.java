@@ -14,6 +14,9 @@ public class XYZ {
 
     /*
      * note:  NOT thread safe!
+     *   the result is the shared static T - copy it out before the next call.
+     *   Geometry code that may run on the WorkerPool should use the
+     *   offset / stride versions below instead.
      */
     // https://www.opengl.org/wiki/Calculating_a_Surface_Normal
     public static float[] getNormal(float[] p1, float[] p2, float[] p3) {
@@ -42,6 +45,203 @@ public class XYZ {
         return T;
     }
 
+    /*
+     * Packed array versions.
+     *
+     * Everything below reads and writes only the caller's arrays: vectors are
+     * addressed as (array, offset) with x,y,z at offset, offset+1, offset+2.
+     * No allocation and no static state, so these are safe to call from any
+     * number of threads at once as long as the threads write to different
+     * parts of the output.
+     *
+     * A zero length normal (degenerate triangle) comes back as 0,0,0 rather
+     * than NaN.
+     */
+
+    /**
+     * Unit normal of triangle p1, p2, p3 (counter clockwise) into out.
+     */
+    public static void getNormal(
+            float[] p1, int p1Offset,
+            float[] p2, int p2Offset,
+            float[] p3, int p3Offset,
+            float[] out, int outOffset) {
+        float ux = p2[p2Offset] - p1[p1Offset];
+        float uy = p2[p2Offset + 1] - p1[p1Offset + 1];
+        float uz = p2[p2Offset + 2] - p1[p1Offset + 2];
+
+        float vx = p3[p3Offset] - p1[p1Offset];
+        float vy = p3[p3Offset + 1] - p1[p1Offset + 1];
+        float vz = p3[p3Offset + 2] - p1[p1Offset + 2];
+
+        setNormalized(uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx, out, outOffset);
+    }
+
+    /**
+     * Unit normal of the triangle whose corners are at p1, p2 and p3 in one
+     * packed vertex array.
+     */
+    public static void getNormal(float[] vertices, int p1, int p2, int p3, float[] out, int outOffset) {
+        getNormal(vertices, p1, vertices, p2, vertices, p3, out, outOffset);
+    }
+
+    /**
+     * out = a X b
+     */
+    public static void cross(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset) {
+        float x = a[aOffset + 1] * b[bOffset + 2] - a[aOffset + 2] * b[bOffset + 1];
+        float y = a[aOffset + 2] * b[bOffset] - a[aOffset] * b[bOffset + 2];
+        float z = a[aOffset] * b[bOffset + 1] - a[aOffset + 1] * b[bOffset];
+        out[outOffset] = x;
+        out[outOffset + 1] = y;
+        out[outOffset + 2] = z;
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        return a[aOffset] * b[bOffset] + a[aOffset + 1] * b[bOffset + 1] + a[aOffset + 2] * b[bOffset + 2];
+    }
+
+    public static float length(float[] v, int offset) {
+        return (float) Math.sqrt(dot(v, offset, v, offset));
+    }
+
+    /**
+     * Normalize the vector at v[offset] in place.
+     */
+    public static void normalize(float[] v, int offset) {
+        setNormalized(v[offset], v[offset + 1], v[offset + 2], v, offset);
+    }
+
+    /**
+     * Normalize count vectors in place, starting at offset, stride floats apart.
+     */
+    public static void normalize(float[] v, int offset, int stride, int count) {
+        for (int i = 0; i < count; i++, offset += stride) {
+            setNormalized(v[offset], v[offset + 1], v[offset + 2], v, offset);
+        }
+    }
+
+    /**
+     * Face normals for an unindexed triangle list.
+     *
+     * @param vertices       packed vertex data, position in the first three floats of each vertex
+     * @param vertexOffset   where the first vertex starts
+     * @param vertexStride   floats from one vertex to the next
+     * @param triangleCount  number of triangles (3 consecutive vertices each)
+     * @param normals        output
+     * @param normalOffset   where the first triangle's normal goes
+     * @param normalStride   floats from one triangle's normal to the next
+     */
+    public static void getTriangleNormals(
+            float[] vertices, int vertexOffset, int vertexStride,
+            int triangleCount,
+            float[] normals, int normalOffset, int normalStride) {
+        int p1 = vertexOffset;
+        for (int t = 0; t < triangleCount; t++) {
+            int p2 = p1 + vertexStride;
+            int p3 = p2 + vertexStride;
+            getNormal(vertices, p1, vertices, p2, vertices, p3, normals, normalOffset);
+            normalOffset += normalStride;
+            p1 = p3 + vertexStride;
+        }
+    }
+
+    /**
+     * Face normals for every triangle in an index buffer, GL_TRIANGLES order.
+     *
+     * @param indices        three indices per triangle; index i is vertex vertexOffset + i * vertexStride
+     * @param indexOffset    first index to use
+     * @param triangleCount  number of triangles
+     */
+    public static void getTriangleNormals(
+            float[] vertices, int vertexOffset, int vertexStride,
+            int[] indices, int indexOffset, int triangleCount,
+            float[] normals, int normalOffset, int normalStride) {
+        for (int t = 0; t < triangleCount; t++) {
+            int p1 = vertexOffset + indices[indexOffset++] * vertexStride;
+            int p2 = vertexOffset + indices[indexOffset++] * vertexStride;
+            int p3 = vertexOffset + indices[indexOffset++] * vertexStride;
+            getNormal(vertices, p1, vertices, p2, vertices, p3, normals, normalOffset);
+            normalOffset += normalStride;
+        }
+    }
+
+    /**
+     * As above, for a short (GL_UNSIGNED_SHORT) index buffer.
+     */
+    public static void getTriangleNormals(
+            float[] vertices, int vertexOffset, int vertexStride,
+            short[] indices, int indexOffset, int triangleCount,
+            float[] normals, int normalOffset, int normalStride) {
+        for (int t = 0; t < triangleCount; t++) {
+            int p1 = vertexOffset + (indices[indexOffset++] & 0xffff) * vertexStride;
+            int p2 = vertexOffset + (indices[indexOffset++] & 0xffff) * vertexStride;
+            int p3 = vertexOffset + (indices[indexOffset++] & 0xffff) * vertexStride;
+            getNormal(vertices, p1, vertices, p2, vertices, p3, normals, normalOffset);
+            normalOffset += normalStride;
+        }
+    }
+
+    /**
+     * Smooth per-vertex normals for an indexed triangle list: every face normal
+     * is added into its three vertices, then the sums are normalized.
+     * The normals are written into the vertex data itself, normalOffsetInVertex
+     * floats into each vertex - e.g. 3 for our XYZ + Normal + RGBA packing.
+     * Existing normal values are overwritten.
+     */
+    public static void getVertexNormals(
+            float[] vertices, int vertexOffset, int vertexStride, int vertexCount,
+            int normalOffsetInVertex,
+            int[] indices, int indexOffset, int triangleCount) {
+        int n = vertexOffset + normalOffsetInVertex;
+        for (int i = 0; i < vertexCount; i++, n += vertexStride) {
+            vertices[n] = 0f;
+            vertices[n + 1] = 0f;
+            vertices[n + 2] = 0f;
+        }
+
+        for (int t = 0; t < triangleCount; t++) {
+            int p1 = vertexOffset + indices[indexOffset++] * vertexStride;
+            int p2 = vertexOffset + indices[indexOffset++] * vertexStride;
+            int p3 = vertexOffset + indices[indexOffset++] * vertexStride;
+
+            float ux = vertices[p2] - vertices[p1];
+            float uy = vertices[p2 + 1] - vertices[p1 + 1];
+            float uz = vertices[p2 + 2] - vertices[p1 + 2];
+            float vx = vertices[p3] - vertices[p1];
+            float vy = vertices[p3 + 1] - vertices[p1 + 1];
+            float vz = vertices[p3 + 2] - vertices[p1 + 2];
+
+            // un-normalized, so bigger faces weigh more
+            float nx = uy * vz - uz * vy;
+            float ny = uz * vx - ux * vz;
+            float nz = ux * vy - uy * vx;
+
+            p1 += normalOffsetInVertex;
+            p2 += normalOffsetInVertex;
+            p3 += normalOffsetInVertex;
+            vertices[p1] += nx; vertices[p1 + 1] += ny; vertices[p1 + 2] += nz;
+            vertices[p2] += nx; vertices[p2 + 1] += ny; vertices[p2 + 2] += nz;
+            vertices[p3] += nx; vertices[p3 + 1] += ny; vertices[p3 + 2] += nz;
+        }
+
+        normalize(vertices, vertexOffset + normalOffsetInVertex, vertexStride, vertexCount);
+    }
+
+    private static void setNormalized(float x, float y, float z, float[] out, int outOffset) {
+        float mag = (float) Math.sqrt(x * x + y * y + z * z);
+        if (mag > 0f) {
+            float inv = 1f / mag;
+            out[outOffset] = x * inv;
+            out[outOffset + 1] = y * inv;
+            out[outOffset + 2] = z * inv;
+        } else {
+            out[outOffset] = 0f;
+            out[outOffset + 1] = 0f;
+            out[outOffset + 2] = 0f;
+        }
+    }
+
 
 /*
 Reference:
@@ -74,136 +274,4 @@ Begin Function CalculateSurfaceNormal (Input Triangle) Returns Vector
 
 End Function
 */
-    
-    
-    /*
-     * Shaders
-     */
-
-    /*
-     * note - I remove the square function on the illumination fall-off
-     * Things were just too dark.   Look for the following term commented out.  - jim a
-     *  "* distance"
-     *  Also upped the diffuse to 0.6 as a base.
-     */
-    public String getVertexShaderLesson2() {
-        // Vertex Shader from lesson 2
-        //    does all the lighting in the vertex shader - fragment shader just passes through
-        //  the color calculation
-        // TODO: Explain why we normalize the vectors, explain some of the vector math behind it all. Explain what is eye space.
-        final String vertexShaderAllTheCalcsAreHere =
-                "uniform mat4 u_MVPMatrix;      \n"        // A constant representing the combined model/view/projection matrix.
-                        + "uniform mat4 u_MVMatrix;       \n"        // A constant representing the combined model/view matrix.
-                        + "uniform vec3 u_LightPos;       \n"        // The position of the light in eye space.
-
-                        + "attribute vec4 a_Position;     \n"        // Per-vertex position information we will pass in.
-                        + "attribute vec4 a_Color;        \n"        // Per-vertex color information we will pass in.
-                        + "attribute vec3 a_Normal;       \n"        // Per-vertex normal information we will pass in.
-
-                        + "varying vec4 v_Color;          \n"        // This will be passed into the fragment shader.
-
-                        + "void main()                    \n"    // The entry point for our vertex shader.
-                        + "{                              \n"
-                        // Transform the vertex into eye space.
-                        + "   vec3 modelViewVertex = vec3(u_MVMatrix * a_Position);              \n"
-                        // Transform the normal's orientation into eye space.
-                        + "   vec3 modelViewNormal = vec3(u_MVMatrix * vec4(a_Normal, 0.0));     \n"
-                        // Will be used for attenuation.
-                        + "   float distance = length(u_LightPos - modelViewVertex);             \n"
-                        // Get a lighting direction vector from the light to the vertex.
-                        + "   vec3 lightVector = normalize(u_LightPos - modelViewVertex);        \n"
-                        // Calculate the dot product of the light vector and vertex normal. If the normal and light vector are
-                        // pointing in the same direction then it will get max illumination. *** was 0.1, now *** 0.6
-                        + "   float diffuse = max(dot(modelViewNormal, lightVector), 0.6);       \n"
-                        // Attenuate the light based on distance.
-                        //  + "   diffuse = diffuse * (1.0 / (1.0 + (0.25 * distance * distance )));  \n"
-                        + "   diffuse = diffuse * (1.0 / (1.0 + (0.25 * distance /* * distance */)));  \n"
-                        // HACK: minimal level of diffuse for ambient
-                        // result - blew out the highlihts, didn't bring up the shadows as expected
-                        //   + "   diffuse = min(diffuse, 0.2);  \n"
-                        // Multiply the color by the illumination level. It will be interpolated across the triangle.
-                        + "   v_Color = a_Color * diffuse;                                       \n"
-                        // gl_Position is a special variable used to store the final position.
-                        // Multiply the vertex by the matrix to get the final point in normalized screen coordinates.
-                        + "   gl_Position = u_MVPMatrix * a_Position;                            \n"
-                        + "}                                                                     \n";
-
-        return vertexShaderAllTheCalcsAreHere;
-    }
-
-    public String getFragmentShaderLesson2() {
-        final String fragmentShaderJustPassesThroughColor =
-                "precision mediump float;       \n"        // Set the default precision to medium. We don't need as high of a
-                        // precision in the fragment shader.
-                        + "varying vec4 v_Color;          \n"        // This is the color from the vertex shader interpolated across the
-                        // triangle per fragment.
-                        + "void main()                    \n"        // The entry point for our fragment shader.
-                        + "{                              \n"
-                        + "   gl_FragColor = v_Color;     \n"        // Pass the color directly through the pipeline.
-                        + "}                              \n";
-
-        return fragmentShaderJustPassesThroughColor;
-    }
-
-    public String getVertexShaderLesson3() {
-        // Define our per-pixel lighting shader.
-        final String perPixelVertexShader =
-                "uniform mat4 u_MVPMatrix;      \n"        // A constant representing the combined model/view/projection matrix.
-                        + "uniform mat4 u_MVMatrix;       \n"        // A constant representing the combined model/view matrix.
-
-                        + "attribute vec4 a_Position;     \n"        // Per-vertex position information we will pass in.
-                        + "attribute vec4 a_Color;        \n"        // Per-vertex color information we will pass in.
-                        + "attribute vec3 a_Normal;       \n"        // Per-vertex normal information we will pass in.
-
-                        + "varying vec3 v_Position;       \n"        // This will be passed into the fragment shader.
-                        + "varying vec4 v_Color;          \n"        // This will be passed into the fragment shader.
-                        + "varying vec3 v_Normal;         \n"        // This will be passed into the fragment shader.
-
-                        // The entry point for our vertex shader.
-                        + "void main()                                                \n"
-                        + "{                                                          \n"
-                        // Transform the vertex into eye space.
-                        + "   v_Position = vec3(u_MVMatrix * a_Position);             \n"
-                        // Pass through the color.
-                        + "   v_Color = a_Color;                                      \n"
-                        // Transform the normal's orientation into eye space.
-                        + "   v_Normal = vec3(u_MVMatrix * vec4(a_Normal, 0.0));      \n"
-                        // gl_Position is a special variable used to store the final position.
-                        // Multiply the vertex by the matrix to get the final point in normalized screen coordinates.
-                        + "   gl_Position = u_MVPMatrix * a_Position;                 \n"
-                        + "}                                                          \n";
-
-        return perPixelVertexShader;
-    }
-
-    public String getFragmentShaderLesson3() {
-        final String perPixelFragmentShader =
-                "precision mediump float;       \n"        // Set the default precision to medium. We don't need as high of a
-                        // precision in the fragment shader.
-                        + "uniform vec3 u_LightPos;       \n"        // The position of the light in eye space.
-
-                        + "varying vec3 v_Position;		\n"        // Interpolated position for this fragment.
-                        + "varying vec4 v_Color;          \n"        // This is the color from the vertex shader interpolated across the
-                        // triangle per fragment.
-                        + "varying vec3 v_Normal;         \n"        // Interpolated normal for this fragment.
-
-                        // The entry point for our fragment shader.
-                        + "void main()                    \n"
-                        + "{                              \n"
-                        // Will be used for attenuation.
-                        + "   float distance = length(u_LightPos - v_Position);                  \n"
-                        // Get a lighting direction vector from the light to the vertex.
-                        + "   vec3 lightVector = normalize(u_LightPos - v_Position);             \n"
-                        // Calculate the dot product of the light vector and vertex normal. If the normal and light vector are
-                        // pointing in the same direction then it will get max illumination.  *** was 0.1, now *** 0.6
-                        + "   float diffuse = max(dot(v_Normal, lightVector), 0.1);              \n"
-                        // Add attenuation.
-                        // + "   diffuse = diffuse * (1.0 / (1.0 + (0.25 * distance /* * distance */)));  \n"
-                        // Multiply the color by the diffuse illumination level to get final output color.
-                        + "   gl_FragColor = v_Color * diffuse;                                  \n"
-                        + "}                                                                     \n";
-
-        return perPixelFragmentShader;
-    }
-
-}
\ No newline at end of file
+}
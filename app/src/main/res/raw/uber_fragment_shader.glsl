@@ -0,0 +1,37 @@
+// Fragment shader for every variant - see ShaderVariants for the feature #defines.
+// ShaderVariants sets the precision ahead of uber_lighting, so it is not set here.
+//   USE_TEXTURE          multiply by u_Texture
+//   PER_PIXEL_LIGHTING   lighting() from uber_lighting, per fragment
+//   TWO_SIDED_LIGHTING   back faces lit with the normal flipped (per pixel only)
+
+varying vec4 v_Color;          	// Color from the vertex shader, already lit if lighting is per vertex.
+#ifdef PER_PIXEL_LIGHTING
+varying vec3 v_Position;		// Interpolated position for this fragment.
+varying vec3 v_Normal;         	// Interpolated normal for this fragment.
+#endif
+#ifdef USE_TEXTURE
+uniform sampler2D u_Texture;    // The input texture.
+varying vec2 v_TexCoordinate;   // Interpolated texture coordinate per fragment.
+#endif
+
+// The entry point for our fragment shader.
+void main()
+{
+	vec4 color = v_Color;
+
+#ifdef PER_PIXEL_LIGHTING
+#ifdef TWO_SIDED_LIGHTING
+	vec3 normal = gl_FrontFacing ? v_Normal : -v_Normal;
+#else
+	vec3 normal = v_Normal;
+#endif
+	// Multiply the color by the diffuse illumination level.
+	color = color * lighting(v_Position, normal);
+#endif
+
+#ifdef USE_TEXTURE
+	color = color * texture2D(u_Texture, v_TexCoordinate);
+#endif
+
+	gl_FragColor = color;
+}
@@ -0,0 +1,42 @@
+// Point light shared by the uber shaders. ShaderVariants puts this in front of the
+// vertex shader for per-vertex lighting, or the fragment shader for per-pixel.
+//
+// Each renderer can override the constants to keep its own look:
+//   diffuse = max(N . L, LIGHT_MIN_DIFFUSE)
+//   diffuse = diffuse / (LIGHT_ATTENUATION_CONSTANT + LIGHT_ATTENUATION_LINEAR * distance)   (USE_ATTENUATION)
+//   light   = diffuse + LIGHT_AMBIENT
+
+#ifndef LIGHT_MIN_DIFFUSE
+#define LIGHT_MIN_DIFFUSE 0.0
+#endif
+#ifndef LIGHT_ATTENUATION_CONSTANT
+#define LIGHT_ATTENUATION_CONSTANT 1.0
+#endif
+#ifndef LIGHT_ATTENUATION_LINEAR
+#define LIGHT_ATTENUATION_LINEAR 0.1
+#endif
+#ifndef LIGHT_AMBIENT
+#define LIGHT_AMBIENT 0.3
+#endif
+
+uniform vec3 u_LightPos;       	// The position of the light in eye space.
+
+// How lit a point in eye space is, with its normal in eye space.
+float lighting(vec3 position, vec3 normal)
+{
+	// Get a lighting direction vector from the light to the vertex.
+    vec3 lightVector = normalize(u_LightPos - position);
+
+	// Calculate the dot product of the light vector and vertex normal. If the normal and light vector are
+	// pointing in the same direction then it will get max illumination.
+    float diffuse = max(dot(normal, lightVector), LIGHT_MIN_DIFFUSE);
+
+#ifdef USE_ATTENUATION
+	// Add attenuation.
+    float distance = length(u_LightPos - position);
+    diffuse = diffuse * (1.0 / (LIGHT_ATTENUATION_CONSTANT + LIGHT_ATTENUATION_LINEAR * distance));
+#endif
+
+    // Add ambient lighting
+    return diffuse + LIGHT_AMBIENT;
+}
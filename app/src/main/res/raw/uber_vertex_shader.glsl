@@ -0,0 +1,73 @@
+// Vertex shader for every variant - see ShaderVariants for the feature #defines.
+//   USE_VERTEX_COLOR     a_Color, otherwise white
+//   USE_TEXTURE          a_TexCoordinate passed on to the fragment shader
+//   USE_LIGHTING         a_Normal and the lighting() from uber_lighting
+//   PER_PIXEL_LIGHTING   lighting() runs in the fragment shader instead of here
+//   INSTANCED            u_Offsets[a_Instance] moves each copy in eye space, and
+//                        u_PMatrix takes the place of u_MVPMatrix
+
+uniform mat4 u_MVMatrix;		// A constant representing the combined model/view matrix.
+#ifdef INSTANCED
+uniform mat4 u_PMatrix;			// The projection alone - the offsets go in between.
+uniform vec4 u_Offsets[INSTANCE_COUNT];
+attribute float a_Instance;		// Which offset this vertex's copy uses.
+#else
+uniform mat4 u_MVPMatrix;		// A constant representing the combined model/view/projection matrix.
+#endif
+
+attribute vec4 a_Position;		// Per-vertex position information we will pass in.
+#ifdef USE_VERTEX_COLOR
+attribute vec4 a_Color;			// Per-vertex color information we will pass in.
+#endif
+#ifdef USE_LIGHTING
+attribute vec3 a_Normal;		// Per-vertex normal information we will pass in.
+#endif
+#ifdef USE_TEXTURE
+attribute vec2 a_TexCoordinate; // Per-vertex texture coordinate information we will pass in.
+#endif
+
+varying vec4 v_Color;			// This will be passed into the fragment shader.
+#ifdef PER_PIXEL_LIGHTING
+varying vec3 v_Position;		// This will be passed into the fragment shader.
+varying vec3 v_Normal;			// This will be passed into the fragment shader.
+#endif
+#ifdef USE_TEXTURE
+varying vec2 v_TexCoordinate;   // This will be passed into the fragment shader.
+#endif
+
+// The entry point for our vertex shader.
+void main()
+{
+	// Transform the vertex into eye space.
+#ifdef INSTANCED
+	vec4 eyePosition = u_MVMatrix * a_Position + u_Offsets[int(a_Instance)];
+	gl_Position = u_PMatrix * eyePosition;
+#else
+	vec4 eyePosition = u_MVMatrix * a_Position;
+	gl_Position = u_MVPMatrix * a_Position;
+#endif
+
+#ifdef USE_VERTEX_COLOR
+	vec4 color = a_Color;
+#else
+	vec4 color = vec4(1.0);
+#endif
+
+#ifdef USE_LIGHTING
+	// Transform the normal's orientation into eye space.
+	vec3 normal = vec3(u_MVMatrix * vec4(a_Normal, 0.0));
+#ifdef PER_PIXEL_LIGHTING
+	v_Position = vec3(eyePosition);
+	v_Normal = normal;
+#else
+	color = color * lighting(vec3(eyePosition), normal);
+#endif
+#endif
+
+#ifdef USE_TEXTURE
+	// Pass through the texture coordinate.
+	v_TexCoordinate = a_TexCoordinate;
+#endif
+
+	v_Color = color;
+}
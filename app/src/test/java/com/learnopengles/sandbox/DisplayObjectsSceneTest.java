@@ -0,0 +1,162 @@
+package com.learnopengles.sandbox;
+
+/*
+ * the display objects scene loaded and drawn with no GPU behind it - plain JVM test,
+ * run from the app module so the shader sources are read from src/main/res/raw
+ */
+
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLES20Api;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.RecordingGLApi;
+import com.learnopengles.sandbox.displayobjects.DisplayObjectsScene;
+import com.learnopengles.sandbox.objects.BufferManager;
+import com.learnopengles.sandbox.objects.HeightField;
+import com.learnopengles.sandbox.objects.HeightMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DisplayObjectsSceneTest {
+
+    /*
+     * cylinder and ellipse are body and two caps, the cone body and base, the helix
+     * one buffer block, the rest one draw each; the teapot is off by default
+     */
+    private static final int DRAWS_PER_FRAME = 3 + 3 + 2 + 1 + 1 + 1 + 1 + 1;
+    private static final int OBJECTS_DRAWN = 8;
+    private static final int NODES = 18;
+
+    private RecordingGLApi mGl;
+    private DisplayObjectsScene mScene;
+
+    @Before
+    public void load() throws IOException {
+        mGl = new RecordingGLApi();
+        GL.setApi(mGl);
+        GLState.reset();
+
+        mScene = new DisplayObjectsScene(BufferManager.getInstance(null));
+        mScene.load(raw("uber_vertex_shader"), raw("uber_fragment_shader"), raw("uber_lighting"));
+        mScene.setProjection(800, 480, 1f);
+    }
+
+    @After
+    public void restore() {
+        GL.setApi(new GLES20Api());
+    }
+
+    @Test
+    public void loadLinksThreeProgramsAndUploadsEverything() {
+        // per vertex, per pixel, and the light point
+        assertEquals(3, mGl.getCalls("glLinkProgram"));
+        assertEquals(6, mGl.getCalls("glCompileShader"));
+        assertEquals(mGl.getCalls("glGenBuffers"), mGl.getCalls("glBufferData"));
+        assertTrue(mGl.getBytesUploaded() > 0);
+        assertEquals(0, mGl.getDrawCalls());
+    }
+
+    @Test
+    public void frameDrawsEveryObjectOnce() {
+        mGl.reset();
+        mScene.drawFrame(0f);
+
+        assertEquals(DRAWS_PER_FRAME, mGl.getDrawCalls());
+        assertEquals(1, mGl.getCalls("glClear"));
+        assertEquals(1, mGl.getCalls("glUseProgram"));
+        assertEquals(1, mGl.getCalls("glUniform3f"));
+        assertEquals(2 * OBJECTS_DRAWN, mGl.getCalls("glUniformMatrix4fv"));
+        assertEquals(0, mGl.getBytesUploaded());
+        assertEquals(NODES, mScene.getSceneGraph().getLastUpdatedNodes());
+    }
+
+    @Test
+    public void stillFrameKeepsProgramAndMatrices() {
+        mScene.drawFrame(0f);
+        mGl.reset();
+        mScene.drawFrame(0f);
+
+        assertEquals(DRAWS_PER_FRAME, mGl.getDrawCalls());
+        assertEquals(0, mGl.getCalls("glUseProgram"));
+        assertEquals(0, mScene.getSceneGraph().getLastUpdatedNodes());
+    }
+
+    @Test
+    public void rotationRecomputesOnlyTheSpinNodes() {
+        mScene.drawFrame(0f);
+        mScene.rotate(10f, 5f);
+        mGl.reset();
+        mScene.drawFrame(0f);
+
+        assertEquals(DRAWS_PER_FRAME, mGl.getDrawCalls());
+        assertEquals(NODES / 2, mScene.getSceneGraph().getLastUpdatedNodes());
+    }
+
+    @Test
+    public void perPixelSwitchesProgramOnce() {
+        mScene.drawFrame(0f);
+        mScene.setPerVertexLighting(false);
+        mGl.reset();
+        mScene.drawFrame(0f);
+        mScene.drawFrame(0f);
+
+        assertEquals(1, mGl.getCalls("glUseProgram"));
+        assertEquals(2 * DRAWS_PER_FRAME, mGl.getDrawCalls());
+    }
+
+    @Test
+    public void directTeapotAddsItsDraws() {
+        mScene.setRenderOnlyIBO(false);
+        mGl.reset();
+        mScene.drawFrame(0f);
+
+        assertEquals(2 * (OBJECTS_DRAWN + 1), mGl.getCalls("glUniformMatrix4fv"));
+        assertTrue(mGl.getDrawCalls() > DRAWS_PER_FRAME);
+    }
+
+    @Test
+    public void builtHeightMapIsUploadedOnceAContext() throws IOException {
+        final HeightMap heightMap = new HeightMap(HeightField.fromHeights(new float[16 * 16], 16, 16, 10f / 15, 4f));
+        heightMap.setRetainStagingData(true);
+        mScene.setHeightMap(heightMap);
+
+        // vertices and indices, at the first frame only
+        mGl.reset();
+        mScene.drawFrame(0f);
+        assertEquals(2, mGl.getCalls("glBufferData"));
+        assertEquals(DRAWS_PER_FRAME, mGl.getDrawCalls());
+        mGl.reset();
+        mScene.drawFrame(0f);
+        assertEquals(0, mGl.getCalls("glBufferData"));
+
+        // a new context has it again, from the retained data
+        mScene.load(raw("uber_vertex_shader"), raw("uber_fragment_shader"), raw("uber_lighting"));
+        mGl.reset();
+        mScene.drawFrame(0f);
+        assertEquals(2, mGl.getCalls("glBufferData"));
+    }
+
+    private static String raw(String name) throws IOException {
+        final InputStream in = new FileInputStream("src/main/res/raw/" + name + ".glsl");
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
\ No newline at end of file
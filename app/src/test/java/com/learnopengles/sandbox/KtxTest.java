@@ -0,0 +1,139 @@
+package com.learnopengles.sandbox;
+
+/*
+ * the KTX container the build writes and TextureLoader reads - plain JVM test
+ */
+
+import com.learnopengles.sandbox.common.Ktx;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KtxTest {
+
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+
+    @Test
+    public void rowsArePaddedToFourBytes() {
+        assertEquals(4, Ktx.rowBytes(1, 3));
+        assertEquals(8, Ktx.rowBytes(2, 3));
+        assertEquals(12, Ktx.rowBytes(4, 3));
+        assertEquals(4, Ktx.rowBytes(1, 4));
+        assertEquals(4, Ktx.rowBytes(1, 1));
+    }
+
+    @Test
+    public void writtenFileReadsBack() throws IOException {
+        final ByteBuffer base = levelOf(1, 2, 3, 0, 4, 5, 6, 0);      // 1x2 RGB, padded rows
+        final ByteBuffer small = levelOf(7, 8, 9, 0);                 // 1x1
+        final Ktx ktx = new Ktx(Ktx.GL_UNSIGNED_BYTE, 1, Ktx.GL_RGB, Ktx.GL_RGB, Ktx.GL_RGB, 1, 2,
+                new ByteBuffer[]{base, small});
+
+        final Ktx read = Ktx.read(new ByteArrayInputStream(write(ktx)));
+
+        assertFalse(read.isCompressed());
+        assertEquals(Ktx.GL_UNSIGNED_BYTE, read.getGlType());
+        assertEquals(Ktx.GL_RGB, read.getGlFormat());
+        assertEquals(Ktx.GL_RGB, read.getGlInternalFormat());
+        assertEquals(2, read.getLevelCount());
+        assertEquals(1, read.getWidth(0));
+        assertEquals(2, read.getHeight(0));
+        assertEquals(1, read.getWidth(1));
+        assertEquals(1, read.getHeight(1));
+        assertArrayEquals(bytes(base), bytes(read.getLevel(0)));
+        assertArrayEquals(bytes(small), bytes(read.getLevel(1)));
+        assertEquals(0, read.getLevel(0).position());
+    }
+
+    @Test
+    public void levelsArePaddedInTheFile() throws IOException {
+        // a 1x1 compressed level of 5 bytes is followed by 3 bytes of padding
+        final Ktx ktx = new Ktx(0, 1, 0, 0x8D64, Ktx.GL_RGB, 1, 1, new ByteBuffer[]{levelOf(1, 2, 3, 4, 5)});
+        final byte[] file = write(ktx);
+
+        assertEquals(IDENTIFIER.length + 13 * 4 + 4 + 8, file.length);
+        final Ktx read = Ktx.read(new ByteArrayInputStream(file));
+        assertTrue(read.isCompressed());
+        assertEquals(0x8D64, read.getGlInternalFormat());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, bytes(read.getLevel(0)));
+    }
+
+    @Test
+    public void readsTheOtherByteOrderAndSkipsKeyValueData() throws IOException {
+        // what a big-endian writer would produce: one 1x1 GL_UNSIGNED_SHORT_5_6_5 level
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(file);
+        out.write(IDENTIFIER);
+        final int[] header = {0x04030201, 0x8363, 2, Ktx.GL_RGB, Ktx.GL_RGB, Ktx.GL_RGB, 1, 1, 0, 0, 1, 1, 8};
+        for (int value : header) {
+            out.writeInt(value);
+        }
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        out.writeInt(2);
+        out.writeShort(0x1234);
+        out.write(new byte[2]);
+
+        final Ktx read = Ktx.read(new ByteArrayInputStream(file.toByteArray()));
+
+        assertEquals(0x8363, read.getGlType());
+        assertEquals(1, read.getLevelCount());
+        assertEquals(0x1234, read.getLevel(0).order(ByteOrder.nativeOrder()).getShort(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        final byte[] png = new byte[64];
+        png[1] = 'P';
+        png[2] = 'N';
+        png[3] = 'G';
+        Ktx.read(new ByteArrayInputStream(png));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsCubeMaps() throws IOException {
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(file);
+        out.write(IDENTIFIER);
+        final int[] header = {0x04030201, Ktx.GL_UNSIGNED_BYTE, 1, Ktx.GL_RGB, Ktx.GL_RGB, Ktx.GL_RGB, 1, 1, 0, 0, 6, 1, 0};
+        for (int value : header) {
+            out.writeInt(value);
+        }
+        Ktx.read(new ByteArrayInputStream(file.toByteArray()));
+    }
+
+    private static ByteBuffer levelOf(int... values) {
+        final ByteBuffer level = ByteBuffer.allocateDirect(values.length);
+        for (int value : values) {
+            level.put((byte) value);
+        }
+        level.position(0);
+        return level;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        final ByteBuffer copy = buffer.duplicate();
+        copy.position(0);
+        final byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] write(Ktx ktx) throws IOException {
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        ktx.write(file);
+        return file.toByteArray();
+    }
+}
@@ -0,0 +1,73 @@
+package com.learnopengles.sandbox;
+
+/*
+ * geometry built and drawn with no GPU behind it - plain JVM test
+ */
+
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLES20Api;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.RecordingGLApi;
+import com.learnopengles.sandbox.objects.Sphere;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RecordingGLApiTest {
+
+    private static final float[] COLOR = {0f, 0.3f, 0f, 1f};
+    private static final int SLICES = 10;
+
+    private RecordingGLApi mGl;
+
+    @Before
+    public void record() {
+        mGl = new RecordingGLApi();
+        GL.setApi(mGl);
+        GLState.reset();
+    }
+
+    @After
+    public void restore() {
+        GL.setApi(new GLES20Api());
+    }
+
+    @Test
+    public void sphereUploadsItsVerticesAndIndices() {
+        new Sphere(SLICES, 0.5f, COLOR);
+
+        final int vertices = (SLICES + 1) * (SLICES + 1);
+        final int indices = 2 * (SLICES + 1) * SLICES + 2 * (SLICES - 1);
+        assertEquals(2, mGl.getCalls("glGenBuffers"));
+        assertEquals(2, mGl.getCalls("glBufferData"));
+        assertEquals(vertices * 10 * 4 + indices * 2, mGl.getBytesUploaded());
+    }
+
+    @Test
+    public void sphereIsOneDraw() {
+        final Sphere sphere = new Sphere(SLICES, 0.5f, COLOR);
+        mGl.reset();
+
+        sphere.render(0, 1, 2, false);
+
+        assertEquals(1, mGl.getDrawCalls());
+        assertEquals(3, mGl.getCalls("glVertexAttribPointer"));
+        assertEquals(0, mGl.getBytesUploaded());
+    }
+
+    @Test
+    public void secondFrameSkipsTheBindsAlreadyMade() {
+        final Sphere sphere = new Sphere(SLICES, 0.5f, COLOR);
+        sphere.render(0, 1, 2, false);
+        mGl.reset();
+
+        sphere.render(0, 1, 2, false);
+
+        assertEquals(0, mGl.getCalls("glBindBuffer"));
+        assertEquals(0, mGl.getCalls("glEnableVertexAttribArray"));
+        assertEquals(1, mGl.getDrawCalls());
+    }
+}
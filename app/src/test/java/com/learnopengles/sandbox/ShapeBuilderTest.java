@@ -0,0 +1,122 @@
+package com.learnopengles.sandbox;
+
+/*
+ * the write-into-place cube generation against the original - plain JVM test
+ */
+
+import com.learnopengles.sandbox.common.ShapeBuilder;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ShapeBuilderTest {
+
+    private static final float[][] POINTS = {
+            {-1f, 1f, 1f}, {1f, 1f, 1f}, {-1f, -1f, 1f}, {1f, -1f, 1f},
+            {-1f, 1f, -1f}, {1f, 1f, -1f}, {-1f, -1f, -1f}, {1f, -1f, -1f}
+    };
+
+    @Test
+    public void intoArrayMatchesNewArray() {
+        final float[] expected = original(3);
+
+        final float[] dest = new float[expected.length + 5];
+        final int end = ShapeBuilder.generateCubeData(packed(), 3, dest, 5, 3);
+
+        assertEquals(dest.length, end);
+        final float[] written = new float[expected.length];
+        System.arraycopy(dest, 5, written, 0, written.length);
+        assertArrayEquals(expected, written, 0f);
+    }
+
+    @Test
+    public void intoBufferLeavesRoomBetweenVertices() {
+        final float[] expected = original(3);
+        final int stride = 8;
+
+        final FloatBuffer dest = FloatBuffer.allocate(ShapeBuilder.CUBE_VERTICES * stride);
+        final int end = ShapeBuilder.generateCubeData(packed(), 3, dest, 0, stride);
+
+        assertEquals((ShapeBuilder.CUBE_VERTICES - 1) * stride + 3, end);
+        assertEquals(0, dest.position());
+        for (int v = 0; v < ShapeBuilder.CUBE_VERTICES; v++) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected[v * 3 + i], dest.get(v * stride + i), 0f);
+            }
+            for (int i = 3; i < stride; i++) {
+                assertEquals(0f, dest.get(v * stride + i), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void indexedCubeDrawsTheSameTriangles() {
+        final float[] expected = original(3);
+
+        final FloatBuffer vertices = FloatBuffer.allocate(ShapeBuilder.CUBE_UNIQUE_VERTICES * 3);
+        ShapeBuilder.generateIndexedCubeData(packed(), 3, vertices, 0, 3);
+        final short[] indices = ShapeBuilder.generateCubeIndices(1);
+
+        assertEquals(ShapeBuilder.CUBE_VERTICES, indices.length);
+        for (int v = 0; v < indices.length; v++) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected[v * 3 + i], vertices.get(indices[v] * 3 + i), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void perVertexDataFollowsTheIndices() {
+        // a different value at each of the 36 vertices, to see which ones were kept
+        final float[] cubeData = new float[ShapeBuilder.CUBE_VERTICES * 2];
+        for (int i = 0; i < cubeData.length; i++) {
+            cubeData[i] = i;
+        }
+        final short[] indices = ShapeBuilder.generateCubeIndices(1);
+        final float[] indexed = ShapeBuilder.toIndexedCubeData(cubeData, 2);
+        assertEquals(ShapeBuilder.CUBE_UNIQUE_VERTICES * 2, indexed.length);
+        for (int face = 0; face < 6; face++) {
+            // the first three vertices of each face are all distinct points
+            for (int v = face * 6; v < face * 6 + 3; v++) {
+                assertEquals(cubeData[v * 2], indexed[indices[v] * 2], 0f);
+                assertEquals(cubeData[v * 2 + 1], indexed[indices[v] * 2 + 1], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void laterCubesIndexTheirOwnVertices() {
+        final short[] indices = ShapeBuilder.generateCubeIndices(3);
+        for (int i = 0; i < ShapeBuilder.CUBE_VERTICES; i++) {
+            assertEquals(indices[i] + 2 * ShapeBuilder.CUBE_UNIQUE_VERTICES,
+                    indices[2 * ShapeBuilder.CUBE_VERTICES + i]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indicesStopAtSixteenBits() {
+        ShapeBuilder.generateCubeIndices(65536 / ShapeBuilder.CUBE_UNIQUE_VERTICES + 1);
+    }
+
+    @Test
+    public void cubeHasThirtySixVertices() {
+        assertEquals(ShapeBuilder.CUBE_VERTICES * 3, original(3).length);
+    }
+
+    private static float[] original(int elementsPerPoint) {
+        return ShapeBuilder.generateCubeData(POINTS[0], POINTS[1], POINTS[2], POINTS[3],
+                POINTS[4], POINTS[5], POINTS[6], POINTS[7], elementsPerPoint);
+    }
+
+    private static float[] packed() {
+        final float[] points = new float[POINTS.length * 3];
+        for (int i = 0; i < POINTS.length; i++) {
+            System.arraycopy(POINTS[i], 0, points, i * 3, 3);
+        }
+        return points;
+    }
+}
@@ -0,0 +1,124 @@
+package com.learnopengles.sandbox;
+
+/*
+ * mip chain filtering and packing for the build-time texture baker - plain JVM test
+ */
+
+import com.learnopengles.sandbox.common.Ktx;
+import com.learnopengles.sandbox.common.TextureBaker;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TextureBakerTest {
+
+    private static final int BLACK = 0xff000000;
+    private static final int WHITE = 0xffffffff;
+
+    @Test
+    public void chainRunsDownToOnePixel() {
+        assertEquals(1, TextureBaker.levelCount(1, 1));
+        assertEquals(4, TextureBaker.levelCount(8, 2));
+        assertEquals(9, TextureBaker.levelCount(256, 256));
+        assertEquals(8, TextureBaker.levelCount(200, 100));
+    }
+
+    @Test
+    public void flatColourStaysTheSame() {
+        final int[] level = new int[16];
+        java.util.Arrays.fill(level, 0xff336699);
+
+        final int[] half = TextureBaker.downsample(level, 4, 4);
+
+        assertEquals(4, half.length);
+        for (int pixel : half) {
+            assertEquals(0xff336699, pixel);
+        }
+    }
+
+    @Test
+    public void averagesInLinearLight() {
+        final int[] checker = {BLACK, WHITE, WHITE, BLACK};
+
+        final int grey = TextureBaker.downsample(checker, 2, 2)[0];
+
+        // half the light of white is sRGB 188, not the 128 a plain average gives
+        assertEquals(0xff, grey >>> 24);
+        assertEquals(188, (grey >> 16) & 0xff);
+        assertEquals(188, (grey >> 8) & 0xff);
+        assertEquals(188, grey & 0xff);
+    }
+
+    @Test
+    public void transparentPixelsDontBleed() {
+        final int[] edge = {0x00ff0000, 0x00ff0000, 0x00ff0000, 0xff00ff00};
+
+        final int pixel = TextureBaker.downsample(edge, 2, 2)[0];
+
+        assertEquals(64, pixel >>> 24);
+        assertEquals(0x00ff00, pixel & 0xffffff);
+    }
+
+    @Test
+    public void oddSizesKeepAtLeastOnePixel() {
+        assertEquals(1, TextureBaker.downsample(new int[]{WHITE, WHITE}, 1, 2).length);
+        assertEquals(2, TextureBaker.downsample(new int[]{WHITE, WHITE, WHITE, WHITE}, 4, 1).length);
+    }
+
+    @Test
+    public void srgbConversionRoundTrips() {
+        for (int i = 0; i < 256; i++) {
+            assertEquals(i, TextureBaker.toSrgb(TextureBaker.toLinear(i)));
+        }
+    }
+
+    @Test
+    public void opaqueImagesBakeToRgb() {
+        final Ktx ktx = TextureBaker.bake(new int[]{BLACK, WHITE, WHITE, BLACK, WHITE, BLACK, BLACK, WHITE}, 4, 2);
+
+        assertFalse(ktx.isCompressed());
+        assertEquals(Ktx.GL_RGB, ktx.getGlFormat());
+        assertEquals(Ktx.GL_UNSIGNED_BYTE, ktx.getGlType());
+        assertEquals(3, ktx.getLevelCount());
+        assertEquals(12 * 2, ktx.getLevel(0).capacity());
+        assertEquals(8 * 1, ktx.getLevel(1).capacity());
+        assertEquals(4 * 1, ktx.getLevel(2).capacity());
+        assertEquals(1, ktx.getWidth(2));
+        assertEquals(1, ktx.getHeight(2));
+    }
+
+    @Test
+    public void alphaImagesBakeToPremultipliedRgba() {
+        final Ktx ktx = TextureBaker.bake(new int[]{0x80ff0000}, 1, 1);
+
+        assertEquals(Ktx.GL_RGBA, ktx.getGlFormat());
+        final ByteBuffer level = ktx.getLevel(0);
+        assertEquals(128, level.get(0) & 0xff);
+        assertEquals(0, level.get(1) & 0xff);
+        assertEquals(0, level.get(2) & 0xff);
+        assertEquals(128, level.get(3) & 0xff);
+    }
+
+    @Test
+    public void packedRowsStartOnFourBytes() {
+        final ByteBuffer data = TextureBaker.pack(new int[]{0xff010203, 0xff040506}, 1, 2, false);
+
+        assertEquals(8, data.capacity());
+        assertEquals(0, data.position());
+        assertEquals(1, data.get(0));
+        assertEquals(3, data.get(2));
+        assertEquals(4, data.get(4));
+        assertEquals(6, data.get(6));
+    }
+
+    @Test
+    public void opacityIsDetected() {
+        assertTrue(TextureBaker.isOpaque(new int[]{BLACK, WHITE}));
+        assertFalse(TextureBaker.isOpaque(new int[]{BLACK, 0xfeffffff}));
+    }
+}
@@ -0,0 +1,83 @@
+package com.learnopengles.sandbox;
+
+/*
+ * one cube's worth of ShapeBuilder.generateCubeData:
+ *
+ *   newArray     the original, a new array per cube (lesson 5)
+ *   intoArray    written in place
+ *   interleaved  written in place into a direct buffer, leaving room for
+ *                the normal and texture coordinate (lesson 7)
+ *   indexed      the 8 distinct corners only, for an indexed draw
+ */
+
+import com.learnopengles.sandbox.common.ShapeBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CubeDataBenchmark {
+
+    private static final int POSITION = 3;
+    // XYZ + normal + texture coordinate
+    private static final int STRIDE = 8;
+
+    private final float[] mP1 = {-1f, 1f, 1f};
+    private final float[] mP2 = {1f, 1f, 1f};
+    private final float[] mP3 = {-1f, -1f, 1f};
+    private final float[] mP4 = {1f, -1f, 1f};
+    private final float[] mP5 = {-1f, 1f, -1f};
+    private final float[] mP6 = {1f, 1f, -1f};
+    private final float[] mP7 = {-1f, -1f, -1f};
+    private final float[] mP8 = {1f, -1f, -1f};
+
+    private final float[] mPoints = {
+            -1f, 1f, 1f, 1f, 1f, 1f, -1f, -1f, 1f, 1f, -1f, 1f,
+            -1f, 1f, -1f, 1f, 1f, -1f, -1f, -1f, -1f, 1f, -1f, -1f
+    };
+
+    private final float[] mArray = new float[ShapeBuilder.CUBE_VERTICES * POSITION];
+    private final FloatBuffer mBuffer = ByteBuffer
+            .allocateDirect(ShapeBuilder.CUBE_VERTICES * STRIDE * 4).order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+
+    @Benchmark
+    public float[] newArray() {
+        return ShapeBuilder.generateCubeData(mP1, mP2, mP3, mP4, mP5, mP6, mP7, mP8, POSITION);
+    }
+
+    @Benchmark
+    public float[] intoArray() {
+        ShapeBuilder.generateCubeData(mPoints, POSITION, mArray, 0, POSITION);
+        return mArray;
+    }
+
+    @Benchmark
+    public FloatBuffer interleaved() {
+        ShapeBuilder.generateCubeData(mPoints, POSITION, mBuffer, 0, STRIDE);
+        return mBuffer;
+    }
+
+    @Benchmark
+    public FloatBuffer indexed() {
+        ShapeBuilder.generateIndexedCubeData(mPoints, POSITION, mBuffer, 0, STRIDE);
+        return mBuffer;
+    }
+}
@@ -0,0 +1,92 @@
+package com.learnopengles.sandbox;
+
+/*
+ * the procedural shapes in objects, at the resolutions the renderers ask for.
+ * GL calls go to a RecordingGLApi, so each constructor is timed building its
+ * vertex and index data and packing them into buffers, with no driver behind it.
+ */
+
+import com.learnopengles.sandbox.common.GL;
+import com.learnopengles.sandbox.common.GLState;
+import com.learnopengles.sandbox.common.RecordingGLApi;
+import com.learnopengles.sandbox.objects.Cone;
+import com.learnopengles.sandbox.objects.Cylinder;
+import com.learnopengles.sandbox.objects.Ellipse;
+import com.learnopengles.sandbox.objects.HeightMap;
+import com.learnopengles.sandbox.objects.Sphere;
+import com.learnopengles.sandbox.objects.ToroidHelix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    private static final float[] COLOR = {0f, 0.3f, 0f, 1f};
+    private static final float[] BASE_COLOR = {0.6f, 0f, 0f, 1f};
+
+    @Setup
+    public void recordGl() {
+        GL.setApi(new RecordingGLApi());
+        GLState.reset();
+    }
+
+    @Benchmark
+    public Sphere sphere() {
+        return new Sphere(30, 0.5f, COLOR);
+    }
+
+    @Benchmark
+    public Cylinder cylinder() {
+        return new Cylinder(30, 0.25f, 0.5f, COLOR);
+    }
+
+    @Benchmark
+    public Cone cone() {
+        return new Cone(50, 0.25f, 0.5f, COLOR, BASE_COLOR);
+    }
+
+    @Benchmark
+    public Ellipse ellipse() {
+        return new Ellipse(30, 0.25f, 0.5f, COLOR);
+    }
+
+    @Benchmark
+    public HeightMap heightMap() {
+        return new HeightMap();
+    }
+
+    @Benchmark
+    public float[] toroidHelix() {
+        return ToroidHelix.generateVertexData(COLOR,
+                ToroidHelix.DEFAULT_NUM_SEGMENTS, ToroidHelix.DEFAULT_NUM_SIDES);
+    }
+
+    /*
+     * the same helix on the calling thread alone - against toroidHelix(), what the WorkerPool buys
+     */
+    @Benchmark
+    public float[] toroidHelixSerial() {
+        final int segments = ToroidHelix.DEFAULT_NUM_SEGMENTS;
+        final int sides = ToroidHelix.DEFAULT_NUM_SIDES;
+        final float[] points = ToroidHelix.calculateSurfacePoints(segments + 1, sides + 1, false);
+        final float[] vertexData = new float[ToroidHelix.getFloatCount(segments, sides)];
+        ToroidHelix.generateTriangles(points, sides + 1, 0, segments, COLOR, vertexData, 0, false);
+        return vertexData;
+    }
+}
@@ -0,0 +1,90 @@
+package com.learnopengles.sandbox;
+
+/*
+ * the per-frame object matrices - model, model-view and MVP for every object,
+ * which is what do_matrix_setup computed before the renderers moved to SceneGraph -
+ * at 10, 100 and 1000 objects, each a placement node with a spinning child:
+ *
+ *   still       nothing moved
+ *   camera      the view changed (every MV / MVP, no world matrix)
+ *   rotation    the shared touch rotation changed (everything)
+ */
+
+import com.learnopengles.sandbox.common.MatrixMath;
+import com.learnopengles.sandbox.common.SceneGraph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MatrixChainBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int objects;
+
+    private final float[] mView = new float[16];
+    private final float[] mProjection = new float[16];
+    private final float[] mRotation = new float[16];
+    private float mAngle;
+
+    private SceneGraph mGraph;
+
+    @Setup
+    public void build() {
+        // the display objects camera: eye at z = -0.5 looking down -z
+        MatrixMath.setLookAt(mView, 0, 0f, 0f, -0.5f, 0f, 0f, -5f, 0f, 1f, 0f);
+        MatrixMath.setFrustum(mProjection, 0, -1.5f, 1.5f, -1f, 1f, 1f, 20f);
+        MatrixMath.setRotate(mRotation, 0, 30f, 0f, 1f, 0f);
+
+        mGraph = new SceneGraph(objects * 2);
+        for (int i = 0; i < objects; i++) {
+            final int placement = mGraph.addNode(SceneGraph.NO_PARENT);
+            mGraph.setLocalTranslateScale(placement, i % 9 - 4f, i % 7 - 3f, -2.5f - i / 63, 0.03f);
+            final int spin = mGraph.addNode(placement);
+            mGraph.setLocal(spin, mRotation, 0);
+        }
+        mGraph.setCamera(mView, mProjection);
+        mGraph.update();
+    }
+
+    @Benchmark
+    public int still() {
+        mGraph.setCamera(mView, mProjection);
+        return mGraph.update();
+    }
+
+    @Benchmark
+    public int camera() {
+        mView[12] += 0.001f;
+        mGraph.setCamera(mView, mProjection);
+        return mGraph.update();
+    }
+
+    @Benchmark
+    public int rotation() {
+        mAngle += 0.5f;
+        MatrixMath.setRotate(mRotation, 0, mAngle, 0f, 1f, 0f);
+        // every second node is a spin node
+        for (int node = 1; node < mGraph.getNodeCount(); node += 2) {
+            mGraph.setLocal(node, mRotation, 0);
+        }
+        mGraph.setCamera(mView, mProjection);
+        return mGraph.update();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.learnopengles.sandbox;
+
+/*
+ * XYZ normal math over 100000 random triangles in XYZ + Normal + RGBA vertices:
+ *
+ *   staticApi     gather into three small arrays, call getNormal(p1, p2, p3),
+ *                 copy the shared result out - what the geometry code did first
+ *   packed        getNormal() on the packed vertices, a triangle at a time
+ *   packedBulk    getTriangleNormals(), indexed, in one call
+ *   vertexNormals getVertexNormals(): smooth normals, written into the vertices
+ */
+
+import com.learnopengles.sandbox.objects.XYZ;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NormalsBenchmark {
+
+    private static final int STRIDE = 10;   // XYZ + Normal + RGBA
+    private static final int NORMAL_OFFSET = 3;
+    private static final int NUM_TRIANGLES = 100000;
+
+    private float[] mVertices;
+    private int[] mIndices;
+    private float[] mNormals;
+
+    private final float[] mP1 = new float[3];
+    private final float[] mP2 = new float[3];
+    private final float[] mP3 = new float[3];
+
+    @Setup
+    public void fill() {
+        mVertices = new float[NUM_TRIANGLES * 3 * STRIDE];
+        mIndices = new int[NUM_TRIANGLES * 3];
+        mNormals = new float[NUM_TRIANGLES * 3];
+        final Random random = new Random(42);
+        for (int i = 0; i < NUM_TRIANGLES * 3; i++) {
+            mVertices[i * STRIDE] = random.nextFloat();
+            mVertices[i * STRIDE + 1] = random.nextFloat();
+            mVertices[i * STRIDE + 2] = random.nextFloat();
+            mIndices[i] = i;
+        }
+    }
+
+    @Benchmark
+    public float[] staticApi() {
+        float[] n;
+        for (int t = 0; t < NUM_TRIANGLES; t++) {
+            final int v = t * 3 * STRIDE;
+            System.arraycopy(mVertices, v, mP1, 0, 3);
+            System.arraycopy(mVertices, v + STRIDE, mP2, 0, 3);
+            System.arraycopy(mVertices, v + 2 * STRIDE, mP3, 0, 3);
+            n = XYZ.getNormal(mP1, mP2, mP3);
+            mNormals[t * 3] = n[0];
+            mNormals[t * 3 + 1] = n[1];
+            mNormals[t * 3 + 2] = n[2];
+        }
+        return mNormals;
+    }
+
+    @Benchmark
+    public float[] packed() {
+        for (int t = 0; t < NUM_TRIANGLES; t++) {
+            final int v = t * 3 * STRIDE;
+            XYZ.getNormal(mVertices, v, v + STRIDE, v + 2 * STRIDE, mNormals, t * 3);
+        }
+        return mNormals;
+    }
+
+    @Benchmark
+    public float[] packedBulk() {
+        XYZ.getTriangleNormals(mVertices, 0, STRIDE, mIndices, 0, NUM_TRIANGLES, mNormals, 0, 3);
+        return mNormals;
+    }
+
+    @Benchmark
+    public float[] vertexNormals() {
+        XYZ.getVertexNormals(mVertices, 0, STRIDE, NUM_TRIANGLES * 3, NORMAL_OFFSET,
+                mIndices, 0, NUM_TRIANGLES);
+        return mVertices;
+    }
+}
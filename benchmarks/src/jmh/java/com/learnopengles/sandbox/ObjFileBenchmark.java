@@ -0,0 +1,82 @@
+package com.learnopengles.sandbox;
+
+/*
+ * ObjFile parsing of every bundled model, .mtl included where there is one.
+ * The files are read into memory first, so only the parse is timed.
+ */
+
+import com.learnopengles.sandbox.objects.ObjFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ObjFileBenchmark {
+
+    // app/src/main/assets, packaged as resources by the build
+    @Param({"cow", "cube", "helixcoil", "plants3", "teapot", "teddybear"})
+    public String model;
+
+    private final ObjFile mObjFile = new ObjFile();
+    private String mObj;
+    private String mMtl;
+
+    @Setup
+    public void read() throws IOException {
+        mObj = readResource(model + ".obj");
+        mMtl = readResource(model + ".mtl");
+        if (mObj == null) {
+            throw new IOException(model + ".obj is missing");
+        }
+    }
+
+    @Benchmark
+    public ObjFile parse() throws IOException {
+        mObjFile.parse(mMtl == null ? null : new StringReader(mMtl), new StringReader(mObj));
+        return mObjFile;
+    }
+
+    /*
+     * null if there is no such file
+     */
+    private static String readResource(String name) throws IOException {
+        final InputStream in = ObjFileBenchmark.class.getResourceAsStream("/" + name);
+        if (in == null) {
+            return null;
+        }
+        final Reader reader = new InputStreamReader(in, Charset.forName("UTF-8"));
+        try {
+            final StringBuilder text = new StringBuilder();
+            final char[] chunk = new char[8192];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                text.append(chunk, 0, read);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.learnopengles.sandbox.build;
+
+import com.learnopengles.sandbox.common.Ktx;
+import com.learnopengles.sandbox.common.TextureBaker;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Bakes every PNG and JPEG in a directory into a KTX file of the same name, with
+ * its full mip chain - see TextureBaker. The app finds them in its assets.
+ */
+public class BakeTextures extends DefaultTask {
+
+    private File mSourceDir;
+    private File mOutputDir;
+
+    @InputDirectory
+    public File getSourceDir() {
+        return mSourceDir;
+    }
+
+    public void setSourceDir(File sourceDir) {
+        mSourceDir = sourceDir;
+    }
+
+    @OutputDirectory
+    public File getOutputDir() {
+        return mOutputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        mOutputDir = outputDir;
+    }
+
+    @TaskAction
+    public void bake() throws IOException {
+        final File[] files = mSourceDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            final int dot = name.lastIndexOf('.');
+            final String extension = dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+            if (!extension.equals("png") && !extension.equals("jpg") && !extension.equals("jpeg")) {
+                continue;
+            }
+
+            final BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                throw new GradleException("can't decode " + file);
+            }
+            final int width = image.getWidth();
+            final int height = image.getHeight();
+            final int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+
+            final Ktx ktx = TextureBaker.bake(argb, width, height);
+            final File baked = new File(mOutputDir, name.substring(0, dot) + ".ktx");
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(baked));
+            try {
+                ktx.write(out);
+            } finally {
+                out.close();
+            }
+            getLogger().info("baked " + name + ": " + width + "x" + height + ", "
+                    + ktx.getLevelCount() + " levels, " + baked.length() / 1024 + " KB");
+        }
+    }
+}